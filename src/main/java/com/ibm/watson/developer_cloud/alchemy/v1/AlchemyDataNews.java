@@ -15,11 +15,13 @@ package com.ibm.watson.developer_cloud.alchemy.v1;
 
 import java.util.Map;
 
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Article;
 import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentsResult;
 import com.ibm.watson.developer_cloud.alchemy.v1.model.VolumeResult;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
 import com.ibm.watson.developer_cloud.service.AlchemyService;
+import com.ibm.watson.developer_cloud.util.FieldProjection;
 import com.ibm.watson.developer_cloud.util.ResponseConverterUtils;
 import com.ibm.watson.developer_cloud.util.Validator;
 
@@ -43,6 +45,11 @@ public class AlchemyDataNews extends AlchemyService {
    */
   public static final String END = "end";
 
+  /**
+   * The Constant NEXT. the token of the next page returned by a previous query (value is "next")
+   */
+  public static final String NEXT = "next";
+
   /** The Constant String RETURN (value is "return"). */
   public static final String RETURN = "return";
 
@@ -79,6 +86,24 @@ public class AlchemyDataNews extends AlchemyService {
    * @return the news documents
    */
   public ServiceCall<DocumentsResult> getNewsDocuments(Map<String, Object> parameters) {
+    return createNewsDocumentsCall(parameters, null);
+  }
+
+  /**
+   * Gets the news documents, deserializing only the fields of a projection. The
+   * {@link Article} fields of the documents are under <code>result.docs.source.enriched.url</code>.
+   * 
+   * @param parameters the parameters
+   * @param projection the fields to deserialize, e.g. <code>result.docs.source.enriched.url</code>
+   * @return the news documents
+   */
+  public ServiceCall<DocumentsResult> getNewsDocuments(Map<String, Object> parameters, FieldProjection projection) {
+    Validator.notNull(projection, "projection cannot be null");
+    return createNewsDocumentsCall(parameters, projection);
+  }
+
+  private ServiceCall<DocumentsResult> createNewsDocumentsCall(Map<String, Object> parameters,
+      FieldProjection projection) {
     Validator.notNull(parameters.get(START), "start time cannot be null");
     Validator.notNull(parameters.get(END), "end time cannot be null");
     Validator.notNull(parameters.get(RETURN), "return cannot be null");
@@ -94,7 +119,7 @@ public class AlchemyDataNews extends AlchemyService {
       requestBuilder.query(param, parameters.get(param));
     }
 
-    return createServiceCall(requestBuilder.build(), ResponseConverterUtils.getObject(DocumentsResult.class));
+    return createServiceCall(requestBuilder.build(), ResponseConverterUtils.getObject(DocumentsResult.class, projection));
   }
 
   /**
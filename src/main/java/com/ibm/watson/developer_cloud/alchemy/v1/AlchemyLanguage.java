@@ -15,7 +15,10 @@
 package com.ibm.watson.developer_cloud.alchemy.v1;
 
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.ibm.watson.developer_cloud.alchemy.v1.model.AlchemyGenericModel;
@@ -39,10 +42,23 @@ import com.ibm.watson.developer_cloud.alchemy.v1.model.Taxonomies;
 import com.ibm.watson.developer_cloud.alchemy.v1.model.TypedRelations;
 import com.ibm.watson.developer_cloud.alchemy.v1.util.AlchemyEndPoints;
 import com.ibm.watson.developer_cloud.alchemy.v1.util.AlchemyEndPoints.AlchemyAPI;
+import com.ibm.watson.developer_cloud.http.HttpHeaders;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
+import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
 import com.ibm.watson.developer_cloud.service.AlchemyService;
+import com.ibm.watson.developer_cloud.util.FieldProjection;
+import com.ibm.watson.developer_cloud.util.RequestUtils;
 import com.ibm.watson.developer_cloud.util.ResponseConverterUtils;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.ByteString;
 
 /**
  * The Alchemy Language service uses offers 12 text analysis services, each of which uses
@@ -148,6 +164,13 @@ public class AlchemyLanguage extends AlchemyService {
 
   private static final String LANGUAGE = "language";
 
+  /** The fields of {@link CombinedResults} and their extract names. */
+  private static final String[][] COMBINED_EXTRACTS = { { "author", "author" }, { "concepts", "concept" },
+      { "entities", "entity" }, { "feeds", "feed" }, { "image", "page-image" },
+      { "imageKeywords", "image-kw" }, { "keywords", "keyword" }, { "publicationDate", "pub-date" },
+      { "relations", "relation" }, { "docSentiment", "doc-sentiment" }, { "taxonomy", "taxonomy" },
+      { "title", "title" } };
+
   /**
    * Instantiates a new alchemy data news service.
    */
@@ -173,8 +196,28 @@ public class AlchemyLanguage extends AlchemyService {
    * @param acceptedFormats the accepted input formats e.g. "html", "text"...
    * @return the POJO object that represent the response
    */
-  private <T extends AlchemyGenericModel> ServiceCall<T> createServiceCall(Map<String, Object> params,
+  private <T extends AlchemyGenericModel> ServiceCall<T> createServiceCall(Map<String, Object> parameters,
       AlchemyAPI operation, Class<T> returnType, String... acceptedFormats) {
+    return createServiceCall(parameters, operation, returnType, null, acceptedFormats);
+  }
+
+  /**
+   * Execute the request and return the POJO that represent the response, with only the fields of a
+   * projection.
+   * 
+   * @param <T> The POJO that represents the response object
+   * @param parameters the request parameters
+   * @param operation the alchemy operation
+   * @param returnType the POJO class to be parsed from the response
+   * @param projection the fields to deserialize, or null for all of them
+   * @param acceptedFormats the accepted input formats e.g. "html", "text"...
+   * @return the POJO object that represent the response
+   */
+  private <T extends AlchemyGenericModel> ServiceCall<T> createServiceCall(Map<String, Object> parameters,
+      AlchemyAPI operation, Class<T> returnType, FieldProjection projection, String... acceptedFormats) {
+
+    // Copy the parameters, so the map of the caller is not modified
+    final Map<String, Object> params = parameters != null ? new HashMap<String, Object>(parameters) : null;
 
     // Get the input format and check for missing parameters
     final String format = getInputFormat(params, acceptedFormats);
@@ -196,7 +239,7 @@ public class AlchemyLanguage extends AlchemyService {
     for (final String param : params.keySet()) {
       requestBuilder.form(param, params.get(param));
     }
-    return createServiceCall(requestBuilder.build(),ResponseConverterUtils.getObject(returnType));
+    return createServiceCall(requestBuilder.build(), ResponseConverterUtils.getObject(returnType, projection));
   }
 
 
@@ -266,6 +309,36 @@ public class AlchemyLanguage extends AlchemyService {
     return createServiceCall(params, AlchemyAPI.COMBINED, CombinedResults.class, TEXT, HTML, URL);
   }
 
+  /**
+   * Automatically perform analysis using multiple features, deserializing only the fields of a
+   * projection. Unless they are in the parameters, <code>extract</code> is set to the extractions
+   * of the projected fields, and <code>showSourceText</code> to whether the source text is
+   * projected.
+   * 
+   * @param params The parameters to be used in the service call, text, html or url should be
+   *        specified.
+   * @param projection the fields to deserialize, e.g. <code>entities</code>
+   * @return {@link CombinedResults}
+   */
+  public ServiceCall<CombinedResults> getCombinedResults(Map<String, Object> params, FieldProjection projection) {
+    Validator.notNull(params, "params cannot be null");
+    Validator.notNull(projection, "projection cannot be null");
+    final Map<String, Object> parameters = new HashMap<String, Object>(params);
+    if (!parameters.containsKey(EXTRACT)) {
+      final StringBuilder extract = new StringBuilder();
+      for (final String[] field : COMBINED_EXTRACTS) {
+        if (projection.contains(field[0]))
+          extract.append(extract.length() == 0 ? "" : ",").append(field[1]);
+      }
+      if (extract.length() > 0)
+        parameters.put(EXTRACT, extract.toString());
+    }
+    if (!parameters.containsKey(SHOW_SOURCE_TEXT))
+      parameters.put(SHOW_SOURCE_TEXT, projection.contains(TEXT) ? 1 : 0);
+
+    return createServiceCall(parameters, AlchemyAPI.COMBINED, CombinedResults.class, projection, TEXT, HTML, URL);
+  }
+
   /**
    * Extracts a grouped, ranked list of named entities (people, companies, organizations, etc.) from
    * text, a URL or HTML.
@@ -278,6 +351,20 @@ public class AlchemyLanguage extends AlchemyService {
     return createServiceCall(params, AlchemyAPI.ENTITIES, Entities.class, TEXT, HTML, URL);
   }
 
+  /**
+   * Extracts the named entities from text, a URL or HTML, deserializing only the fields of a
+   * projection.
+   * 
+   * @param params The parameters to be used in the service call, text, html or url should be
+   *        specified.
+   * @param projection the fields to deserialize, e.g. <code>entities</code>
+   * @return {@link Entities}
+   */
+  public ServiceCall<Entities> getEntities(Map<String, Object> params, FieldProjection projection) {
+    Validator.notNull(projection, "projection cannot be null");
+    return createServiceCall(params, AlchemyAPI.ENTITIES, Entities.class, projection, TEXT, HTML, URL);
+  }
+
   /**
    * Detects the RSS/ATOM feeds for a URL or HTML.
    * 
@@ -331,6 +418,20 @@ public class AlchemyLanguage extends AlchemyService {
     return createServiceCall(params, AlchemyAPI.RELATIONS, SAORelations.class, TEXT, HTML, URL);
   }
 
+  /**
+   * Extracts Subject-Action-Object(SAO) relations from text, a URL or HTML, deserializing only the
+   * fields of a projection.
+   * 
+   * @param params The parameters to be used in the service call, text, html or url should be
+   *        specified.
+   * @param projection the fields to deserialize, e.g. <code>relations.subject</code>
+   * @return {@link SAORelations}
+   */
+  public ServiceCall<SAORelations> getRelations(Map<String, Object> params, FieldProjection projection) {
+    Validator.notNull(projection, "projection cannot be null");
+    return createServiceCall(params, AlchemyAPI.RELATIONS, SAORelations.class, projection, TEXT, HTML, URL);
+  }
+
   /**
    * Calculates the sentiment for text, a URL or HTML.
    * 
@@ -402,13 +503,219 @@ public class AlchemyLanguage extends AlchemyService {
    */
   public ServiceCall<Dates> getDates(Map<String, Object> params) {
 
-    if (params != null && params.containsKey(ANCHOR_DATE)) {
-      if (params.get(ANCHOR_DATE) != null && params.get(ANCHOR_DATE) instanceof Date) {
-        String anchorDate = anchorDateFormat.format(params.get(ANCHOR_DATE));
-        params.put(ANCHOR_DATE, anchorDate);
-      }
+    if (params != null && params.get(ANCHOR_DATE) instanceof Date) {
+      final Map<String, Object> copy = new HashMap<String, Object>(params);
+      copy.put(ANCHOR_DATE, formatAnchorDate((Date) params.get(ANCHOR_DATE)));
+      return createServiceCall(copy, AlchemyAPI.DATES, Dates.class, TEXT, HTML, URL);
     }
 
     return createServiceCall(params, AlchemyAPI.DATES, Dates.class, TEXT, HTML, URL);
   }
+
+  private static String formatAnchorDate(Date date) {
+    synchronized (anchorDateFormat) {
+      return anchorDateFormat.format(date);
+    }
+  }
+
+  /**
+   * Creates a reusable request template for an operation. The parameters, language and output mode
+   * are validated and form-encoded once, so each call only encodes its text, HTML or URL. Templates
+   * are immutable and can be shared between threads.
+   *
+   * <pre>
+   * Map&lt;String, Object&gt; params = new HashMap&lt;String, Object&gt;();
+   * params.put(AlchemyLanguage.MAX_RETRIEVE, 10);
+   * RequestTemplate&lt;Keywords&gt; keywords =
+   *     service.createRequestTemplate(Operation.KEYWORDS, AlchemyLanguage.TEXT, params);
+   * Keywords result = keywords.call(text).execute();
+   * </pre>
+   *
+   * @param <T> the type of the response
+   * @param operation the operation
+   * @param inputFormat the input that varies with each call: text, html or url
+   * @param params the parameters shared by all the calls, can be null
+   * @return the request template
+   */
+  public <T extends AlchemyGenericModel> RequestTemplate<T> createRequestTemplate(Operation<T> operation,
+      String inputFormat, Map<String, Object> params) {
+    Validator.notNull(operation, "operation cannot be null");
+    Validator.isTrue(operation.acceptedFormats.contains(inputFormat),
+        "inputFormat should be one of " + operation.acceptedFormats);
+
+    final Map<String, Object> parameters = new HashMap<String, Object>();
+    if (params != null)
+      parameters.putAll(params);
+    Validator.isTrue(!parameters.containsKey(TEXT) && !parameters.containsKey(HTML) && !parameters.containsKey(URL),
+        "text, html and url are set on each call");
+    parameters.put(OUTPUT_MODE, "json");
+    if (!parameters.containsKey(LANGUAGE) && language != LanguageSelection.DETECT)
+      parameters.put(LANGUAGE, language.toString().toLowerCase());
+    parameters.remove(JSONP);
+    if (parameters.get(ANCHOR_DATE) instanceof Date)
+      parameters.put(ANCHOR_DATE, formatAnchorDate((Date) parameters.get(ANCHOR_DATE)));
+
+    final Buffer prefix = new Buffer();
+    for (final Map.Entry<String, Object> parameter : parameters.entrySet()) {
+      RequestTemplate.formEncode(parameter.getKey(), prefix);
+      prefix.writeByte('=');
+      if (parameter.getValue() != null)
+        RequestTemplate.formEncode(String.valueOf(parameter.getValue()), prefix);
+      prefix.writeByte('&');
+    }
+    RequestTemplate.formEncode(inputFormat, prefix);
+    prefix.writeByte('=');
+
+    final String path = AlchemyEndPoints.getPath(operation.api, inputFormat);
+    return new RequestTemplate<T>(this, HttpUrl.parse(RequestUtils.DEFAULT_ENDPOINT + path),
+        prefix.readByteString(), ResponseConverterUtils.getObject(operation.returnType));
+  }
+
+  /**
+   * Operation supported by {@link AlchemyLanguage#createRequestTemplate(Operation, String, Map)},
+   * with the type of its response and its accepted inputs.
+   *
+   * @param <T> the type of the response
+   */
+  public static final class Operation<T extends AlchemyGenericModel> {
+    /** Extracts the authors from a URL or HTML. */
+    public static final Operation<DocumentAuthors> AUTHORS =
+        new Operation<DocumentAuthors>(AlchemyAPI.AUTHORS, DocumentAuthors.class, HTML, URL);
+    /** Runs several extractions on a text, URL or HTML. */
+    public static final Operation<CombinedResults> COMBINED =
+        new Operation<CombinedResults>(AlchemyAPI.COMBINED, CombinedResults.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Extracts the concepts of a text, URL or HTML. */
+    public static final Operation<Concepts> CONCEPTS =
+        new Operation<Concepts>(AlchemyAPI.CONCEPTS, Concepts.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Extracts the dates of a text, URL or HTML. */
+    public static final Operation<Dates> DATES =
+        new Operation<Dates>(AlchemyAPI.DATES, Dates.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Detects the emotions of a text, URL or HTML. */
+    public static final Operation<DocumentEmotion> EMOTION =
+        new Operation<DocumentEmotion>(AlchemyAPI.EMOTION, DocumentEmotion.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Extracts the entities of a text, URL or HTML. */
+    public static final Operation<Entities> ENTITIES =
+        new Operation<Entities>(AlchemyAPI.ENTITIES, Entities.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Detects the RSS/ATOM feeds of a URL or HTML. */
+    public static final Operation<Feeds> FEEDS = new Operation<Feeds>(AlchemyAPI.FEEDS, Feeds.class, HTML, URL);
+    /** Extracts the keywords of a text, URL or HTML. */
+    public static final Operation<Keywords> KEYWORDS =
+        new Operation<Keywords>(AlchemyAPI.KEYWORDS, Keywords.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Detects the language of a text, URL or HTML. */
+    public static final Operation<Language> LANGUAGE =
+        new Operation<Language>(AlchemyAPI.LANGUAGE, Language.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Parses the microformats of a URL or HTML. */
+    public static final Operation<Microformats> MICROFORMATS =
+        new Operation<Microformats>(AlchemyAPI.MICROFORMATS, Microformats.class, HTML, URL);
+    /** Extracts the publication date of a URL or HTML. */
+    public static final Operation<DocumentPublicationDate> PUBLICATION_DATE = new Operation<DocumentPublicationDate>(
+        AlchemyAPI.PUBLICATION_DATE, DocumentPublicationDate.class, HTML, URL);
+    /** Extracts the subject-action-object relations of a text, URL or HTML. */
+    public static final Operation<SAORelations> RELATIONS =
+        new Operation<SAORelations>(AlchemyAPI.RELATIONS, SAORelations.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Extracts the sentiment of a text, URL or HTML. */
+    public static final Operation<DocumentSentiment> SENTIMENT = new Operation<DocumentSentiment>(
+        AlchemyAPI.SENTIMENT, DocumentSentiment.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Extracts the sentiment of the targets of a text, URL or HTML. */
+    public static final Operation<DocumentSentiment> SENTIMENT_TARGETED = new Operation<DocumentSentiment>(
+        AlchemyAPI.SENTIMENT_TARGETED, DocumentSentiment.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Categorizes a text, URL or HTML into a taxonomy. */
+    public static final Operation<Taxonomies> TAXONOMY =
+        new Operation<Taxonomies>(AlchemyAPI.TAXONOMY, Taxonomies.class, AlchemyLanguage.TEXT, HTML, URL);
+    /** Extracts the cleaned text of a URL or HTML. */
+    public static final Operation<DocumentText> TEXT =
+        new Operation<DocumentText>(AlchemyAPI.TEXT, DocumentText.class, HTML, URL);
+    /** Extracts the raw text of a URL or HTML. */
+    public static final Operation<DocumentText> TEXT_RAW =
+        new Operation<DocumentText>(AlchemyAPI.TEXT_RAW, DocumentText.class, HTML, URL);
+    /** Extracts the title of a URL or HTML. */
+    public static final Operation<DocumentTitle> TITLE =
+        new Operation<DocumentTitle>(AlchemyAPI.TITLE, DocumentTitle.class, HTML, URL);
+    /** Extracts the typed relations of a text, URL or HTML. */
+    public static final Operation<TypedRelations> TYPED_RELATIONS =
+        new Operation<TypedRelations>(AlchemyAPI.TYPED, TypedRelations.class, AlchemyLanguage.TEXT, HTML, URL);
+
+    private final AlchemyAPI api;
+    private final Class<T> returnType;
+    private final List<String> acceptedFormats;
+
+    private Operation(AlchemyAPI api, Class<T> returnType, String... acceptedFormats) {
+      this.api = api;
+      this.returnType = returnType;
+      this.acceptedFormats = Arrays.asList(acceptedFormats);
+    }
+  }
+
+  /**
+   * Immutable request for one operation, created with
+   * {@link AlchemyLanguage#createRequestTemplate(Operation, String, Map)}. The shared parameters
+   * are already encoded, and each call only adds its input.
+   *
+   * @param <T> the type of the response
+   */
+  public static final class RequestTemplate<T extends AlchemyGenericModel> {
+    private static final MediaType FORM = MediaType.parse(HttpMediaType.APPLICATION_FORM_URLENCODED);
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    private final AlchemyLanguage service;
+    private final HttpUrl url;
+    private final ByteString prefix;
+    private final ResponseConverter<T> converter;
+
+    private RequestTemplate(AlchemyLanguage service, HttpUrl url, ByteString prefix, ResponseConverter<T> converter) {
+      this.service = service;
+      this.url = url;
+      this.prefix = prefix;
+      this.converter = converter;
+    }
+
+    /**
+     * Creates the service call for one input.
+     *
+     * @param input the text, HTML or URL
+     * @return the service call
+     */
+    public ServiceCall<T> call(String input) {
+      Validator.notNull(input, "input cannot be null");
+      final Buffer body = new Buffer();
+      body.write(prefix);
+      formEncode(input, body);
+
+      final Request request = new Request.Builder().url(url)
+          .header(HttpHeaders.ACCEPT, HttpMediaType.APPLICATION_JSON)
+          .post(RequestBody.create(FORM, body.readByteString())).build();
+      return service.createServiceCall(request, converter);
+    }
+
+    /**
+     * Writes a form-encoded value: letters, digits and <code>.-*_</code> are kept, spaces become
+     * <code>+</code> and all the other characters are percent-encoded as UTF-8.
+     *
+     * @param value the value
+     * @param buffer the buffer
+     */
+    static void formEncode(String value, Buffer buffer) {
+      Buffer utf8 = null;
+      for (int i = 0; i < value.length();) {
+        final int c = value.codePointAt(i);
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-'
+            || c == '*' || c == '_') {
+          buffer.writeByte(c);
+        } else if (c == ' ') {
+          buffer.writeByte('+');
+        } else {
+          if (utf8 == null)
+            utf8 = new Buffer();
+          utf8.writeUtf8CodePoint(c);
+          while (!utf8.exhausted()) {
+            final int b = utf8.readByte() & 0xff;
+            buffer.writeByte('%');
+            buffer.writeByte(HEX[b >> 4]);
+            buffer.writeByte(HEX[b & 0xf]);
+          }
+        }
+        i += Character.charCount(c);
+      }
+    }
+  }
 }
@@ -25,14 +25,18 @@ import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageLink;
 import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageSceneText;
 import com.ibm.watson.developer_cloud.alchemy.v1.util.AlchemyEndPoints;
 import com.ibm.watson.developer_cloud.alchemy.v1.util.AlchemyEndPoints.AlchemyAPI;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.ImagePreprocessor;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.ImagePreprocessor.PreparedImage;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
+import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
 import com.ibm.watson.developer_cloud.service.AlchemyService;
 import com.ibm.watson.developer_cloud.util.ResponseConverterUtils;
 import com.ibm.watson.developer_cloud.util.Validator;
 
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
 /**
  * The Alchemy Vision service uses deep learning innovations to understand a picture’s content and
@@ -52,6 +56,8 @@ public class AlchemyVision extends AlchemyService {
   private static final String RAW = "raw";
   private static final String URL = "url";
 
+  private ImagePreprocessor imagePreprocessor;
+
   /**
    * Instantiates a new alchemy data news service.
    */
@@ -82,6 +88,7 @@ public class AlchemyVision extends AlchemyService {
     final String path = AlchemyEndPoints.getPath(operation, inputType);
 
     final RequestBuilder requestBuilder = RequestBuilder.post(path);
+    PreparedImage preparedImage = null;
     if (IMAGE.equals(inputType)) {
       if (params.get(IMAGE) instanceof String) {
         params.put(IMAGE_POST_MODE, NOT_RAW);
@@ -92,8 +99,13 @@ public class AlchemyVision extends AlchemyService {
           throw new IllegalArgumentException(
               "The file: " + image.getAbsolutePath() + " does not exist.");
         } else {
-          requestBuilder
-              .body(RequestBody.create(HttpMediaType.BINARY_FILE, (File) params.get(IMAGE)));
+          if (imagePreprocessor != null) {
+            preparedImage = imagePreprocessor.prepare(image);
+            requestBuilder.body(preparedImage.getBody());
+          } else {
+            requestBuilder
+                .body(RequestBody.create(HttpMediaType.BINARY_FILE, (File) params.get(IMAGE)));
+          }
           params.remove(IMAGE);
         }
       }
@@ -111,7 +123,31 @@ public class AlchemyVision extends AlchemyService {
       }
     }
 
-    return createServiceCall(requestBuilder.build(), ResponseConverterUtils.getObject(returnType));
+    final ResponseConverter<T> converter = ResponseConverterUtils.getObject(returnType);
+    if (preparedImage == null || !preparedImage.isScaled())
+      return createServiceCall(requestBuilder.build(), converter);
+
+    // convert the coordinates back to the original image
+    final PreparedImage scaledImage = preparedImage;
+    return createServiceCall(requestBuilder.build(), new ResponseConverter<T>() {
+      @Override
+      public T convert(Response response) {
+        final T result = converter.convert(response);
+        scaledImage.rescale(result);
+        return result;
+      }
+    });
+  }
+
+  /**
+   * Sets the image preprocessor that downscales and recompresses the image files before they are
+   * uploaded. The coordinates of {@link ImageFaces} and {@link ImageSceneText} are converted back
+   * to the original image.
+   *
+   * @param imagePreprocessor the image preprocessor, or null to upload the files as they are
+   */
+  public void setImagePreprocessor(ImagePreprocessor imagePreprocessor) {
+    this.imagePreprocessor = imagePreprocessor;
   }
 
   /**
@@ -15,8 +15,10 @@ package com.ibm.watson.developer_cloud.alchemy.v1.model;
 
 import java.util.List;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyDataNews;
 import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyLanguage;
+import com.ibm.watson.developer_cloud.util.InternedStringTypeAdapter;
 
 /**
  * Entity returned by the {@link AlchemyDataNews} and {@link AlchemyLanguage} service.
@@ -45,6 +47,7 @@ public class Entity extends AlchemyGenericModel {
   private String text;
 
   /** The type. */
+  @JsonAdapter(InternedStringTypeAdapter.class)
   private String type;
 
 
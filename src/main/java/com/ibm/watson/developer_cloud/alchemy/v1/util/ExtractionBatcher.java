@@ -0,0 +1,475 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyLanguage;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.AlchemyLanguageGenericModel;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.CombinedResults;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Concepts;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentAuthors;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentPublicationDate;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentSentiment;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentTitle;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Entities;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Feeds;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Keywords;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.SAORelations;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Taxonomies;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Merges the {@link AlchemyLanguage} extractions requested for the same document into one
+ * {@link AlchemyLanguage#getCombinedResults(Map)} call, so the document is sent once. The requests
+ * made for a document within {@link Builder#maxDelay(long, TimeUnit)} of the first one are sent
+ * together, and the combined results are split back into the model of each extraction.<br>
+ * Documents are identified by their parameters, so the same text with different options is sent
+ * separately. Targeted sentiment cannot be combined, and is sent on its own.
+ */
+public class ExtractionBatcher {
+
+  /**
+   * Extraction supported by the combined call.
+   */
+  public enum Extraction {
+    /** Concepts, returned as {@link Concepts}. */
+    CONCEPTS("concept") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final Concepts concepts = new Concepts();
+        concepts.setConcepts(results.getConcepts());
+        return concepts;
+      }
+    },
+    /** Entities, returned as {@link Entities}. */
+    ENTITIES("entity") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final Entities entities = new Entities();
+        entities.setEntities(results.getEntities());
+        return entities;
+      }
+    },
+    /** Feeds, returned as {@link Feeds}. */
+    FEEDS("feed") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final Feeds feeds = new Feeds();
+        feeds.setFeeds(results.getFeeds());
+        return feeds;
+      }
+    },
+    /** Keywords, returned as {@link Keywords}. */
+    KEYWORDS("keyword") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final Keywords keywords = new Keywords();
+        keywords.setKeywords(results.getKeywords());
+        return keywords;
+      }
+    },
+    /** Publication date, returned as {@link DocumentPublicationDate}. */
+    PUBLICATION_DATE("pub-date") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final DocumentPublicationDate publicationDate = new DocumentPublicationDate();
+        publicationDate.setPublicationDate(results.getPublicationDate());
+        return publicationDate;
+      }
+    },
+    /** Relations, returned as {@link SAORelations}. */
+    RELATIONS("relation") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final SAORelations relations = new SAORelations();
+        relations.setRelations(results.getRelations());
+        return relations;
+      }
+    },
+    /** Document sentiment, returned as {@link DocumentSentiment}. */
+    SENTIMENT("doc-sentiment") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final DocumentSentiment sentiment = new DocumentSentiment();
+        sentiment.setSentiment(results.getSentiment());
+        return sentiment;
+      }
+    },
+    /** Taxonomy, returned as {@link Taxonomies}. */
+    TAXONOMY("taxonomy") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final Taxonomies taxonomies = new Taxonomies();
+        taxonomies.setTaxonomy(results.getTaxonomy());
+        return taxonomies;
+      }
+    },
+    /** Title, returned as {@link DocumentTitle}. */
+    TITLE("title") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final DocumentTitle title = new DocumentTitle();
+        title.setTitle(results.getTitle());
+        return title;
+      }
+    },
+    /** Author, returned as {@link DocumentAuthors}. */
+    AUTHORS("author") {
+      @Override
+      AlchemyLanguageGenericModel split(CombinedResults results) {
+        final DocumentAuthors authors = new DocumentAuthors();
+        final DocumentAuthors.Authors names = new DocumentAuthors.Authors();
+        if (results.getAuthor() != null) {
+          names.getNames().add(results.getAuthor());
+        }
+        authors.setAuthors(names);
+        return authors;
+      }
+    };
+
+    private final String name;
+
+    Extraction(String name) {
+      this.name = name;
+    }
+
+    /**
+     * Creates the model of this extraction from combined results.
+     *
+     * @param results the combined results
+     * @return the model
+     */
+    abstract AlchemyLanguageGenericModel split(CombinedResults results);
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Enum#toString()
+     */
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final AlchemyLanguage service;
+    private long maxDelay = 10;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the alchemy language service
+     */
+    public Builder(AlchemyLanguage service) {
+      Validator.notNull(service, "service cannot be null");
+      this.service = service;
+    }
+
+    /**
+     * Sets how long the requests for a document are collected before they are sent. The default is
+     * 10 milliseconds.
+     *
+     * @param maxDelay the max delay
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder maxDelay(long maxDelay, TimeUnit unit) {
+      Validator.isTrue(maxDelay >= 0, "maxDelay cannot be negative");
+      this.maxDelay = unit.toMillis(maxDelay);
+      return this;
+    }
+
+    /**
+     * Builds the batcher.
+     *
+     * @return the extraction batcher
+     */
+    public ExtractionBatcher build() {
+      return new ExtractionBatcher(this);
+    }
+  }
+
+  /**
+   * Extractions requested for a document that were not sent yet.
+   */
+  private static final class Batch {
+    private final Map<String, Object> params;
+    private final Set<Extraction> extractions = EnumSet.noneOf(Extraction.class);
+    private final List<CompletableFuture<CombinedResults>> futures =
+        new ArrayList<CompletableFuture<CombinedResults>>();
+
+    Batch(Map<String, Object> params) {
+      this.params = params;
+    }
+  }
+
+  private final AlchemyLanguage service;
+  private final long maxDelay;
+  private final Map<Map<String, Object>, Batch> batches = new HashMap<Map<String, Object>, Batch>();
+  private final ScheduledExecutorService scheduler;
+  private boolean shutdown;
+
+  private ExtractionBatcher(Builder builder) {
+    service = builder.service;
+    maxDelay = builder.maxDelay;
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "extraction-batcher");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  /**
+   * Requests a set of extractions for a document.
+   *
+   * @param params the parameters of the document, text, html or url should be specified
+   * @param extractions the extractions
+   * @return the combined results, with at least the requested extractions, or completed with a
+   *         {@link RejectedExecutionException} if the batcher was shut down
+   */
+  public CompletableFuture<CombinedResults> extract(Map<String, Object> params, Set<Extraction> extractions) {
+    Validator.notNull(params, "params cannot be null");
+    Validator.isTrue(extractions != null && !extractions.isEmpty(), "extractions cannot be null or empty");
+    final Map<String, Object> key = Collections.unmodifiableMap(new HashMap<String, Object>(params));
+    final CompletableFuture<CombinedResults> future = new CompletableFuture<CombinedResults>();
+
+    synchronized (batches) {
+      if (shutdown) {
+        future.completeExceptionally(new RejectedExecutionException("The batcher has been shut down"));
+        return future;
+      }
+      Batch batch = batches.get(key);
+      if (batch == null) {
+        batch = new Batch(key);
+        final Batch scheduled = batch;
+        scheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            send(scheduled);
+          }
+        }, maxDelay, TimeUnit.MILLISECONDS);
+        // only registered once its timer is set, so it cannot be left without one
+        batches.put(key, batch);
+      }
+      batch.extractions.addAll(extractions);
+      batch.futures.add(future);
+    }
+    return future;
+  }
+
+  /**
+   * Extracts the author of a document.
+   *
+   * @param params the parameters of the document, html or url should be specified
+   * @return the {@link DocumentAuthors}
+   */
+  public CompletableFuture<DocumentAuthors> getAuthors(Map<String, Object> params) {
+    return extractOne(params, Extraction.AUTHORS);
+  }
+
+  /**
+   * Extracts the concepts of a document.
+   *
+   * @param params the parameters of the document, text, html or url should be specified
+   * @return the {@link Concepts}
+   */
+  public CompletableFuture<Concepts> getConcepts(Map<String, Object> params) {
+    return extractOne(params, Extraction.CONCEPTS);
+  }
+
+  /**
+   * Extracts the entities of a document.
+   *
+   * @param params the parameters of the document, text, html or url should be specified
+   * @return the {@link Entities}
+   */
+  public CompletableFuture<Entities> getEntities(Map<String, Object> params) {
+    return extractOne(params, Extraction.ENTITIES);
+  }
+
+  /**
+   * Detects the feeds of a document.
+   *
+   * @param params the parameters of the document, html or url should be specified
+   * @return the {@link Feeds}
+   */
+  public CompletableFuture<Feeds> getFeeds(Map<String, Object> params) {
+    return extractOne(params, Extraction.FEEDS);
+  }
+
+  /**
+   * Extracts the keywords of a document.
+   *
+   * @param params the parameters of the document, text, html or url should be specified
+   * @return the {@link Keywords}
+   */
+  public CompletableFuture<Keywords> getKeywords(Map<String, Object> params) {
+    return extractOne(params, Extraction.KEYWORDS);
+  }
+
+  /**
+   * Extracts the publication date of a document.
+   *
+   * @param params the parameters of the document, html or url should be specified
+   * @return the {@link DocumentPublicationDate}
+   */
+  public CompletableFuture<DocumentPublicationDate> getPublicationDate(Map<String, Object> params) {
+    return extractOne(params, Extraction.PUBLICATION_DATE);
+  }
+
+  /**
+   * Extracts the relations of a document.
+   *
+   * @param params the parameters of the document, text, html or url should be specified
+   * @return the {@link SAORelations}
+   */
+  public CompletableFuture<SAORelations> getRelations(Map<String, Object> params) {
+    return extractOne(params, Extraction.RELATIONS);
+  }
+
+  /**
+   * Calculates the sentiment of a document. Targeted sentiment is requested on its own.
+   *
+   * @param params the parameters of the document, text, html or url should be specified
+   * @return the {@link DocumentSentiment}
+   */
+  public CompletableFuture<DocumentSentiment> getSentiment(Map<String, Object> params) {
+    if (params.get(AlchemyLanguage.TARGET) != null || params.get(AlchemyLanguage.TARGETS) != null)
+      return service.getSentiment(new HashMap<String, Object>(params)).rx();
+    return extractOne(params, Extraction.SENTIMENT);
+  }
+
+  /**
+   * Categorizes a document in the taxonomy.
+   *
+   * @param params the parameters of the document, text, html or url should be specified
+   * @return the {@link Taxonomies}
+   */
+  public CompletableFuture<Taxonomies> getTaxonomy(Map<String, Object> params) {
+    return extractOne(params, Extraction.TAXONOMY);
+  }
+
+  /**
+   * Extracts the title of a document.
+   *
+   * @param params the parameters of the document, html or url should be specified
+   * @return the {@link DocumentTitle}
+   */
+  public CompletableFuture<DocumentTitle> getTitle(Map<String, Object> params) {
+    return extractOne(params, Extraction.TITLE);
+  }
+
+  /**
+   * Sends the requests that are waiting, without waiting for the delay.
+   */
+  public void flush() {
+    final List<Batch> pending;
+    synchronized (batches) {
+      pending = new ArrayList<Batch>(batches.values());
+    }
+    for (Batch batch : pending) {
+      send(batch);
+    }
+  }
+
+  /**
+   * Sends the requests that are waiting and stops the delay timer. Extractions requested afterwards
+   * are rejected.
+   */
+  public void shutdown() {
+    synchronized (batches) {
+      shutdown = true;
+    }
+    flush();
+    scheduler.shutdown();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T extends AlchemyLanguageGenericModel> CompletableFuture<T> extractOne(Map<String, Object> params,
+      final Extraction extraction) {
+    final CompletableFuture<T> typed = new CompletableFuture<T>();
+    extract(params, EnumSet.of(extraction)).handle(new CompletableFuture.BiFun<CombinedResults, Throwable, Void>() {
+      @Override
+      public Void apply(CombinedResults results, Throwable error) {
+        if (error != null) {
+          typed.completeExceptionally(error);
+        } else {
+          final AlchemyLanguageGenericModel model = extraction.split(results);
+          model.setLanguage(results.getLanguage());
+          model.setUrl(results.getUrl());
+          model.setTotalTransactions(results.getTotalTransactions());
+          typed.complete((T) model);
+        }
+        return null;
+      }
+    });
+    return typed;
+  }
+
+  private void send(final Batch batch) {
+    synchronized (batches) {
+      if (batches.get(batch.params) != batch)
+        return;
+      batches.remove(batch.params);
+    }
+
+    final StringBuilder extract = new StringBuilder();
+    for (Extraction extraction : batch.extractions) {
+      if (extract.length() > 0) {
+        extract.append(',');
+      }
+      extract.append(extraction);
+    }
+    final Map<String, Object> params = new HashMap<String, Object>(batch.params);
+    params.put(AlchemyLanguage.EXTRACT, extract.toString());
+
+    service.getCombinedResults(params).enqueue(new ServiceCallback<CombinedResults>() {
+      @Override
+      public void onResponse(CombinedResults response) {
+        for (CompletableFuture<CombinedResults> future : batch.futures) {
+          future.complete(response);
+        }
+      }
+
+      @Override
+      public void onFailure(Exception e) {
+        for (CompletableFuture<CombinedResults> future : batch.futures) {
+          future.completeExceptionally(e);
+        }
+      }
+    });
+  }
+}
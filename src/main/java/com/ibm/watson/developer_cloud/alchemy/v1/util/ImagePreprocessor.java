@@ -0,0 +1,420 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1.util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.w3c.dom.NodeList;
+
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyVision;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.AlchemyGenericModel;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageFace;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageFaces;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageSceneText;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageSceneTextLine;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageSceneTextLine.Region;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageSceneTextLine.Word;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * Downscales and recompresses the images uploaded by {@link AlchemyVision}, using
+ * {@link ImageIO}. Images larger than {@link Builder#maxDimension(int)} are scaled down and
+ * encoded as JPEG at {@link Builder#quality(float)} while the request body is written, without
+ * temporary files. The service gains little from images above 1 megapixel, so this reduces the
+ * upload of large photos considerably.<br>
+ * The face and scene text coordinates returned for a scaled image are converted back to the
+ * original image with {@link PreparedImage#rescale(AlchemyGenericModel)}.<br>
+ * Images that {@link ImageIO} cannot decode, such as CMYK JPEGs, and JPEGs rotated by their EXIF
+ * orientation, which is lost when they are encoded again, are uploaded as they are.
+ */
+public class ImagePreprocessor {
+  private static final String JPEG = "jpeg";
+  private static final String JPEG_METADATA = "javax_imageio_jpeg_image_1.0";
+  private static final String APP1 = "225";
+  private static final Charset US_ASCII = Charset.forName("US-ASCII");
+  private static final int ORIENTATION_TAG = 0x0112;
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private int maxDimension = 1024;
+    private float quality = 0.85f;
+
+    /**
+     * Sets the maximum width and height of the uploaded images. The default is 1024 pixels.
+     *
+     * @param maxDimension the maximum dimension in pixels
+     * @return the builder
+     */
+    public Builder maxDimension(int maxDimension) {
+      Validator.isTrue(maxDimension > 0, "maxDimension should be greater than 0");
+      this.maxDimension = maxDimension;
+      return this;
+    }
+
+    /**
+     * Sets the JPEG quality of the uploaded images. The default is 0.85.
+     *
+     * @param quality the quality, between 0 and 1
+     * @return the builder
+     */
+    public Builder quality(float quality) {
+      Validator.isTrue(quality >= 0 && quality <= 1, "quality should be between 0 and 1");
+      this.quality = quality;
+      return this;
+    }
+
+    /**
+     * Builds the image preprocessor.
+     *
+     * @return the image preprocessor
+     */
+    public ImagePreprocessor build() {
+      return new ImagePreprocessor(this);
+    }
+  }
+
+  /**
+   * Image ready to be uploaded, with the scale between the original and the uploaded image.
+   */
+  public final class PreparedImage {
+    private final File file;
+    private final int width;
+    private final int height;
+    private final int scaledWidth;
+    private final int scaledHeight;
+    private final boolean encoded;
+
+    private PreparedImage(File file, int width, int height, int scaledWidth, int scaledHeight, boolean encoded) {
+      this.file = file;
+      this.width = width;
+      this.height = height;
+      this.scaledWidth = scaledWidth;
+      this.scaledHeight = scaledHeight;
+      this.encoded = encoded;
+    }
+
+    /**
+     * Gets the request body. The image is decoded, scaled and encoded as the body is written.
+     *
+     * @return the request body
+     */
+    public RequestBody getBody() {
+      if (!encoded)
+        return RequestBody.create(HttpMediaType.BINARY_FILE, file);
+
+      return new RequestBody() {
+        @Override
+        public MediaType contentType() {
+          return HttpMediaType.BINARY_FILE;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+          encode(PreparedImage.this, sink.outputStream());
+        }
+      };
+    }
+
+    /**
+     * Checks if the uploaded image is smaller than the original one.
+     *
+     * @return true if the coordinates of the results should be rescaled
+     */
+    public boolean isScaled() {
+      return scaledWidth != width || scaledHeight != height;
+    }
+
+    /**
+     * Gets the original width.
+     *
+     * @return the width in pixels, 0 if the format is not supported by {@link ImageIO}
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    /**
+     * Gets the original height.
+     *
+     * @return the height in pixels, 0 if the format is not supported by {@link ImageIO}
+     */
+    public int getHeight() {
+      return height;
+    }
+
+    /**
+     * Gets the width of the uploaded image.
+     *
+     * @return the width in pixels
+     */
+    public int getScaledWidth() {
+      return scaledWidth;
+    }
+
+    /**
+     * Gets the height of the uploaded image.
+     *
+     * @return the height in pixels
+     */
+    public int getScaledHeight() {
+      return scaledHeight;
+    }
+
+    /**
+     * Converts the face and scene text coordinates of a result from the uploaded image to the
+     * original image. Other results are not changed.
+     *
+     * @param result the {@link ImageFaces} or {@link ImageSceneText}
+     */
+    public void rescale(AlchemyGenericModel result) {
+      if (!isScaled())
+        return;
+
+      if (result instanceof ImageFaces && ((ImageFaces) result).getImageFaces() != null) {
+        for (final ImageFace face : ((ImageFaces) result).getImageFaces()) {
+          face.setPositionX(x(face.getPositionX()));
+          face.setPositionY(y(face.getPositionY()));
+          face.setWidth(x(face.getWidth()));
+          face.setHeight(y(face.getHeight()));
+        }
+      } else if (result instanceof ImageSceneText && ((ImageSceneText) result).getSceneTextLines() != null) {
+        for (final ImageSceneTextLine line : ((ImageSceneText) result).getSceneTextLines()) {
+          rescale(line.getRegion());
+          if (line.getWords() != null) {
+            for (final Word word : line.getWords()) {
+              rescale(word.getRegion());
+            }
+          }
+        }
+      }
+    }
+
+    private void rescale(Region region) {
+      if (region == null)
+        return;
+      region.setX(x(region.getX()));
+      region.setY(y(region.getY()));
+      region.setWidth(x(region.getWidth()));
+      region.setHeight(y(region.getHeight()));
+    }
+
+    private Integer x(Integer value) {
+      return value == null ? null : (int) Math.round((double) value * width / scaledWidth);
+    }
+
+    private Integer y(Integer value) {
+      return value == null ? null : (int) Math.round((double) value * height / scaledHeight);
+    }
+  }
+
+  private final int maxDimension;
+  private final float quality;
+
+  private ImagePreprocessor(Builder builder) {
+    maxDimension = builder.maxDimension;
+    quality = builder.quality;
+  }
+
+  /**
+   * Reads the size of an image and prepares its upload. JPEG images that are small enough or have
+   * an EXIF orientation, and images that {@link ImageIO} cannot decode, are uploaded as they are.
+   *
+   * @param image the image file
+   * @return the prepared image
+   */
+  public PreparedImage prepare(File image) {
+    Validator.notNull(image, "image cannot be null");
+    int width = 0;
+    int height = 0;
+    String format = null;
+    boolean decodable = false;
+    int orientation = 1;
+
+    ImageInputStream input = null;
+    try {
+      input = new FileImageInputStream(image);
+      final Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+      if (readers.hasNext()) {
+        final ImageReader reader = readers.next();
+        try {
+          reader.setInput(input, true, false);
+          width = reader.getWidth(0);
+          height = reader.getHeight(0);
+          format = reader.getFormatName();
+          // e.g. CMYK JPEGs have no image type to decode to
+          decodable = reader.getImageTypes(0).hasNext();
+          if (JPEG.equalsIgnoreCase(format))
+            orientation = orientation(reader.getImageMetadata(0));
+        } catch (final IOException e) {
+          decodable = false;
+        } finally {
+          reader.dispose();
+        }
+      }
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      close(input);
+    }
+
+    if (format == null)
+      return new PreparedImage(image, 0, 0, 0, 0, false);
+
+    final double factor = Math.max(1, (double) Math.max(width, height) / maxDimension);
+    if (!decodable || orientation != 1 || factor == 1 && JPEG.equalsIgnoreCase(format))
+      return new PreparedImage(image, width, height, width, height, false);
+
+    final int scaledWidth = Math.max(1, (int) Math.round(width / factor));
+    final int scaledHeight = Math.max(1, (int) Math.round(height / factor));
+    return new PreparedImage(image, width, height, scaledWidth, scaledHeight, true);
+  }
+
+  private void encode(PreparedImage image, OutputStream out) throws IOException {
+    final BufferedImage decoded;
+    final ImageInputStream input = new FileImageInputStream(image.file);
+    try {
+      final ImageReader reader = ImageIO.getImageReaders(input).next();
+      try {
+        reader.setInput(input, true, true);
+        // decode every nth pixel, keeping at least twice the scaled size for the final filtering
+        final int subsampling = Math.max(1, Math.min(image.width / image.scaledWidth,
+            image.height / image.scaledHeight) / 2);
+        final ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        decoded = reader.read(0, param);
+      } finally {
+        reader.dispose();
+      }
+    } finally {
+      close(input);
+    }
+
+    final BufferedImage scaled = scale(decoded, image.scaledWidth, image.scaledHeight);
+    final ImageWriter writer = ImageIO.getImageWritersByFormatName(JPEG).next();
+    final ImageOutputStream output = new MemoryCacheImageOutputStream(out);
+    try {
+      final ImageWriteParam param = writer.getDefaultWriteParam();
+      param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      param.setCompressionQuality(quality);
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(scaled, null, null), param);
+    } finally {
+      writer.dispose();
+      output.close();
+    }
+  }
+
+  /**
+   * Reads the EXIF orientation of a JPEG image, from the TIFF header of its APP1 marker.
+   *
+   * @param metadata the JPEG image metadata
+   * @return the orientation, 1 if the image has none
+   */
+  static int orientation(IIOMetadata metadata) {
+    if (metadata == null || !JPEG_METADATA.equals(metadata.getNativeMetadataFormatName()))
+      return 1;
+    final IIOMetadataNode tree = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA);
+    final NodeList markers = tree.getElementsByTagName("unknown");
+    for (int i = 0; i < markers.getLength(); i++) {
+      final IIOMetadataNode marker = (IIOMetadataNode) markers.item(i);
+      if (!APP1.equals(marker.getAttribute("MarkerTag")) || !(marker.getUserObject() instanceof byte[]))
+        continue;
+      final byte[] data = (byte[]) marker.getUserObject();
+      if (data.length < 14 || !"Exif".equals(new String(data, 0, 4, US_ASCII)))
+        continue;
+
+      // "Exif\0\0", then the TIFF header and the first IFD of 12 byte entries
+      final ByteBuffer tiff = ByteBuffer.wrap(data, 6, data.length - 6).slice();
+      tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+      final int ifd = tiff.getInt(4);
+      if (ifd < 8 || ifd > tiff.limit() - 2)
+        continue;
+      final int count = tiff.getShort(ifd) & 0xffff;
+      for (int entry = ifd + 2; entry <= tiff.limit() - 12 && entry < ifd + 2 + count * 12; entry += 12) {
+        if ((tiff.getShort(entry) & 0xffff) == ORIENTATION_TAG)
+          return tiff.getShort(entry + 8) & 0xffff;
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * Scales an image down by halving its size until it reaches the target size, and converts it to
+   * RGB on a white background.
+   *
+   * @param image the image
+   * @param width the target width
+   * @param height the target height
+   * @return the scaled image
+   */
+  static BufferedImage scale(BufferedImage image, int width, int height) {
+    BufferedImage current = image;
+    int currentWidth = image.getWidth();
+    int currentHeight = image.getHeight();
+    do {
+      currentWidth = Math.max(width, currentWidth / 2);
+      currentHeight = Math.max(height, currentHeight / 2);
+      final BufferedImage next = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+      final Graphics2D graphics = next.createGraphics();
+      try {
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(current, 0, 0, currentWidth, currentHeight, Color.WHITE, null);
+      } finally {
+        graphics.dispose();
+      }
+      current = next;
+    } while (currentWidth != width || currentHeight != height);
+    return current;
+  }
+
+  private static void close(ImageInputStream input) {
+    if (input != null) {
+      try {
+        input.close();
+      } catch (final IOException e) {
+        // ignore
+      }
+    }
+  }
+}
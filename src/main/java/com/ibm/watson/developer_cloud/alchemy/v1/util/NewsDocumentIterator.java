@@ -0,0 +1,319 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyDataNews;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Document;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Documents;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentsResult;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Iterates over all the documents of an {@link AlchemyDataNews#getNewsDocuments(Map)} query,
+ * following the {@link Documents#getNext()} token of each page. Pages are fetched lazily, on the
+ * first call to {@link #hasNext()}, and the next pages are prefetched while the current one is
+ * consumed.<br>
+ * The <code>start</code>/<code>end</code> window can be split into time slices with
+ * {@link Builder#timeSlices(int)}. Each slice is paged through in parallel, and the documents are
+ * returned one slice after the other, oldest slice first.
+ *
+ * <pre>
+ * NewsDocumentIterator documents = new NewsDocumentIterator.Builder(service, params).timeSlices(7).build();
+ * while (documents.hasNext()) {
+ *   Document document = documents.next();
+ * }
+ * </pre>
+ */
+public class NewsDocumentIterator implements Iterator<Document>, Closeable {
+  private static final Pattern RELATIVE_TIME = Pattern.compile("now(?:-(\\d+)([smhdMy]))?");
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final AlchemyDataNews service;
+    private final Map<String, Object> parameters;
+    private int timeSlices = 1;
+    private int maxBufferedPages = 2;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the Alchemy Data News service
+     * @param parameters the query parameters, as in {@link AlchemyDataNews#getNewsDocuments(Map)}
+     */
+    public Builder(AlchemyDataNews service, Map<String, Object> parameters) {
+      Validator.notNull(service, "service cannot be null");
+      Validator.notNull(parameters, "parameters cannot be null");
+      Validator.notNull(parameters.get(AlchemyDataNews.START), "start time cannot be null");
+      Validator.notNull(parameters.get(AlchemyDataNews.END), "end time cannot be null");
+      Validator.notNull(parameters.get(AlchemyDataNews.RETURN), "return cannot be null");
+      this.service = service;
+      this.parameters = new HashMap<String, Object>(parameters);
+    }
+
+    /**
+     * Sets the number of time slices the window is split into and fetched in parallel. The start
+     * and end times should be UTC seconds, or relative times such as <code>now-7d</code>. The default
+     * is 1.
+     *
+     * @param timeSlices the number of time slices
+     * @return the builder
+     */
+    public Builder timeSlices(int timeSlices) {
+      Validator.isTrue(timeSlices > 0, "timeSlices should be greater than 0");
+      this.timeSlices = timeSlices;
+      return this;
+    }
+
+    /**
+     * Sets the number of pages each time slice fetches ahead of the one being consumed. The default
+     * is 2.
+     *
+     * @param maxBufferedPages the maximum number of buffered pages
+     * @return the builder
+     */
+    public Builder maxBufferedPages(int maxBufferedPages) {
+      Validator.isTrue(maxBufferedPages > 0, "maxBufferedPages should be greater than 0");
+      this.maxBufferedPages = maxBufferedPages;
+      return this;
+    }
+
+    /**
+     * Builds the iterator.
+     *
+     * @return the news document iterator
+     */
+    public NewsDocumentIterator build() {
+      return new NewsDocumentIterator(this);
+    }
+  }
+
+  /**
+   * Pages of one time slice.
+   */
+  private final class Slice implements ServiceCallback<DocumentsResult> {
+    private final Map<String, Object> parameters;
+    private final LinkedList<List<Document>> pages = new LinkedList<List<Document>>();
+    private String next;
+    private boolean loading;
+    private boolean finished;
+    private Exception error;
+
+    Slice(Map<String, Object> parameters) {
+      this.parameters = parameters;
+    }
+
+    void fetch() {
+      final Map<String, Object> params = new HashMap<String, Object>(parameters);
+      if (next != null)
+        params.put(AlchemyDataNews.NEXT, next);
+      loading = true;
+      try {
+        service.getNewsDocuments(params).enqueue(this);
+      } catch (final RuntimeException e) {
+        // nothing was enqueued, so no callback will clear the loading flag
+        onFailure(e);
+      }
+    }
+
+    @Override
+    public void onResponse(DocumentsResult result) {
+      synchronized (NewsDocumentIterator.this) {
+        loading = false;
+        final Documents documents = result.getDocuments();
+        if (documents != null && documents.getDocuments() != null)
+          pages.add(documents.getDocuments());
+        next = documents != null ? documents.getNext() : null;
+        finished = next == null;
+        if (!finished && !closed && pages.size() < maxBufferedPages)
+          fetch();
+        NewsDocumentIterator.this.notifyAll();
+      }
+    }
+
+    @Override
+    public void onFailure(Exception e) {
+      synchronized (NewsDocumentIterator.this) {
+        loading = false;
+        finished = true;
+        error = e;
+        NewsDocumentIterator.this.notifyAll();
+      }
+    }
+  }
+
+  private final AlchemyDataNews service;
+  private final int maxBufferedPages;
+  private final List<Slice> slices = new ArrayList<Slice>();
+  private Iterator<Document> page = Collections.<Document>emptyList().iterator();
+  private int current;
+  private boolean started;
+  private boolean closed;
+
+  private NewsDocumentIterator(Builder builder) {
+    service = builder.service;
+    maxBufferedPages = builder.maxBufferedPages;
+
+    if (builder.timeSlices == 1) {
+      slices.add(new Slice(builder.parameters));
+      return;
+    }
+    final long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    final long start = toSeconds(builder.parameters.get(AlchemyDataNews.START), now);
+    final long end = toSeconds(builder.parameters.get(AlchemyDataNews.END), now);
+    Validator.isTrue(start <= end, "start time should not be after end time");
+    final long count = Math.min(builder.timeSlices, end - start + 1);
+    for (int i = 0; i < count; i++) {
+      final Map<String, Object> params = new HashMap<String, Object>(builder.parameters);
+      params.put(AlchemyDataNews.START, String.valueOf(start + i * (end - start + 1) / count));
+      params.put(AlchemyDataNews.END, String.valueOf(start + (i + 1) * (end - start + 1) / count - 1));
+      slices.add(new Slice(params));
+    }
+  }
+
+  /**
+   * Converts a start or end time to UTC seconds.
+   *
+   * @param value the time, in UTC seconds or relative to now
+   * @param now the current time in UTC seconds
+   * @return the time in UTC seconds
+   */
+  static long toSeconds(Object value, long now) {
+    if (value instanceof Number)
+      return ((Number) value).longValue();
+    if (value instanceof Date)
+      return TimeUnit.MILLISECONDS.toSeconds(((Date) value).getTime());
+
+    final String time = value.toString().trim();
+    if (time.matches("\\d+"))
+      return Long.parseLong(time);
+    final Matcher matcher = RELATIVE_TIME.matcher(time);
+    Validator.isTrue(matcher.matches(), "time cannot be split into slices: " + time);
+    if (matcher.group(1) == null)
+      return now;
+
+    final long amount = Long.parseLong(matcher.group(1));
+    switch (matcher.group(2).charAt(0)) {
+      case 's':
+        return now - amount;
+      case 'm':
+        return now - TimeUnit.MINUTES.toSeconds(amount);
+      case 'h':
+        return now - TimeUnit.HOURS.toSeconds(amount);
+      case 'd':
+        return now - TimeUnit.DAYS.toSeconds(amount);
+      case 'M':
+        return now - TimeUnit.DAYS.toSeconds(30 * amount);
+      default:
+        return now - TimeUnit.DAYS.toSeconds(365 * amount);
+    }
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.Iterator#hasNext()
+   */
+  @Override
+  public boolean hasNext() {
+    while (!page.hasNext()) {
+      final List<Document> documents = nextPage();
+      if (documents == null)
+        return false;
+      page = documents.iterator();
+    }
+    return true;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.Iterator#next()
+   */
+  @Override
+  public Document next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    return page.next();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.Iterator#remove()
+   */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  /**
+   * Stops prefetching pages. The pages already requested are still returned.
+   */
+  @Override
+  public synchronized void close() {
+    closed = true;
+  }
+
+  private synchronized List<Document> nextPage() {
+    if (!started && !closed) {
+      started = true;
+      for (final Slice slice : slices) {
+        slice.fetch();
+      }
+    }
+
+    while (current < slices.size()) {
+      final Slice slice = slices.get(current);
+      while (slice.pages.isEmpty() && slice.loading) {
+        try {
+          wait();
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+      }
+      if (!slice.pages.isEmpty()) {
+        final List<Document> documents = slice.pages.removeFirst();
+        if (!slice.loading && !slice.finished && !closed)
+          slice.fetch();
+        return documents;
+      }
+      if (!slice.finished)
+        return null; // closed
+      if (slice.error instanceof RuntimeException)
+        throw (RuntimeException) slice.error;
+      if (slice.error != null)
+        throw new RuntimeException(slice.error);
+      current++;
+    }
+    return null;
+  }
+}
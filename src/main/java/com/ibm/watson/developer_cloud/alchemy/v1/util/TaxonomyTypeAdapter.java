@@ -20,6 +20,7 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import com.ibm.watson.developer_cloud.alchemy.v1.model.Taxonomy;
+import com.ibm.watson.developer_cloud.util.StringInterner;
 
 /**
  * Type adapter to transform a taxonomy from JSON to {@link Taxonomy}.
@@ -55,7 +56,7 @@ public class TaxonomyTypeAdapter extends TypeAdapter<Taxonomy> {
         taxonomy.setConfident(confidentAsString == null || !confidentAsString.equals(NO));
       } else if (name.equals(LABEL)) {
         final String label = reader.nextString();
-        taxonomy.setLabel(label);
+        taxonomy.setLabel(StringInterner.internDefault(label));
       } else if (name.equals(SCORE)) {
         final Double score = reader.nextDouble();
         taxonomy.setScore(score);
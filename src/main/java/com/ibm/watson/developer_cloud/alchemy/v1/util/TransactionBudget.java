@@ -0,0 +1,490 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1.util;
+
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyDataNews;
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyLanguage;
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyVision;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.AlchemyGenericModel;
+import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.service.AlchemyService;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Daily transaction budget shared by the Alchemy services. Once set with
+ * {@link AlchemyService#setTransactionBudget(TransactionBudget)} on {@link AlchemyLanguage},
+ * {@link AlchemyVision} and {@link AlchemyDataNews}, the budget adds up the
+ * {@link AlchemyGenericModel#getTotalTransactions()} of every response, and is marked as exhausted
+ * when the service reports that the daily transaction limit was exceeded.<br>
+ * Calls submitted with {@link #submit(Priority, ServiceCall)} are admitted by priority: each
+ * {@link Priority} may only spend up to its share of the daily limit, and below {@link Priority#HIGH}
+ * calls are also held back while the spend forecast at the current burn rate goes over that share,
+ * once the burn rate has been measured over a whole {@link Builder#burnRateWindow(long, TimeUnit)}.
+ * Calls that are not admitted wait in priority order until the forecast drops or the budget is
+ * reset at midnight, or are rejected when their priority is shed with {@link Builder#shed(Priority)}.
+ */
+public class TransactionBudget {
+  private static final Logger LOG = Logger.getLogger(TransactionBudget.class.getName());
+  private static final long MIN_ELAPSED = TimeUnit.MINUTES.toMillis(1);
+  private static final double COST_WEIGHT = 0.2;
+
+  /**
+   * Priority of a call. Lower priorities are deferred or shed first.
+   */
+  public enum Priority {
+    /** Spends up to the whole daily limit and is not held back by the forecast. */
+    HIGH,
+    /** Spends up to 90% of the daily limit by default. */
+    NORMAL,
+    /** Spends up to 70% of the daily limit by default. */
+    LOW
+  }
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final long dailyLimit;
+    private final double[] thresholds = { 1.0, 0.9, 0.7 };
+    private final boolean[] shed = new boolean[Priority.values().length];
+    private TimeZone timeZone = TimeZone.getTimeZone("UTC");
+    private long window = TimeUnit.HOURS.toMillis(1);
+    private long checkInterval = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param dailyLimit the number of transactions allowed per day
+     */
+    public Builder(long dailyLimit) {
+      Validator.isTrue(dailyLimit > 0, "dailyLimit should be greater than 0");
+      this.dailyLimit = dailyLimit;
+    }
+
+    /**
+     * Sets the fraction of the daily limit a priority may spend. The defaults are 1.0 for
+     * {@link Priority#HIGH}, 0.9 for {@link Priority#NORMAL} and 0.7 for {@link Priority#LOW}.
+     *
+     * @param priority the priority
+     * @param fraction the fraction, between 0 and 1
+     * @return the builder
+     */
+    public Builder threshold(Priority priority, double fraction) {
+      Validator.notNull(priority, "priority cannot be null");
+      Validator.isTrue(fraction >= 0 && fraction <= 1, "fraction should be between 0 and 1");
+      thresholds[priority.ordinal()] = fraction;
+      return this;
+    }
+
+    /**
+     * Rejects the calls of a priority that would go over its threshold instead of deferring them.
+     * Calls are only deferred by default.
+     *
+     * @param priority the priority
+     * @return the builder
+     */
+    public Builder shed(Priority priority) {
+      Validator.notNull(priority, "priority cannot be null");
+      shed[priority.ordinal()] = true;
+      return this;
+    }
+
+    /**
+     * Sets the time zone of the midnight at which the daily limit is reset. The default is UTC.
+     *
+     * @param timeZone the time zone
+     * @return the builder
+     */
+    public Builder resetTimeZone(TimeZone timeZone) {
+      Validator.notNull(timeZone, "timeZone cannot be null");
+      this.timeZone = timeZone;
+      return this;
+    }
+
+    /**
+     * Sets how far back transactions are counted to compute the burn rate. The default is 1 hour.
+     * Calls are only held back by the forecast once transactions have been counted for a whole
+     * window, so a burst right after the budget is created is not extrapolated to the rest of the
+     * day.
+     *
+     * @param window the window
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder burnRateWindow(long window, TimeUnit unit) {
+      Validator.isTrue(window > 0, "window should be greater than 0");
+      this.window = unit.toMillis(window);
+      return this;
+    }
+
+    /**
+     * Sets how often deferred calls are checked again. The default is 1 minute.
+     *
+     * @param interval the interval
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder checkInterval(long interval, TimeUnit unit) {
+      Validator.isTrue(interval > 0, "interval should be greater than 0");
+      this.checkInterval = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * Builds the transaction budget.
+     *
+     * @return the transaction budget
+     */
+    public TransactionBudget build() {
+      return new TransactionBudget(this);
+    }
+  }
+
+  /**
+   * Call waiting to be admitted.
+   */
+  private static final class Request<T> implements Comparable<Request<?>> {
+    private final Priority priority;
+    private final long sequence;
+    private final ServiceCall<T> call;
+    private final CompletableFuture<T> future = new CompletableFuture<T>();
+    private double cost;
+
+    Request(Priority priority, long sequence, ServiceCall<T> call) {
+      this.priority = priority;
+      this.sequence = sequence;
+      this.call = call;
+    }
+
+    @Override
+    public int compareTo(Request<?> other) {
+      if (priority != other.priority)
+        return priority.compareTo(other.priority);
+      return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+  }
+
+  private final long dailyLimit;
+  private final double[] thresholds;
+  private final boolean[] shed;
+  private final TimeZone timeZone;
+  private final long window;
+  private final long checkInterval;
+
+  private final LinkedList<long[]> spends = new LinkedList<long[]>();
+  private final PriorityQueue<Request<?>> deferred = new PriorityQueue<Request<?>>();
+  private ScheduledExecutorService scheduler;
+  private long started = -1;
+  private long nextReset = -1;
+  private long used;
+  private long windowTotal;
+  private double reserved;
+  private double averageCost = 1;
+  private boolean exhausted;
+  private long sequence;
+  private long shedCount;
+
+  /**
+   * Instantiates a new transaction budget.
+   *
+   * @param builder the builder
+   */
+  protected TransactionBudget(Builder builder) {
+    dailyLimit = builder.dailyLimit;
+    thresholds = builder.thresholds.clone();
+    shed = builder.shed.clone();
+    timeZone = builder.timeZone;
+    window = builder.window;
+    checkInterval = builder.checkInterval;
+  }
+
+  /**
+   * Records the transactions spent by a call. This is called by the services the budget is set on.
+   *
+   * @param transactions the number of transactions
+   */
+  public void record(int transactions) {
+    if (transactions <= 0)
+      return;
+    synchronized (this) {
+      final long now = now();
+      used += transactions;
+      spends.add(new long[] { now, transactions });
+      windowTotal += transactions;
+      averageCost += COST_WEIGHT * (transactions - averageCost);
+    }
+  }
+
+  /**
+   * Marks the budget as exhausted until the next reset. This is called by the services the budget is
+   * set on when the daily transaction limit is exceeded.
+   */
+  public synchronized void exhausted() {
+    now();
+    if (!exhausted)
+      LOG.warning("Alchemy daily transaction limit exceeded, " + used + " transactions recorded");
+    exhausted = true;
+  }
+
+  /**
+   * Submits a call, which is executed as soon as the budget of its priority allows it.
+   *
+   * @param <T> the type of the response
+   * @param priority the priority
+   * @param call the service call
+   * @return the future response, completed with a {@link RejectedExecutionException} if the call is
+   *         shed
+   */
+  public <T> CompletableFuture<T> submit(Priority priority, ServiceCall<T> call) {
+    Validator.notNull(priority, "priority cannot be null");
+    Validator.notNull(call, "call cannot be null");
+
+    final Request<T> request;
+    final Admission admission;
+    final String message;
+    synchronized (this) {
+      request = new Request<T>(priority, sequence++, call);
+      final Request<?> waiting = deferred.peek();
+      final Admission allowed = admit(priority);
+      if (allowed == Admission.ADMIT && waiting != null && waiting.priority.compareTo(priority) <= 0)
+        admission = Admission.DEFER;
+      else
+        admission = allowed;
+
+      if (admission == Admission.ADMIT) {
+        reserve(request);
+      } else if (admission == Admission.DEFER) {
+        deferred.add(request);
+        startScheduler();
+      } else {
+        shedCount++;
+      }
+      message = priority + " priority call shed, " + used + " of " + dailyLimit + " daily transactions used";
+    }
+
+    if (admission == Admission.ADMIT)
+      execute(request);
+    else if (admission == Admission.SHED)
+      request.future.completeExceptionally(new RejectedExecutionException(message));
+    return request.future;
+  }
+
+  /**
+   * Gets the number of transactions recorded since the last reset.
+   *
+   * @return the transactions used
+   */
+  public synchronized long getUsed() {
+    now();
+    return used;
+  }
+
+  /**
+   * Gets the number of transactions left until the daily limit.
+   *
+   * @return the remaining transactions, 0 if the budget is exhausted
+   */
+  public synchronized long getRemaining() {
+    now();
+    return exhausted ? 0 : Math.max(0, dailyLimit - used);
+  }
+
+  /**
+   * Gets the number of transactions spent per hour over the burn rate window.
+   *
+   * @return the burn rate
+   */
+  public synchronized double getBurnRate() {
+    return rate(now()) * TimeUnit.HOURS.toMillis(1);
+  }
+
+  /**
+   * Gets the number of transactions expected to be used at the next reset if the current burn rate
+   * continues. Until the burn rate window has passed, the forecast is only indicative and does not
+   * hold calls back.
+   *
+   * @return the forecast
+   */
+  public synchronized long getForecast() {
+    return Math.round(forecast(now()));
+  }
+
+  /**
+   * Gets the number of calls waiting to be admitted.
+   *
+   * @return the deferred count
+   */
+  public synchronized int getDeferredCount() {
+    return deferred.size();
+  }
+
+  /**
+   * Gets the number of calls rejected because their priority was over budget.
+   *
+   * @return the shed count
+   */
+  public synchronized long getShedCount() {
+    return shedCount;
+  }
+
+  /**
+   * Returns the current time in milliseconds.
+   *
+   * @return the current time
+   */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private enum Admission {
+    ADMIT, DEFER, SHED
+  }
+
+  private Admission admit(Priority priority) {
+    final long now = now();
+    final double allowance = dailyLimit * thresholds[priority.ordinal()];
+    if (exhausted || used + reserved + averageCost > allowance)
+      return shed[priority.ordinal()] ? Admission.SHED : Admission.DEFER;
+    if (priority != Priority.HIGH && now - started >= window && forecast(now) + reserved > allowance)
+      return Admission.DEFER;
+    return Admission.ADMIT;
+  }
+
+  private void reserve(Request<?> request) {
+    request.cost = averageCost;
+    reserved += request.cost;
+  }
+
+  private <T> void execute(final Request<T> request) {
+    request.call.rx().handle(new CompletableFuture.BiFun<T, Throwable, Void>() {
+      @Override
+      public Void apply(T response, Throwable e) {
+        synchronized (TransactionBudget.this) {
+          reserved = Math.max(0, reserved - request.cost);
+        }
+        if (e != null)
+          request.future.completeExceptionally(e);
+        else
+          request.future.complete(response);
+        drain();
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Executes the deferred calls that can be admitted, in priority order. Deferred calls whose
+   * priority is now shed are rejected, so they do not hold back the calls behind them.
+   */
+  private void drain() {
+    while (true) {
+      final Request<?> request;
+      final Admission admission;
+      final String message;
+      synchronized (this) {
+        request = deferred.peek();
+        if (request == null)
+          return;
+        admission = admit(request.priority);
+        if (admission == Admission.DEFER)
+          return;
+        deferred.poll();
+        if (admission == Admission.ADMIT) {
+          reserve(request);
+        } else {
+          shedCount++;
+        }
+        message = request.priority + " priority call shed, " + used + " of " + dailyLimit
+            + " daily transactions used";
+      }
+      if (admission == Admission.ADMIT)
+        execute(request);
+      else
+        request.future.completeExceptionally(new RejectedExecutionException(message));
+    }
+  }
+
+  private void startScheduler() {
+    if (scheduler != null)
+      return;
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "alchemy-transaction-budget");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the current time, resetting the budget at midnight and dropping the transactions out
+   * of the burn rate window.
+   */
+  private long now() {
+    final long now = currentTimeMillis();
+    if (started < 0)
+      started = now;
+    if (now >= nextReset) {
+      if (nextReset >= 0)
+        LOG.info("Alchemy transaction budget reset, " + used + " transactions used");
+      used = 0;
+      exhausted = false;
+      nextReset = nextMidnight(now);
+    }
+    while (!spends.isEmpty() && spends.getFirst()[0] <= now - window) {
+      windowTotal -= spends.removeFirst()[1];
+    }
+    return now;
+  }
+
+  private double rate(long now) {
+    final long elapsed = Math.max(MIN_ELAPSED, Math.min(window, now - started));
+    return (double) windowTotal / elapsed;
+  }
+
+  private double forecast(long now) {
+    return used + rate(now) * (nextReset - now);
+  }
+
+  private long nextMidnight(long now) {
+    final Calendar calendar = Calendar.getInstance(timeZone);
+    calendar.setTimeInMillis(now);
+    calendar.set(Calendar.HOUR_OF_DAY, 0);
+    calendar.set(Calendar.MINUTE, 0);
+    calendar.set(Calendar.SECOND, 0);
+    calendar.set(Calendar.MILLISECOND, 0);
+    calendar.add(Calendar.DAY_OF_MONTH, 1);
+    return calendar.getTimeInMillis();
+  }
+}
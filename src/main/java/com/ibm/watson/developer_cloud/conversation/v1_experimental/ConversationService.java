@@ -13,15 +13,21 @@
  */
 package com.ibm.watson.developer_cloud.conversation.v1_experimental;
 
+import java.util.Map;
+
 import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageRequest;
 import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.util.ContextStore;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
+import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
 import com.ibm.watson.developer_cloud.service.WatsonService;
 import com.ibm.watson.developer_cloud.util.GsonSingleton;
 import com.ibm.watson.developer_cloud.util.ResponseConverterUtils;
 import com.ibm.watson.developer_cloud.util.Validator;
 
+import okhttp3.Response;
+
 /**
  * Thin wrapper around the Conversation Service REST API.
  *
@@ -40,7 +46,7 @@ public final class ConversationService extends WatsonService {
   private static final String PATH_MESSAGE = "/v1/workspaces/%s/message";
   private static final String VERSION_PARAM = "version";
   private final String versionDate;
-
+  private ContextStore contextStore;
 
   /**
    * Returns an instance of the Conversation Service using the service's default endpoint (URL).
@@ -80,10 +86,72 @@ public final class ConversationService extends WatsonService {
     Validator.notNull(request, "'request' cannot be null");
     Validator.isTrue(request.input() != null && !request.input().isEmpty(), "'request.input' cannot be null or empty");
 
+    return createMessageCall(workspaceId, request, ResponseConverterUtils.getObject(MessageResponse.class));
+  }
+
+  /**
+   * Sends a message of a conversation kept in the {@link ContextStore}. When the request has no
+   * context, the context of the previous turn of the conversation is sent with it, and the context
+   * in the response is stored for the next turn.
+   *
+   * @param workspaceId the workspace id
+   * @param conversationKey the key of the conversation in the context store, e.g. the chat id
+   * @param request the request
+   * @return The response for the given message.
+   */
+  public ServiceCall<MessageResponse> message(String workspaceId, final String conversationKey,
+      MessageRequest request) {
+    Validator.isTrue(workspaceId != null && !workspaceId.isEmpty(), "'workspaceId' cannot be null or empty");
+    Validator.isTrue(conversationKey != null && !conversationKey.isEmpty(),
+        "'conversationKey' cannot be null or empty");
+    Validator.notNull(request, "'request' cannot be null");
+    Validator.isTrue(request.input() != null && !request.input().isEmpty(), "'request.input' cannot be null or empty");
+    final ContextStore store = contextStore;
+    Validator.notNull(store, "the context store has not been set");
+
+    if (request.context() == null) {
+      final Map<String, Object> context = store.get(conversationKey);
+      if (context != null)
+        request = new MessageRequest.Builder().input(request.input()).context(context).build();
+    }
+
+    final ResponseConverter<MessageResponse> converter = ResponseConverterUtils.getObject(MessageResponse.class);
+    return createMessageCall(workspaceId, request, new ResponseConverter<MessageResponse>() {
+      @Override
+      public MessageResponse convert(Response response) {
+        final MessageResponse messageResponse = converter.convert(response);
+        if (messageResponse.getContext() != null)
+          store.put(conversationKey, messageResponse.getContext());
+        return messageResponse;
+      }
+    });
+  }
+
+  private ServiceCall<MessageResponse> createMessageCall(String workspaceId, MessageRequest request,
+      ResponseConverter<MessageResponse> converter) {
     RequestBuilder builder = RequestBuilder.post(String.format(PATH_MESSAGE, workspaceId));
     builder.query(VERSION_PARAM, this.versionDate);
     builder.bodyJson(GsonSingleton.getGson().toJsonTree(request).getAsJsonObject());
-    return createServiceCall(builder.build(), ResponseConverterUtils.getObject(MessageResponse.class));
+    return createServiceCall(builder.build(), converter);
+  }
+
+  /**
+   * Gets the context store.
+   *
+   * @return the context store, or null
+   */
+  public ContextStore getContextStore() {
+    return contextStore;
+  }
+
+  /**
+   * Sets the store used to keep the context of the conversations sent with
+   * {@link #message(String, String, MessageRequest)}.
+   *
+   * @param contextStore the context store
+   */
+  public void setContextStore(ContextStore contextStore) {
+    this.contextStore = contextStore;
   }
 
 }
@@ -0,0 +1,466 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1_experimental.util;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * {@link ContextStore} that keeps each context as a single byte array instead of a tree of maps,
+ * lists and boxed numbers. Numbers without a fraction are written as variable length integers, and
+ * the names used as map keys (<code>conversation_id</code>, <code>system</code>,
+ * <code>dialog_stack</code>...) are written once per store and referenced by index from every
+ * context.<br>
+ * Contexts that were not read or written for longer than the time to live are removed. Expired
+ * contexts are removed when they are read, and all of them are swept at most once per time to live
+ * when contexts are written.<br>
+ * Read contexts are new {@link LinkedHashMap}s with the numbers as {@link Double}s, like the contexts
+ * deserialized from the service responses.
+ */
+public class CompactContextStore implements ContextStore {
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int NULL = 0;
+  private static final int FALSE = 1;
+  private static final int TRUE = 2;
+  private static final int LONG = 3;
+  private static final int DOUBLE = 4;
+  private static final int STRING = 5;
+  private static final int LIST = 6;
+  private static final int MAP = 7;
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private long ttl = TimeUnit.MINUTES.toMillis(30);
+    private int maxNames = 1024;
+
+    /**
+     * Sets how long a context is kept after it was last read or written. The default is 30 minutes.
+     *
+     * @param ttl the time to live
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder ttl(long ttl, TimeUnit unit) {
+      Validator.isTrue(ttl > 0, "ttl should be greater than 0");
+      this.ttl = unit.toMillis(ttl);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of map keys shared by all the contexts. Keys that do not fit are
+     * written in each context. The default is 1024.
+     *
+     * @param maxNames the max number of names
+     * @return the builder
+     */
+    public Builder maxNames(int maxNames) {
+      Validator.isTrue(maxNames >= 0, "maxNames cannot be negative");
+      this.maxNames = maxNames;
+      return this;
+    }
+
+    /**
+     * Builds the context store.
+     *
+     * @return the compact context store
+     */
+    public CompactContextStore build() {
+      return new CompactContextStore(this);
+    }
+  }
+
+  /**
+   * Encoded context with its expiration time.
+   */
+  private static final class Entry {
+    private final byte[] data;
+    private volatile long expiresAt;
+
+    Entry(byte[] data, long expiresAt) {
+      this.data = data;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  private final long ttl;
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final ConcurrentHashMap<String, Integer> nameIds = new ConcurrentHashMap<String, Integer>();
+  private final AtomicReferenceArray<String> names;
+  private final AtomicLong nextSweep;
+  private int nameCount;
+
+  /**
+   * Instantiates a new compact context store.
+   *
+   * @param builder the builder
+   */
+  protected CompactContextStore(Builder builder) {
+    ttl = builder.ttl;
+    names = new AtomicReferenceArray<String>(builder.maxNames);
+    nextSweep = new AtomicLong(currentTimeMillis() + ttl);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1_experimental.util.ContextStore#get(java.lang.String)
+   */
+  @Override
+  public Map<String, Object> get(String key) {
+    Validator.notNull(key, "key cannot be null");
+    final Entry entry = entries.get(key);
+    if (entry == null)
+      return null;
+    final long now = currentTimeMillis();
+    if (entry.expiresAt <= now) {
+      entries.remove(key, entry);
+      return null;
+    }
+    entry.expiresAt = now + ttl;
+    return readMap(new Input(entry.data));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1_experimental.util.ContextStore#put(java.lang.String,
+   * java.util.Map)
+   */
+  @Override
+  public void put(String key, Map<String, Object> context) {
+    Validator.notNull(key, "key cannot be null");
+    if (context == null) {
+      remove(key);
+      return;
+    }
+    final Output out = new Output();
+    writeMap(out, context);
+    final long now = currentTimeMillis();
+    entries.put(key, new Entry(out.toByteArray(), now + ttl));
+
+    final long sweep = nextSweep.get();
+    if (now >= sweep && nextSweep.compareAndSet(sweep, now + ttl))
+      evictExpired();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.conversation.v1_experimental.util.ContextStore#remove(java.lang.String)
+   */
+  @Override
+  public void remove(String key) {
+    Validator.notNull(key, "key cannot be null");
+    entries.remove(key);
+  }
+
+  /**
+   * Removes all the expired contexts.
+   */
+  public void evictExpired() {
+    final long now = currentTimeMillis();
+    final Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().expiresAt <= now)
+        iterator.remove();
+    }
+  }
+
+  /**
+   * Gets the number of contexts, including the expired ones that were not removed yet.
+   *
+   * @return the size
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the encoded size of a context.
+   *
+   * @param key the conversation key
+   * @return the size in bytes, or -1 if there is no context
+   */
+  public int getEncodedSize(String key) {
+    final Entry entry = entries.get(key);
+    return entry != null ? entry.data.length : -1;
+  }
+
+  /**
+   * Returns the current time in milliseconds.
+   *
+   * @return the current time
+   */
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private int nameId(String name) {
+    final Integer id = nameIds.get(name);
+    if (id != null)
+      return id;
+    synchronized (names) {
+      final Integer existing = nameIds.get(name);
+      if (existing != null)
+        return existing;
+      if (nameCount == names.length())
+        return -1;
+      names.set(nameCount, name);
+      nameIds.put(name, nameCount);
+      return nameCount++;
+    }
+  }
+
+  private void writeMap(Output out, Map<?, ?> map) {
+    out.writeByte(MAP);
+    out.writeVarint(map.size());
+    for (final Map.Entry<?, ?> entry : map.entrySet()) {
+      writeName(out, String.valueOf(entry.getKey()));
+      writeValue(out, entry.getValue());
+    }
+  }
+
+  private void writeName(Output out, String name) {
+    final int id = nameId(name);
+    out.writeVarint(id + 1);
+    if (id < 0)
+      out.writeString(name);
+  }
+
+  private void writeValue(Output out, Object value) {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      out.writeByte((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Number) {
+      writeNumber(out, ((Number) value).doubleValue());
+    } else if (value instanceof String || value instanceof Character) {
+      out.writeByte(STRING);
+      out.writeString(value.toString());
+    } else if (value instanceof Map) {
+      writeMap(out, (Map<?, ?>) value);
+    } else if (value instanceof Collection) {
+      final Collection<?> collection = (Collection<?>) value;
+      out.writeByte(LIST);
+      out.writeVarint(collection.size());
+      for (final Object element : collection) {
+        writeValue(out, element);
+      }
+    } else if (value instanceof Object[]) {
+      writeValue(out, Arrays.asList((Object[]) value));
+    } else {
+      writeJson(out, value instanceof JsonElement ? (JsonElement) value
+          : GsonSingleton.getGsonWithoutPrettyPrinting().toJsonTree(value));
+    }
+  }
+
+  private void writeJson(Output out, JsonElement element) {
+    if (element.isJsonNull()) {
+      out.writeByte(NULL);
+    } else if (element.isJsonObject()) {
+      final JsonObject object = element.getAsJsonObject();
+      out.writeByte(MAP);
+      out.writeVarint(object.entrySet().size());
+      for (final Map.Entry<String, JsonElement> entry : object.entrySet()) {
+        writeName(out, entry.getKey());
+        writeJson(out, entry.getValue());
+      }
+    } else if (element.isJsonArray()) {
+      final JsonArray array = element.getAsJsonArray();
+      out.writeByte(LIST);
+      out.writeVarint(array.size());
+      for (final JsonElement child : array) {
+        writeJson(out, child);
+      }
+    } else {
+      final JsonPrimitive primitive = element.getAsJsonPrimitive();
+      if (primitive.isBoolean()) {
+        out.writeByte(primitive.getAsBoolean() ? TRUE : FALSE);
+      } else if (primitive.isNumber()) {
+        writeNumber(out, primitive.getAsDouble());
+      } else {
+        out.writeByte(STRING);
+        out.writeString(primitive.getAsString());
+      }
+    }
+  }
+
+  private static void writeNumber(Output out, double value) {
+    final long integer = (long) value;
+    if (integer == value && (integer != 0 || 1 / value > 0)) {
+      out.writeByte(LONG);
+      out.writeVarint((integer << 1) ^ (integer >> 63));
+    } else {
+      out.writeByte(DOUBLE);
+      out.writeLong(Double.doubleToRawLongBits(value));
+    }
+  }
+
+  private Map<String, Object> readMap(Input in) {
+    final int type = in.readByte();
+    if (type != MAP)
+      throw new IllegalStateException("Unexpected context type: " + type);
+    return readMapEntries(in);
+  }
+
+  private Map<String, Object> readMapEntries(Input in) {
+    final int size = (int) in.readVarint();
+    final Map<String, Object> map = new LinkedHashMap<String, Object>(size * 4 / 3 + 1);
+    for (int i = 0; i < size; i++) {
+      final int id = (int) in.readVarint() - 1;
+      final String name = id < 0 ? in.readString() : names.get(id);
+      map.put(name, readValue(in));
+    }
+    return map;
+  }
+
+  private Object readValue(Input in) {
+    final int type = in.readByte();
+    switch (type) {
+      case NULL:
+        return null;
+      case FALSE:
+        return Boolean.FALSE;
+      case TRUE:
+        return Boolean.TRUE;
+      case LONG:
+        final long zigzag = in.readVarint();
+        return (double) ((zigzag >>> 1) ^ -(zigzag & 1));
+      case DOUBLE:
+        return Double.longBitsToDouble(in.readLong());
+      case STRING:
+        return in.readString();
+      case LIST:
+        final int size = (int) in.readVarint();
+        final List<Object> list = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(readValue(in));
+        }
+        return list;
+      case MAP:
+        return readMapEntries(in);
+      default:
+        throw new IllegalStateException("Unexpected context type: " + type);
+    }
+  }
+
+  /**
+   * Growable byte array the contexts are written to.
+   */
+  private static final class Output {
+    private byte[] buffer = new byte[256];
+    private int position;
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length)
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+    }
+
+    void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    void writeVarint(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    void writeString(String value) {
+      final byte[] bytes = value.getBytes(UTF_8);
+      writeVarint(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+  }
+
+  /**
+   * Cursor over an encoded context.
+   */
+  private static final class Input {
+    private final byte[] buffer;
+    private int position;
+
+    Input(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    int readByte() {
+      return buffer[position++] & 0xFF;
+    }
+
+    long readVarint() {
+      long value = 0;
+      int shift = 0;
+      int b;
+      do {
+        b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    long readLong() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (buffer[position++] & 0xFF);
+      }
+      return value;
+    }
+
+    String readString() {
+      final int length = (int) readVarint();
+      final String value = new String(buffer, position, length, UTF_8);
+      position += length;
+      return value;
+    }
+  }
+}
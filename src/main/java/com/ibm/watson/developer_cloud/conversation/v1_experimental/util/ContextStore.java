@@ -0,0 +1,50 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1_experimental.util;
+
+import java.util.Map;
+
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.ConversationService;
+
+/**
+ * Store of conversation contexts, used by
+ * {@link ConversationService#message(String, String, com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageRequest)}
+ * to send the context of the previous turn of a conversation and keep the new one. Implementations
+ * must be safe to use from several threads.
+ */
+public interface ContextStore {
+
+  /**
+   * Gets the context of a conversation.
+   *
+   * @param key the conversation key
+   * @return the context, or null if there is none
+   */
+  Map<String, Object> get(String key);
+
+  /**
+   * Sets the context of a conversation, replacing the previous one.
+   *
+   * @param key the conversation key
+   * @param context the context
+   */
+  void put(String key, Map<String, Object> context);
+
+  /**
+   * Removes the context of a conversation.
+   *
+   * @param key the conversation key
+   */
+  void remove(String key);
+}
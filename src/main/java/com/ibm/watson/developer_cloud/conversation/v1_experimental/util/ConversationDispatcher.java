@@ -0,0 +1,492 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1_experimental.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.ConversationService;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageResponse;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Sends the messages of many conversations in parallel, while the turns of each conversation are
+ * sent one at a time and in the order they were submitted. Requests without a context get the
+ * context of the previous response of their conversation.<br>
+ * Turns are run on a bounded executor, one turn per task, so busy conversations do not hold a thread
+ * between turns. Conversations are spread over shards by key; each shard has its own lock and
+ * {@link ShardMetrics}.<br>
+ * When the service has a {@link ContextStore}, the contexts are kept in the store and a conversation
+ * is forgotten as soon as it has no pending turns. Otherwise the dispatcher keeps the last context of
+ * each conversation until {@link #remove(String)} is called.
+ *
+ * <pre>
+ * ConversationDispatcher dispatcher = new ConversationDispatcher.Builder(service, workspaceId).build();
+ * dispatcher.send(chatId, new MessageRequest.Builder().inputText("hi").build());
+ * dispatcher.send(chatId, new MessageRequest.Builder().inputText("I'd like a pizza").build());
+ * </pre>
+ */
+public class ConversationDispatcher {
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final ConversationService service;
+    private final String workspaceId;
+    private ExecutorService executor;
+    private int maxConcurrency = 16;
+    private int shards = 16;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the conversation service
+     * @param workspaceId the workspace id
+     */
+    public Builder(ConversationService service, String workspaceId) {
+      Validator.notNull(service, "service cannot be null");
+      Validator.isTrue(workspaceId != null && !workspaceId.isEmpty(), "workspaceId cannot be null or empty");
+      this.service = service;
+      this.workspaceId = workspaceId;
+    }
+
+    /**
+     * Sets the maximum number of messages sent at the same time, when the dispatcher creates its own
+     * executor. The default is 16.
+     *
+     * @param maxConcurrency the max concurrency
+     * @return the builder
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      Validator.isTrue(maxConcurrency > 0, "maxConcurrency should be greater than 0");
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Sets the number of shards the conversations are spread over. The default is 16.
+     *
+     * @param shards the number of shards
+     * @return the builder
+     */
+    public Builder shards(int shards) {
+      Validator.isTrue(shards > 0, "shards should be greater than 0");
+      this.shards = shards;
+      return this;
+    }
+
+    /**
+     * Sets the executor the turns are run on. It is not shut down by {@link #shutdown()}. The
+     * default is a pool of {@link #maxConcurrency(int)} daemon threads.
+     *
+     * @param executor the executor
+     * @return the builder
+     */
+    public Builder executor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Builds the dispatcher.
+     *
+     * @return the conversation dispatcher
+     */
+    public ConversationDispatcher build() {
+      return new ConversationDispatcher(this);
+    }
+  }
+
+  /**
+   * Queue depth and latency of the conversations of a shard. Latencies are measured from the time a
+   * turn is submitted to the time its response is received, so they include the time spent waiting
+   * for the previous turns.
+   */
+  public static final class ShardMetrics {
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger conversations = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    private void record(long latency, boolean success) {
+      (success ? completed : failed).incrementAndGet();
+      totalLatency.addAndGet(latency);
+      long max;
+      while (latency > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, latency)) {
+        // retry
+      }
+    }
+
+    /**
+     * Gets the number of turns submitted and not sent yet.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+      return queueDepth.get();
+    }
+
+    /**
+     * Gets the number of conversations kept by the shard.
+     *
+     * @return the number of conversations
+     */
+    public int getConversations() {
+      return conversations.get();
+    }
+
+    /**
+     * Gets the number of turns that completed successfully.
+     *
+     * @return the completed turns
+     */
+    public long getCompleted() {
+      return completed.get();
+    }
+
+    /**
+     * Gets the number of turns that failed.
+     *
+     * @return the failed turns
+     */
+    public long getFailed() {
+      return failed.get();
+    }
+
+    /**
+     * Gets the average latency of the finished turns.
+     *
+     * @param unit the time unit
+     * @return the average latency, or 0 if no turn finished
+     */
+    public long getAverageLatency(TimeUnit unit) {
+      final long finished = completed.get() + failed.get();
+      return finished == 0 ? 0 : unit.convert(totalLatency.get() / finished, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the maximum latency of the finished turns.
+     *
+     * @param unit the time unit
+     * @return the max latency
+     */
+    public long getMaxLatency(TimeUnit unit) {
+      return unit.convert(maxLatency.get(), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /**
+   * Submitted message.
+   */
+  private static final class Turn {
+    private final MessageRequest request;
+    private final CompletableFuture<MessageResponse> future = new CompletableFuture<MessageResponse>();
+    private final long submitted = System.nanoTime();
+
+    Turn(MessageRequest request) {
+      this.request = request;
+    }
+  }
+
+  /**
+   * Conversations of a shard, guarded by the shard.
+   */
+  private static final class Shard {
+    private final Map<String, Mailbox> mailboxes = new HashMap<String, Mailbox>();
+    private final ShardMetrics metrics = new ShardMetrics();
+  }
+
+  /**
+   * Pending turns and last context of a conversation.
+   */
+  private final class Mailbox implements Runnable {
+    private final String key;
+    private final Shard shard;
+    private final ArrayDeque<Turn> pending = new ArrayDeque<Turn>();
+    private Map<String, Object> context;
+    private boolean removed;
+    private boolean running;
+
+    Mailbox(String key, Shard shard) {
+      this.key = key;
+      this.shard = shard;
+    }
+
+    @Override
+    public void run() {
+      final Turn turn;
+      Map<String, Object> context;
+      synchronized (shard) {
+        turn = pending.poll();
+        context = this.context;
+        removed = false;
+      }
+      shard.metrics.queueDepth.decrementAndGet();
+
+      MessageResponse response = null;
+      Throwable error = null;
+      try {
+        response = send(key, turn.request, context);
+        if (response.getContext() != null)
+          context = response.getContext();
+      } catch (final Throwable e) {
+        error = e;
+      }
+      shard.metrics.record(System.nanoTime() - turn.submitted, error == null && response != null);
+      final boolean next = update(context);
+
+      // completed before the next turn is scheduled, so the callbacks see the responses in order
+      if (error != null) {
+        turn.future.completeExceptionally(error);
+      } else {
+        turn.future.complete(response);
+      }
+      if (next)
+        schedule(this);
+      finished(1);
+      if (error instanceof Error)
+        throw (Error) error;
+    }
+
+    /**
+     * Keeps the context of the response, and forgets the conversation if no turn is pending.
+     *
+     * @return true if the next turn should be scheduled
+     */
+    private boolean update(Map<String, Object> context) {
+      synchronized (shard) {
+        // a context removed while the turn was sent stays removed
+        if (!removed)
+          this.context = context;
+        if (!pending.isEmpty())
+          return true;
+        running = false;
+        if (removed || service.getContextStore() != null)
+          forget(this);
+        return false;
+      }
+    }
+  }
+
+  private final ConversationService service;
+  private final String workspaceId;
+  private final ExecutorService executor;
+  private final boolean ownExecutor;
+  private final Shard[] shards;
+  private int outstanding;
+  private boolean shutdown;
+
+  /**
+   * Instantiates a new conversation dispatcher.
+   *
+   * @param builder the builder
+   */
+  protected ConversationDispatcher(Builder builder) {
+    service = builder.service;
+    workspaceId = builder.workspaceId;
+    ownExecutor = builder.executor == null;
+    executor = ownExecutor ? Executors.newFixedThreadPool(builder.maxConcurrency, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "conversation-dispatcher-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    }) : builder.executor;
+    shards = new Shard[builder.shards];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
+  }
+
+  /**
+   * Submits a message of a conversation. It is sent after the previous messages of the
+   * conversation were answered.
+   *
+   * @param conversationKey the key of the conversation, e.g. the chat id
+   * @param request the request, sent with the context of the previous response when it has none
+   * @return the future response, completed with a {@link RejectedExecutionException} if the
+   *         dispatcher was shut down
+   */
+  public CompletableFuture<MessageResponse> send(String conversationKey, MessageRequest request) {
+    Validator.isTrue(conversationKey != null && !conversationKey.isEmpty(),
+        "conversationKey cannot be null or empty");
+    Validator.notNull(request, "request cannot be null");
+
+    final Turn turn = new Turn(request);
+    synchronized (this) {
+      if (shutdown) {
+        turn.future.completeExceptionally(new RejectedExecutionException("The dispatcher has been shut down"));
+        return turn.future;
+      }
+      outstanding++;
+    }
+    final Shard shard = shard(conversationKey);
+    Mailbox mailbox;
+    boolean start = false;
+    synchronized (shard) {
+      mailbox = shard.mailboxes.get(conversationKey);
+      if (mailbox == null) {
+        mailbox = new Mailbox(conversationKey, shard);
+        shard.mailboxes.put(conversationKey, mailbox);
+        shard.metrics.conversations.incrementAndGet();
+      }
+      mailbox.pending.add(turn);
+      if (!mailbox.running) {
+        mailbox.running = true;
+        start = true;
+      }
+    }
+    shard.metrics.queueDepth.incrementAndGet();
+    if (start)
+      schedule(mailbox);
+    return turn.future;
+  }
+
+  /**
+   * Forgets the last context of a conversation, including the context of a turn being sent. Pending
+   * turns are still sent.
+   *
+   * @param conversationKey the key of the conversation
+   */
+  public void remove(String conversationKey) {
+    final Shard shard = shard(conversationKey);
+    synchronized (shard) {
+      final Mailbox mailbox = shard.mailboxes.get(conversationKey);
+      if (mailbox == null)
+        return;
+      mailbox.context = null;
+      mailbox.removed = mailbox.running;
+      if (!mailbox.running)
+        forget(mailbox);
+    }
+  }
+
+  /**
+   * Gets the metrics of each shard.
+   *
+   * @return the shard metrics
+   */
+  public List<ShardMetrics> getShardMetrics() {
+    final List<ShardMetrics> metrics = new ArrayList<ShardMetrics>(shards.length);
+    for (final Shard shard : shards) {
+      metrics.add(shard.metrics);
+    }
+    return Collections.unmodifiableList(metrics);
+  }
+
+  /**
+   * Gets the metrics of the shard of a conversation.
+   *
+   * @param conversationKey the key of the conversation
+   * @return the shard metrics
+   */
+  public ShardMetrics getShardMetrics(String conversationKey) {
+    return shard(conversationKey).metrics;
+  }
+
+  /**
+   * Stops accepting messages. Pending turns are still sent, and the executor created by the
+   * dispatcher is shut down once they are answered.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      if (shutdown)
+        return;
+      shutdown = true;
+      if (outstanding > 0)
+        return;
+    }
+    if (ownExecutor)
+      executor.shutdown();
+  }
+
+  /**
+   * Sends a turn of a conversation.
+   *
+   * @param conversationKey the key of the conversation
+   * @param request the request
+   * @param context the last context of the conversation, or null
+   * @return the message response
+   */
+  protected MessageResponse send(String conversationKey, MessageRequest request, Map<String, Object> context) {
+    if (service.getContextStore() != null)
+      return service.message(workspaceId, conversationKey, request).execute();
+    if (request.context() == null && context != null)
+      request = new MessageRequest.Builder().input(request.input()).context(context).build();
+    return service.message(workspaceId, request).execute();
+  }
+
+  private Shard shard(String conversationKey) {
+    final int hash = conversationKey.hashCode();
+    return shards[((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % shards.length];
+  }
+
+  private void forget(Mailbox mailbox) {
+    if (mailbox.shard.mailboxes.remove(mailbox.key) != null)
+      mailbox.shard.metrics.conversations.decrementAndGet();
+  }
+
+  /**
+   * Counts finished turns, and shuts down the executor after the last one when the dispatcher is
+   * shut down.
+   */
+  private void finished(int turns) {
+    synchronized (this) {
+      outstanding -= turns;
+      if (!shutdown || outstanding > 0)
+        return;
+    }
+    if (ownExecutor)
+      executor.shutdown();
+  }
+
+  private void schedule(Mailbox mailbox) {
+    try {
+      executor.execute(mailbox);
+    } catch (final RejectedExecutionException e) {
+      final List<Turn> rejected;
+      synchronized (mailbox.shard) {
+        rejected = new ArrayList<Turn>(mailbox.pending);
+        mailbox.pending.clear();
+        mailbox.running = false;
+      }
+      mailbox.shard.metrics.queueDepth.addAndGet(-rejected.size());
+      for (final Turn turn : rejected) {
+        mailbox.shard.metrics.record(System.nanoTime() - turn.submitted, false);
+        turn.future.completeExceptionally(e);
+      }
+      finished(rejected.size());
+    }
+  }
+}
@@ -0,0 +1,4 @@
+/**
+ * Utility classes to keep the context of conversations
+ */
+package com.ibm.watson.developer_cloud.conversation.v1_experimental.util;
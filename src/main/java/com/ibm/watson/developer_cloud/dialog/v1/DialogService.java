@@ -14,9 +14,11 @@
 package com.ibm.watson.developer_cloud.dialog.v1;
 
 import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,12 +26,15 @@ import java.util.Map;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.ibm.watson.developer_cloud.dialog.v1.model.Conversation;
 import com.ibm.watson.developer_cloud.dialog.v1.model.ConversationData;
 import com.ibm.watson.developer_cloud.dialog.v1.model.ConversationDataOptions;
 import com.ibm.watson.developer_cloud.dialog.v1.model.Dialog;
 import com.ibm.watson.developer_cloud.dialog.v1.model.DialogContent;
 import com.ibm.watson.developer_cloud.dialog.v1.model.NameValue;
+import com.ibm.watson.developer_cloud.dialog.v1.util.ConversationDataSink;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
 import com.ibm.watson.developer_cloud.http.ResponseConverter;
@@ -229,6 +234,54 @@ public class DialogService extends WatsonService {
    * @return A list of {@link ConversationData}
    */
   public ServiceCall<List<ConversationData>> getConversationData(ConversationDataOptions options) {
+    final Request request = createConversationDataRequest(options);
+    ResponseConverter<List<ConversationData>> converter =
+        ResponseConverterUtils.getGenericObject(listConversationDataType, CONVERSATIONS);
+    return createServiceCall(request, converter);
+  }
+
+  /**
+   * Retrieves the conversation data and passes each conversation to a sink as soon as it is read,
+   * without keeping the page in memory.
+   *
+   * @param options the options
+   * @param sink the sink the conversations are passed to
+   * @return the number of conversations in the page
+   */
+  public ServiceCall<Integer> getConversationData(ConversationDataOptions options, final ConversationDataSink sink) {
+    Validator.notNull(sink, "sink cannot be null");
+    final Request request = createConversationDataRequest(options);
+    return createServiceCall(request, new ResponseConverter<Integer>() {
+      @Override
+      public Integer convert(Response response) {
+        final JsonReader reader = new JsonReader(response.body().charStream());
+        try {
+          int count = 0;
+          reader.beginObject();
+          while (reader.hasNext()) {
+            if (reader.nextName().equals(CONVERSATIONS) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+              reader.beginArray();
+              while (reader.hasNext()) {
+                sink.accept(GSON.<ConversationData>fromJson(reader, ConversationData.class));
+                count++;
+              }
+              reader.endArray();
+            } else {
+              reader.skipValue();
+            }
+          }
+          reader.endObject();
+          return count;
+        } catch (final IOException e) {
+          throw new RuntimeException(e);
+        } finally {
+          response.body().close();
+        }
+      }
+    });
+  }
+
+  private Request createConversationDataRequest(ConversationDataOptions options) {
     Validator.notNull(options, "options cannot be null");
     Validator.isTrue(options.dialogId() != null && !options.dialogId().isEmpty(),
         "options.dialogId cannot be null or empty");
@@ -239,8 +292,8 @@ public class DialogService extends WatsonService {
     if (options.from().after(options.to()))
       throw new IllegalArgumentException("options.from is greater than options.to");
 
-    final String fromString = DATE_FORMATTER.format(options.from());
-    final String toString = DATE_FORMATTER.format(options.to());
+    final String fromString = formatDate(options.from());
+    final String toString = formatDate(options.to());
 
     final String path = String.format(PATH_DIALOG_CONVERSATION, options.dialogId());
 
@@ -251,10 +304,16 @@ public class DialogService extends WatsonService {
     if (options.limit() != null)
       requestBuilder.query(LIMIT, options.limit());
 
-    final Request request = requestBuilder.build();
-    ResponseConverter<List<ConversationData>> converter =
-        ResponseConverterUtils.getGenericObject(listConversationDataType, CONVERSATIONS);
-    return createServiceCall(request, converter);
+    return requestBuilder.build();
+  }
+
+  /**
+   * Formats a date with the shared formatter, which is not thread safe.
+   */
+  private static String formatDate(Date date) {
+    synchronized (DATE_FORMATTER) {
+      return DATE_FORMATTER.format(date);
+    }
   }
 
   /**
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.dialog.v1.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.gson.Gson;
+import com.ibm.watson.developer_cloud.dialog.v1.DialogService;
+import com.ibm.watson.developer_cloud.dialog.v1.model.ConversationData;
+import com.ibm.watson.developer_cloud.dialog.v1.model.ConversationDataOptions;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Exports the conversations of a dialog for a date range. The range is split into windows, and the
+ * pages of the windows are requested concurrently, up to a maximum number of requests at a time.
+ * Each conversation is passed to the sink as soon as it is read from a response, so pages are never
+ * kept in memory.<br>
+ * The sink is called by one thread at a time, but conversations of different windows are
+ * interleaved. Windows end one second before the next one starts, since the service only uses
+ * seconds.
+ *
+ * <pre>
+ * Writer writer = new BufferedWriter(new FileWriter("conversations.ndjson"));
+ * long count = new ConversationDataExporter.Builder(service, dialogId, from, to).build()
+ *     .export(ConversationDataExporter.ndjson(writer));
+ * writer.close();
+ * </pre>
+ */
+public class ConversationDataExporter {
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+  private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final DialogService service;
+    private final String dialogId;
+    private final Date from;
+    private final Date to;
+    private long window = TimeUnit.DAYS.toMillis(1);
+    private int pageSize = 100;
+    private int maxConcurrency = 4;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the dialog service
+     * @param dialogId the dialog id
+     * @param from the start of the date range
+     * @param to the end of the date range
+     */
+    public Builder(DialogService service, String dialogId, Date from, Date to) {
+      Validator.notNull(service, "service cannot be null");
+      Validator.isTrue(dialogId != null && !dialogId.isEmpty(), "dialogId cannot be null or empty");
+      Validator.notNull(from, "from cannot be null");
+      Validator.notNull(to, "to cannot be null");
+      Validator.isTrue(!from.after(to), "from is greater than to");
+      this.service = service;
+      this.dialogId = dialogId;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * Sets the duration of the windows the date range is split into. The default is 1 day.
+     *
+     * @param window the window duration
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder window(long window, TimeUnit unit) {
+      Validator.isTrue(unit.toMillis(window) >= SECOND, "window should be at least 1 second");
+      this.window = unit.toMillis(window);
+      return this;
+    }
+
+    /**
+     * Sets the number of conversations requested per page. The default is 100.
+     *
+     * @param pageSize the page size
+     * @return the builder
+     */
+    public Builder pageSize(int pageSize) {
+      Validator.isTrue(pageSize > 0, "pageSize should be greater than 0");
+      this.pageSize = pageSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of pages requested at the same time. The default is 4.
+     *
+     * @param maxConcurrency the max concurrency
+     * @return the builder
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      Validator.isTrue(maxConcurrency > 0, "maxConcurrency should be greater than 0");
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Builds the exporter.
+     *
+     * @return the conversation data exporter
+     */
+    public ConversationDataExporter build() {
+      return new ConversationDataExporter(this);
+    }
+  }
+
+  /**
+   * Requested page of a window.
+   */
+  private static final class Page {
+    private final Date from;
+    private final Date to;
+    private final int offset;
+    private int count;
+
+    Page(Date from, Date to, int offset) {
+      this.from = from;
+      this.to = to;
+      this.offset = offset;
+    }
+  }
+
+  private final DialogService service;
+  private final String dialogId;
+  private final Date from;
+  private final Date to;
+  private final long window;
+  private final int pageSize;
+  private final int maxConcurrency;
+
+  private ConversationDataExporter(Builder builder) {
+    service = builder.service;
+    dialogId = builder.dialogId;
+    from = builder.from;
+    to = builder.to;
+    window = builder.window;
+    pageSize = builder.pageSize;
+    maxConcurrency = builder.maxConcurrency;
+  }
+
+  /**
+   * Creates a sink that writes each conversation as one line of JSON (NDJSON). The writer is not
+   * closed.
+   *
+   * @param writer the writer
+   * @return the sink
+   */
+  public static ConversationDataSink ndjson(final Writer writer) {
+    Validator.notNull(writer, "writer cannot be null");
+    return new ConversationDataSink() {
+      @Override
+      public void accept(ConversationData conversationData) {
+        try {
+          GSON.toJson(conversationData, writer);
+          writer.write('\n');
+        } catch (final IOException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+  }
+
+  /**
+   * Exports the conversations, blocking until all the pages were read. When a request fails, the
+   * pending requests are cancelled and the error is thrown.
+   *
+   * @param sink the sink the conversations are passed to
+   * @return the number of conversations exported
+   */
+  public long export(final ConversationDataSink sink) {
+    Validator.notNull(sink, "sink cannot be null");
+    final ConversationDataSink serialized = new ConversationDataSink() {
+      @Override
+      public synchronized void accept(ConversationData conversationData) {
+        sink.accept(conversationData);
+      }
+    };
+
+    final ExecutorService executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "dialog-conversation-export-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    final CompletionService<Page> completion = new ExecutorCompletionService<Page>(executor);
+    try {
+      int pending = 0;
+      for (long start = from.getTime(); start <= to.getTime(); start += window) {
+        final long end = Math.min(start + window - SECOND, to.getTime());
+        submit(completion, new Page(new Date(start), new Date(end), 0), serialized);
+        pending++;
+      }
+
+      long total = 0;
+      while (pending > 0) {
+        final Page page = completion.take().get();
+        pending--;
+        total += page.count;
+        if (page.count == pageSize) {
+          submit(completion, new Page(page.from, page.to, page.offset + pageSize), serialized);
+          pending++;
+        }
+      }
+      return total;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (final ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void submit(CompletionService<Page> completion, final Page page, final ConversationDataSink sink) {
+    completion.submit(new Callable<Page>() {
+      @Override
+      public Page call() throws Exception {
+        final ConversationDataOptions options = new ConversationDataOptions.Builder().dialogId(dialogId)
+            .from(page.from).to(page.to).offset(page.offset).limit(pageSize).build();
+        page.count = service.getConversationData(options, sink).execute();
+        return page;
+      }
+    });
+  }
+}
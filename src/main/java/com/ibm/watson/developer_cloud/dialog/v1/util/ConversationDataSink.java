@@ -0,0 +1,29 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.dialog.v1.util;
+
+import com.ibm.watson.developer_cloud.dialog.v1.model.ConversationData;
+
+/**
+ * Receives {@link ConversationData} records one at a time, as they are read from the response.
+ */
+public interface ConversationDataSink {
+
+  /**
+   * Accepts a conversation data record.
+   *
+   * @param conversationData the conversation data
+   */
+  void accept(ConversationData conversationData);
+}
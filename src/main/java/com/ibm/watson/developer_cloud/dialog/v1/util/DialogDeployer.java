@@ -0,0 +1,384 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.dialog.v1.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.ibm.watson.developer_cloud.dialog.v1.DialogService;
+import com.ibm.watson.developer_cloud.service.exception.NotFoundException;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Deploys dialog files with {@link DialogService}, skipping the dialogs that did not change since
+ * the last deployment. The service does not expose the content of a dialog, so the id and the
+ * SHA-256 hash of each deployed file are kept in a local manifest file, by dialog name.<br>
+ * Files are hashed and uploaded concurrently, up to a maximum number at a time. New dialogs are
+ * created, changed dialogs are updated (or created again if they were deleted from the service), and
+ * the manifest is saved after each deployment with the dialogs that succeeded.
+ *
+ * <pre>
+ * DialogDeployer deployer = new DialogDeployer.Builder(service, new File("dialogs.manifest.json")).build();
+ * for (DialogDeployer.Result result : deployer.deploy(dialogFiles)) {
+ *   System.out.println(result);
+ * }
+ * </pre>
+ */
+public class DialogDeployer {
+  private static final Logger LOG = Logger.getLogger(DialogDeployer.class.getName());
+  private static final Type TYPE_MANIFEST = new TypeToken<LinkedHashMap<String, ManifestEntry>>() {}.getType();
+  private static final Gson GSON = GsonSingleton.getGson();
+  private static final String UTF_8 = "UTF-8";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final DialogService service;
+    private final File manifest;
+    private int maxConcurrency = 4;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the dialog service
+     * @param manifest the manifest file, created by the first deployment
+     */
+    public Builder(DialogService service, File manifest) {
+      Validator.notNull(service, "service cannot be null");
+      Validator.notNull(manifest, "manifest cannot be null");
+      this.service = service;
+      this.manifest = manifest;
+    }
+
+    /**
+     * Sets the maximum number of dialogs uploaded at the same time. The default is 4.
+     *
+     * @param maxConcurrency the max concurrency
+     * @return the builder
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      Validator.isTrue(maxConcurrency > 0, "maxConcurrency should be greater than 0");
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Builds the dialog deployer.
+     *
+     * @return the dialog deployer
+     */
+    public DialogDeployer build() {
+      return new DialogDeployer(this);
+    }
+  }
+
+  /**
+   * What was done with a dialog.
+   */
+  public enum Action {
+
+    /** The dialog was created. */
+    CREATED,
+
+    /** The dialog was updated. */
+    UPDATED,
+
+    /** The dialog did not change. */
+    SKIPPED,
+
+    /** The deployment of the dialog failed. */
+    FAILED
+  }
+
+  /**
+   * Deployment of a dialog.
+   */
+  public static final class Result {
+    private final String name;
+    private final String dialogId;
+    private final String hash;
+    private final Action action;
+    private final RuntimeException error;
+    private final long time;
+
+    private Result(String name, String dialogId, String hash, Action action, RuntimeException error, long time) {
+      this.name = name;
+      this.dialogId = dialogId;
+      this.hash = hash;
+      this.action = action;
+      this.error = error;
+      this.time = time;
+    }
+
+    /**
+     * Gets the dialog name.
+     *
+     * @return the name
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Gets the dialog id.
+     *
+     * @return the dialog id, or null if the dialog could not be created
+     */
+    public String getDialogId() {
+      return dialogId;
+    }
+
+    /**
+     * Gets the SHA-256 hash of the file.
+     *
+     * @return the hash, or null if the file could not be read
+     */
+    public String getHash() {
+      return hash;
+    }
+
+    /**
+     * Gets the action.
+     *
+     * @return the action
+     */
+    public Action getAction() {
+      return action;
+    }
+
+    /**
+     * Gets the error of a failed deployment.
+     *
+     * @return the error, or null
+     */
+    public RuntimeException getError() {
+      return error;
+    }
+
+    /**
+     * Gets the time spent hashing and uploading the file.
+     *
+     * @param unit the time unit
+     * @return the time
+     */
+    public long getTime(TimeUnit unit) {
+      return unit.convert(time, TimeUnit.NANOSECONDS);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+      return name + ": " + action + " in " + getTime(TimeUnit.MILLISECONDS) + " ms"
+          + (error != null ? " (" + error.getMessage() + ")" : "");
+    }
+  }
+
+  /**
+   * Deployed dialog in the manifest.
+   */
+  private static final class ManifestEntry {
+    private String id;
+    private String sha256;
+
+    ManifestEntry(String id, String sha256) {
+      this.id = id;
+      this.sha256 = sha256;
+    }
+  }
+
+  private final DialogService service;
+  private final File manifest;
+  private final int maxConcurrency;
+
+  private DialogDeployer(Builder builder) {
+    service = builder.service;
+    manifest = builder.manifest;
+    maxConcurrency = builder.maxConcurrency;
+  }
+
+  /**
+   * Deploys dialog files and saves the manifest.
+   *
+   * @param dialogs the dialog files by dialog name
+   * @return the result of each dialog, in the same order
+   */
+  public List<Result> deploy(Map<String, File> dialogs) {
+    Validator.notNull(dialogs, "dialogs cannot be null");
+    final Map<String, ManifestEntry> entries = load();
+    final ExecutorService executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "dialog-deployer-" + count.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    try {
+      final List<Future<Result>> futures = new ArrayList<Future<Result>>();
+      for (final Map.Entry<String, File> dialog : dialogs.entrySet()) {
+        final ManifestEntry deployed = entries.get(dialog.getKey());
+        futures.add(executor.submit(new Callable<Result>() {
+          @Override
+          public Result call() {
+            return deploy(dialog.getKey(), dialog.getValue(), deployed);
+          }
+        }));
+      }
+
+      final List<Result> results = new ArrayList<Result>(futures.size());
+      for (final Future<Result> future : futures) {
+        final Result result = future.get();
+        results.add(result);
+        if (result.action != Action.FAILED)
+          entries.put(result.name, new ManifestEntry(result.dialogId, result.hash));
+      }
+      save(entries);
+      return results;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (final ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Result deploy(String name, File file, ManifestEntry deployed) {
+    final long start = System.nanoTime();
+    String hash = null;
+    String dialogId = deployed != null ? deployed.id : null;
+    try {
+      Validator.isTrue(file != null && file.exists(), "the file of dialog " + name + " does not exist");
+      hash = hash(file);
+      if (deployed != null && hash.equals(deployed.sha256))
+        return new Result(name, dialogId, hash, Action.SKIPPED, null, System.nanoTime() - start);
+
+      if (dialogId != null) {
+        try {
+          service.updateDialog(dialogId, file).execute();
+          return new Result(name, dialogId, hash, Action.UPDATED, null, System.nanoTime() - start);
+        } catch (final NotFoundException e) {
+          LOG.info("Dialog " + name + " (" + dialogId + ") was not found, creating it again");
+        }
+      }
+      dialogId = service.createDialog(name, file).execute().getId();
+      return new Result(name, dialogId, hash, Action.CREATED, null, System.nanoTime() - start);
+    } catch (final RuntimeException e) {
+      LOG.log(Level.WARNING, "Error deploying dialog " + name, e);
+      return new Result(name, dialogId, hash, Action.FAILED, e, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Computes the SHA-256 hash of a file.
+   *
+   * @param file the file
+   * @return the hash as lowercase hexadecimal
+   */
+  static String hash(File file) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      final InputStream in = new FileInputStream(file);
+      try {
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          digest.update(buffer, 0, read);
+        }
+      } finally {
+        in.close();
+      }
+      final byte[] bytes = digest.digest();
+      final char[] hex = new char[bytes.length * 2];
+      for (int i = 0; i < bytes.length; i++) {
+        hex[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+        hex[2 * i + 1] = HEX[bytes[i] & 0xF];
+      }
+      return new String(hex);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    } catch (final NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private Map<String, ManifestEntry> load() {
+    if (!manifest.exists())
+      return new LinkedHashMap<String, ManifestEntry>();
+    try {
+      final Reader reader = new InputStreamReader(new FileInputStream(manifest), UTF_8);
+      try {
+        final Map<String, ManifestEntry> entries = GSON.fromJson(reader, TYPE_MANIFEST);
+        return entries != null ? entries : new LinkedHashMap<String, ManifestEntry>();
+      } finally {
+        reader.close();
+      }
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void save(Map<String, ManifestEntry> entries) {
+    final File temp = new File(manifest.getPath() + ".tmp");
+    try {
+      final Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+      try {
+        GSON.toJson(entries, TYPE_MANIFEST, writer);
+      } finally {
+        writer.close();
+      }
+      if (manifest.exists() && !manifest.delete() || !temp.renameTo(manifest))
+        throw new IOException("Cannot replace " + manifest);
+    } catch (final IOException e) {
+      temp.delete();
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.dialog.v1.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.dialog.v1.DialogService;
+import com.ibm.watson.developer_cloud.dialog.v1.model.Conversation;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Write-behind cache of the profile variables of the dialog clients. The profile of a client is
+ * read from the service once and then served locally, and the updates are merged and sent with one
+ * {@link DialogService#updateProfile(String, Integer, Map)} per client when the cache is flushed:
+ * every flush interval, before {@link #converse(Conversation, String)}, and on {@link #shutdown()}.
+ * <br>
+ * Since a dialog can change the profile while it answers, {@link #converse(Conversation, String)}
+ * also drops the cached profile of the client, so it is read again at most once per turn. The
+ * profiles of the clients with no pending update are dropped after
+ * {@link Builder#expireAfterAccess(long, TimeUnit)}.
+ *
+ * <pre>
+ * ProfileCache cache = new ProfileCache.Builder(service).build();
+ * cache.updateProfile(dialogId, clientId, Collections.singletonMap("size", "large"));
+ * Conversation reply = cache.converse(conversation, "I'd like a pizza");
+ * String topping = cache.getProfile(dialogId, clientId).get("topping");
+ * cache.shutdown();
+ * </pre>
+ */
+public class ProfileCache {
+  private static final Logger LOG = Logger.getLogger(ProfileCache.class.getName());
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final DialogService service;
+    private long flushInterval = TimeUnit.SECONDS.toMillis(5);
+    private long expireAfterAccess = TimeUnit.MINUTES.toNanos(10);
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the dialog service
+     */
+    public Builder(DialogService service) {
+      Validator.notNull(service, "service cannot be null");
+      this.service = service;
+    }
+
+    /**
+     * Sets how often the pending updates are sent. A flush interval of 0 only sends them before
+     * {@link ProfileCache#converse(Conversation, String)}, on {@link ProfileCache#flush()} and on
+     * {@link ProfileCache#shutdown()}. The default is 5 seconds.
+     *
+     * @param flushInterval the flush interval
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder flushInterval(long flushInterval, TimeUnit unit) {
+      Validator.isTrue(flushInterval >= 0, "flushInterval cannot be negative");
+      this.flushInterval = unit.toMillis(flushInterval);
+      return this;
+    }
+
+    /**
+     * Sets how long the profile of a client is kept after it was last read or updated, once its
+     * updates are sent. The default is 10 minutes.
+     *
+     * @param expireAfterAccess the time the profile is kept
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder expireAfterAccess(long expireAfterAccess, TimeUnit unit) {
+      Validator.isTrue(expireAfterAccess > 0, "expireAfterAccess should be greater than 0");
+      this.expireAfterAccess = unit.toNanos(expireAfterAccess);
+      return this;
+    }
+
+    /**
+     * Builds the profile cache.
+     *
+     * @return the profile cache
+     */
+    public ProfileCache build() {
+      return new ProfileCache(this);
+    }
+  }
+
+  /**
+   * Cached profile and pending updates of a client. The fields are guarded by the entry, and the
+   * flush lock keeps the updates of a client in order.
+   */
+  private static final class Entry {
+    private final String dialogId;
+    private final Integer clientId;
+    private final Object flushLock = new Object();
+    private Map<String, String> values;
+    private Map<String, String> pending = new LinkedHashMap<String, String>();
+    private Map<String, String> flushing;
+    private volatile long accessed = System.nanoTime();
+
+    Entry(String dialogId, Integer clientId) {
+      this.dialogId = dialogId;
+      this.clientId = clientId;
+    }
+  }
+
+  private final DialogService service;
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final ScheduledExecutorService scheduler;
+  private final long expireAfterAccess;
+  private final AtomicLong expired = new AtomicLong(System.nanoTime());
+
+  private ProfileCache(Builder builder) {
+    service = builder.service;
+    expireAfterAccess = builder.expireAfterAccess;
+    if (builder.flushInterval == 0) {
+      scheduler = null;
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        final Thread thread = new Thread(r, "dialog-profile-cache");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        for (final Entry entry : entries.values()) {
+          try {
+            flush(entry);
+          } catch (final RuntimeException e) {
+            LOG.log(Level.WARNING, "Error updating the profile of client " + entry.clientId, e);
+          }
+        }
+        expire();
+      }
+    }, builder.flushInterval, builder.flushInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Gets the profile of a client, reading it from the service the first time. Pending updates,
+   * and the updates being sent, are included.
+   *
+   * @param dialogId the dialog id
+   * @param clientId the client id
+   * @return the profile variables
+   */
+  public Map<String, String> getProfile(String dialogId, Integer clientId) {
+    final Entry entry = entry(dialogId, clientId);
+    synchronized (entry) {
+      if (entry.values == null) {
+        final Map<String, String> values =
+            new LinkedHashMap<String, String>(service.getProfile(dialogId, clientId).execute());
+        // the profile may have been read before the updates being sent were received
+        if (entry.flushing != null)
+          values.putAll(entry.flushing);
+        values.putAll(entry.pending);
+        entry.values = values;
+      }
+      return Collections.unmodifiableMap(new LinkedHashMap<String, String>(entry.values));
+    }
+  }
+
+  /**
+   * Gets some of the profile variables of a client.
+   *
+   * @param dialogId the dialog id
+   * @param clientId the client id
+   * @param names the names of the profile variables
+   * @return the profile variables with a value
+   */
+  public Map<String, String> getProfile(String dialogId, Integer clientId, String... names) {
+    final Map<String, String> profile = getProfile(dialogId, clientId);
+    final Map<String, String> subset = new LinkedHashMap<String, String>();
+    for (final String name : names) {
+      if (profile.containsKey(name))
+        subset.put(name, profile.get(name));
+    }
+    return subset;
+  }
+
+  /**
+   * Updates profile variables of a client. They are sent on the next flush.
+   *
+   * @param dialogId the dialog id
+   * @param clientId the client id
+   * @param profile the profile variables
+   */
+  public void updateProfile(String dialogId, Integer clientId, Map<String, String> profile) {
+    Validator.isTrue(profile != null && !profile.isEmpty(), "profile cannot be null or empty");
+    while (true) {
+      final Entry entry = entry(dialogId, clientId);
+      synchronized (entry) {
+        // the entry may have been removed by converse
+        if (entries.get(key(dialogId, clientId)) != entry)
+          continue;
+        entry.pending.putAll(profile);
+        if (entry.values != null)
+          entry.values.putAll(profile);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Sends the pending updates of the client of a conversation, forgets its cached profile and sends
+   * the message.
+   *
+   * @param conversation the conversation
+   * @param newMessage the new message
+   * @return the conversation with the answer
+   */
+  public Conversation converse(Conversation conversation, String newMessage) {
+    Validator.notNull(conversation, "conversation cannot be null");
+    final Entry entry = entries.get(key(conversation.getDialogId(), conversation.getClientId()));
+    if (entry != null) {
+      flush(entry);
+      synchronized (entry) {
+        entry.values = null;
+        if (entry.pending.isEmpty())
+          entries.remove(key(entry.dialogId, entry.clientId), entry);
+      }
+    }
+    return service.converse(conversation, newMessage).execute();
+  }
+
+  /**
+   * Forgets the cached profile of a client, so it is read again. Pending updates are kept.
+   *
+   * @param dialogId the dialog id
+   * @param clientId the client id
+   */
+  public void invalidate(String dialogId, Integer clientId) {
+    final Entry entry = entries.get(key(dialogId, clientId));
+    if (entry != null) {
+      synchronized (entry) {
+        entry.values = null;
+      }
+    }
+  }
+
+  /**
+   * Sends the pending updates of all the clients.
+   */
+  public void flush() {
+    for (final Entry entry : entries.values()) {
+      flush(entry);
+    }
+  }
+
+  /**
+   * Gets the number of clients kept by the cache.
+   *
+   * @return the number of clients
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Stops the periodic flush and sends the pending updates.
+   */
+  public void shutdown() {
+    if (scheduler != null)
+      scheduler.shutdown();
+    flush();
+  }
+
+  private void flush(Entry entry) {
+    synchronized (entry.flushLock) {
+      final Map<String, String> updates;
+      synchronized (entry) {
+        if (entry.pending.isEmpty())
+          return;
+        updates = entry.pending;
+        entry.pending = new LinkedHashMap<String, String>();
+        entry.flushing = updates;
+      }
+      try {
+        service.updateProfile(entry.dialogId, entry.clientId, updates).execute();
+      } catch (final RuntimeException e) {
+        synchronized (entry) {
+          // keep the failed updates, unless they were updated again
+          updates.putAll(entry.pending);
+          entry.pending = updates;
+          entry.flushing = null;
+        }
+        throw e;
+      }
+      synchronized (entry) {
+        entry.flushing = null;
+      }
+    }
+  }
+
+  /**
+   * Drops the clients with no pending update that were not accessed for
+   * {@link Builder#expireAfterAccess(long, TimeUnit)}, at most once per that time.
+   */
+  private void expire() {
+    final long now = System.nanoTime();
+    final long last = expired.get();
+    if (now - last < expireAfterAccess || !expired.compareAndSet(last, now))
+      return;
+    for (final Entry entry : entries.values()) {
+      synchronized (entry) {
+        if (now - entry.accessed > expireAfterAccess && entry.pending.isEmpty() && entry.flushing == null)
+          entries.remove(key(entry.dialogId, entry.clientId), entry);
+      }
+    }
+  }
+
+  private Entry entry(String dialogId, Integer clientId) {
+    Validator.isTrue(dialogId != null && !dialogId.isEmpty(), "dialogId cannot be null or empty");
+    Validator.notNull(clientId, "clientId cannot be null");
+    expire();
+    final String key = key(dialogId, clientId);
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      final Entry created = new Entry(dialogId, clientId);
+      entry = entries.putIfAbsent(key, created);
+      if (entry == null)
+        entry = created;
+    }
+    entry.accessed = System.nanoTime();
+    return entry;
+  }
+
+  private static String key(String dialogId, Integer clientId) {
+    return dialogId + '/' + clientId;
+  }
+}
@@ -0,0 +1,4 @@
+/**
+ * Utility classes to export the conversations of a dialog
+ */
+package com.ibm.watson.developer_cloud.dialog.v1.util;
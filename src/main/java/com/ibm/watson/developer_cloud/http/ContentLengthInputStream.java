@@ -0,0 +1,45 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.http;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} of a response body, with the length of the body when it is known, e.g. from
+ * the Content-Length of the response.
+ */
+public class ContentLengthInputStream extends FilterInputStream {
+  private final long contentLength;
+
+  /**
+   * Instantiates a new content length input stream.
+   *
+   * @param in the input stream
+   * @param contentLength the length of the stream in bytes, or -1 if unknown
+   */
+  public ContentLengthInputStream(InputStream in, long contentLength) {
+    super(in);
+    this.contentLength = contentLength;
+  }
+
+  /**
+   * Gets the length of the stream.
+   *
+   * @return the length of the stream in bytes, or -1 if unknown
+   */
+  public long getContentLength() {
+    return contentLength;
+  }
+}
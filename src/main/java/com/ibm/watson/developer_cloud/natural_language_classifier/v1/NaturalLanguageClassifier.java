@@ -14,23 +14,29 @@
 package com.ibm.watson.developer_cloud.natural_language_classifier.v1;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.gson.JsonObject;
 import com.ibm.watson.developer_cloud.http.HttpHeaders;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
+import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
 import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classification;
 import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classifier;
 import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classifiers;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.util.ClassificationCache;
 import com.ibm.watson.developer_cloud.service.WatsonService;
 import com.ibm.watson.developer_cloud.util.ResponseConverterUtils;
 import com.ibm.watson.developer_cloud.util.Validator;
 
+import jersey.repackaged.jsr166e.CompletableFuture;
 import okhttp3.Headers;
 import okhttp3.MultipartBody;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
 /**
  * The IBM Watson Natural Language Classifier service applies deep learning techniques to make
@@ -57,6 +63,8 @@ public class NaturalLanguageClassifier extends WatsonService {
   private static final String PATH_CLASSIFIER = "/v1/classifiers/%s";
   private static final String URL = "https://gateway.watsonplatform.net/natural-language-classifier/api";
 
+  private ClassificationCache classificationCache;
+
   /**
    * Instantiates a new Natural Language Classifier service.
    */
@@ -75,6 +83,19 @@ public class NaturalLanguageClassifier extends WatsonService {
     setUsernameAndPassword(username, password);
   }
 
+  /**
+   * Sets the cache for classifications. When it is set, {@link #classify(String, String)} returns
+   * the cached classification for the same classifier and normalized text without calling the
+   * service, and the entries of a classifier are removed when it is deleted or when its creation date
+   * or status changes in the responses of {@link #getClassifier(String)} and
+   * {@link #getClassifiers()}.
+   *
+   * @param classificationCache the classification cache, or null to disable caching
+   */
+  public void setClassificationCache(ClassificationCache classificationCache) {
+    this.classificationCache = classificationCache;
+  }
+
   /**
    * Returns classification information for a classifier on a phrase.
    * 
@@ -90,7 +111,82 @@ public class NaturalLanguageClassifier extends WatsonService {
     contentJson.addProperty(TEXT, text);
     final String path = String.format(PATH_CLASSIFY, classifierId);
     final Request request = RequestBuilder.post(path).bodyJson(contentJson).build();
-    return createServiceCall(request, ResponseConverterUtils.getObject(Classification.class));
+
+    final ClassificationCache cache = classificationCache;
+    if (cache == null) {
+      return createServiceCall(request, ResponseConverterUtils.getObject(Classification.class));
+    }
+
+    final AtomicLong started = new AtomicLong();
+    final AtomicLong generation = new AtomicLong();
+    final ResponseConverter<Classification> converter = ResponseConverterUtils.getObject(Classification.class);
+    final ServiceCall<Classification> call = createServiceCall(request, new ResponseConverter<Classification>() {
+      @Override
+      public Classification convert(Response response) {
+        final Classification classification = converter.convert(response);
+        cache.put(classifierId, text, classification, System.nanoTime() - started.get(), generation.get());
+        return classification;
+      }
+    });
+
+    return new ServiceCall<Classification>() {
+      @Override
+      public Classification execute() {
+        final Classification classification = cache.get(classifierId, text);
+        if (classification != null) {
+          return classification;
+        }
+        generation.set(cache.getGeneration(classifierId));
+        started.set(System.nanoTime());
+        return call.execute();
+      }
+
+      @Override
+      public void enqueue(ServiceCallback<Classification> callback) {
+        final Classification classification = cache.get(classifierId, text);
+        if (classification != null) {
+          callback.onResponse(classification);
+        } else {
+          generation.set(cache.getGeneration(classifierId));
+          started.set(System.nanoTime());
+          call.enqueue(callback);
+        }
+      }
+
+      @Override
+      public CompletableFuture<Classification> rx() {
+        final Classification classification = cache.get(classifierId, text);
+        if (classification == null) {
+          generation.set(cache.getGeneration(classifierId));
+          started.set(System.nanoTime());
+          return call.rx();
+        }
+        final CompletableFuture<Classification> future = new CompletableFuture<Classification>();
+        future.complete(classification);
+        return future;
+      }
+    };
+  }
+
+  /**
+   * Wraps a converter so the classifiers it returns update the classification cache.
+   *
+   * @param converter the converter
+   * @return the converter
+   */
+  private ResponseConverter<Classifier> updating(final ResponseConverter<Classifier> converter) {
+    final ClassificationCache cache = classificationCache;
+    if (cache == null) {
+      return converter;
+    }
+    return new ResponseConverter<Classifier>() {
+      @Override
+      public Classifier convert(Response response) {
+        final Classifier classifier = converter.convert(response);
+        cache.update(classifier);
+        return classifier;
+      }
+    };
   }
 
   /**
@@ -123,7 +219,7 @@ public class NaturalLanguageClassifier extends WatsonService {
         .addFormDataPart(TRAINING_METADATA, contentJson.toString()).build();
 
     final Request request = RequestBuilder.post(PATH_CLASSIFIERS).body(body).build();
-    return createServiceCall(request, ResponseConverterUtils.getObject(Classifier.class));
+    return createServiceCall(request, updating(ResponseConverterUtils.getObject(Classifier.class)));
   }
 
   /**
@@ -133,11 +229,22 @@ public class NaturalLanguageClassifier extends WatsonService {
    * @return the service call
    * @see Classifier
    */
-  public ServiceCall<Void> deleteClassifier(String classifierId) {
+  public ServiceCall<Void> deleteClassifier(final String classifierId) {
     Validator.isTrue(classifierId != null && !classifierId.isEmpty(), "classifierId cannot be null or empty");
 
     final Request request = RequestBuilder.delete(String.format(PATH_CLASSIFIER, classifierId)).build();
-    return createServiceCall(request, ResponseConverterUtils.getVoid());
+    final ClassificationCache cache = classificationCache;
+    if (cache == null) {
+      return createServiceCall(request, ResponseConverterUtils.getVoid());
+    }
+    final ResponseConverter<Void> converter = ResponseConverterUtils.getVoid();
+    return createServiceCall(request, new ResponseConverter<Void>() {
+      @Override
+      public Void convert(Response response) {
+        cache.invalidate(classifierId);
+        return converter.convert(response);
+      }
+    });
   }
 
   /**
@@ -151,7 +258,7 @@ public class NaturalLanguageClassifier extends WatsonService {
     Validator.isTrue(classifierId != null && !classifierId.isEmpty(), "classifierId cannot be null or empty");
 
     final Request request = RequestBuilder.get(String.format(PATH_CLASSIFIER, classifierId)).build();
-    return createServiceCall(request, ResponseConverterUtils.getObject(Classifier.class));
+    return createServiceCall(request, updating(ResponseConverterUtils.getObject(Classifier.class)));
   }
 
   /**
@@ -162,7 +269,23 @@ public class NaturalLanguageClassifier extends WatsonService {
    */
   public ServiceCall<Classifiers> getClassifiers() {
     final Request request = RequestBuilder.get(PATH_CLASSIFIERS).build();
-    return createServiceCall(request, ResponseConverterUtils.getObject(Classifiers.class));
+    final ClassificationCache cache = classificationCache;
+    if (cache == null) {
+      return createServiceCall(request, ResponseConverterUtils.getObject(Classifiers.class));
+    }
+    final ResponseConverter<Classifiers> converter = ResponseConverterUtils.getObject(Classifiers.class);
+    return createServiceCall(request, new ResponseConverter<Classifiers>() {
+      @Override
+      public Classifiers convert(Response response) {
+        final Classifiers classifiers = converter.convert(response);
+        if (classifiers != null && classifiers.getClassifiers() != null) {
+          for (final Classifier classifier : classifiers.getClassifiers()) {
+            cache.update(classifier);
+          }
+        }
+        return classifiers;
+      }
+    });
 
   }
 
@@ -15,9 +15,11 @@ package com.ibm.watson.developer_cloud.natural_language_classifier.v1.model;
 
 import java.util.List;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import com.ibm.watson.developer_cloud.natural_language_classifier.v1.NaturalLanguageClassifier;
 import com.ibm.watson.developer_cloud.service.model.GenericModel;
+import com.ibm.watson.developer_cloud.util.InternedStringTypeAdapter;
 
 /**
  * Classification class used by the {@link NaturalLanguageClassifier} service.
@@ -30,6 +32,7 @@ public class Classification extends GenericModel {
   private String id;
   private String text;
   @SerializedName("top_class")
+  @JsonAdapter(InternedStringTypeAdapter.class)
   private String topClass;
   private String url;
 
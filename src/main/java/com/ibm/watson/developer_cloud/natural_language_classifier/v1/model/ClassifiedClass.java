@@ -13,9 +13,11 @@
  */
 package com.ibm.watson.developer_cloud.natural_language_classifier.v1.model;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import com.ibm.watson.developer_cloud.natural_language_classifier.v1.NaturalLanguageClassifier;
 import com.ibm.watson.developer_cloud.service.model.GenericModel;
+import com.ibm.watson.developer_cloud.util.InternedStringTypeAdapter;
 
 /**
  * Classified class used by the {@link NaturalLanguageClassifier} service.
@@ -26,6 +28,7 @@ public class ClassifiedClass extends GenericModel {
   private Double confidence;
 
   @SerializedName("class_name")
+  @JsonAdapter(InternedStringTypeAdapter.class)
   private String name;
 
   /**
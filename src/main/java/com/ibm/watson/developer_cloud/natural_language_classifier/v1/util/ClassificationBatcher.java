@@ -0,0 +1,468 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.natural_language_classifier.v1.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.NaturalLanguageClassifier;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classification;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+
+/**
+ * Gathers the texts classified with the same classifier for a short time, and sends them with a
+ * bounded number of requests at a time, so a high rate of short classifications does not pile up
+ * in the HTTP client. Texts repeated within a batch are classified once, and every caller gets its
+ * own future, completed as soon as the classification of its text is received.<br>
+ * The service classifies one text per request, so a batch is sent as one request per distinct
+ * text, and the linger only saves the requests of repeated texts. The throughput is bounded by
+ * {@link Builder#maxConcurrency(int)} divided by the round trip time, see
+ * {@link Builder#targetRate(int, long, TimeUnit)}. The requests are sent from the batcher's own
+ * threads, so they are not limited by the requests per host of the HTTP client.<br>
+ * The linger adapts to the load: it grows up to {@link Builder#maxLinger(long, TimeUnit)} while
+ * batches gather several texts or requests are waiting for a free slot, and shrinks when texts
+ * arrive one at a time, so a lone text is not delayed.<br>
+ * At most {@link Builder#maxQueued(int)} distinct texts wait to be sent. Texts classified beyond
+ * that are rejected, so callers see the overload instead of an ever growing latency.
+ */
+public class ClassificationBatcher {
+  private static final long MIN_LINGER = TimeUnit.MICROSECONDS.toNanos(100);
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final NaturalLanguageClassifier service;
+    private long maxLinger = TimeUnit.MILLISECONDS.toNanos(5);
+    private int maxBatchSize = 100;
+    private int maxConcurrency = 5;
+    private int maxQueued = 10000;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the natural language classifier service
+     */
+    public Builder(NaturalLanguageClassifier service) {
+      Validator.notNull(service, "service cannot be null");
+      this.service = service;
+    }
+
+    /**
+     * Sets the longest time the texts of a classifier are gathered before they are sent. The default
+     * is 5 milliseconds.
+     *
+     * @param maxLinger the max linger
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder maxLinger(long maxLinger, TimeUnit unit) {
+      Validator.isTrue(maxLinger >= 0, "maxLinger cannot be negative");
+      this.maxLinger = unit.toNanos(maxLinger);
+      return this;
+    }
+
+    /**
+     * Sets the number of distinct texts that sends a batch without waiting for the linger. The
+     * default is 100.
+     *
+     * @param maxBatchSize the max batch size
+     * @return the builder
+     */
+    public Builder maxBatchSize(int maxBatchSize) {
+      Validator.isTrue(maxBatchSize > 0, "maxBatchSize should be greater than 0");
+      this.maxBatchSize = maxBatchSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time. The default is 5.
+     *
+     * @param maxConcurrency the max concurrency
+     * @return the builder
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      Validator.isTrue(maxConcurrency > 0, "maxConcurrency should be greater than 0");
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time from the rate of texts to sustain
+     * and the round trip time of a request. For example, 3,000 texts per second with a round trip of
+     * 100 milliseconds need 300 requests at a time.
+     *
+     * @param textsPerSecond the distinct texts classified per second
+     * @param roundTrip the round trip time of a classify request
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder targetRate(int textsPerSecond, long roundTrip, TimeUnit unit) {
+      Validator.isTrue(textsPerSecond > 0, "textsPerSecond should be greater than 0");
+      Validator.isTrue(roundTrip > 0, "roundTrip should be greater than 0");
+      final double concurrency = textsPerSecond * (unit.toNanos(roundTrip) / (double) TimeUnit.SECONDS.toNanos(1));
+      return maxConcurrency((int) Math.min(Integer.MAX_VALUE, Math.ceil(concurrency)));
+    }
+
+    /**
+     * Sets the maximum number of distinct texts waiting to be sent. The texts classified while it is
+     * reached are rejected. The default is 10,000.
+     *
+     * @param maxQueued the max queued texts
+     * @return the builder
+     */
+    public Builder maxQueued(int maxQueued) {
+      Validator.isTrue(maxQueued > 0, "maxQueued should be greater than 0");
+      this.maxQueued = maxQueued;
+      return this;
+    }
+
+    /**
+     * Builds the batcher.
+     *
+     * @return the classification batcher
+     */
+    public ClassificationBatcher build() {
+      return new ClassificationBatcher(this);
+    }
+  }
+
+  /**
+   * Caller waiting for the classification of a text.
+   */
+  private static final class Waiter {
+    private final CompletableFuture<Classification> future = new CompletableFuture<Classification>();
+    private final long submitted = System.nanoTime();
+  }
+
+  /**
+   * Distinct text of a batch.
+   */
+  private static final class Pending {
+    private final String classifierId;
+    private final String text;
+    private final List<Waiter> waiters = new ArrayList<Waiter>(1);
+
+    Pending(String classifierId, String text) {
+      this.classifierId = classifierId;
+      this.text = text;
+    }
+  }
+
+  /**
+   * Texts of a classifier that were not sent yet.
+   */
+  private static final class Batch {
+    private final String classifierId;
+    private final Map<String, Pending> texts = new LinkedHashMap<String, Pending>();
+    private int size;
+
+    Batch(String classifierId) {
+      this.classifierId = classifierId;
+    }
+  }
+
+  private final NaturalLanguageClassifier service;
+  private final long maxLinger;
+  private final int maxBatchSize;
+  private final int maxConcurrency;
+  private final int maxQueued;
+  private final ScheduledExecutorService scheduler;
+  private final ThreadPoolExecutor executor;
+  private final Map<String, Batch> batches = new HashMap<String, Batch>();
+  private final ArrayDeque<Pending> queue = new ArrayDeque<Pending>();
+  private int waiting;
+  private int inFlight;
+  private long linger;
+  private boolean shutdown;
+
+  private final AtomicLong batchCount = new AtomicLong();
+  private final AtomicLong sentTextCount = new AtomicLong();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong completedCount = new AtomicLong();
+  private final AtomicLong totalLatency = new AtomicLong();
+
+  private ClassificationBatcher(Builder builder) {
+    service = builder.service;
+    maxLinger = builder.maxLinger;
+    maxBatchSize = builder.maxBatchSize;
+    maxConcurrency = builder.maxConcurrency;
+    maxQueued = builder.maxQueued;
+    linger = maxLinger / 2;
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "classification-batcher");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    // never more tasks than maxConcurrency, so the work queue stays empty
+    executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "classification-batcher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Classifies a text.
+   *
+   * @param classifierId the classifier id
+   * @param text the text
+   * @return the classification, shared by the callers that classified the same text in a batch, or
+   *         completed with a {@link RejectedExecutionException} if the batcher was shut down or too
+   *         many texts are waiting to be sent
+   */
+  public CompletableFuture<Classification> classify(String classifierId, String text) {
+    Validator.isTrue(classifierId != null && !classifierId.isEmpty(), "classifierId cannot be null or empty");
+    Validator.isTrue(text != null && !text.isEmpty(), "text cannot be null or empty");
+    final Waiter waiter = new Waiter();
+
+    Batch full = null;
+    synchronized (this) {
+      if (shutdown) {
+        waiter.future.completeExceptionally(new RejectedExecutionException("The batcher has been shut down"));
+        return waiter.future;
+      }
+      Batch batch = batches.get(classifierId);
+      Pending pending = batch != null ? batch.texts.get(text) : null;
+      if (pending == null && waiting >= maxQueued) {
+        waiter.future.completeExceptionally(new RejectedExecutionException("Too many texts are waiting to be sent"));
+        return waiter.future;
+      }
+      if (batch == null) {
+        batch = new Batch(classifierId);
+        final Batch scheduled = batch;
+        scheduler.schedule(new Runnable() {
+          @Override
+          public void run() {
+            send(scheduled);
+          }
+        }, linger, TimeUnit.NANOSECONDS);
+        // only registered once its timer is set, so it cannot be left without one
+        batches.put(classifierId, batch);
+      }
+      if (pending == null) {
+        pending = new Pending(classifierId, text);
+        batch.texts.put(text, pending);
+        waiting++;
+      }
+      pending.waiters.add(waiter);
+      batch.size++;
+      if (batch.texts.size() >= maxBatchSize)
+        full = batch;
+    }
+    if (full != null)
+      send(full);
+    return waiter.future;
+  }
+
+  /**
+   * Sends the texts that are waiting, without waiting for the linger.
+   */
+  public void flush() {
+    final List<Batch> pending;
+    synchronized (this) {
+      pending = new ArrayList<Batch>(batches.values());
+    }
+    for (final Batch batch : pending) {
+      send(batch);
+    }
+  }
+
+  /**
+   * Sends the texts that are waiting and stops the linger timer. Texts classified afterwards are
+   * rejected, and the threads sending the requests stop once the texts that were waiting are
+   * classified.
+   */
+  public void shutdown() {
+    synchronized (this) {
+      shutdown = true;
+    }
+    flush();
+    scheduler.shutdown();
+    synchronized (this) {
+      if (batches.isEmpty() && queue.isEmpty() && inFlight == 0)
+        executor.shutdown();
+    }
+  }
+
+  /**
+   * Gets the current linger.
+   *
+   * @param unit the time unit
+   * @return the linger
+   */
+  public synchronized long getLinger(TimeUnit unit) {
+    return unit.convert(linger, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Gets the number of batches sent.
+   *
+   * @return the batch count
+   */
+  public long getBatchCount() {
+    return batchCount.get();
+  }
+
+  /**
+   * Gets the average number of texts per batch, including the repeated ones.
+   *
+   * @return the average batch size
+   */
+  public double getAverageBatchSize() {
+    final long batches = batchCount.get();
+    return batches == 0 ? 0 : (double) sentTextCount.get() / batches;
+  }
+
+  /**
+   * Gets the number of classify requests sent to the service.
+   *
+   * @return the request count
+   */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /**
+   * Gets the average time from {@link #classify(String, String)} to the classification.
+   *
+   * @param unit the time unit
+   * @return the average latency, or 0 if no classification completed
+   */
+  public long getAverageLatency(TimeUnit unit) {
+    final long completed = completedCount.get();
+    return completed == 0 ? 0 : unit.convert(totalLatency.get() / completed, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Gets the number of distinct texts waiting to be sent, in batches or for a free slot.
+   *
+   * @return the waiting texts
+   */
+  public synchronized int getWaiting() {
+    return waiting;
+  }
+
+  /**
+   * Gets the number of requests waiting for a free slot.
+   *
+   * @return the queued requests
+   */
+  public synchronized int getQueued() {
+    return queue.size();
+  }
+
+  /**
+   * Gets the number of requests being sent.
+   *
+   * @return the requests in flight
+   */
+  public synchronized int getInFlight() {
+    return inFlight;
+  }
+
+  private void send(Batch batch) {
+    synchronized (this) {
+      if (batches.get(batch.classifierId) != batch)
+        return;
+      batches.remove(batch.classifierId);
+      batchCount.incrementAndGet();
+      sentTextCount.addAndGet(batch.size);
+
+      // gather for longer while the batches are busy, and send at once when texts come alone
+      if (batch.size > 1 || !queue.isEmpty()) {
+        linger = Math.min(maxLinger, Math.max(MIN_LINGER, linger * 2));
+      } else {
+        linger = linger / 2 < MIN_LINGER ? 0 : linger / 2;
+      }
+      queue.addAll(batch.texts.values());
+    }
+    dispatch();
+  }
+
+  private void dispatch() {
+    while (true) {
+      final Pending pending;
+      synchronized (this) {
+        if (inFlight >= maxConcurrency || queue.isEmpty())
+          return;
+        pending = queue.poll();
+        waiting--;
+        inFlight++;
+      }
+      requestCount.incrementAndGet();
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            final Classification classification;
+            try {
+              classification = service.classify(pending.classifierId, pending.text).execute();
+            } catch (final RuntimeException e) {
+              complete(pending, null, e);
+              return;
+            }
+            complete(pending, classification, null);
+          }
+        });
+      } catch (final RejectedExecutionException e) {
+        complete(pending, null, e);
+      }
+    }
+  }
+
+  private void complete(Pending pending, Classification classification, Exception error) {
+    synchronized (this) {
+      inFlight--;
+      if (shutdown && batches.isEmpty() && queue.isEmpty() && inFlight == 0)
+        executor.shutdown();
+    }
+    dispatch();
+    final long now = System.nanoTime();
+    for (final Waiter waiter : pending.waiters) {
+      totalLatency.addAndGet(now - waiter.submitted);
+      completedCount.incrementAndGet();
+      if (error != null) {
+        waiter.future.completeExceptionally(error);
+      } else {
+        waiter.future.complete(classification);
+      }
+    }
+  }
+}
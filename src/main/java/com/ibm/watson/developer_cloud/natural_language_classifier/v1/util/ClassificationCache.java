@@ -0,0 +1,485 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.natural_language_classifier.v1.util;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.NaturalLanguageClassifier;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classification;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.ClassifiedClass;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classifier;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Memory cache for {@link NaturalLanguageClassifier#classify(String, String)}. Classifications are
+ * keyed by classifier and normalized text, so texts that only differ by case, spacing or punctuation
+ * share an entry.<br>
+ * The cache is bounded by number of entries and by an estimate of their size in bytes. New entries
+ * go to a small LRU window; when they leave it, they only replace the least recently used entry of
+ * the main area if they were requested more often, as counted by a frequency sketch that is halved
+ * periodically (W-TinyLFU). Texts seen once do not push out the frequent ones.<br>
+ * The entries of a classifier are dropped when its creation date or status changes in the responses
+ * of {@link NaturalLanguageClassifier#getClassifier(String)},
+ * {@link NaturalLanguageClassifier#getClassifiers()} or {@link #update(Classifier)}, and when it is
+ * deleted. See {@link NaturalLanguageClassifier#setClassificationCache(ClassificationCache)}.
+ */
+public class ClassificationCache {
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final Pattern PUNCTUATION = Pattern.compile("\\p{P}+");
+  private static final int ENTRY_OVERHEAD = 160;
+  private static final int CLASS_OVERHEAD = 64;
+
+  /**
+   * Text normalization applied to the cache keys.
+   */
+  public enum Normalization {
+
+    /** Converts the text to lower case. */
+    CASE,
+
+    /** Trims the text and collapses whitespace. */
+    WHITESPACE,
+
+    /** Replaces punctuation with whitespace. */
+    PUNCTUATION
+  }
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private int maxEntries = 10000;
+    private long maxBytes = 16 * 1024 * 1024;
+    private Set<Normalization> normalizations = EnumSet.of(Normalization.CASE, Normalization.WHITESPACE);
+
+    /**
+     * Sets the maximum number of classifications. The default is 10000.
+     *
+     * @param maxEntries the max entries
+     * @return the builder
+     */
+    public Builder maxEntries(int maxEntries) {
+      Validator.isTrue(maxEntries > 1, "maxEntries should be greater than 1");
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Sets the maximum estimated size of the classifications in bytes. The default is 16 MB.
+     *
+     * @param maxBytes the max bytes
+     * @return the builder
+     */
+    public Builder maxBytes(long maxBytes) {
+      Validator.isTrue(maxBytes > 0, "maxBytes should be greater than 0");
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /**
+     * Sets the normalizations applied to the texts. The default is case and whitespace.
+     *
+     * @param normalizations the normalizations
+     * @return the builder
+     */
+    public Builder normalize(Normalization... normalizations) {
+      this.normalizations = EnumSet.noneOf(Normalization.class);
+      for (final Normalization normalization : normalizations) {
+        this.normalizations.add(normalization);
+      }
+      return this;
+    }
+
+    /**
+     * Builds the cache.
+     *
+     * @return the classification cache
+     */
+    public ClassificationCache build() {
+      return new ClassificationCache(this);
+    }
+  }
+
+  /**
+   * Cached classification, with the generation of its classifier when it was added.
+   */
+  private static final class Entry {
+    private final String key;
+    private final Classification classification;
+    private final long generation;
+    private final int weight;
+
+    Entry(String key, Classification classification, long generation) {
+      this.key = key;
+      this.classification = classification;
+      this.generation = generation;
+      this.weight = weigh(key, classification);
+    }
+  }
+
+  /**
+   * Last known state of a classifier.
+   */
+  private static final class ClassifierState {
+    private Date created;
+    private Classifier.Status status;
+    private long generation;
+  }
+
+  /**
+   * Count-min sketch of the key frequencies, halved after a sample of additions so old popularity
+   * fades.
+   */
+  private static final class FrequencySketch {
+    private static final int[] SEEDS = { 0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F };
+    private static final int MAX_COUNT = 15;
+
+    private final int[][] rows;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int maxEntries) {
+      final int width = Integer.highestOneBit(Math.max(16, maxEntries * 2) - 1) << 1;
+      rows = new int[SEEDS.length][width];
+      mask = width - 1;
+      sampleSize = 10 * maxEntries;
+    }
+
+    private int index(int hash, int row) {
+      final int h = hash * SEEDS[row];
+      return (h ^ (h >>> 16)) & mask;
+    }
+
+    void increment(String key) {
+      final int hash = key.hashCode();
+      for (int row = 0; row < rows.length; row++) {
+        final int index = index(hash, row);
+        if (rows[row][index] < MAX_COUNT)
+          rows[row][index]++;
+      }
+      if (++additions >= sampleSize) {
+        for (final int[] counters : rows) {
+          for (int i = 0; i < counters.length; i++) {
+            counters[i] >>>= 1;
+          }
+        }
+        additions /= 2;
+      }
+    }
+
+    int frequency(String key) {
+      final int hash = key.hashCode();
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < rows.length; row++) {
+        frequency = Math.min(frequency, rows[row][index(hash, row)]);
+      }
+      return frequency;
+    }
+  }
+
+  private final Set<Normalization> normalizations;
+  private final long maxBytes;
+  private final int maxWindow;
+  private final int maxMain;
+  private final LinkedHashMap<String, Entry> window = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final LinkedHashMap<String, Entry> main = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final Map<String, ClassifierState> classifiers = new HashMap<String, ClassifierState>();
+  private final FrequencySketch sketch;
+  private long bytes;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong loadTime = new AtomicLong();
+
+  private ClassificationCache(Builder builder) {
+    normalizations = builder.normalizations;
+    maxBytes = builder.maxBytes;
+    maxWindow = Math.max(1, builder.maxEntries / 100);
+    maxMain = builder.maxEntries - maxWindow;
+    sketch = new FrequencySketch(builder.maxEntries);
+  }
+
+  /**
+   * Gets a cached classification.
+   *
+   * @param classifierId the classifier id
+   * @param text the text
+   * @return a copy of the classification, with the given text, or null if it is not cached
+   */
+  public synchronized Classification get(String classifierId, String text) {
+    final String key = key(classifierId, text);
+    sketch.increment(key);
+    Entry entry = window.get(key);
+    if (entry == null)
+      entry = main.get(key);
+    if (entry != null && entry.generation != getGeneration(classifierId)) {
+      remove(key);
+      entry = null;
+    }
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return copy(entry.classification, text);
+  }
+
+  /**
+   * Adds a classification returned by the service.
+   *
+   * @param classifierId the classifier id
+   * @param text the text
+   * @param classification the classification, copied into the cache
+   * @param latency the time the service took to classify the text, in nanoseconds
+   * @param generation the generation of the classifier when the text was sent, from
+   *        {@link #getGeneration(String)}. The classification is dropped if the classifier changed
+   *        since.
+   */
+  public synchronized void put(String classifierId, String text, Classification classification, long latency,
+      long generation) {
+    Validator.notNull(classification, "classification cannot be null");
+    loads.incrementAndGet();
+    loadTime.addAndGet(latency);
+    if (generation != getGeneration(classifierId))
+      return;
+
+    final String key = key(classifierId, text);
+    remove(key);
+    final Entry entry = new Entry(key, copy(classification, text), generation);
+    if (entry.weight > maxBytes)
+      return;
+    window.put(key, entry);
+    bytes += entry.weight;
+
+    while (window.size() > maxWindow) {
+      final Iterator<Entry> eldest = window.values().iterator();
+      final Entry candidate = eldest.next();
+      eldest.remove();
+      admit(candidate);
+    }
+    while (bytes > maxBytes) {
+      final Iterator<Entry> eldest = (main.isEmpty() ? window : main).values().iterator();
+      bytes -= eldest.next().weight;
+      eldest.remove();
+    }
+  }
+
+  /**
+   * Returns the generation of a classifier, which changes whenever its cached classifications are
+   * dropped. Read it before sending a text so a classification that raced with the change is not
+   * cached.
+   *
+   * @param classifierId the classifier id
+   * @return the generation
+   */
+  public synchronized long getGeneration(String classifierId) {
+    final ClassifierState state = classifiers.get(classifierId);
+    return state != null ? state.generation : 0;
+  }
+
+  /**
+   * Updates the known state of a classifier, dropping its classifications if it was created again
+   * or its status changed.
+   *
+   * @param classifier the classifier
+   */
+  public synchronized void update(Classifier classifier) {
+    if (classifier == null || classifier.getId() == null)
+      return;
+    ClassifierState state = classifiers.get(classifier.getId());
+    if (state == null) {
+      state = new ClassifierState();
+      classifiers.put(classifier.getId(), state);
+    }
+    boolean changed = false;
+    if (classifier.getCreated() != null) {
+      changed |= state.created != null && !state.created.equals(classifier.getCreated());
+      state.created = classifier.getCreated();
+    }
+    if (classifier.getStatus() != null) {
+      changed |= state.status != null && state.status != classifier.getStatus();
+      state.status = classifier.getStatus();
+    }
+    if (changed)
+      state.generation++;
+  }
+
+  /**
+   * Drops the classifications of a classifier.
+   *
+   * @param classifierId the classifier id
+   */
+  public synchronized void invalidate(String classifierId) {
+    final ClassifierState state = classifiers.remove(classifierId);
+    final ClassifierState invalidated = new ClassifierState();
+    invalidated.generation = state != null ? state.generation + 1 : 1;
+    classifiers.put(classifierId, invalidated);
+  }
+
+  /**
+   * Gets the number of cached classifications.
+   *
+   * @return the size
+   */
+  public synchronized int size() {
+    return window.size() + main.size();
+  }
+
+  /**
+   * Gets the estimated size of the cached classifications.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Gets the number of classifications served from the cache.
+   *
+   * @return the hits
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of classifications not found in the cache.
+   *
+   * @return the misses
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Gets the ratio of the lookups served from the cache.
+   *
+   * @return the hit ratio, between 0 and 1
+   */
+  public double getHitRatio() {
+    final long hits = this.hits.get();
+    final long total = hits + misses.get();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /**
+   * Gets the time saved by the hits, estimated with the average time the service took to classify a
+   * text.
+   *
+   * @param unit the time unit
+   * @return the saved latency
+   */
+  public long getSavedLatency(TimeUnit unit) {
+    final long loads = this.loads.get();
+    return loads == 0 ? 0 : unit.convert(hits.get() * (loadTime.get() / loads), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Normalizes a text for the cache key.
+   *
+   * @param text the text
+   * @return the normalized text
+   */
+  String normalize(String text) {
+    String normalized = text;
+    if (normalizations.contains(Normalization.CASE))
+      normalized = normalized.toLowerCase(Locale.ROOT);
+    if (normalizations.contains(Normalization.PUNCTUATION))
+      normalized = PUNCTUATION.matcher(normalized).replaceAll(" ");
+    if (normalizations.contains(Normalization.WHITESPACE) || normalizations.contains(Normalization.PUNCTUATION))
+      normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    return normalized;
+  }
+
+  private String key(String classifierId, String text) {
+    Validator.notNull(classifierId, "classifierId cannot be null");
+    Validator.notNull(text, "text cannot be null");
+    return classifierId + '\u0000' + normalize(text);
+  }
+
+  private void admit(Entry candidate) {
+    if (main.size() < maxMain) {
+      main.put(candidate.key, candidate);
+      return;
+    }
+    final Iterator<Entry> eldest = main.values().iterator();
+    final Entry victim = eldest.next();
+    if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+      eldest.remove();
+      bytes -= victim.weight;
+      main.put(candidate.key, candidate);
+    } else {
+      bytes -= candidate.weight;
+    }
+  }
+
+  private void remove(String key) {
+    Entry entry = window.remove(key);
+    if (entry == null)
+      entry = main.remove(key);
+    if (entry != null)
+      bytes -= entry.weight;
+  }
+
+  private static int weigh(String key, Classification classification) {
+    int weight = ENTRY_OVERHEAD + 2 * key.length() + 2 * length(classification.getTopClass())
+        + 2 * length(classification.getId()) + 2 * length(classification.getUrl());
+    final List<ClassifiedClass> classes = classification.getClasses();
+    if (classes != null) {
+      for (final ClassifiedClass classifiedClass : classes) {
+        weight += CLASS_OVERHEAD + 2 * length(classifiedClass.getName());
+      }
+    }
+    return weight;
+  }
+
+  private static int length(String value) {
+    return value != null ? value.length() : 0;
+  }
+
+  private static Classification copy(Classification cached, String text) {
+    final Classification classification = new Classification();
+    classification.setId(cached.getId());
+    classification.setUrl(cached.getUrl());
+    classification.setTopClass(cached.getTopClass());
+    final List<ClassifiedClass> classes = cached.getClasses();
+    if (classes != null) {
+      final List<ClassifiedClass> copies = new ArrayList<ClassifiedClass>(classes.size());
+      for (final ClassifiedClass classifiedClass : classes) {
+        final ClassifiedClass copy = new ClassifiedClass();
+        copy.setName(classifiedClass.getName());
+        copy.setConfidence(classifiedClass.getConfidence());
+        copies.add(copy);
+      }
+      classification.setClasses(copies);
+    }
+    classification.setText(text);
+    return classification;
+  }
+}
@@ -0,0 +1,4 @@
+/**
+ * Utility classes to send classifications efficiently
+ */
+package com.ibm.watson.developer_cloud.natural_language_classifier.v1.util;
@@ -20,6 +20,8 @@ import java.util.logging.Logger;
 import org.apache.commons.lang3.StringUtils;
 
 import com.google.gson.JsonObject;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.AlchemyGenericModel;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.TransactionBudget;
 import com.ibm.watson.developer_cloud.http.HttpStatus;
 import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.service.exception.BadRequestException;
@@ -54,6 +56,8 @@ public abstract class AlchemyService extends WatsonService {
   /** The Constant OUTPUT_MODE. */
   protected static final String OUTPUT_MODE = "outputMode";
 
+  private TransactionBudget transactionBudget;
+
   /**
    * Instantiates a new alchemy service.
    */
@@ -71,21 +75,6 @@ public abstract class AlchemyService extends WatsonService {
     setApiKey(apiKey);
   }
 
-  /**
-   * Adds the Alchemy API key to HTTP request.
-   * 
-   * @param builder the builder
-   * @param apiKey the API key token
-   */
-  private void addApiKeyToRequest(Builder builder, String apiKey) {
-    final HttpUrl url = HttpUrl.parse(builder.build().url().toString());
-    if (url.query() == null || url.query().isEmpty()) {
-      builder.url(builder.build().url() + "?" + apiKey);
-    } else {
-      builder.url(builder.build().url() + "&" + apiKey);
-    }
-  }
-
   /**
    * Detect the error code based on the error message.
    * 
@@ -116,8 +105,15 @@ public abstract class AlchemyService extends WatsonService {
   protected <T> T processServiceCall(ResponseConverter<T> converter, Response response) {
     final JsonObject error = getErrorMessage(response);
 
-    if (response.isSuccessful() && error == null)
-      return converter.convert(response);
+    if (response.isSuccessful() && error == null) {
+      final T result = converter.convert(response);
+      if (transactionBudget != null && result instanceof AlchemyGenericModel) {
+        final Integer transactions = ((AlchemyGenericModel) result).getTotalTransactions();
+        if (transactions != null)
+          transactionBudget.record(transactions);
+      }
+      return result;
+    }
 
     // There was a Client Error 4xx or a Server Error 5xx
     // Get the error message and create the exception
@@ -140,6 +136,8 @@ public abstract class AlchemyService extends WatsonService {
       case HttpStatus.UNAUTHORIZED: // HTTP 401
         throw new UnauthorizedException("Unauthorized: Access is denied due to invalid credentials", response);
       case HttpStatus.TOO_MANY_REQUESTS: // HTTP 429
+        if (transactionBudget != null)
+          transactionBudget.exhausted();
         throw new TooManyRequestsException(errorMessage, response);
       default: // other errors
         throw new ServiceResponseException(code, errorMessage, response);
@@ -182,6 +180,16 @@ public abstract class AlchemyService extends WatsonService {
     return null; // no error
   }
 
+  /**
+   * Sets the transaction budget that records the transactions spent by this service. The same budget
+   * can be shared by several Alchemy services.
+   *
+   * @param transactionBudget the transaction budget, or null to stop recording
+   */
+  public void setTransactionBudget(TransactionBudget transactionBudget) {
+    this.transactionBudget = transactionBudget;
+  }
+
   /**
    * Returns the first non-null accepted format from the parameter map.
    * 
@@ -212,6 +220,16 @@ public abstract class AlchemyService extends WatsonService {
     if (getApiKey() == null) {
       throw new IllegalArgumentException("apiKey not specified");
     }
-    addApiKeyToRequest(builder, PARAM_APIKEY + "=" + getApiKey());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * com.ibm.watson.developer_cloud.service.WatsonService#addQueryAuthentication(okhttp3.HttpUrl.Builder)
+   */
+  @Override
+  protected void addQueryAuthentication(HttpUrl.Builder urlBuilder) {
+    urlBuilder.addQueryParameter(PARAM_APIKEY, getApiKey());
   }
 }
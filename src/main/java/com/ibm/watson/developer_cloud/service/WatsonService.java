@@ -76,6 +76,7 @@ public abstract class WatsonService {
   private String apiKey;
   private final OkHttpClient client;
   private String endPoint;
+  private HttpUrl endPointUrl;
   private final String name;
   private Headers defaultHeaders = null;
   private boolean skipAuthentication;
@@ -136,8 +137,11 @@ public abstract class WatsonService {
   private Call createCall(Request request) {
     final Request.Builder builder = request.newBuilder();
 
+    final HttpUrl.Builder urlBuilder;
     if (RequestUtils.isRelative(request)) {
-      builder.url(RequestUtils.replaceEndPoint(request.url().toString(), getEndPoint()));
+      urlBuilder = resolveEndPoint(request.url());
+    } else {
+      urlBuilder = request.url().newBuilder();
     }
 
     String userAgent = RequestUtils.getUserAgent();
@@ -155,12 +159,37 @@ public abstract class WatsonService {
     builder.header(HttpHeaders.USER_AGENT, userAgent);
 
     setAuthentication(builder);
+    addQueryAuthentication(urlBuilder);
+    builder.url(urlBuilder.build());
 
     final Request newRequest = builder.build();
     return client.newCall(newRequest);
 
   }
 
+  /**
+   * Resolves a request URL relative to {@link RequestUtils#DEFAULT_ENDPOINT} against the end point.
+   * The parsed end point is reused, so the URL is not formatted and parsed again.
+   *
+   * @param url the relative request URL
+   * @return the URL builder
+   */
+  private HttpUrl.Builder resolveEndPoint(HttpUrl url) {
+    if (endPointUrl == null) {
+      final String resolved = RequestUtils.replaceEndPoint(url.toString(), getEndPoint());
+      final HttpUrl resolvedUrl = HttpUrl.parse(resolved);
+      if (resolvedUrl == null)
+        throw new IllegalArgumentException("unexpected url: " + resolved);
+      return resolvedUrl.newBuilder();
+    }
+
+    final HttpUrl.Builder builder = endPointUrl.newBuilder();
+    for (final String segment : url.encodedPathSegments()) {
+      builder.addEncodedPathSegment(segment);
+    }
+    return builder.encodedQuery(url.encodedQuery());
+  }
+
   /**
    * Creates the service call.
    *
@@ -327,6 +356,14 @@ public abstract class WatsonService {
     builder.addHeader(HttpHeaders.AUTHORIZATION, apiKey.startsWith(BASIC) ? apiKey : BASIC + apiKey);
   }
 
+  /**
+   * Adds the authentication to the request URL, for services that send their credentials as query
+   * parameters. The URL is not changed by default.
+   *
+   * @param urlBuilder the request URL builder
+   */
+  protected void addQueryAuthentication(HttpUrl.Builder urlBuilder) {}
+
   /**
    * Sets the end point.
    * 
@@ -339,6 +376,7 @@ public abstract class WatsonService {
       }
     }
     this.endPoint = endPoint;
+    endPointUrl = endPoint != null ? HttpUrl.parse(endPoint) : null;
   }
 
   /**
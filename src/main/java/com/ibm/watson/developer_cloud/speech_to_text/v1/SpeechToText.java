@@ -14,12 +14,14 @@
 package com.ibm.watson.developer_cloud.speech_to_text.v1;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.List;
 
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
 import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
@@ -30,7 +32,13 @@ import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechModel;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSession;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSessionStatus;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.AudioRequestBody;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.AudioTranscoder;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.util.MediaTypeUtils;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SilenceFilterInputStream;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechResultsGson;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechTimeMap;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.TranscodingInputStream;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.RecognizeCallback;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.WebSocketManager;
 import com.ibm.watson.developer_cloud.util.RequestUtils;
@@ -40,6 +48,7 @@ import com.ibm.watson.developer_cloud.util.Validator;
 import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 import okhttp3.ws.WebSocket;
 
 /**
@@ -284,7 +293,7 @@ public class SpeechToText extends WatsonService {
    * @return the {@link SpeechResults}
    */
 
-  public ServiceCall<SpeechResults> recognize(File audio, RecognizeOptions options) {
+  public ServiceCall<SpeechResults> recognize(File audio, final RecognizeOptions options) {
     Validator.isTrue(audio != null && audio.exists(), "audio file is null or does not exist");
 
     final double fileSize = audio.length() / Math.pow(1024, 2);
@@ -301,10 +310,53 @@ public class SpeechToText extends WatsonService {
 
     final RequestBuilder requestBuilder = RequestBuilder.post(path);
     buildRecognizeRequest(requestBuilder, options);
+
+    if (options != null && (options.voiceActivityDetector() != null || options.audioTranscoder() != null)) {
+      final AudioTranscoder transcoder =
+          options.audioTranscoder() != null ? options.audioTranscoder().forModel(options.model()) : null;
+      final AudioRequestBody body =
+          new AudioRequestBody(audio, contentType, options.voiceActivityDetector(), transcoder);
+      requestBuilder.body(body);
+      return createServiceCall(requestBuilder.build(), new ResponseConverter<SpeechResults>() {
+        @Override
+        public SpeechResults convert(Response response) {
+          final SpeechResults results = getSpeechResults(response, options);
+          if (body.getTimeMap() != null)
+            body.getTimeMap().remap(results);
+          return results;
+        }
+      });
+    }
+
     requestBuilder.body(RequestBody.create(MediaType.parse(contentType), audio));
+    if (options != null && options.columnarTimestamps()) {
+      return createServiceCall(requestBuilder.build(), new ResponseConverter<SpeechResults>() {
+        @Override
+        public SpeechResults convert(Response response) {
+          return getSpeechResults(response, options);
+        }
+      });
+    }
     return createServiceCall(requestBuilder.build(), ResponseConverterUtils.getObject(SpeechResults.class));
   }
 
+  /**
+   * Parses the {@link SpeechResults} of a recognition, with columnar timestamps if the options ask
+   * for them.
+   *
+   * @param response the response
+   * @param options the recognize options
+   * @return the speech results
+   */
+  private static SpeechResults getSpeechResults(Response response, RecognizeOptions options) {
+    try {
+      final JsonReader reader = new JsonReader(response.body().charStream());
+      return SpeechResultsGson.getGson(options).fromJson(reader, SpeechResults.class);
+    } finally {
+      response.body().close();
+    }
+  }
+
   /**
    * Recognizes an audio {@link InputStream} using a {@link WebSocket}.<br>
    * The {@link RecognizeCallback} instance will be called every time the service sends
@@ -341,20 +393,84 @@ public class SpeechToText extends WatsonService {
     Validator.notNull(options.contentType(), "options.contentType cannot be null");
     Validator.notNull(callback, "callback cannot be null");
 
+    InputStream filteredAudio = audio;
+    final RecognizeCallback recognizeCallback;
+    if (options.voiceActivityDetector() != null) {
+      final SilenceFilterInputStream filtered =
+          new SilenceFilterInputStream(audio, options.contentType(), options.voiceActivityDetector());
+      filteredAudio = filtered;
+      recognizeCallback = remapTimestamps(callback, filtered.getTimeMap());
+    } else {
+      recognizeCallback = callback;
+    }
+
+    final InputStream stream;
+    final RecognizeOptions recognizeOptions;
+    if (options.audioTranscoder() != null) {
+      final TranscodingInputStream transcoded = new TranscodingInputStream(filteredAudio, options.contentType(),
+          options.audioTranscoder().forModel(options.model()));
+      try {
+        recognizeOptions = options.newBuilder().contentType(transcoded.getContentType()).build();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      stream = transcoded;
+    } else {
+      stream = filteredAudio;
+      recognizeOptions = options;
+    }
 
     getToken().enqueue(new ServiceCallback<String>() {
       @Override
       public void onFailure(Exception e) {
-        callback.onError(e);
+        recognizeCallback.onError(e);
       }
 
       @Override
       public void onResponse(String token) {
         String url = getEndPoint().replaceFirst("(https|http)", "wss");
-        WebSocketManager wsManager = new WebSocketManager(url + PATH_RECOGNIZE, configureHttpClient(), token);
-        wsManager.recognize(audio, options, callback);
+        WebSocketManager wsManager = new WebSocketManager(url + PATH_RECOGNIZE, configureHttpClient(), token) {
+          @Override
+          protected String refreshToken() {
+            return getToken().execute();
+          }
+        };
+        wsManager.recognize(stream, recognizeOptions, recognizeCallback);
       }
     });
 
   }
+
+  /**
+   * Wraps a {@link RecognizeCallback} to re-expand the timestamps of every transcription to the
+   * original audio time.
+   *
+   * @param callback the callback
+   * @param timeMap the time map of the audio being sent
+   * @return the wrapped callback
+   */
+  private static RecognizeCallback remapTimestamps(final RecognizeCallback callback, final SpeechTimeMap timeMap) {
+    return new RecognizeCallback() {
+      @Override
+      public void onTranscription(SpeechResults speechResults) {
+        timeMap.remap(speechResults);
+        callback.onTranscription(speechResults);
+      }
+
+      @Override
+      public void onConnected() {
+        callback.onConnected();
+      }
+
+      @Override
+      public void onError(Exception e) {
+        callback.onError(e);
+      }
+
+      @Override
+      public void onDisconnected() {
+        callback.onDisconnected();
+      }
+    };
+  }
 }
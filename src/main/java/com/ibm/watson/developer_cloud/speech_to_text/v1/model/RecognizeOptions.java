@@ -16,6 +16,9 @@ package com.ibm.watson.developer_cloud.speech_to_text.v1.model;
 import com.google.gson.annotations.SerializedName;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.SpeechToText;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.AudioTranscoder;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.VoiceActivityDetector;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.ReconnectPolicy;
 import com.ibm.watson.developer_cloud.util.Validator;
 
 import okhttp3.MediaType;
@@ -43,7 +46,10 @@ public class RecognizeOptions {
     private Double wordAlternativesThreshold;
     private Boolean wordConfidence;
     private Boolean profanityFilter;
-
+    private VoiceActivityDetector voiceActivityDetector;
+    private AudioTranscoder audioTranscoder;
+    private ReconnectPolicy reconnectPolicy;
+    private boolean columnarTimestamps;
 
     private Builder(RecognizeOptions options) {
       this.contentType = options.contentType;
@@ -59,6 +65,10 @@ public class RecognizeOptions {
       this.wordAlternativesThreshold = options.wordAlternativesThreshold;
       this.wordConfidence = options.wordConfidence;
       this.profanityFilter = options.profanityFilter;
+      this.voiceActivityDetector = options.voiceActivityDetector;
+      this.audioTranscoder = options.audioTranscoder;
+      this.reconnectPolicy = options.reconnectPolicy;
+      this.columnarTimestamps = options.columnarTimestamps;
     }
 
     /**
@@ -262,6 +272,58 @@ public class RecognizeOptions {
       this.wordConfidence = wordConfidence;
       return this;
     }
+
+    /**
+     * Removes long silences on the client before the audio is sent to the service. Only
+     * <code>audio/wav</code> and <code>audio/l16</code> audio can be filtered. Timestamps in the
+     * results are re-expanded to the original audio time.
+     *
+     * @param voiceActivityDetector the voice activity detector
+     * @return the recognize options
+     */
+    public Builder voiceActivityDetector(VoiceActivityDetector voiceActivityDetector) {
+      this.voiceActivityDetector = voiceActivityDetector;
+      return this;
+    }
+
+    /**
+     * Transcodes <code>audio/wav</code> and <code>audio/l16</code> audio on the client into a more
+     * compact format before it is sent to the service. The content type sent to the service is the
+     * one of the transcoded audio.
+     *
+     * @param audioTranscoder the audio transcoder
+     * @return the recognize options
+     */
+    public Builder audioTranscoder(AudioTranscoder audioTranscoder) {
+      this.audioTranscoder = audioTranscoder;
+      return this;
+    }
+
+    /**
+     * Reconnects and replays the recent audio when the WebSocket connection drops during
+     * {@link SpeechToText#recognizeUsingWebSocket}. Timestamps are always requested in this mode,
+     * since they are used to find the replay point.
+     *
+     * @param reconnectPolicy the reconnect policy
+     * @return the recognize options
+     */
+    public Builder reconnectPolicy(ReconnectPolicy reconnectPolicy) {
+      this.reconnectPolicy = reconnectPolicy;
+      return this;
+    }
+
+    /**
+     * Reads the timestamps and word confidences of the results into a {@link SpeechTimestampList}
+     * and a {@link SpeechWordConfidenceList}, which store them in arrays instead of one object per
+     * word. The default is false.
+     *
+     * @param columnarTimestamps the columnar timestamps
+     * @return the recognize options
+     */
+    public Builder columnarTimestamps(boolean columnarTimestamps) {
+      this.columnarTimestamps = columnarTimestamps;
+      return this;
+    }
   }
 
   @SerializedName("content-type")
@@ -286,6 +348,12 @@ public class RecognizeOptions {
   @SerializedName("word_confidence")
   private Boolean wordConfidence;
 
+  // client side only, it is not sent to the service
+  private transient VoiceActivityDetector voiceActivityDetector;
+  private transient AudioTranscoder audioTranscoder;
+  private transient ReconnectPolicy reconnectPolicy;
+  private transient boolean columnarTimestamps;
+
   private RecognizeOptions(Builder builder) {
     this.contentType = builder.contentType;
     this.continuous = builder.continuous;
@@ -300,6 +368,10 @@ public class RecognizeOptions {
     this.wordAlternativesThreshold = builder.wordAlternativesThreshold;
     this.wordConfidence = builder.wordConfidence;
     this.profanityFilter = builder.profanityFilter;
+    this.voiceActivityDetector = builder.voiceActivityDetector;
+    this.audioTranscoder = builder.audioTranscoder;
+    this.reconnectPolicy = builder.reconnectPolicy;
+    this.columnarTimestamps = builder.columnarTimestamps;
   }
 
   /**
@@ -427,4 +499,40 @@ public class RecognizeOptions {
   public Boolean wordConfidence() {
     return wordConfidence;
   }
+
+  /**
+   * Gets the voice activity detector.
+   * 
+   * @return the voice activity detector
+   */
+  public VoiceActivityDetector voiceActivityDetector() {
+    return voiceActivityDetector;
+  }
+
+  /**
+   * Gets the audio transcoder.
+   * 
+   * @return the audio transcoder
+   */
+  public AudioTranscoder audioTranscoder() {
+    return audioTranscoder;
+  }
+
+  /**
+   * Gets the reconnect policy.
+   * 
+   * @return the reconnect policy
+   */
+  public ReconnectPolicy reconnectPolicy() {
+    return reconnectPolicy;
+  }
+
+  /**
+   * Checks if the timestamps and word confidences are read into columnar lists.
+   * 
+   * @return true, if the timestamps are columnar
+   */
+  public boolean columnarTimestamps() {
+    return columnarTimestamps;
+  }
 }
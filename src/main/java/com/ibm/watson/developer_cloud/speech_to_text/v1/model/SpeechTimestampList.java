@@ -0,0 +1,226 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Compact list of {@link SpeechTimestamp}s. The words, start and end times are stored in parallel
+ * arrays instead of one object per word, and can be read and changed directly with
+ * {@link #getWord(int)}, {@link #getStartTime(int)}, {@link #getEndTime(int)},
+ * {@link #setStartTime(int, double)} and {@link #setEndTime(int, double)}, without allocating.<br>
+ * {@link #get(int)} returns a new {@link SpeechTimestamp} with the values of an element, so changes
+ * to it are only stored with {@link #set(int, SpeechTimestamp)}, and iterating the list with it
+ * allocates one object per word. Missing times are stored as {@link Double#NaN}.<br>
+ * The words read from a response share one instance per distinct word, and across responses when a
+ * default {@link com.ibm.watson.developer_cloud.util.StringInterner} is set.<br>
+ * Responses are read into this list when {@link RecognizeOptions#columnarTimestamps()} is set.
+ */
+public class SpeechTimestampList extends AbstractList<SpeechTimestamp> implements RandomAccess {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private String[] words;
+  private double[] startTimes;
+  private double[] endTimes;
+  private int size;
+
+  /**
+   * Instantiates a new empty list.
+   */
+  public SpeechTimestampList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Instantiates a new empty list with an initial capacity.
+   *
+   * @param capacity the initial capacity
+   */
+  public SpeechTimestampList(int capacity) {
+    words = new String[capacity];
+    startTimes = new double[capacity];
+    endTimes = new double[capacity];
+  }
+
+  /**
+   * Appends a timestamp without creating a {@link SpeechTimestamp}.
+   *
+   * @param word the word
+   * @param startTime the start time in seconds, or {@link Double#NaN}
+   * @param endTime the end time in seconds, or {@link Double#NaN}
+   */
+  public void add(String word, double startTime, double endTime) {
+    insert(size, word, startTime, endTime);
+  }
+
+  /**
+   * Gets the word at a position.
+   *
+   * @param index the index
+   * @return the word
+   */
+  public String getWord(int index) {
+    checkIndex(index);
+    return words[index];
+  }
+
+  /**
+   * Gets the start time at a position.
+   *
+   * @param index the index
+   * @return the start time in seconds, or {@link Double#NaN} if it is missing
+   */
+  public double getStartTime(int index) {
+    checkIndex(index);
+    return startTimes[index];
+  }
+
+  /**
+   * Gets the end time at a position.
+   *
+   * @param index the index
+   * @return the end time in seconds, or {@link Double#NaN} if it is missing
+   */
+  public double getEndTime(int index) {
+    checkIndex(index);
+    return endTimes[index];
+  }
+
+  /**
+   * Sets the start time at a position.
+   *
+   * @param index the index
+   * @param startTime the start time in seconds, or {@link Double#NaN}
+   */
+  public void setStartTime(int index, double startTime) {
+    checkIndex(index);
+    startTimes[index] = startTime;
+  }
+
+  /**
+   * Sets the end time at a position.
+   *
+   * @param index the index
+   * @param endTime the end time in seconds, or {@link Double#NaN}
+   */
+  public void setEndTime(int index, double endTime) {
+    checkIndex(index);
+    endTimes[index] = endTime;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public SpeechTimestamp get(int index) {
+    return copy(index);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#set(int, java.lang.Object)
+   */
+  @Override
+  public SpeechTimestamp set(int index, SpeechTimestamp timestamp) {
+    final SpeechTimestamp previous = copy(index);
+    words[index] = timestamp.getWord();
+    startTimes[index] = toPrimitive(timestamp.getStartTime());
+    endTimes[index] = toPrimitive(timestamp.getEndTime());
+    return previous;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#add(int, java.lang.Object)
+   */
+  @Override
+  public void add(int index, SpeechTimestamp timestamp) {
+    if (index < 0 || index > size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    insert(index, timestamp.getWord(), toPrimitive(timestamp.getStartTime()), toPrimitive(timestamp.getEndTime()));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#remove(int)
+   */
+  @Override
+  public SpeechTimestamp remove(int index) {
+    final SpeechTimestamp previous = copy(index);
+    final int moved = size - index - 1;
+    System.arraycopy(words, index + 1, words, index, moved);
+    System.arraycopy(startTimes, index + 1, startTimes, index, moved);
+    System.arraycopy(endTimes, index + 1, endTimes, index, moved);
+    words[--size] = null;
+    modCount++;
+    return previous;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void insert(int index, String word, double startTime, double endTime) {
+    if (size == words.length) {
+      final int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+      words = Arrays.copyOf(words, capacity);
+      startTimes = Arrays.copyOf(startTimes, capacity);
+      endTimes = Arrays.copyOf(endTimes, capacity);
+    }
+    final int moved = size - index;
+    System.arraycopy(words, index, words, index + 1, moved);
+    System.arraycopy(startTimes, index, startTimes, index + 1, moved);
+    System.arraycopy(endTimes, index, endTimes, index + 1, moved);
+    words[index] = word;
+    startTimes[index] = startTime;
+    endTimes[index] = endTime;
+    size++;
+    modCount++;
+  }
+
+  private SpeechTimestamp copy(int index) {
+    checkIndex(index);
+    final SpeechTimestamp timestamp = new SpeechTimestamp();
+    timestamp.setWord(words[index]);
+    timestamp.setStartTime(toObject(startTimes[index]));
+    timestamp.setEndTime(toObject(endTimes[index]));
+    return timestamp;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+  }
+
+  private static double toPrimitive(Double value) {
+    return value != null ? value : Double.NaN;
+  }
+
+  private static Double toObject(double value) {
+    return Double.isNaN(value) ? null : value;
+  }
+}
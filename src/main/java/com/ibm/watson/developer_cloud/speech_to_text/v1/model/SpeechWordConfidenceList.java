@@ -0,0 +1,183 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Compact list of {@link SpeechWordConfidence}s. The words and confidences are stored in parallel
+ * arrays instead of one object per word, and can be read directly with {@link #getWord(int)} and
+ * {@link #getConfidence(int)}.<br>
+ * {@link #get(int)} returns a new {@link SpeechWordConfidence} with the values of an element, so
+ * changes to it are only stored with {@link #set(int, SpeechWordConfidence)}, and iterating the list
+ * with it allocates one object per word. Missing confidences are stored as {@link Double#NaN}.<br>
+ * The words read from a response share one instance per distinct word, and across responses when a
+ * default {@link com.ibm.watson.developer_cloud.util.StringInterner} is set.<br>
+ * Responses are read into this list when {@link RecognizeOptions#columnarTimestamps()} is set.
+ */
+public class SpeechWordConfidenceList extends AbstractList<SpeechWordConfidence> implements RandomAccess {
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private String[] words;
+  private double[] confidences;
+  private int size;
+
+  /**
+   * Instantiates a new empty list.
+   */
+  public SpeechWordConfidenceList() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Instantiates a new empty list with an initial capacity.
+   *
+   * @param capacity the initial capacity
+   */
+  public SpeechWordConfidenceList(int capacity) {
+    words = new String[capacity];
+    confidences = new double[capacity];
+  }
+
+  /**
+   * Appends a word confidence without creating a {@link SpeechWordConfidence}.
+   *
+   * @param word the word
+   * @param confidence the confidence, or {@link Double#NaN}
+   */
+  public void add(String word, double confidence) {
+    insert(size, word, confidence);
+  }
+
+  /**
+   * Gets the word at a position.
+   *
+   * @param index the index
+   * @return the word
+   */
+  public String getWord(int index) {
+    checkIndex(index);
+    return words[index];
+  }
+
+  /**
+   * Gets the confidence at a position.
+   *
+   * @param index the index
+   * @return the confidence, or {@link Double#NaN} if it is missing
+   */
+  public double getConfidence(int index) {
+    checkIndex(index);
+    return confidences[index];
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#get(int)
+   */
+  @Override
+  public SpeechWordConfidence get(int index) {
+    return copy(index);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#set(int, java.lang.Object)
+   */
+  @Override
+  public SpeechWordConfidence set(int index, SpeechWordConfidence wordConfidence) {
+    final SpeechWordConfidence previous = copy(index);
+    words[index] = wordConfidence.getWord();
+    confidences[index] = toPrimitive(wordConfidence.getConfidence());
+    return previous;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#add(int, java.lang.Object)
+   */
+  @Override
+  public void add(int index, SpeechWordConfidence wordConfidence) {
+    if (index < 0 || index > size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    insert(index, wordConfidence.getWord(), toPrimitive(wordConfidence.getConfidence()));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractList#remove(int)
+   */
+  @Override
+  public SpeechWordConfidence remove(int index) {
+    final SpeechWordConfidence previous = copy(index);
+    final int moved = size - index - 1;
+    System.arraycopy(words, index + 1, words, index, moved);
+    System.arraycopy(confidences, index + 1, confidences, index, moved);
+    words[--size] = null;
+    modCount++;
+    return previous;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.util.AbstractCollection#size()
+   */
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void insert(int index, String word, double confidence) {
+    if (size == words.length) {
+      final int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+      words = Arrays.copyOf(words, capacity);
+      confidences = Arrays.copyOf(confidences, capacity);
+    }
+    final int moved = size - index;
+    System.arraycopy(words, index, words, index + 1, moved);
+    System.arraycopy(confidences, index, confidences, index + 1, moved);
+    words[index] = word;
+    confidences[index] = confidence;
+    size++;
+    modCount++;
+  }
+
+  private SpeechWordConfidence copy(int index) {
+    checkIndex(index);
+    final SpeechWordConfidence wordConfidence = new SpeechWordConfidence();
+    wordConfidence.setWord(words[index]);
+    wordConfidence.setConfidence(toObject(confidences[index]));
+    return wordConfidence;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+  }
+
+  private static double toPrimitive(Double value) {
+    return value != null ? value : Double.NaN;
+  }
+
+  private static Double toObject(double value) {
+    return Double.isNaN(value) ? null : value;
+  }
+}
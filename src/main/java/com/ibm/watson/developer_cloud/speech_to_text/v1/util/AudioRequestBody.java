@@ -0,0 +1,190 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.internal.Util;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * {@link RequestBody} that uploads an audio file without its long silences, transcoded to a more
+ * compact format, or both. Neither the file nor the output is buffered in memory.<br>
+ * When only silences are removed the file is read twice: the first pass finds the filtered length,
+ * so the WAVE header and the <code>Content-Length</code> are correct, and the second pass streams
+ * the filtered audio. Transcoded audio does not need a length in its header, so it is streamed in a
+ * single pass using chunked transfer encoding.
+ *
+ * @see SilenceFilterInputStream
+ * @see TranscodingInputStream
+ */
+public class AudioRequestBody extends RequestBody {
+  private static final Logger LOG = Logger.getLogger(AudioRequestBody.class.getName());
+  private static final int BUFFER_SIZE = 8192;
+
+  private final File audio;
+  private final String contentType;
+  private final VoiceActivityDetector detector;
+  private final AudioTranscoder transcoder;
+  private String outputContentType;
+  private long contentLength = -1;
+  private long dataLength = -1;
+  private SpeechTimeMap timeMap;
+
+  /**
+   * Instantiates a new audio request body.
+   *
+   * @param audio the audio file
+   * @param contentType the audio content type, <code>audio/wav</code> or <code>audio/l16</code>
+   * @param detector the voice activity detector, or null to keep the silences
+   * @param transcoder the audio transcoder, or null to keep the original format
+   */
+  public AudioRequestBody(File audio, String contentType, VoiceActivityDetector detector,
+      AudioTranscoder transcoder) {
+    this.audio = audio;
+    this.contentType = contentType;
+    this.detector = detector;
+    this.transcoder = transcoder;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see okhttp3.RequestBody#contentType()
+   */
+  @Override
+  public synchronized MediaType contentType() {
+    if (transcoder == null)
+      return MediaType.parse(contentType);
+
+    if (outputContentType == null) {
+      // the l16 output rate depends on the input, so the header is read first
+      final TranscodingInputStream transcoded = new TranscodingInputStream(open(), contentType, transcoder);
+      try {
+        outputContentType = transcoded.getContentType();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      } finally {
+        Util.closeQuietly((InputStream) transcoded);
+      }
+    }
+    return MediaType.parse(outputContentType);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see okhttp3.RequestBody#contentLength()
+   */
+  @Override
+  public synchronized long contentLength() throws IOException {
+    if (transcoder != null)
+      return -1;
+    if (detector != null && timeMap == null)
+      analyze();
+    return detector != null ? contentLength : audio.length();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see okhttp3.RequestBody#writeTo(okio.BufferedSink)
+   */
+  @Override
+  public void writeTo(BufferedSink sink) throws IOException {
+    contentLength();
+    InputStream in = new FileInputStream(audio);
+    SilenceFilterInputStream filtered = null;
+    TranscodingInputStream transcoded = null;
+    if (detector != null) {
+      filtered = new SilenceFilterInputStream(in, contentType, detector, transcoder != null ? -1 : dataLength);
+      in = filtered;
+    }
+    if (transcoder != null) {
+      transcoded = new TranscodingInputStream(in, contentType, transcoder);
+      in = transcoded;
+    }
+
+    Source source = null;
+    try {
+      source = Okio.source(in);
+      sink.writeAll(source);
+    } finally {
+      Util.closeQuietly(source);
+    }
+
+    if (transcoded != null) {
+      synchronized (this) {
+        if (filtered != null)
+          timeMap = filtered.getTimeMap();
+      }
+      if (LOG.isLoggable(Level.FINE)) {
+        LOG.fine("Transcoded " + audio.length() + " bytes from " + audio.getName() + " into "
+            + transcoded.getBytesWritten() + " bytes of " + outputContentType);
+      }
+    }
+  }
+
+  /**
+   * Gets the time map between the uploaded and the original audio. It is available once the request
+   * has been sent, and it is null when silences are not removed.
+   *
+   * @return the time map
+   */
+  public synchronized SpeechTimeMap getTimeMap() {
+    return timeMap;
+  }
+
+  private InputStream open() {
+    try {
+      return new FileInputStream(audio);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * First pass over the file to calculate the filtered length and the time map.
+   */
+  private void analyze() throws IOException {
+    final SilenceFilterInputStream filtered =
+        new SilenceFilterInputStream(new FileInputStream(audio), contentType, detector);
+    try {
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      while (filtered.read(buffer, 0, buffer.length) >= 0) {
+        // only the lengths are needed
+      }
+    } finally {
+      Util.closeQuietly((InputStream) filtered);
+    }
+
+    contentLength = filtered.getBytesWritten();
+    dataLength = filtered.getDataBytesWritten();
+    timeMap = filtered.getTimeMap();
+
+    if (LOG.isLoggable(Level.FINE)) {
+      LOG.fine("Removed " + (filtered.getBytesRead() - contentLength) + " of " + filtered.getBytesRead()
+          + " bytes of silence from " + audio.getName());
+    }
+  }
+}
@@ -0,0 +1,181 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.SpeechToText;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Settings to transcode linear PCM audio (WAVE or <code>audio/l16</code>) into a more compact
+ * format before it is sent to the {@link SpeechToText} service. By default the audio is mixed down
+ * to mono, down-sampled to the native rate of the recognition model (8 kHz for narrowband models and
+ * 16 kHz for broadband models) and compressed with FLAC. Audio is never up-sampled.
+ *
+ * @see TranscodingInputStream
+ */
+public class AudioTranscoder {
+
+  /**
+   * The output encoding.
+   */
+  public enum Encoding {
+    /** Free Lossless Audio Codec, <code>audio/flac</code>. */
+    FLAC,
+    /** Linear 16 bits PCM, <code>audio/l16</code>. */
+    L16
+  }
+
+  /** The native sample rate of broadband models. (value is 16000) */
+  public static final int BROADBAND_SAMPLE_RATE = 16000;
+
+  /** The native sample rate of narrowband models. (value is 8000) */
+  public static final int NARROWBAND_SAMPLE_RATE = 8000;
+
+  private static final String NARROWBAND = "narrowband";
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private Encoding encoding = Encoding.FLAC;
+    private int sampleRate;
+    private boolean mono = true;
+
+    private Builder(AudioTranscoder transcoder) {
+      this.encoding = transcoder.encoding;
+      this.sampleRate = transcoder.sampleRate;
+      this.mono = transcoder.mono;
+    }
+
+    /**
+     * Instantiates a new builder.
+     */
+    public Builder() {}
+
+    /**
+     * Builds the audio transcoder.
+     *
+     * @return the audio transcoder
+     */
+    public AudioTranscoder build() {
+      return new AudioTranscoder(this);
+    }
+
+    /**
+     * Sets the output encoding. The default is {@link Encoding#FLAC}.
+     *
+     * @param encoding the encoding
+     * @return the builder
+     */
+    public Builder encoding(Encoding encoding) {
+      Validator.notNull(encoding, "encoding cannot be null");
+      this.encoding = encoding;
+      return this;
+    }
+
+    /**
+     * Sets the maximum output sample rate. Use 0 (the default) for the native rate of the model used
+     * in the recognition.
+     *
+     * @param sampleRate the sample rate
+     * @return the builder
+     */
+    public Builder sampleRate(int sampleRate) {
+      Validator.isTrue(sampleRate >= 0, "sampleRate cannot be negative");
+      this.sampleRate = sampleRate;
+      return this;
+    }
+
+    /**
+     * If true (the default), all the channels are mixed down to one.
+     *
+     * @param mono the mono
+     * @return the builder
+     */
+    public Builder mono(boolean mono) {
+      this.mono = mono;
+      return this;
+    }
+  }
+
+  private final Encoding encoding;
+  private final int sampleRate;
+  private final boolean mono;
+
+  private AudioTranscoder(Builder builder) {
+    this.encoding = builder.encoding;
+    this.sampleRate = builder.sampleRate;
+    this.mono = builder.mono;
+  }
+
+  /**
+   * Gets the native sample rate of a recognition model. The default model is a broadband model.
+   *
+   * @param model the model name, e.g. <code>en-US_NarrowbandModel</code>
+   * @return the sample rate in Hz
+   */
+  public static int getNativeSampleRate(String model) {
+    if (model != null && model.toLowerCase().contains(NARROWBAND))
+      return NARROWBAND_SAMPLE_RATE;
+    return BROADBAND_SAMPLE_RATE;
+  }
+
+  /**
+   * Returns a transcoder with the sample rate of the model, if the sample rate was not set.
+   *
+   * @param model the model name
+   * @return the audio transcoder
+   */
+  public AudioTranscoder forModel(String model) {
+    if (sampleRate > 0)
+      return this;
+    return newBuilder().sampleRate(getNativeSampleRate(model)).build();
+  }
+
+  /**
+   * New builder.
+   *
+   * @return the builder
+   */
+  public Builder newBuilder() {
+    return new Builder(this);
+  }
+
+  /**
+   * Gets the encoding.
+   *
+   * @return the encoding
+   */
+  public Encoding getEncoding() {
+    return encoding;
+  }
+
+  /**
+   * Gets the maximum output sample rate, 0 if it depends on the model.
+   *
+   * @return the sample rate
+   */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Checks if channels are mixed down to mono.
+   *
+   * @return true if the output is mono
+   */
+  public boolean isMono() {
+    return mono;
+  }
+}
@@ -0,0 +1,319 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.util.Arrays;
+
+/**
+ * Minimal streaming FLAC encoder for 16 bits PCM audio. Each block is encoded with the best fixed
+ * linear predictor (order 0 to 4) and partitioned Rice coding, falling back to constant or verbatim
+ * subframes when they are smaller.<br>
+ * The stream header does not include the total number of samples or the MD5 signature, both are
+ * optional in the FLAC format, so audio can be encoded while it is being read.
+ *
+ * @see <a href="https://xiph.org/flac/format.html">FLAC format</a>
+ */
+public class FlacEncoder {
+
+  /** The number of samples per channel in a block. (value is 4096) */
+  public static final int BLOCK_SIZE = 4096;
+
+  private static final int BITS_PER_SAMPLE = 16;
+  private static final int MAX_FIXED_ORDER = 4;
+  private static final int MAX_PARTITION_ORDER = 8;
+  private static final int MAX_RICE_PARAMETER = 14;
+
+  private final int sampleRate;
+  private final int channels;
+  private final BitWriter writer = new BitWriter();
+  private final int[] residual = new int[BLOCK_SIZE];
+  private final int[] bestResidual = new int[BLOCK_SIZE];
+  private final int[] riceParameters = new int[1 << MAX_PARTITION_ORDER];
+  private final int[] bestRiceParameters = new int[1 << MAX_PARTITION_ORDER];
+  private long frameNumber;
+
+  /**
+   * Instantiates a new FLAC encoder.
+   *
+   * @param sampleRate the sample rate in Hz
+   * @param channels the number of channels, between 1 and 8
+   */
+  public FlacEncoder(int sampleRate, int channels) {
+    if (channels < 1 || channels > 8)
+      throw new IllegalArgumentException("FLAC supports between 1 and 8 channels");
+    this.sampleRate = sampleRate;
+    this.channels = channels;
+  }
+
+  /**
+   * Encodes the <code>fLaC</code> marker and the STREAMINFO metadata block.
+   *
+   * @return the stream header
+   */
+  public byte[] encodeHeader() {
+    writer.reset();
+    writer.writeBits(0x664C6143, 32); // fLaC
+    writer.writeBits(1, 1); // last metadata block
+    writer.writeBits(0, 7); // STREAMINFO
+    writer.writeBits(34, 24);
+    writer.writeBits(BLOCK_SIZE, 16);
+    writer.writeBits(BLOCK_SIZE, 16);
+    writer.writeBits(0, 24); // min frame size unknown
+    writer.writeBits(0, 24); // max frame size unknown
+    writer.writeBits(sampleRate, 20);
+    writer.writeBits(channels - 1, 3);
+    writer.writeBits(BITS_PER_SAMPLE - 1, 5);
+    writer.writeBits(0, 4); // total samples unknown (36 bits)
+    writer.writeBits(0, 32);
+    for (int i = 0; i < 4; i++) {
+      writer.writeBits(0, 32); // MD5 signature unknown
+    }
+    return writer.toByteArray();
+  }
+
+  /**
+   * Encodes a block of samples into a FLAC frame.
+   *
+   * @param samples the samples of each channel
+   * @param length the number of samples per channel, at most {@link #BLOCK_SIZE}
+   * @return the encoded frame
+   */
+  public byte[] encodeFrame(int[][] samples, int length) {
+    if (length < 1 || length > BLOCK_SIZE)
+      throw new IllegalArgumentException("length should be between 1 and " + BLOCK_SIZE);
+
+    writer.reset();
+    writer.writeBits(0x3FFE, 14); // sync code
+    writer.writeBits(0, 1);
+    writer.writeBits(0, 1); // fixed block size
+    writer.writeBits(7, 4); // block size stored as 16 bits at the end of the header
+    writer.writeBits(0, 4); // sample rate from STREAMINFO
+    writer.writeBits(channels - 1, 4); // independent channels
+    writer.writeBits(4, 3); // 16 bits per sample
+    writer.writeBits(0, 1);
+    writeUtf8(frameNumber++);
+    writer.writeBits(length - 1, 16);
+    writer.writeBits(crc8(writer.buffer, writer.size()), 8);
+
+    for (int channel = 0; channel < channels; channel++) {
+      writeSubframe(samples[channel], length);
+    }
+
+    writer.alignToByte();
+    writer.writeBits(crc16(writer.buffer, writer.size()), 16);
+    return writer.toByteArray();
+  }
+
+  private void writeSubframe(int[] samples, int length) {
+    boolean constant = true;
+    for (int i = 1; i < length && constant; i++) {
+      constant = samples[i] == samples[0];
+    }
+    if (constant) {
+      writer.writeBits(0, 8);
+      writer.writeBits(samples[0], BITS_PER_SAMPLE);
+      return;
+    }
+
+    long bestBits = (long) length * BITS_PER_SAMPLE;
+    int bestOrder = -1;
+    int bestPartitionOrder = 0;
+    for (int order = 0; order <= Math.min(MAX_FIXED_ORDER, length - 1); order++) {
+      computeResidual(samples, length, order);
+      for (int partitionOrder = 0; partitionOrder <= MAX_PARTITION_ORDER; partitionOrder++) {
+        final int partitions = 1 << partitionOrder;
+        if (length % partitions != 0 || (length >> partitionOrder) <= order)
+          break;
+        final long bits = order * BITS_PER_SAMPLE + 6 + riceBits(length, order, partitionOrder);
+        if (bits < bestBits) {
+          bestBits = bits;
+          bestOrder = order;
+          bestPartitionOrder = partitionOrder;
+          System.arraycopy(residual, 0, bestResidual, 0, length);
+          System.arraycopy(riceParameters, 0, bestRiceParameters, 0, partitions);
+        }
+      }
+    }
+
+    if (bestOrder < 0) {
+      writer.writeBits(0x02, 8); // verbatim
+      for (int i = 0; i < length; i++) {
+        writer.writeBits(samples[i], BITS_PER_SAMPLE);
+      }
+      return;
+    }
+
+    writer.writeBits((0x08 | bestOrder) << 1, 8); // fixed predictor
+    for (int i = 0; i < bestOrder; i++) {
+      writer.writeBits(samples[i], BITS_PER_SAMPLE);
+    }
+    writer.writeBits(0, 2); // Rice coding with 4 bits parameters
+    writer.writeBits(bestPartitionOrder, 4);
+    final int partitionSize = length >> bestPartitionOrder;
+    int index = bestOrder;
+    for (int partition = 0; partition < (1 << bestPartitionOrder); partition++) {
+      final int parameter = bestRiceParameters[partition];
+      final int end = (partition + 1) * partitionSize;
+      writer.writeBits(parameter, 4);
+      for (; index < end; index++) {
+        writer.writeRice(bestResidual[index], parameter);
+      }
+    }
+  }
+
+  private void computeResidual(int[] s, int length, int order) {
+    for (int i = order; i < length; i++) {
+      switch (order) {
+        case 0:
+          residual[i] = s[i];
+          break;
+        case 1:
+          residual[i] = s[i] - s[i - 1];
+          break;
+        case 2:
+          residual[i] = s[i] - 2 * s[i - 1] + s[i - 2];
+          break;
+        case 3:
+          residual[i] = s[i] - 3 * s[i - 1] + 3 * s[i - 2] - s[i - 3];
+          break;
+        default:
+          residual[i] = s[i] - 4 * s[i - 1] + 6 * s[i - 2] - 4 * s[i - 3] + s[i - 4];
+      }
+    }
+  }
+
+  /**
+   * Calculates the number of bits of the partitioned Rice coded residual, and the best parameter
+   * of each partition.
+   */
+  private long riceBits(int length, int order, int partitionOrder) {
+    final int partitionSize = length >> partitionOrder;
+    long total = 0;
+    int start = order;
+    for (int partition = 0; partition < (1 << partitionOrder); partition++) {
+      final int end = (partition + 1) * partitionSize;
+      long sum = 0;
+      for (int i = start; i < end; i++) {
+        sum += zigzag(residual[i]);
+      }
+      final int count = end - start;
+      int parameter = 0;
+      while (parameter < MAX_RICE_PARAMETER && ((long) count << (parameter + 1)) < sum) {
+        parameter++;
+      }
+      riceParameters[partition] = parameter;
+      total += 4 + (long) count * (parameter + 1) + (parameter == 0 ? sum : sum >>> parameter);
+      start = end;
+    }
+    return total;
+  }
+
+  private void writeUtf8(long value) {
+    if (value < 0x80) {
+      writer.writeBits((int) value, 8);
+      return;
+    }
+    int bytes = 2;
+    while (bytes < 7 && value >= (1L << (5 * bytes + 1))) {
+      bytes++;
+    }
+    final int shift = 6 * (bytes - 1);
+    writer.writeBits((0xFF00 >> bytes) & 0xFF | (int) (value >>> shift), 8);
+    for (int i = bytes - 2; i >= 0; i--) {
+      writer.writeBits(0x80 | (int) ((value >>> (6 * i)) & 0x3F), 8);
+    }
+  }
+
+  private static long zigzag(int value) {
+    return ((long) value << 1) ^ (value >> 31);
+  }
+
+  private static int crc8(byte[] data, int length) {
+    int crc = 0;
+    for (int i = 0; i < length; i++) {
+      crc ^= data[i] & 0xFF;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0x07) & 0xFF : (crc << 1) & 0xFF;
+      }
+    }
+    return crc;
+  }
+
+  private static int crc16(byte[] data, int length) {
+    int crc = 0;
+    for (int i = 0; i < length; i++) {
+      crc ^= (data[i] & 0xFF) << 8;
+      for (int bit = 0; bit < 8; bit++) {
+        crc = (crc & 0x8000) != 0 ? ((crc << 1) ^ 0x8005) & 0xFFFF : (crc << 1) & 0xFFFF;
+      }
+    }
+    return crc;
+  }
+
+  /**
+   * Writes big endian bit sequences into a growing byte array.
+   */
+  private static class BitWriter {
+    private byte[] buffer = new byte[BLOCK_SIZE * 2];
+    private int position;
+    private long accumulator;
+    private int bits;
+
+    void reset() {
+      position = 0;
+      accumulator = 0;
+      bits = 0;
+    }
+
+    void writeBits(int value, int count) {
+      accumulator = (accumulator << count) | (value & ((1L << count) - 1));
+      bits += count;
+      while (bits >= 8) {
+        bits -= 8;
+        writeByte((int) (accumulator >>> bits));
+      }
+    }
+
+    void writeRice(int value, int parameter) {
+      final long unsigned = zigzag(value);
+      long quotient = unsigned >>> parameter;
+      while (quotient >= 32) {
+        writeBits(0, 32);
+        quotient -= 32;
+      }
+      writeBits(1, (int) quotient + 1);
+      if (parameter > 0)
+        writeBits((int) unsigned, parameter);
+    }
+
+    void alignToByte() {
+      if (bits > 0)
+        writeBits(0, 8 - bits);
+    }
+
+    int size() {
+      return position;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    private void writeByte(int value) {
+      if (position == buffer.length)
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      buffer[position++] = (byte) value;
+    }
+  }
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.SpeechToText;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Describes linear PCM audio sent to the {@link SpeechToText} service, either inside a WAVE (.wav)
+ * container or as raw <code>audio/l16</code> samples. It knows how to read and write the canonical
+ * 44 bytes WAVE header so audio can be processed on the client before it is uploaded.
+ *
+ * @see SpeechToText
+ */
+public class PcmAudioFormat {
+
+  /** The canonical WAVE header size in bytes. (value is 44) */
+  public static final int WAVE_HEADER_SIZE = 44;
+
+  /** Size used in streaming WAVE headers when the data length is not known. */
+  private static final long UNKNOWN_SIZE = 0xFFFFFFFFL;
+
+  private static final int WAVE_FORMAT_PCM = 1;
+  private static final String CHANNELS = "channels";
+  private static final String ENDIANNESS = "endianness";
+  private static final String LITTLE_ENDIAN = "little-endian";
+  private static final String RATE = "rate";
+
+  private final int sampleRate;
+  private final int channels;
+  private final int bitsPerSample;
+  private final boolean bigEndian;
+
+  /**
+   * Instantiates a new PCM audio format.
+   *
+   * @param sampleRate the sample rate in Hz
+   * @param channels the number of channels
+   * @param bitsPerSample the bits per sample
+   * @param bigEndian true if the samples are big endian
+   */
+  public PcmAudioFormat(int sampleRate, int channels, int bitsPerSample, boolean bigEndian) {
+    Validator.isTrue(sampleRate > 0, "sampleRate should be greater than 0");
+    Validator.isTrue(channels > 0, "channels should be greater than 0");
+    Validator.isTrue(bitsPerSample == 16, "Only 16 bits linear PCM audio is supported");
+    this.sampleRate = sampleRate;
+    this.channels = channels;
+    this.bitsPerSample = bitsPerSample;
+    this.bigEndian = bigEndian;
+  }
+
+  /**
+   * Returns true if the content type is a WAVE (.wav) media type.
+   *
+   * @param contentType the content type
+   * @return true if it is <code>audio/wav</code>
+   */
+  public static boolean isWave(String contentType) {
+    return contentType != null && contentType.toLowerCase().startsWith(HttpMediaType.AUDIO_WAV);
+  }
+
+  /**
+   * Returns true if the content type is linear PCM, either WAVE or <code>audio/l16</code>.
+   *
+   * @param contentType the content type
+   * @return true if the audio can be processed as PCM
+   */
+  public static boolean isPcm(String contentType) {
+    return isWave(contentType)
+        || (contentType != null && contentType.toLowerCase().startsWith(HttpMediaType.AUDIO_RAW));
+  }
+
+  /**
+   * Parses an <code>audio/l16</code> content type like <code>audio/l16; rate=16000; channels=1</code>.
+   * Samples are big endian unless <code>endianness=little-endian</code> is specified.
+   *
+   * @param contentType the content type
+   * @return the PCM audio format
+   */
+  public static PcmAudioFormat fromContentType(String contentType) {
+    Validator.isTrue(contentType != null && contentType.toLowerCase().startsWith(HttpMediaType.AUDIO_RAW),
+        "contentType should be " + HttpMediaType.AUDIO_RAW);
+
+    int rate = -1;
+    int channels = 1;
+    boolean bigEndian = true;
+    for (String parameter : contentType.split(";")) {
+      final String[] pair = parameter.trim().split("=");
+      if (pair.length != 2)
+        continue;
+      final String name = pair[0].trim().toLowerCase();
+      final String value = pair[1].trim();
+      if (RATE.equals(name)) {
+        rate = Integer.parseInt(value);
+      } else if (CHANNELS.equals(name)) {
+        channels = Integer.parseInt(value);
+      } else if (ENDIANNESS.equals(name)) {
+        bigEndian = !LITTLE_ENDIAN.equalsIgnoreCase(value);
+      }
+    }
+    Validator.isTrue(rate > 0, "When using PCM the audio rate should be specified.");
+    return new PcmAudioFormat(rate, channels, 16, bigEndian);
+  }
+
+  /**
+   * Reads a WAVE header from the input stream, skipping any chunk that is not <code>fmt </code>.
+   * The stream is left positioned at the first byte of the <code>data</code> chunk.
+   *
+   * @param in the input stream
+   * @return the PCM audio format
+   * @throws IOException if the stream is not a PCM WAVE stream or it cannot be read
+   */
+  public static PcmAudioFormat readWaveHeader(InputStream in) throws IOException {
+    final byte[] header = new byte[12];
+    readFully(in, header, header.length);
+    if (!"RIFF".equals(new String(header, 0, 4, "US-ASCII"))
+        || !"WAVE".equals(new String(header, 8, 4, "US-ASCII"))) {
+      throw new IOException("The audio is not a WAVE stream");
+    }
+
+    PcmAudioFormat format = null;
+    final byte[] chunk = new byte[8];
+    while (true) {
+      readFully(in, chunk, chunk.length);
+      final String id = new String(chunk, 0, 4, "US-ASCII");
+      final long size = readInt(chunk, 4) & UNKNOWN_SIZE;
+
+      if ("data".equals(id)) {
+        if (format == null)
+          throw new IOException("The WAVE stream does not have a fmt chunk");
+        return format;
+      }
+
+      if ("fmt ".equals(id)) {
+        final byte[] fmt = new byte[(int) size];
+        readFully(in, fmt, fmt.length);
+        if (readShort(fmt, 0) != WAVE_FORMAT_PCM)
+          throw new IOException("Only linear PCM WAVE streams are supported");
+        format = new PcmAudioFormat(readInt(fmt, 4), readShort(fmt, 2), readShort(fmt, 14), false);
+      } else {
+        skipFully(in, size);
+      }
+
+      // chunks are word aligned
+      if ((size & 1) == 1)
+        skipFully(in, 1);
+    }
+  }
+
+  /**
+   * Creates a canonical WAVE header for this format.
+   *
+   * @param dataLength the length of the audio data in bytes or a negative number if it is unknown
+   * @return the 44 bytes WAVE header
+   */
+  public byte[] toWaveHeader(long dataLength) {
+    final byte[] header = new byte[WAVE_HEADER_SIZE];
+    final long riffLength = dataLength < 0 ? UNKNOWN_SIZE : Math.min(UNKNOWN_SIZE, dataLength + 36);
+    final long dataSize = dataLength < 0 ? UNKNOWN_SIZE : Math.min(UNKNOWN_SIZE, dataLength);
+
+    writeAscii("RIFF", header, 0);
+    writeInt((int) riffLength, header, 4);
+    writeAscii("WAVE", header, 8);
+    writeAscii("fmt ", header, 12);
+    writeInt(16, header, 16);
+    writeShort(WAVE_FORMAT_PCM, header, 20);
+    writeShort(channels, header, 22);
+    writeInt(sampleRate, header, 24);
+    writeInt(getByteRate(), header, 28);
+    writeShort(getFrameSize(), header, 32);
+    writeShort(bitsPerSample, header, 34);
+    writeAscii("data", header, 36);
+    writeInt((int) dataSize, header, 40);
+    return header;
+  }
+
+  /**
+   * Returns the <code>audio/l16</code> content type for this format.
+   *
+   * @return the content type
+   */
+  public String toContentType() {
+    final StringBuilder builder = new StringBuilder(HttpMediaType.createAudioRaw(sampleRate));
+    builder.append("; ").append(CHANNELS).append('=').append(channels);
+    if (!bigEndian)
+      builder.append("; ").append(ENDIANNESS).append('=').append(LITTLE_ENDIAN);
+    return builder.toString();
+  }
+
+  /**
+   * Reads the sample at the given byte offset and normalizes it to [-1, 1].
+   *
+   * @param buffer the audio buffer
+   * @param offset the byte offset of the sample
+   * @return the normalized sample value
+   */
+  public double getSample(byte[] buffer, int offset) {
+    final int sample;
+    if (bigEndian)
+      sample = (short) ((buffer[offset] << 8) | (buffer[offset + 1] & 0xFF));
+    else
+      sample = (short) ((buffer[offset + 1] << 8) | (buffer[offset] & 0xFF));
+    return sample / 32768.0;
+  }
+
+  /**
+   * Gets the sample rate.
+   *
+   * @return the sample rate in Hz
+   */
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * Gets the number of channels.
+   *
+   * @return the channels
+   */
+  public int getChannels() {
+    return channels;
+  }
+
+  /**
+   * Gets the bits per sample.
+   *
+   * @return the bits per sample
+   */
+  public int getBitsPerSample() {
+    return bitsPerSample;
+  }
+
+  /**
+   * Checks if samples are big endian.
+   *
+   * @return true if samples are big endian
+   */
+  public boolean isBigEndian() {
+    return bigEndian;
+  }
+
+  /**
+   * Gets the size in bytes of one sample for every channel.
+   *
+   * @return the frame size
+   */
+  public int getFrameSize() {
+    return channels * bitsPerSample / 8;
+  }
+
+  /**
+   * Gets the number of bytes per second of audio.
+   *
+   * @return the byte rate
+   */
+  public int getByteRate() {
+    return sampleRate * getFrameSize();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.lang.Object#toString()
+   */
+  @Override
+  public String toString() {
+    return "PcmAudioFormat [sampleRate=" + sampleRate + ", channels=" + channels + ", bitsPerSample="
+        + bitsPerSample + ", bigEndian=" + bigEndian + "]";
+  }
+
+  private static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+    int offset = 0;
+    while (offset < length) {
+      final int read = in.read(buffer, offset, length - offset);
+      if (read < 0)
+        throw new EOFException("Unexpected end of the WAVE header");
+      offset += read;
+    }
+  }
+
+  private static void skipFully(InputStream in, long length) throws IOException {
+    while (length > 0) {
+      final long skipped = in.skip(length);
+      if (skipped <= 0) {
+        if (in.read() < 0)
+          throw new EOFException("Unexpected end of the WAVE header");
+        length--;
+      } else {
+        length -= skipped;
+      }
+    }
+  }
+
+  private static int readInt(byte[] array, int offset) {
+    return (array[offset] & 0xFF) | ((array[offset + 1] & 0xFF) << 8) | ((array[offset + 2] & 0xFF) << 16)
+        | ((array[offset + 3] & 0xFF) << 24);
+  }
+
+  private static int readShort(byte[] array, int offset) {
+    return (array[offset] & 0xFF) | ((array[offset + 1] & 0xFF) << 8);
+  }
+
+  private static void writeAscii(String value, byte[] array, int offset) {
+    for (int i = 0; i < value.length(); i++) {
+      array[offset + i] = (byte) value.charAt(i);
+    }
+  }
+
+  private static void writeInt(int value, byte[] array, int offset) {
+    for (int i = 0; i < 4; i++) {
+      array[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+
+  private static void writeShort(int value, byte[] array, int offset) {
+    array[offset] = (byte) value;
+    array[offset + 1] = (byte) (value >>> 8);
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Streaming sample rate converter for one audio channel. It uses a polyphase windowed-sinc low pass
+ * filter, so down-sampling does not alias. The filter coefficients are computed once, and only the
+ * input samples covered by the filter are kept between calls.
+ */
+public class Resampler {
+  private static final int HALF_TAPS = 8;
+  private static final int MAX_PHASES = 256;
+
+  private final int inputRate;
+  private final int outputRate;
+  private final int halfWidth;
+  private final int phases;
+  private final double[][] filters;
+
+  private double[] buffer;
+  private int bufferLength;
+  private long bufferStart;
+  private long nextOutput;
+
+  /**
+   * Instantiates a new resampler.
+   *
+   * @param inputRate the input sample rate
+   * @param outputRate the output sample rate
+   */
+  public Resampler(int inputRate, int outputRate) {
+    Validator.isTrue(inputRate > 0 && outputRate > 0, "sample rates should be greater than 0");
+    this.inputRate = inputRate;
+    this.outputRate = outputRate;
+
+    // cutoff in cycles per input sample, a bit below the lower Nyquist frequency
+    final double cutoff = 0.5 * Math.min(1.0, (double) outputRate / inputRate) * 0.95;
+    halfWidth = (int) Math.ceil(HALF_TAPS * Math.max(1.0, (double) inputRate / outputRate));
+    phases = Math.min(MAX_PHASES, outputRate / gcd(inputRate, outputRate));
+
+    filters = new double[phases][2 * halfWidth];
+    for (int phase = 0; phase < phases; phase++) {
+      final double fraction = (double) phase / phases;
+      double sum = 0;
+      for (int tap = 0; tap < 2 * halfWidth; tap++) {
+        final double x = tap - halfWidth + 1 - fraction;
+        final double value = 2 * cutoff * sinc(2 * cutoff * x) * blackman(x / halfWidth);
+        filters[phase][tap] = value;
+        sum += value;
+      }
+      // unity gain for every phase
+      for (int tap = 0; tap < 2 * halfWidth; tap++) {
+        filters[phase][tap] /= sum;
+      }
+    }
+
+    // the filter looks back halfWidth samples before the first input sample
+    buffer = new double[4 * halfWidth];
+    bufferLength = halfWidth;
+    bufferStart = -halfWidth;
+  }
+
+  /**
+   * Gets the maximum number of samples produced by {@link #process(double[], int, double[])} for
+   * an input length, or by {@link #flush(double[])}.
+   *
+   * @param inputLength the input length
+   * @return the output buffer size needed
+   */
+  public int getMaxOutputLength(int inputLength) {
+    return (int) (((long) (inputLength + 4 * halfWidth) * outputRate) / inputRate) + 2;
+  }
+
+  /**
+   * Resamples a block of input samples.
+   *
+   * @param input the input samples
+   * @param length the number of input samples
+   * @param output the output buffer, see {@link #getMaxOutputLength(int)}
+   * @return the number of output samples
+   */
+  public int process(double[] input, int length, double[] output) {
+    ensureCapacity(bufferLength + length);
+    System.arraycopy(input, 0, buffer, bufferLength, length);
+    bufferLength += length;
+    return produce(output);
+  }
+
+  /**
+   * Resamples the input still in the filter, at the end of the stream.
+   *
+   * @param output the output buffer, see {@link #getMaxOutputLength(int)}
+   * @return the number of output samples
+   */
+  public int flush(double[] output) {
+    final double[] silence = new double[halfWidth];
+    return process(silence, silence.length, output);
+  }
+
+  private int produce(double[] output) {
+    int count = 0;
+    final long available = bufferStart + bufferLength;
+    while (true) {
+      final long position = nextOutput * inputRate;
+      final long index = position / outputRate;
+      if (index + halfWidth >= available)
+        break;
+
+      final int phase = (int) ((position % outputRate) * phases / outputRate);
+      final double[] filter = filters[phase];
+      final int first = (int) (index - halfWidth + 1 - bufferStart);
+      double value = 0;
+      for (int tap = 0; tap < filter.length; tap++) {
+        value += filter[tap] * buffer[first + tap];
+      }
+      output[count++] = value;
+      nextOutput++;
+    }
+
+    // drop the input that no output sample needs anymore
+    final long firstNeeded = (nextOutput * inputRate) / outputRate - halfWidth + 1;
+    final int discard = (int) Math.max(0, Math.min(bufferLength, firstNeeded - bufferStart));
+    if (discard > 0) {
+      System.arraycopy(buffer, discard, buffer, 0, bufferLength - discard);
+      bufferLength -= discard;
+      bufferStart += discard;
+    }
+    return count;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > buffer.length) {
+      final double[] newBuffer = new double[Math.max(capacity, buffer.length * 2)];
+      System.arraycopy(buffer, 0, newBuffer, 0, bufferLength);
+      buffer = newBuffer;
+    }
+  }
+
+  private static double sinc(double x) {
+    if (x == 0)
+      return 1;
+    return Math.sin(Math.PI * x) / (Math.PI * x);
+  }
+
+  private static double blackman(double x) {
+    // x goes from -1 to 1
+    final double n = (x + 1) / 2;
+    if (n < 0 || n > 1)
+      return 0;
+    return 0.42 - 0.5 * Math.cos(2 * Math.PI * n) + 0.08 * Math.cos(4 * Math.PI * n);
+  }
+
+  private static int gcd(int a, int b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+}
@@ -0,0 +1,332 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * {@link InputStream} that removes long silences from linear PCM audio (WAVE or
+ * <code>audio/l16</code>) using a {@link VoiceActivityDetector}. The audio is processed frame by
+ * frame, so memory use is bounded by the minimum silence duration regardless of the audio length.
+ * <br>
+ * WAVE input is written back with a canonical header. Since the filtered length is not known until
+ * the audio is read, the header sizes are set to the streaming maximum unless the data length is
+ * given (e.g. from a previous pass over the same file).<br>
+ * Every dropped silence is recorded in a {@link SpeechTimeMap}, which can be used to re-expand
+ * timestamps returned by the service to original audio time.
+ */
+public class SilenceFilterInputStream extends InputStream {
+
+  private final InputStream in;
+  private final String contentType;
+  private final VoiceActivityDetector detector;
+  private final long dataLength;
+  private final SpeechTimeMap timeMap = new SpeechTimeMap();
+  private final ArrayDeque<byte[]> pending = new ArrayDeque<byte[]>();
+  private final ArrayDeque<byte[]> recycled = new ArrayDeque<byte[]>();
+
+  private PcmAudioFormat format;
+  private byte[] frame;
+  private int frameSize;
+  private int minSilenceFrames;
+  private int headFrames;
+  private int tailFrames;
+
+  private byte[] output = new byte[0];
+  private int outputPosition;
+  private int outputLimit;
+
+  private int silentFrames;
+  private boolean dropping;
+  private boolean endOfInput;
+  private boolean eof;
+  private long bytesRead;
+  private long bytesWritten;
+  private long originalSamples;
+  private long processedSamples;
+
+  /**
+   * Instantiates a new silence filter input stream for audio of unknown length.
+   *
+   * @param in the audio input stream
+   * @param contentType the audio content type, <code>audio/wav</code> or <code>audio/l16</code>
+   * @param detector the voice activity detector
+   */
+  public SilenceFilterInputStream(InputStream in, String contentType, VoiceActivityDetector detector) {
+    this(in, contentType, detector, -1);
+  }
+
+  /**
+   * Instantiates a new silence filter input stream.
+   *
+   * @param in the audio input stream
+   * @param contentType the audio content type, <code>audio/wav</code> or <code>audio/l16</code>
+   * @param detector the voice activity detector
+   * @param dataLength the length of the filtered audio data used in the WAVE header, or a negative
+   *        number if it is unknown
+   */
+  public SilenceFilterInputStream(InputStream in, String contentType, VoiceActivityDetector detector,
+      long dataLength) {
+    Validator.notNull(in, "in cannot be null");
+    Validator.notNull(detector, "detector cannot be null");
+    Validator.isTrue(PcmAudioFormat.isPcm(contentType), "Silence can only be removed from audio/wav or audio/l16");
+    this.in = in;
+    this.contentType = contentType;
+    this.detector = detector;
+    this.dataLength = dataLength;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (format == null)
+      initialize();
+
+    while (outputPosition == outputLimit) {
+      if (eof)
+        return -1;
+      outputPosition = outputLimit = 0;
+      processFrame();
+    }
+
+    final int count = Math.min(length, outputLimit - outputPosition);
+    System.arraycopy(output, outputPosition, buffer, offset, count);
+    outputPosition += count;
+    bytesWritten += count;
+    return count;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#close()
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Gets the time map between the filtered and the original audio.
+   *
+   * @return the time map
+   */
+  public SpeechTimeMap getTimeMap() {
+    return timeMap;
+  }
+
+  /**
+   * Gets the number of bytes read from the original audio.
+   *
+   * @return the bytes read
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Gets the number of bytes returned by this stream, including the WAVE header.
+   *
+   * @return the bytes written
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /**
+   * Gets the length of the filtered audio without the WAVE header.
+   *
+   * @return the filtered audio data length
+   */
+  public long getDataBytesWritten() {
+    return processedSamples * frameSize;
+  }
+
+  /**
+   * Reads the audio format and writes the WAVE header if needed.
+   */
+  private void initialize() throws IOException {
+    if (PcmAudioFormat.isWave(contentType)) {
+      format = PcmAudioFormat.readWaveHeader(new CountingStream());
+      append(format.toWaveHeader(dataLength), 0, PcmAudioFormat.WAVE_HEADER_SIZE);
+    } else {
+      format = PcmAudioFormat.fromContentType(contentType);
+    }
+
+    frameSize = format.getFrameSize();
+    final int frameSamples = Math.max(1, format.getSampleRate() * detector.getFrameDuration() / 1000);
+    frame = new byte[frameSamples * frameSize];
+    minSilenceFrames = Math.max(1, detector.getMinSilence() / detector.getFrameDuration());
+    final int keptFrames = detector.getKeptSilence() / detector.getFrameDuration();
+    headFrames = keptFrames / 2;
+    tailFrames = keptFrames - headFrames;
+  }
+
+  /**
+   * Reads and filters the next frame.
+   */
+  private void processFrame() throws IOException {
+    final int length = readFrame();
+    if (length > 0)
+      filterFrame(length);
+    if (endOfInput)
+      finish();
+  }
+
+  /**
+   * Writes a speech frame, or keeps a silent frame until the silence length is known.
+   *
+   * @param length the frame length in bytes
+   */
+  private void filterFrame(int length) {
+    if (length < frame.length || detector.isSpeech(frame, length, format)) {
+      if (dropping) {
+        // a long silence just ended, the next sample written comes from the start of the tail
+        final long tailSamples = samples(pending);
+        timeMap.addSegment(seconds(processedSamples), seconds(originalSamples - tailSamples));
+      }
+      flushPending();
+      write(frame, length);
+      silentFrames = 0;
+      dropping = false;
+    } else {
+      silentFrames++;
+      pending.addLast(copy(frame, length));
+      if (!dropping && silentFrames > minSilenceFrames) {
+        // the silence is long: keep the head and start dropping until the speech comes back
+        for (int i = 0; i < headFrames; i++) {
+          writeFrame(pending.removeFirst());
+        }
+        dropping = true;
+      }
+      if (dropping) {
+        while (pending.size() > tailFrames) {
+          recycled.addLast(pending.removeFirst());
+        }
+      }
+    }
+    originalSamples += length / frameSize;
+  }
+
+  /**
+   * Writes or drops the pending silence at the end of the stream.
+   */
+  private void finish() {
+    if (!dropping)
+      flushPending();
+    pending.clear();
+    eof = true;
+  }
+
+  private int readFrame() throws IOException {
+    int offset = 0;
+    while (offset < frame.length) {
+      final int read = in.read(frame, offset, frame.length - offset);
+      if (read < 0) {
+        endOfInput = true;
+        break;
+      }
+      offset += read;
+      bytesRead += read;
+    }
+    // ignore incomplete samples at the end of the stream
+    return offset - (offset % frameSize);
+  }
+
+  private void flushPending() {
+    while (!pending.isEmpty()) {
+      writeFrame(pending.removeFirst());
+    }
+  }
+
+  private void writeFrame(byte[] silentFrame) {
+    write(silentFrame, silentFrame.length);
+    recycled.addLast(silentFrame);
+  }
+
+  private void write(byte[] buffer, int length) {
+    append(buffer, 0, length);
+    processedSamples += length / frameSize;
+  }
+
+  private void append(byte[] buffer, int offset, int length) {
+    if (outputLimit + length > output.length) {
+      final byte[] newOutput = new byte[Math.max(output.length * 2, outputLimit + length)];
+      System.arraycopy(output, 0, newOutput, 0, outputLimit);
+      output = newOutput;
+    }
+    System.arraycopy(buffer, offset, output, outputLimit, length);
+    outputLimit += length;
+  }
+
+  private byte[] copy(byte[] buffer, int length) {
+    byte[] copy = recycled.pollFirst();
+    if (copy == null || copy.length != length)
+      copy = new byte[length];
+    System.arraycopy(buffer, 0, copy, 0, length);
+    return copy;
+  }
+
+  private long samples(Iterable<byte[]> frames) {
+    long samples = 0;
+    for (byte[] silentFrame : frames) {
+      samples += silentFrame.length / frameSize;
+    }
+    return samples;
+  }
+
+  private double seconds(long samples) {
+    return (double) samples / format.getSampleRate();
+  }
+
+  /**
+   * Counts the header bytes read from the original audio.
+   */
+  private class CountingStream extends InputStream {
+    @Override
+    public int read() throws IOException {
+      final int read = in.read();
+      if (read >= 0)
+        bytesRead++;
+      return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      final int read = in.read(buffer, offset, length);
+      if (read > 0)
+        bytesRead += read;
+      return read;
+    }
+  }
+}
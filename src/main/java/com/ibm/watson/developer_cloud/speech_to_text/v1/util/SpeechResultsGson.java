@@ -0,0 +1,70 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.util.Date;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechWordConfidence;
+import com.ibm.watson.developer_cloud.util.DateDeserializer;
+import com.ibm.watson.developer_cloud.util.DateSerializer;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+/**
+ * Gson instances to read {@link SpeechResults}. When
+ * {@link RecognizeOptions#columnarTimestamps()} is set, the timestamps and word confidences are
+ * read with the {@link SpeechTimestampListTypeAdapter} and the
+ * {@link SpeechWordConfidenceListTypeAdapter}.
+ */
+public final class SpeechResultsGson {
+  private static Gson columnarGson;
+
+  private SpeechResultsGson() {}
+
+  /**
+   * Gets the Gson to read the results of a recognition.
+   *
+   * @param options the recognize options, may be null
+   * @return the Gson
+   */
+  public static Gson getGson(RecognizeOptions options) {
+    if (options != null && options.columnarTimestamps())
+      return getColumnarGson();
+    return GsonSingleton.getGsonWithoutPrettyPrinting();
+  }
+
+  /**
+   * Gets the Gson that reads timestamps and word confidences into columnar lists.
+   *
+   * @return the Gson
+   */
+  public static synchronized Gson getColumnarGson() {
+    if (columnarGson == null) {
+      columnarGson = new GsonBuilder().registerTypeAdapter(Date.class, new DateDeserializer())
+          .registerTypeAdapter(Date.class, new DateSerializer())
+          .registerTypeAdapter(new TypeToken<List<SpeechTimestamp>>() {}.getType(),
+              new SpeechTimestampListTypeAdapter())
+          .registerTypeAdapter(new TypeToken<List<SpeechWordConfidence>>() {}.getType(),
+              new SpeechWordConfidenceListTypeAdapter())
+          .create();
+    }
+    return columnarGson;
+  }
+}
@@ -0,0 +1,631 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.SpeechToText;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSession;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSessionStatus;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Pool of warm {@link SpeechSession}s. A session locks a recognition engine, so recognizing audio
+ * with a pooled session saves the session creation round-trip and the engine warm-up.<br>
+ * Sessions are created up front for every configured model, and idle sessions are kept alive with
+ * {@link SpeechToText#getRecognizeStatus(SpeechSession)} heartbeats, since the service expires them
+ * after 15 minutes of inactivity. A session returned to the pool is validated in the background
+ * before it is leased again, and all the sessions are deleted on {@link #shutdown()}.<br>
+ * The service binds a session to the cookie returned when it is created, and a {@link SpeechToText}
+ * keeps one cookie per host, so every session gets its own client from a {@link ClientFactory}.
+ *
+ * Here is an example of how to recognize audio files with pooled sessions:
+ *
+ * <pre>
+ * SpeechSessionPool pool = new SpeechSessionPool.Builder(new SpeechSessionPool.ClientFactory() {
+ *   public SpeechToText newClient() {
+ *     return new SpeechToText(&quot;username&quot;, &quot;password&quot;);
+ *   }
+ * }).model(&quot;en-US_BroadbandModel&quot;, 2).build();
+ *
+ * SpeechResults results = pool.recognize(audio, options);
+ *
+ * pool.shutdown();
+ * </pre>
+ */
+public class SpeechSessionPool {
+  private static final Logger LOG = Logger.getLogger(SpeechSessionPool.class.getName());
+  private static final String STATE_INITIALIZED = "initialized";
+
+  /**
+   * Creates the clients of the pooled sessions.
+   */
+  public interface ClientFactory {
+
+    /**
+     * Creates a new client, with its own cookies.
+     *
+     * @return the speech to text service
+     */
+    SpeechToText newClient();
+  }
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final ClientFactory clientFactory;
+    private final Map<String, Integer> models = new LinkedHashMap<String, Integer>();
+    private int maxSize = 4;
+    private long maxWait = 30000;
+    private long heartbeatInterval = 5 * 60 * 1000;
+    private boolean validateOnRelease = true;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param clientFactory the factory of the session clients
+     */
+    public Builder(ClientFactory clientFactory) {
+      Validator.notNull(clientFactory, "clientFactory cannot be null");
+      this.clientFactory = clientFactory;
+    }
+
+    /**
+     * Builds the pool and creates the initial sessions.
+     *
+     * @return the speech session pool
+     */
+    public SpeechSessionPool build() {
+      for (Integer minSize : models.values()) {
+        Validator.isTrue(minSize <= maxSize, "the initial number of sessions cannot be greater than maxSize");
+      }
+      final SpeechSessionPool pool = new SpeechSessionPool(this);
+      pool.start();
+      return pool;
+    }
+
+    /**
+     * Creates <code>minSize</code> sessions for a model when the pool is built, and keeps at least
+     * that many afterwards. Sessions for other models are created on demand.
+     *
+     * @param model the model name, null for the default model
+     * @param minSize the number of warm sessions
+     * @return the builder
+     */
+    public Builder model(String model, int minSize) {
+      Validator.isTrue(minSize >= 0, "minSize cannot be negative");
+      models.put(model, minSize);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of sessions per model. The default is 4.
+     *
+     * @param maxSize the max size
+     * @return the builder
+     */
+    public Builder maxSize(int maxSize) {
+      Validator.isTrue(maxSize > 0, "maxSize should be greater than 0");
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Sets how long {@link SpeechSessionPool#acquire(String)} waits for a session when all of them
+     * are leased. The default is 30 seconds.
+     *
+     * @param maxWait the max wait
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder maxWait(long maxWait, TimeUnit unit) {
+      Validator.isTrue(maxWait >= 0, "maxWait cannot be negative");
+      this.maxWait = unit.toMillis(maxWait);
+      return this;
+    }
+
+    /**
+     * Sets the interval between heartbeats to idle sessions. It should be well below the 15 minutes
+     * session timeout. The default is 5 minutes.
+     *
+     * @param heartbeatInterval the heartbeat interval
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder heartbeatInterval(long heartbeatInterval, TimeUnit unit) {
+      Validator.isTrue(heartbeatInterval > 0, "heartbeatInterval should be greater than 0");
+      this.heartbeatInterval = unit.toMillis(heartbeatInterval);
+      return this;
+    }
+
+    /**
+     * If true (the default), the status of a session is checked in the background when it is returned
+     * to the pool, and sessions that are not ready for a new recognition are deleted. The session is
+     * not leased again until it is checked.
+     *
+     * @param validateOnRelease the validate on release
+     * @return the builder
+     */
+    public Builder validateOnRelease(boolean validateOnRelease) {
+      this.validateOnRelease = validateOnRelease;
+      return this;
+    }
+  }
+
+  /**
+   * The sessions of a model.
+   */
+  private static class ModelSessions {
+    private final ArrayDeque<SpeechSession> idle = new ArrayDeque<SpeechSession>();
+    private final int minSize;
+    private int size;
+
+    ModelSessions(int minSize) {
+      this.minSize = minSize;
+    }
+  }
+
+  private final ClientFactory clientFactory;
+  private final int maxSize;
+  private final long maxWait;
+  private final long heartbeatInterval;
+  private final boolean validateOnRelease;
+  private final Map<String, ModelSessions> sessions = new HashMap<String, ModelSessions>();
+  private final Map<String, String> leased = new HashMap<String, String>();
+  private final Map<String, SpeechToText> clients = new HashMap<String, SpeechToText>();
+  private final ScheduledExecutorService scheduler;
+  private boolean shutdown;
+
+  private long createdCount;
+  private long deletedCount;
+  private long leaseCount;
+  private long waitCount;
+  private long totalWaitTime;
+  private long maxWaitTime;
+  private long heartbeatFailures;
+
+  private SpeechSessionPool(Builder builder) {
+    this.clientFactory = builder.clientFactory;
+    this.maxSize = builder.maxSize;
+    this.maxWait = builder.maxWait;
+    this.heartbeatInterval = builder.heartbeatInterval;
+    this.validateOnRelease = builder.validateOnRelease;
+    for (Map.Entry<String, Integer> model : builder.models.entrySet()) {
+      sessions.put(model.getKey(), new ModelSessions(model.getValue()));
+    }
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "speech-session-pool");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+  }
+
+  private void start() {
+    for (String model : new ArrayList<String>(sessions.keySet())) {
+      fill(model);
+    }
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        heartbeat();
+      }
+    }, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Recognizes an audio file with a pooled session of the model in the options.
+   *
+   * @param audio the audio file
+   * @param options the recognize options, the session id is set by the pool
+   * @return the {@link SpeechResults}
+   */
+  public SpeechResults recognize(File audio, RecognizeOptions options) {
+    final String model = options != null ? options.model() : null;
+    final SpeechSession session = acquire(model);
+    try {
+      // the session is already bound to the model
+      final RecognizeOptions.Builder builder =
+          options != null ? options.newBuilder() : new RecognizeOptions.Builder();
+      return getClient(session).recognize(audio, builder.model(null).sessionId(session.getSessionId()).build())
+          .execute();
+    } finally {
+      release(session);
+    }
+  }
+
+  /**
+   * Leases a session for a model. The session should only be used with its client, see
+   * {@link #getClient(SpeechSession)}, and returned with {@link #release(SpeechSession)} once the
+   * recognition is done.
+   *
+   * @param model the model name, null for the default model
+   * @return the speech session
+   */
+  public SpeechSession acquire(String model) {
+    final long start = System.currentTimeMillis();
+    boolean waited = false;
+    synchronized (this) {
+      final ModelSessions modelSessions = getModelSessions(model);
+      while (true) {
+        if (shutdown)
+          throw new IllegalStateException("The session pool has been shut down");
+        final SpeechSession session = modelSessions.idle.pollFirst();
+        if (session != null) {
+          lease(session, model, waited, start);
+          return session;
+        }
+        if (modelSessions.size < maxSize) {
+          modelSessions.size++;
+          break;
+        }
+        final long remaining = start + maxWait - System.currentTimeMillis();
+        if (remaining <= 0)
+          throw new RuntimeException("Timed out waiting for a speech session for model " + model);
+        waited = true;
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new RuntimeException(e);
+        }
+      }
+    }
+
+    final SpeechSession session = create(model);
+    synchronized (this) {
+      lease(session, model, waited, start);
+    }
+    return session;
+  }
+
+  /**
+   * Gets the client a session was created with. The service only accepts the requests of a session
+   * with the cookie of that client.
+   *
+   * @param session the speech session
+   * @return the speech to text service
+   */
+  public synchronized SpeechToText getClient(SpeechSession session) {
+    Validator.notNull(session, "session cannot be null");
+    final SpeechToText client = clients.get(session.getSessionId());
+    Validator.notNull(client, "the session was not created by this pool");
+    return client;
+  }
+
+  /**
+   * Returns a leased session to the pool. When the sessions are validated on release, the session is
+   * checked on the pool thread and becomes available afterwards.
+   *
+   * @param session the speech session
+   */
+  public void release(final SpeechSession session) {
+    Validator.notNull(session, "session cannot be null");
+    final String model;
+    synchronized (this) {
+      Validator.isTrue(leased.containsKey(session.getSessionId()), "the session was not leased from this pool");
+      model = leased.remove(session.getSessionId());
+      if (!shutdown) {
+        if (!validateOnRelease) {
+          getModelSessions(model).idle.addFirst(session);
+          notifyAll();
+        } else {
+          // the scheduler is shut down after the flag is set, so it still accepts the check
+          scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+              final boolean ready = isReady(session);
+              synchronized (SpeechSessionPool.this) {
+                if (ready && !shutdown) {
+                  getModelSessions(model).idle.addFirst(session);
+                  SpeechSessionPool.this.notifyAll();
+                  return;
+                }
+              }
+              discard(session, model);
+            }
+          });
+        }
+        return;
+      }
+    }
+    discard(session, model);
+  }
+
+  /**
+   * Stops the heartbeats and deletes the idle sessions. Leased sessions are deleted when they are
+   * released.
+   */
+  public void shutdown() {
+    final List<SpeechSession> idle = new ArrayList<SpeechSession>();
+    final List<String> models = new ArrayList<String>();
+    synchronized (this) {
+      if (shutdown)
+        return;
+      shutdown = true;
+      for (Map.Entry<String, ModelSessions> entry : sessions.entrySet()) {
+        for (SpeechSession session : entry.getValue().idle) {
+          idle.add(session);
+          models.add(entry.getKey());
+        }
+        entry.getValue().idle.clear();
+      }
+      notifyAll();
+    }
+    // let a running heartbeat finish, so it does not leave sessions behind
+    scheduler.shutdown();
+    try {
+      scheduler.awaitTermination(maxWait, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (int i = 0; i < idle.size(); i++) {
+      discard(idle.get(i), models.get(i));
+    }
+  }
+
+  /**
+   * Gets the number of sessions of a model, idle or leased.
+   *
+   * @param model the model name
+   * @return the size
+   */
+  public synchronized int getSize(String model) {
+    final ModelSessions modelSessions = sessions.get(model);
+    return modelSessions != null ? modelSessions.size : 0;
+  }
+
+  /**
+   * Gets the number of idle sessions of a model.
+   *
+   * @param model the model name
+   * @return the idle count
+   */
+  public synchronized int getIdleCount(String model) {
+    final ModelSessions modelSessions = sessions.get(model);
+    return modelSessions != null ? modelSessions.idle.size() : 0;
+  }
+
+  /**
+   * Gets the number of sessions leased, for all the models.
+   *
+   * @return the leased count
+   */
+  public synchronized int getLeasedCount() {
+    return leased.size();
+  }
+
+  /**
+   * Gets the number of sessions created.
+   *
+   * @return the created count
+   */
+  public synchronized long getCreatedCount() {
+    return createdCount;
+  }
+
+  /**
+   * Gets the number of sessions deleted because they expired, failed validation or the pool was shut
+   * down.
+   *
+   * @return the deleted count
+   */
+  public synchronized long getDeletedCount() {
+    return deletedCount;
+  }
+
+  /**
+   * Gets the number of leases.
+   *
+   * @return the lease count
+   */
+  public synchronized long getLeaseCount() {
+    return leaseCount;
+  }
+
+  /**
+   * Gets the number of leases that had to wait for another lease to be released.
+   *
+   * @return the wait count
+   */
+  public synchronized long getWaitCount() {
+    return waitCount;
+  }
+
+  /**
+   * Gets the average time spent in {@link #acquire(String)} in milliseconds, including the session
+   * creation when no idle session was available.
+   *
+   * @return the average wait time
+   */
+  public synchronized double getAverageWaitTime() {
+    return leaseCount == 0 ? 0 : (double) totalWaitTime / leaseCount;
+  }
+
+  /**
+   * Gets the longest time spent in {@link #acquire(String)} in milliseconds.
+   *
+   * @return the max wait time
+   */
+  public synchronized long getMaxWaitTime() {
+    return maxWaitTime;
+  }
+
+  /**
+   * Gets the number of heartbeats that found an expired or broken session.
+   *
+   * @return the heartbeat failures
+   */
+  public synchronized long getHeartbeatFailures() {
+    return heartbeatFailures;
+  }
+
+  private ModelSessions getModelSessions(String model) {
+    ModelSessions modelSessions = sessions.get(model);
+    if (modelSessions == null) {
+      modelSessions = new ModelSessions(0);
+      sessions.put(model, modelSessions);
+    }
+    return modelSessions;
+  }
+
+  private void lease(SpeechSession session, String model, boolean waited, long start) {
+    final long waitTime = System.currentTimeMillis() - start;
+    leased.put(session.getSessionId(), model);
+    leaseCount++;
+    if (waited)
+      waitCount++;
+    totalWaitTime += waitTime;
+    maxWaitTime = Math.max(maxWaitTime, waitTime);
+  }
+
+  /**
+   * Creates a session for a slot already counted in the model size.
+   */
+  private SpeechSession create(String model) {
+    try {
+      final SpeechToText client = clientFactory.newClient();
+      final SpeechSession session = client.createSession(model).execute();
+      synchronized (this) {
+        clients.put(session.getSessionId(), client);
+        createdCount++;
+      }
+      return session;
+    } catch (RuntimeException e) {
+      synchronized (this) {
+        getModelSessions(model).size--;
+        notifyAll();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Deletes a session and frees its slot.
+   */
+  private void discard(SpeechSession session, String model) {
+    final SpeechToText client;
+    synchronized (this) {
+      client = clients.remove(session.getSessionId());
+      getModelSessions(model).size--;
+      deletedCount++;
+      notifyAll();
+    }
+    try {
+      client.deleteSession(session).execute();
+    } catch (RuntimeException e) {
+      LOG.log(Level.FINE, "Error deleting session " + session.getSessionId(), e);
+    }
+  }
+
+  /**
+   * Creates sessions until the model has its minimum number of sessions.
+   */
+  private void fill(String model) {
+    while (true) {
+      synchronized (this) {
+        final ModelSessions modelSessions = getModelSessions(model);
+        if (shutdown || modelSessions.size >= modelSessions.minSize)
+          return;
+        modelSessions.size++;
+      }
+      final SpeechSession session;
+      try {
+        session = create(model);
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "Error creating a session for model " + model, e);
+        return;
+      }
+      synchronized (this) {
+        if (!shutdown) {
+          getModelSessions(model).idle.addLast(session);
+          notifyAll();
+          continue;
+        }
+      }
+      discard(session, model);
+      return;
+    }
+  }
+
+  private boolean isReady(SpeechSession session) {
+    final SpeechToText client;
+    synchronized (this) {
+      client = clients.get(session.getSessionId());
+    }
+    try {
+      final SpeechSessionStatus status = client.getRecognizeStatus(session).execute();
+      return STATE_INITIALIZED.equals(status.getState());
+    } catch (RuntimeException e) {
+      LOG.log(Level.FINE, "Session " + session.getSessionId() + " is not available", e);
+      return false;
+    }
+  }
+
+  /**
+   * Keeps the idle sessions alive, and replaces the ones that expired. The sessions are checked one
+   * at a time, so the others can still be leased.
+   */
+  private void heartbeat() {
+    final List<String> models;
+    synchronized (this) {
+      models = new ArrayList<String>(sessions.keySet());
+    }
+    for (String model : models) {
+      final List<SpeechSession> idle;
+      synchronized (this) {
+        idle = new ArrayList<SpeechSession>(getModelSessions(model).idle);
+      }
+
+      for (SpeechSession session : idle) {
+        synchronized (this) {
+          if (shutdown)
+            return;
+          // take it out of the pool so it is not leased during the check, unless it already was
+          if (!getModelSessions(model).idle.remove(session))
+            continue;
+        }
+        final boolean ready = isReady(session);
+        synchronized (this) {
+          if (ready && !shutdown) {
+            getModelSessions(model).idle.addLast(session);
+            notifyAll();
+            continue;
+          }
+          if (!ready)
+            heartbeatFailures++;
+        }
+        discard(session, model);
+      }
+      fill(model);
+    }
+  }
+}
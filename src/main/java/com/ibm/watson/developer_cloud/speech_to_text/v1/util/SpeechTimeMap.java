@@ -0,0 +1,169 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.KeywordsResult;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestampList;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+
+/**
+ * Maps positions in audio that was modified on the client (e.g. with silences removed) back to
+ * positions in the original audio. Every time audio is dropped a new segment starts, and each
+ * segment records where it starts in the processed and in the original audio.<br>
+ * Segments are added while the audio is being sent and read when results arrive, so all the
+ * methods are thread safe.
+ *
+ * @see SilenceFilterInputStream
+ */
+public class SpeechTimeMap {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private double[] processed = new double[INITIAL_CAPACITY];
+  private double[] original = new double[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Instantiates a new time map with a single segment that starts at zero.
+   */
+  public SpeechTimeMap() {
+    size = 1;
+  }
+
+  /**
+   * Starts a new segment.
+   *
+   * @param processedTime the time in seconds where the segment starts in the processed audio
+   * @param originalTime the time in seconds where the segment starts in the original audio
+   */
+  public synchronized void addSegment(double processedTime, double originalTime) {
+    if (processed[size - 1] == processedTime) {
+      original[size - 1] = originalTime;
+      return;
+    }
+    if (size == processed.length) {
+      processed = Arrays.copyOf(processed, size * 2);
+      original = Arrays.copyOf(original, size * 2);
+    }
+    processed[size] = processedTime;
+    original[size] = originalTime;
+    size++;
+  }
+
+  /**
+   * Gets the number of segments.
+   *
+   * @return the number of segments
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Converts a start time in the processed audio into the original audio time.
+   *
+   * @param seconds the time in seconds in the processed audio
+   * @return the time in seconds in the original audio
+   */
+  public double toOriginalStartTime(double seconds) {
+    return toOriginalTime(seconds, false);
+  }
+
+  /**
+   * Converts an end time in the processed audio into the original audio time. An end time that
+   * falls exactly on a segment boundary belongs to the segment before it.
+   *
+   * @param seconds the time in seconds in the processed audio
+   * @return the time in seconds in the original audio
+   */
+  public double toOriginalEndTime(double seconds) {
+    return toOriginalTime(seconds, true);
+  }
+
+  /**
+   * Re-expands all the timestamps and keyword times in the {@link SpeechResults} from processed
+   * audio time to original audio time.
+   *
+   * @param speechResults the speech results to update
+   */
+  public void remap(SpeechResults speechResults) {
+    if (speechResults == null || speechResults.getResults() == null)
+      return;
+
+    for (Transcript transcript : speechResults.getResults()) {
+      if (transcript.getAlternatives() != null) {
+        for (SpeechAlternative alternative : transcript.getAlternatives()) {
+          if (alternative.getTimestamps() == null)
+            continue;
+          if (alternative.getTimestamps() instanceof SpeechTimestampList) {
+            remap((SpeechTimestampList) alternative.getTimestamps());
+            continue;
+          }
+          // set the timestamps back, in case the list returns copies
+          final ListIterator<SpeechTimestamp> timestamps = alternative.getTimestamps().listIterator();
+          while (timestamps.hasNext()) {
+            final SpeechTimestamp timestamp = timestamps.next();
+            if (timestamp.getStartTime() != null)
+              timestamp.setStartTime(toOriginalStartTime(timestamp.getStartTime()));
+            if (timestamp.getEndTime() != null)
+              timestamp.setEndTime(toOriginalEndTime(timestamp.getEndTime()));
+            timestamps.set(timestamp);
+          }
+        }
+      }
+      if (transcript.getKeywordsResult() != null) {
+        for (List<KeywordsResult> keywords : transcript.getKeywordsResult().values()) {
+          for (KeywordsResult keyword : keywords) {
+            if (keyword.getStartTime() != null)
+              keyword.setStartTime(toOriginalStartTime(keyword.getStartTime()));
+            if (keyword.getEndTime() != null)
+              keyword.setEndTime(toOriginalEndTime(keyword.getEndTime()));
+          }
+        }
+      }
+    }
+  }
+
+  private void remap(SpeechTimestampList timestamps) {
+    for (int i = 0; i < timestamps.size(); i++) {
+      final double startTime = timestamps.getStartTime(i);
+      if (!Double.isNaN(startTime))
+        timestamps.setStartTime(i, toOriginalStartTime(startTime));
+      final double endTime = timestamps.getEndTime(i);
+      if (!Double.isNaN(endTime))
+        timestamps.setEndTime(i, toOriginalEndTime(endTime));
+    }
+  }
+
+  private synchronized double toOriginalTime(double seconds, boolean end) {
+    int low = 0;
+    int high = size - 1;
+    // find the last segment that starts before the position
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (processed[middle] < seconds || (!end && processed[middle] == seconds)) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return original[low] + (seconds - processed[low]);
+  }
+}
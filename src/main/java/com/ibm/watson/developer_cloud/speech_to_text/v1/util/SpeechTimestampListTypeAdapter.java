@@ -0,0 +1,133 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestampList;
+import com.ibm.watson.developer_cloud.util.StringInterner;
+
+/**
+ * Type adapter to read a list of timestamps into a {@link SpeechTimestampList}, without creating
+ * an object per word. Repeated words share the same {@link String} instance, which is also shared
+ * with other responses when a default {@link StringInterner} is set.
+ */
+public class SpeechTimestampListTypeAdapter extends TypeAdapter<List<SpeechTimestamp>> {
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.google.gson.TypeAdapter#read(com.google.gson.stream.JsonReader)
+   */
+  @Override
+  public List<SpeechTimestamp> read(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+
+    final SpeechTimestampList timestamps = new SpeechTimestampList();
+    final Map<String, String> words = new HashMap<String, String>();
+
+    reader.beginArray();
+    while (reader.hasNext()) {
+      String word = null;
+      double startTime = Double.NaN, endTime = Double.NaN;
+
+      reader.beginArray();
+      if (reader.peek() == JsonToken.STRING) {
+        word = intern(words, reader.nextString());
+      }
+      if (reader.peek() == JsonToken.NUMBER) {
+        startTime = reader.nextDouble();
+      }
+      if (reader.peek() == JsonToken.NUMBER) {
+        endTime = reader.nextDouble();
+      }
+      reader.endArray();
+
+      timestamps.add(word, startTime, endTime);
+    }
+    reader.endArray();
+
+    return timestamps;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.google.gson.TypeAdapter#write(com.google.gson.stream.JsonWriter, java.lang.Object)
+   */
+  @Override
+  public void write(JsonWriter writer, List<SpeechTimestamp> timestamps) throws IOException {
+    if (timestamps == null) {
+      writer.nullValue();
+      return;
+    }
+
+    writer.beginArray();
+    if (timestamps instanceof SpeechTimestampList) {
+      final SpeechTimestampList list = (SpeechTimestampList) timestamps;
+      for (int i = 0; i < list.size(); i++) {
+        writer.beginArray();
+        writer.value(list.getWord(i));
+        writeTime(writer, list.getStartTime(i));
+        writeTime(writer, list.getEndTime(i));
+        writer.endArray();
+      }
+    } else {
+      for (SpeechTimestamp timestamp : timestamps) {
+        writer.beginArray();
+        writer.value(timestamp.getWord());
+        writer.value(timestamp.getStartTime());
+        writer.value(timestamp.getEndTime());
+        writer.endArray();
+      }
+    }
+    writer.endArray();
+  }
+
+  private static void writeTime(JsonWriter writer, double time) throws IOException {
+    if (Double.isNaN(time)) {
+      writer.nullValue();
+    } else {
+      writer.value(time);
+    }
+  }
+
+  /**
+   * Returns the instance of a word already in the table, or adds the instance of the default
+   * {@link StringInterner}.
+   *
+   * @param words the word table
+   * @param word the word
+   * @return the shared instance
+   */
+  static String intern(Map<String, String> words, String word) {
+    final String previous = words.get(word);
+    if (previous != null)
+      return previous;
+    final String shared = StringInterner.internDefault(word);
+    words.put(shared, shared);
+    return shared;
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechWordConfidence;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechWordConfidenceList;
+
+/**
+ * Type adapter to read a list of word confidences into a {@link SpeechWordConfidenceList}, without
+ * creating an object per word. Repeated words share the same {@link String} instance.
+ */
+public class SpeechWordConfidenceListTypeAdapter extends TypeAdapter<List<SpeechWordConfidence>> {
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.google.gson.TypeAdapter#read(com.google.gson.stream.JsonReader)
+   */
+  @Override
+  public List<SpeechWordConfidence> read(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+
+    final SpeechWordConfidenceList wordConfidences = new SpeechWordConfidenceList();
+    final Map<String, String> words = new HashMap<String, String>();
+
+    reader.beginArray();
+    while (reader.hasNext()) {
+      String word = null;
+      double confidence = Double.NaN;
+
+      reader.beginArray();
+      if (reader.peek() == JsonToken.STRING) {
+        word = SpeechTimestampListTypeAdapter.intern(words, reader.nextString());
+      }
+      if (reader.peek() == JsonToken.NUMBER) {
+        confidence = reader.nextDouble();
+      }
+      reader.endArray();
+
+      wordConfidences.add(word, confidence);
+    }
+    reader.endArray();
+
+    return wordConfidences;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.google.gson.TypeAdapter#write(com.google.gson.stream.JsonWriter, java.lang.Object)
+   */
+  @Override
+  public void write(JsonWriter writer, List<SpeechWordConfidence> wordConfidences) throws IOException {
+    if (wordConfidences == null) {
+      writer.nullValue();
+      return;
+    }
+
+    writer.beginArray();
+    if (wordConfidences instanceof SpeechWordConfidenceList) {
+      final SpeechWordConfidenceList list = (SpeechWordConfidenceList) wordConfidences;
+      for (int i = 0; i < list.size(); i++) {
+        writer.beginArray();
+        writer.value(list.getWord(i));
+        final double confidence = list.getConfidence(i);
+        if (Double.isNaN(confidence)) {
+          writer.nullValue();
+        } else {
+          writer.value(confidence);
+        }
+        writer.endArray();
+      }
+    } else {
+      for (SpeechWordConfidence wordConfidence : wordConfidences) {
+        writer.beginArray();
+        writer.value(wordConfidence.getWord());
+        writer.value(wordConfidence.getConfidence());
+        writer.endArray();
+      }
+    }
+    writer.endArray();
+  }
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * {@link InputStream} that transcodes linear PCM audio (WAVE or <code>audio/l16</code>) using an
+ * {@link AudioTranscoder}: channels are mixed down, the audio is down-sampled and encoded as FLAC or
+ * big endian <code>audio/l16</code>. The audio is processed in small chunks, so memory use does not
+ * depend on the audio length and the output can be uploaded while the input is still being read.
+ *
+ * @see AudioTranscoder
+ */
+public class TranscodingInputStream extends InputStream {
+  private static final int CHUNK_FRAMES = 2048;
+
+  private final InputStream in;
+  private final String contentType;
+  private final AudioTranscoder transcoder;
+
+  private PcmAudioFormat inputFormat;
+  private PcmAudioFormat outputFormat;
+  private Resampler[] resamplers;
+  private FlacEncoder encoder;
+  private byte[] chunk;
+  private double[][] channelInput;
+  private double[] resampled;
+  private int[][] block;
+  private int blockLength;
+
+  private byte[] output = new byte[0];
+  private int outputPosition;
+  private int outputLimit;
+
+  private boolean eof;
+  private long bytesRead;
+  private long bytesWritten;
+
+  /**
+   * Instantiates a new transcoding input stream.
+   *
+   * @param in the audio input stream
+   * @param contentType the audio content type, <code>audio/wav</code> or <code>audio/l16</code>
+   * @param transcoder the transcoder settings, with a sample rate set
+   */
+  public TranscodingInputStream(InputStream in, String contentType, AudioTranscoder transcoder) {
+    Validator.notNull(in, "in cannot be null");
+    Validator.notNull(transcoder, "transcoder cannot be null");
+    Validator.isTrue(PcmAudioFormat.isPcm(contentType), "Only audio/wav or audio/l16 audio can be transcoded");
+    this.in = in;
+    this.contentType = contentType;
+    this.transcoder = transcoder;
+  }
+
+  /**
+   * Gets the content type of the transcoded audio. For <code>audio/l16</code> the input header needs
+   * to be read to know the output sample rate.
+   *
+   * @return the content type
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public String getContentType() throws IOException {
+    if (transcoder.getEncoding() == AudioTranscoder.Encoding.FLAC)
+      return HttpMediaType.AUDIO_FLAC;
+    if (outputFormat == null)
+      initialize();
+    return outputFormat.toContentType();
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read()
+   */
+  @Override
+  public int read() throws IOException {
+    final byte[] single = new byte[1];
+    return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#read(byte[], int, int)
+   */
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (outputFormat == null)
+      initialize();
+
+    while (outputPosition == outputLimit) {
+      if (eof)
+        return -1;
+      outputPosition = outputLimit = 0;
+      processChunk();
+    }
+
+    final int count = Math.min(length, outputLimit - outputPosition);
+    System.arraycopy(output, outputPosition, buffer, offset, count);
+    outputPosition += count;
+    bytesWritten += count;
+    return count;
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see java.io.InputStream#close()
+   */
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Gets the number of audio bytes read from the original audio, without the WAVE header.
+   *
+   * @return the bytes read
+   */
+  public long getBytesRead() {
+    return bytesRead;
+  }
+
+  /**
+   * Gets the number of bytes returned by this stream.
+   *
+   * @return the bytes written
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  private void initialize() throws IOException {
+    if (PcmAudioFormat.isWave(contentType))
+      inputFormat = PcmAudioFormat.readWaveHeader(in);
+    else
+      inputFormat = PcmAudioFormat.fromContentType(contentType);
+
+    final int channels = transcoder.isMono() ? 1 : inputFormat.getChannels();
+    int sampleRate = inputFormat.getSampleRate();
+    if (transcoder.getSampleRate() > 0)
+      sampleRate = Math.min(sampleRate, transcoder.getSampleRate());
+    outputFormat = new PcmAudioFormat(sampleRate, channels, 16, true);
+
+    chunk = new byte[CHUNK_FRAMES * inputFormat.getFrameSize()];
+    channelInput = new double[channels][CHUNK_FRAMES];
+    if (sampleRate != inputFormat.getSampleRate()) {
+      resamplers = new Resampler[channels];
+      for (int i = 0; i < channels; i++) {
+        resamplers[i] = new Resampler(inputFormat.getSampleRate(), sampleRate);
+      }
+      resampled = new double[resamplers[0].getMaxOutputLength(CHUNK_FRAMES)];
+    }
+
+    if (transcoder.getEncoding() == AudioTranscoder.Encoding.FLAC) {
+      encoder = new FlacEncoder(sampleRate, channels);
+      block = new int[channels][FlacEncoder.BLOCK_SIZE];
+      final byte[] header = encoder.encodeHeader();
+      append(header, header.length);
+    }
+  }
+
+  private void processChunk() throws IOException {
+    final int frameSize = inputFormat.getFrameSize();
+    int length = 0;
+    while (length < chunk.length) {
+      final int read = in.read(chunk, length, chunk.length - length);
+      if (read < 0) {
+        eof = true;
+        break;
+      }
+      length += read;
+    }
+    bytesRead += length;
+
+    final int frames = length / frameSize;
+    final int sampleSize = inputFormat.getBitsPerSample() / 8;
+    final int inputChannels = inputFormat.getChannels();
+    for (int frame = 0; frame < frames; frame++) {
+      final int offset = frame * frameSize;
+      if (channelInput.length == 1) {
+        double sum = 0;
+        for (int channel = 0; channel < inputChannels; channel++) {
+          sum += inputFormat.getSample(chunk, offset + channel * sampleSize);
+        }
+        channelInput[0][frame] = sum / inputChannels;
+      } else {
+        for (int channel = 0; channel < inputChannels; channel++) {
+          channelInput[channel][frame] = inputFormat.getSample(chunk, offset + channel * sampleSize);
+        }
+      }
+    }
+
+    if (resamplers == null) {
+      encode(channelInput, frames);
+    } else {
+      resample(frames, false);
+      if (eof)
+        resample(0, true);
+    }
+
+    if (eof && encoder != null && blockLength > 0) {
+      final byte[] frame = encoder.encodeFrame(block, blockLength);
+      append(frame, frame.length);
+      blockLength = 0;
+    }
+  }
+
+  private void resample(int frames, boolean flush) {
+    final int channels = channelInput.length;
+    final double[][] channelOutput = new double[channels][];
+    int count = 0;
+    for (int channel = 0; channel < channels; channel++) {
+      final double[] out = channel == 0 ? resampled : new double[resampled.length];
+      count = flush ? resamplers[channel].flush(out) : resamplers[channel].process(channelInput[channel], frames, out);
+      channelOutput[channel] = out;
+    }
+    encode(channelOutput, count);
+  }
+
+  private void encode(double[][] samples, int length) {
+    final int channels = samples.length;
+    for (int i = 0; i < length; i++) {
+      if (encoder == null) {
+        for (int channel = 0; channel < channels; channel++) {
+          final int value = toShort(samples[channel][i]);
+          ensureCapacity(2);
+          output[outputLimit++] = (byte) (value >> 8);
+          output[outputLimit++] = (byte) value;
+        }
+      } else {
+        for (int channel = 0; channel < channels; channel++) {
+          block[channel][blockLength] = toShort(samples[channel][i]);
+        }
+        if (++blockLength == FlacEncoder.BLOCK_SIZE) {
+          final byte[] frame = encoder.encodeFrame(block, blockLength);
+          append(frame, frame.length);
+          blockLength = 0;
+        }
+      }
+    }
+  }
+
+  private static int toShort(double sample) {
+    final long value = Math.round(sample * 32768.0);
+    return (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+  }
+
+  private void append(byte[] buffer, int length) {
+    ensureCapacity(length);
+    System.arraycopy(buffer, 0, output, outputLimit, length);
+    outputLimit += length;
+  }
+
+  private void ensureCapacity(int length) {
+    if (outputLimit + length > output.length) {
+      final byte[] newOutput = new byte[Math.max(output.length * 2, outputLimit + length)];
+      System.arraycopy(output, 0, newOutput, 0, outputLimit);
+      output = newOutput;
+    }
+  }
+}
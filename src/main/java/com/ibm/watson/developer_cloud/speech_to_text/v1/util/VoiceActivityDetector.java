@@ -0,0 +1,226 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.util;
+
+import com.ibm.watson.developer_cloud.speech_to_text.v1.SpeechToText;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Energy and zero-crossing based voice activity detector used to remove long silences from linear
+ * PCM audio before it is sent to the {@link SpeechToText} service.<br>
+ * A frame is considered speech when its RMS energy is above the energy threshold, or when it is
+ * above half of it and the zero-crossing rate is high (unvoiced consonants like "s" or "f").
+ * Silences shorter than {@link #getMinSilence()} are sent as they are, longer silences are
+ * compressed to {@link #getKeptSilence()} milliseconds.
+ *
+ * @see SilenceFilterInputStream
+ */
+public class VoiceActivityDetector {
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private int frameDuration = 20;
+    private double energyThreshold = 0.015;
+    private double zeroCrossingThreshold = 0.25;
+    private int minSilence = 500;
+    private int keptSilence = 200;
+
+    private Builder(VoiceActivityDetector detector) {
+      this.frameDuration = detector.frameDuration;
+      this.energyThreshold = detector.energyThreshold;
+      this.zeroCrossingThreshold = detector.zeroCrossingThreshold;
+      this.minSilence = detector.minSilence;
+      this.keptSilence = detector.keptSilence;
+    }
+
+    /**
+     * Instantiates a new builder.
+     */
+    public Builder() {}
+
+    /**
+     * Builds the voice activity detector.
+     *
+     * @return the voice activity detector
+     */
+    public VoiceActivityDetector build() {
+      Validator.isTrue(keptSilence <= minSilence, "keptSilence cannot be greater than minSilence");
+      return new VoiceActivityDetector(this);
+    }
+
+    /**
+     * Sets the duration in milliseconds of the frames the audio is split into. The default is 20.
+     *
+     * @param frameDuration the frame duration
+     * @return the builder
+     */
+    public Builder frameDuration(int frameDuration) {
+      Validator.isTrue(frameDuration > 0, "frameDuration should be greater than 0");
+      this.frameDuration = frameDuration;
+      return this;
+    }
+
+    /**
+     * Sets the RMS energy, between 0 and 1, above which a frame is considered speech. The default is
+     * 0.015.
+     *
+     * @param energyThreshold the energy threshold
+     * @return the builder
+     */
+    public Builder energyThreshold(double energyThreshold) {
+      Validator.isTrue(energyThreshold >= 0 && energyThreshold <= 1, "energyThreshold should be between 0 and 1");
+      this.energyThreshold = energyThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the zero crossings per sample, between 0 and 1, above which a low energy frame is
+     * considered speech. The default is 0.25.
+     *
+     * @param zeroCrossingThreshold the zero crossing threshold
+     * @return the builder
+     */
+    public Builder zeroCrossingThreshold(double zeroCrossingThreshold) {
+      Validator.isTrue(zeroCrossingThreshold >= 0 && zeroCrossingThreshold <= 1,
+          "zeroCrossingThreshold should be between 0 and 1");
+      this.zeroCrossingThreshold = zeroCrossingThreshold;
+      return this;
+    }
+
+    /**
+     * Sets the minimum silence in milliseconds that will be compressed. The default is 500.
+     *
+     * @param minSilence the min silence
+     * @return the builder
+     */
+    public Builder minSilence(int minSilence) {
+      Validator.isTrue(minSilence > 0, "minSilence should be greater than 0");
+      this.minSilence = minSilence;
+      return this;
+    }
+
+    /**
+     * Sets the milliseconds of a long silence that are kept, half before and half after the speech
+     * around it. Use 0 to drop the silence completely. The default is 200.
+     *
+     * @param keptSilence the kept silence
+     * @return the builder
+     */
+    public Builder keptSilence(int keptSilence) {
+      Validator.isTrue(keptSilence >= 0, "keptSilence cannot be negative");
+      this.keptSilence = keptSilence;
+      return this;
+    }
+  }
+
+  private final int frameDuration;
+  private final double energyThreshold;
+  private final double zeroCrossingThreshold;
+  private final int minSilence;
+  private final int keptSilence;
+
+  private VoiceActivityDetector(Builder builder) {
+    this.frameDuration = builder.frameDuration;
+    this.energyThreshold = builder.energyThreshold;
+    this.zeroCrossingThreshold = builder.zeroCrossingThreshold;
+    this.minSilence = builder.minSilence;
+    this.keptSilence = builder.keptSilence;
+  }
+
+  /**
+   * Checks if a frame contains speech.
+   *
+   * @param frame the audio buffer
+   * @param length the number of bytes of the frame, a multiple of the format frame size
+   * @param format the audio format
+   * @return true if the frame is speech
+   */
+  public boolean isSpeech(byte[] frame, int length, PcmAudioFormat format) {
+    final int sampleSize = format.getBitsPerSample() / 8;
+    final int samples = length / sampleSize;
+    if (samples == 0)
+      return false;
+
+    double energy = 0;
+    int crossings = 0;
+    double previous = 0;
+    for (int offset = 0; offset + sampleSize <= length; offset += sampleSize) {
+      final double sample = format.getSample(frame, offset);
+      energy += sample * sample;
+      if ((sample >= 0) != (previous >= 0))
+        crossings++;
+      previous = sample;
+    }
+
+    final double rms = Math.sqrt(energy / samples);
+    final double zeroCrossingRate = (double) crossings / samples;
+    return rms >= energyThreshold || (rms >= energyThreshold / 2 && zeroCrossingRate >= zeroCrossingThreshold);
+  }
+
+  /**
+   * New builder.
+   *
+   * @return the builder
+   */
+  public Builder newBuilder() {
+    return new Builder(this);
+  }
+
+  /**
+   * Gets the frame duration in milliseconds.
+   *
+   * @return the frame duration
+   */
+  public int getFrameDuration() {
+    return frameDuration;
+  }
+
+  /**
+   * Gets the energy threshold.
+   *
+   * @return the energy threshold
+   */
+  public double getEnergyThreshold() {
+    return energyThreshold;
+  }
+
+  /**
+   * Gets the zero crossing threshold.
+   *
+   * @return the zero crossing threshold
+   */
+  public double getZeroCrossingThreshold() {
+    return zeroCrossingThreshold;
+  }
+
+  /**
+   * Gets the minimum silence in milliseconds that will be compressed.
+   *
+   * @return the min silence
+   */
+  public int getMinSilence() {
+    return minSilence;
+  }
+
+  /**
+   * Gets the milliseconds of a long silence that are kept.
+   *
+   * @return the kept silence
+   */
+  public int getKeptSilence() {
+    return keptSilence;
+  }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.websocket;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Fixed size ring buffer with the most recent bytes of an audio stream. Bytes are addressed by their
+ * position in the whole stream, so audio can be read again from any position that was not
+ * overwritten yet.
+ */
+public class AudioReplayBuffer {
+  private final byte[] data;
+  private long end;
+
+  /**
+   * Instantiates a new audio replay buffer.
+   *
+   * @param capacity the capacity in bytes
+   */
+  public AudioReplayBuffer(int capacity) {
+    Validator.isTrue(capacity > 0, "capacity should be greater than 0");
+    data = new byte[capacity];
+  }
+
+  /**
+   * Appends bytes to the buffer, overwriting the oldest ones when it is full.
+   *
+   * @param buffer the bytes
+   * @param offset the offset in the array
+   * @param length the number of bytes
+   */
+  public synchronized void write(byte[] buffer, int offset, int length) {
+    if (length > data.length) {
+      offset += length - data.length;
+      end += length - data.length;
+      length = data.length;
+    }
+    final int position = (int) (end % data.length);
+    final int first = Math.min(length, data.length - position);
+    System.arraycopy(buffer, offset, data, position, first);
+    System.arraycopy(buffer, offset + first, data, 0, length - first);
+    end += length;
+  }
+
+  /**
+   * Reads bytes starting at a stream position.
+   *
+   * @param position the position in the stream, between {@link #getStart()} and {@link #getEnd()}
+   * @param buffer the destination array
+   * @param offset the offset in the array
+   * @param length the maximum number of bytes to read
+   * @return the number of bytes read, or -1 at the end of the buffer
+   */
+  public synchronized int read(long position, byte[] buffer, int offset, int length) {
+    Validator.isTrue(position >= getStart() && position <= end, "position is not in the buffer");
+    if (position == end)
+      return -1;
+    final int count = (int) Math.min(length, end - position);
+    final int start = (int) (position % data.length);
+    final int first = Math.min(count, data.length - start);
+    System.arraycopy(data, start, buffer, offset, first);
+    System.arraycopy(data, 0, buffer, offset + first, count - first);
+    return count;
+  }
+
+  /**
+   * Gets the stream position of the oldest byte in the buffer.
+   *
+   * @return the start position
+   */
+  public synchronized long getStart() {
+    return Math.max(0, end - data.length);
+  }
+
+  /**
+   * Gets the number of bytes written, which is the stream position after the newest byte.
+   *
+   * @return the end position
+   */
+  public synchronized long getEnd() {
+    return end;
+  }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.websocket;
+
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Settings to recover a WebSocket recognition when the connection drops. The audio sent is kept in
+ * a bounded replay buffer; after a reconnection the audio is sent again from the end of the last
+ * final result, and results that were already delivered are removed.<br>
+ * The replay starts exactly at the last final result for <code>audio/wav</code> and
+ * <code>audio/l16</code> audio. Other formats can not be cut, so they are sent again from the
+ * beginning, which is only possible while the whole audio fits in the replay buffer.
+ */
+public class ReconnectPolicy {
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private int maxAttempts = 3;
+    private long retryDelay = 1000;
+    private int bufferSize = 2 * 1024 * 1024;
+
+    private Builder(ReconnectPolicy policy) {
+      this.maxAttempts = policy.maxAttempts;
+      this.retryDelay = policy.retryDelay;
+      this.bufferSize = policy.bufferSize;
+    }
+
+    /**
+     * Instantiates a new builder.
+     */
+    public Builder() {}
+
+    /**
+     * Builds the reconnect policy.
+     *
+     * @return the reconnect policy
+     */
+    public ReconnectPolicy build() {
+      return new ReconnectPolicy(this);
+    }
+
+    /**
+     * Sets the maximum number of consecutive reconnection attempts. The count is reset once a new
+     * connection is ready to receive audio. The default is 3.
+     *
+     * @param maxAttempts the max attempts
+     * @return the builder
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      Validator.isTrue(maxAttempts >= 0, "maxAttempts cannot be negative");
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the delay before the first reconnection attempt. The delay doubles with every failed
+     * attempt. The default is 1 second.
+     *
+     * @param retryDelay the retry delay
+     * @param unit the time unit
+     * @return the builder
+     */
+    public Builder retryDelay(long retryDelay, TimeUnit unit) {
+      Validator.isTrue(retryDelay >= 0, "retryDelay cannot be negative");
+      this.retryDelay = unit.toMillis(retryDelay);
+      return this;
+    }
+
+    /**
+     * Sets the size in bytes of the replay buffer. The default is 2 MB, a bit over a minute of 16
+     * kHz <code>audio/l16</code>.
+     *
+     * @param bufferSize the buffer size
+     * @return the builder
+     */
+    public Builder bufferSize(int bufferSize) {
+      Validator.isTrue(bufferSize > 0, "bufferSize should be greater than 0");
+      this.bufferSize = bufferSize;
+      return this;
+    }
+  }
+
+  private final int maxAttempts;
+  private final long retryDelay;
+  private final int bufferSize;
+
+  private ReconnectPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.retryDelay = builder.retryDelay;
+    this.bufferSize = builder.bufferSize;
+  }
+
+  /**
+   * New builder.
+   *
+   * @return the builder
+   */
+  public Builder newBuilder() {
+    return new Builder(this);
+  }
+
+  /**
+   * Gets the max attempts.
+   *
+   * @return the max attempts
+   */
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * Gets the delay in milliseconds before the first reconnection attempt.
+   *
+   * @return the retry delay
+   */
+  public long getRetryDelay() {
+    return retryDelay;
+  }
+
+  /**
+   * Gets the replay buffer size in bytes.
+   *
+   * @return the buffer size
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+}
@@ -0,0 +1,505 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1.websocket;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.PcmAudioFormat;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechResultsGson;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechTimeMap;
+
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.ws.WebSocket;
+import okhttp3.ws.WebSocketListener;
+import okio.Buffer;
+
+/**
+ * Recognizes an audio stream over WebSockets and recovers from dropped connections, following a
+ * {@link ReconnectPolicy}.<br>
+ * The audio is sent from its own thread and copied into an {@link AudioReplayBuffer}. When the
+ * connection drops, a new one is opened with a fresh token and the audio is sent again from the end
+ * of the last final result. Results of the new connection are shifted to the time and result index
+ * of the whole stream, and results that end before the last final result are dropped as duplicates.
+ */
+class ReconnectingRecognizer {
+  private static final Logger LOG = Logger.getLogger(ReconnectingRecognizer.class.getName());
+  private static final String STATE = "state";
+  private static final String ERROR = "error";
+  private static final String RESULTS = "results";
+  private static final int FOUR_KB = 4096;
+  private static final int CLOSE_NORMAL = 1000;
+  private static final int CLOSE_GOING_AWAY = 1001;
+  private static final double EPSILON = 0.001;
+
+  private final WebSocketManager manager;
+  private final InputStream stream;
+  private final RecognizeOptions options;
+  private final RecognizeCallback callback;
+  private final ReconnectPolicy policy;
+  private final AudioReplayBuffer buffer;
+  private final Gson gson;
+
+  private volatile PcmAudioFormat format;
+  private byte[] header = new byte[0];
+  private boolean inputEnded;
+
+  // state shared between the sender thread and the WebSocket threads, guarded by this
+  private WebSocket socket;
+  private int generation;
+  private boolean listening;
+  private int stopGeneration = -1;
+  private boolean connected;
+  private boolean finished;
+  private boolean disconnected;
+  private int attempts;
+  private long replayFrom = 0;
+  private double timeOffset;
+  private int indexOffset;
+  private int droppedFinals;
+  private int finalizedCount;
+  private double lastFinalEnd;
+
+  /**
+   * Instantiates a new reconnecting recognizer.
+   *
+   * @param manager the WebSocket manager that opens the connections
+   * @param stream the audio stream
+   * @param options the recognize options, with a {@link ReconnectPolicy}
+   * @param callback the callback
+   */
+  ReconnectingRecognizer(WebSocketManager manager, InputStream stream, RecognizeOptions options,
+      RecognizeCallback callback) {
+    this.manager = manager;
+    this.stream = stream;
+    this.options = options.newBuilder().timestamps(true).build();
+    this.gson = SpeechResultsGson.getGson(options);
+    this.callback = callback;
+    this.policy = options.reconnectPolicy();
+    this.buffer = new AudioReplayBuffer(policy.getBufferSize());
+  }
+
+  /**
+   * Opens the first connection and starts sending audio once the service is listening.
+   */
+  void start() {
+    final Thread sender = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        sendAudio();
+      }
+    }, "speech-to-text-sender");
+    sender.setDaemon(true);
+    sender.start();
+    manager.createConnection(options).enqueue(new Listener(0));
+  }
+
+  /**
+   * The sender thread loop. It reads the audio, keeps it in the replay buffer and sends it on the
+   * current connection, replaying the buffer first after a reconnection.
+   */
+  private void sendAudio() {
+    try {
+      readHeader();
+      final byte[] chunk = new byte[FOUR_KB];
+      while (true) {
+        final WebSocket current;
+        final int currentGeneration;
+        final long replay;
+        synchronized (this) {
+          while (!finished && !canSend()) {
+            wait();
+          }
+          if (finished)
+            return;
+          current = socket;
+          currentGeneration = generation;
+          replay = replayFrom;
+          replayFrom = -1;
+          if (replay < 0 && inputEnded)
+            stopGeneration = generation;
+        }
+
+        try {
+          if (replay >= 0) {
+            replay(current, replay);
+          } else if (!inputEnded) {
+            final int read = stream.read(chunk);
+            if (read < 0) {
+              inputEnded = true;
+            } else if (read > 0) {
+              buffer.write(chunk, 0, read);
+              current.sendMessage(RequestBody.create(WebSocket.BINARY, Arrays.copyOf(chunk, read)));
+            }
+          } else {
+            current.sendMessage(RequestBody.create(WebSocket.TEXT, WebSocketManager.buildStopMessage()));
+          }
+        } catch (IOException e) {
+          connectionLost(currentGeneration, e);
+        } catch (IllegalStateException e) {
+          // the socket was closed by another thread
+          connectionLost(currentGeneration, new IOException(e));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      fail(e);
+    } finally {
+      closeStream();
+    }
+  }
+
+  /**
+   * Checks if the sender has something to do on the current connection.
+   */
+  private boolean canSend() {
+    return socket != null && listening && (replayFrom >= 0 || !inputEnded || stopGeneration != generation);
+  }
+
+  /**
+   * Reads the WAVE header, so it can be sent again at the beginning of every connection.
+   */
+  private void readHeader() throws IOException {
+    final String contentType = options.contentType();
+    if (PcmAudioFormat.isWave(contentType)) {
+      format = PcmAudioFormat.readWaveHeader(stream);
+      header = format.toWaveHeader(-1);
+    } else if (PcmAudioFormat.isPcm(contentType)) {
+      format = PcmAudioFormat.fromContentType(contentType);
+    }
+  }
+
+  private void replay(WebSocket current, long position) throws IOException {
+    if (header.length > 0)
+      current.sendMessage(RequestBody.create(WebSocket.BINARY, header));
+    if (position > 0 && LOG.isLoggable(Level.FINE))
+      LOG.fine("Replaying " + (buffer.getEnd() - position) + " bytes of audio from byte " + position);
+    final byte[] chunk = new byte[FOUR_KB];
+    int read;
+    while ((read = buffer.read(position, chunk, 0, chunk.length)) > 0) {
+      current.sendMessage(RequestBody.create(WebSocket.BINARY, Arrays.copyOf(chunk, read)));
+      position += read;
+    }
+  }
+
+  /**
+   * Handles the loss of a connection: schedules a reconnection or gives up.
+   */
+  private void connectionLost(int lostGeneration, Exception e) {
+    final WebSocket lost;
+    final boolean giveUp;
+    final long delay;
+    synchronized (this) {
+      if (finished || lostGeneration != generation)
+        return;
+      lost = socket;
+      socket = null;
+      listening = false;
+      generation++;
+      attempts++;
+      giveUp = attempts > policy.getMaxAttempts() || !prepareReplay();
+      delay = policy.getRetryDelay() << Math.min(attempts - 1, 16);
+      if (giveUp)
+        finished = true;
+      notifyAll();
+    }
+    closeQuietly(lost, CLOSE_GOING_AWAY, "Reconnecting");
+
+    if (giveUp) {
+      fail(e);
+      return;
+    }
+
+    LOG.log(Level.WARNING, "Speech to Text connection lost, reconnecting (attempt " + attempts + ")", e);
+    final int nextGeneration = lostGeneration + 1;
+    final Thread reconnect = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(delay);
+          manager.reconnect(options).enqueue(new Listener(nextGeneration));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+          // e.g. the token could not be refreshed
+          connectionLost(nextGeneration, e);
+        }
+      }
+    }, "speech-to-text-reconnect");
+    reconnect.setDaemon(true);
+    reconnect.start();
+  }
+
+  /**
+   * Finds where the next connection starts in the stream.
+   *
+   * @return false if the audio needed is not in the replay buffer anymore
+   */
+  private boolean prepareReplay() {
+    long position = 0;
+    if (format != null) {
+      position = (long) (lastFinalEnd * format.getByteRate());
+      position -= position % format.getFrameSize();
+      if (position < buffer.getStart()) {
+        LOG.warning("Audio before " + lastFinalEnd + "s is not in the replay buffer anymore");
+        position = buffer.getStart() + format.getFrameSize() - 1;
+        position -= position % format.getFrameSize();
+      }
+      timeOffset = (double) position / format.getByteRate();
+    } else if (buffer.getStart() > 0) {
+      LOG.warning("The audio can not be replayed, " + buffer.getStart() + " bytes are not in the replay buffer");
+      return false;
+    }
+    replayFrom = position;
+    indexOffset = finalizedCount;
+    droppedFinals = 0;
+    return true;
+  }
+
+  private void onOpen(int openGeneration, WebSocket webSocket) {
+    final boolean first;
+    synchronized (this) {
+      if (finished || openGeneration != generation) {
+        closeQuietly(webSocket, CLOSE_NORMAL, "Stale connection");
+        return;
+      }
+      socket = webSocket;
+      first = !connected;
+      connected = true;
+    }
+    if (first)
+      callback.onConnected();
+    try {
+      webSocket.sendMessage(RequestBody.create(WebSocket.TEXT, WebSocketManager.buildStartMessage(options)));
+    } catch (IOException e) {
+      connectionLost(openGeneration, e);
+    }
+  }
+
+  private void onMessage(int messageGeneration, String message) {
+    final JsonObject json;
+    try {
+      json = new JsonParser().parse(message).getAsJsonObject();
+    } catch (JsonParseException e) {
+      throw new RuntimeException("Error parsing the incoming message: " + message);
+    }
+
+    if (json.has(ERROR)) {
+      callback.onError(new RuntimeException(json.get(ERROR).getAsString()));
+    } else if (json.has(RESULTS)) {
+      final SpeechResults results = filterResults(messageGeneration, gson.fromJson(message, SpeechResults.class));
+      if (results != null)
+        callback.onTranscription(results);
+    } else if (json.has(STATE)) {
+      WebSocket completed = null;
+      synchronized (this) {
+        if (messageGeneration != generation || finished)
+          return;
+        if (!listening) {
+          listening = true;
+          attempts = 0;
+          notifyAll();
+        } else if (stopGeneration == generation) {
+          finished = true;
+          completed = socket;
+          notifyAll();
+        }
+      }
+      closeQuietly(completed, CLOSE_NORMAL, "Transcription completed");
+    }
+  }
+
+  /**
+   * Shifts the results of the current connection to the whole stream and drops the ones that were
+   * already delivered.
+   *
+   * @return the results to deliver, or null if there are none
+   */
+  private synchronized SpeechResults filterResults(int resultsGeneration, SpeechResults results) {
+    if (resultsGeneration != generation || results.getResults() == null)
+      return null;
+
+    if (timeOffset > 0) {
+      final SpeechTimeMap timeMap = new SpeechTimeMap();
+      timeMap.addSegment(0, timeOffset);
+      timeMap.remap(results);
+    }
+
+    final int firstIndex = results.getResultIndex() + indexOffset - droppedFinals;
+    final List<Transcript> kept = new ArrayList<Transcript>();
+    for (Transcript transcript : results.getResults()) {
+      final double end = getEndTime(transcript);
+      if (end >= 0 && end <= lastFinalEnd + EPSILON) {
+        if (transcript.isFinal())
+          droppedFinals++;
+        continue;
+      }
+      if (transcript.isFinal()) {
+        finalizedCount = Math.max(finalizedCount, firstIndex + kept.size() + 1);
+        if (end >= 0)
+          lastFinalEnd = Math.max(lastFinalEnd, end);
+      }
+      kept.add(transcript);
+    }
+
+    if (kept.isEmpty())
+      return null;
+    results.setResultIndex(firstIndex);
+    results.setResults(kept);
+    return results;
+  }
+
+  /**
+   * Gets the end time of the last word of the best alternative, or -1 if there are no timestamps.
+   */
+  private static double getEndTime(Transcript transcript) {
+    if (transcript.getAlternatives() == null || transcript.getAlternatives().isEmpty())
+      return -1;
+    final SpeechAlternative alternative = transcript.getAlternatives().get(0);
+    final List<SpeechTimestamp> timestamps = alternative.getTimestamps();
+    if (timestamps == null || timestamps.isEmpty())
+      return -1;
+    return timestamps.get(timestamps.size() - 1).getEndTime();
+  }
+
+  private void onClose(int closeGeneration, int code, String reason) {
+    boolean lost = false;
+    synchronized (this) {
+      if (!finished) {
+        if (closeGeneration != generation)
+          return;
+        // an unexpected close is handled as a connection failure
+        lost = code != CLOSE_NORMAL;
+        finished = !lost;
+      }
+      if (!lost) {
+        if (disconnected)
+          return;
+        disconnected = true;
+        notifyAll();
+      }
+    }
+
+    if (lost)
+      connectionLost(closeGeneration, new IOException("Connection closed: " + code + " " + reason));
+    else
+      callback.onDisconnected();
+  }
+
+  private void fail(Exception e) {
+    synchronized (this) {
+      finished = true;
+      notifyAll();
+    }
+    callback.onError(e);
+  }
+
+  private void closeStream() {
+    try {
+      stream.close();
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Error closing the audio stream", e);
+    }
+  }
+
+  private static void closeQuietly(WebSocket webSocket, int code, String reason) {
+    if (webSocket == null)
+      return;
+    try {
+      webSocket.close(code, reason);
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Error closing the WebSocket", e);
+    } catch (IllegalStateException e) {
+      // already closed
+    }
+  }
+
+  /**
+   * Forwards the events of one connection, tagged with its generation.
+   */
+  private class Listener implements WebSocketListener {
+    private final int listenerGeneration;
+
+    Listener(int listenerGeneration) {
+      this.listenerGeneration = listenerGeneration;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onOpen(okhttp3.ws.WebSocket, okhttp3.Response)
+     */
+    @Override
+    public void onOpen(WebSocket webSocket, Response response) {
+      ReconnectingRecognizer.this.onOpen(listenerGeneration, webSocket);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onFailure(java.io.IOException, okhttp3.Response)
+     */
+    @Override
+    public void onFailure(IOException e, Response response) {
+      connectionLost(listenerGeneration, e);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onMessage(okhttp3.ResponseBody)
+     */
+    @Override
+    public void onMessage(ResponseBody message) throws IOException {
+      final String text = message.string();
+      if (text != null)
+        ReconnectingRecognizer.this.onMessage(listenerGeneration, text);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onPong(okio.Buffer)
+     */
+    @Override
+    public void onPong(Buffer payload) {}
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see okhttp3.ws.WebSocketListener#onClose(int, java.lang.String)
+     */
+    @Override
+    public void onClose(int code, String reason) {
+      ReconnectingRecognizer.this.onClose(listenerGeneration, code, reason);
+    }
+  }
+}
@@ -24,7 +24,7 @@ import com.google.gson.JsonParser;
 import com.ibm.watson.developer_cloud.http.HttpHeaders;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
 import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
-import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechResultsGson;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -42,9 +42,14 @@ import okio.Buffer;
  * close the connection once the audio was transmitted.
  */
 public class WebSocketManager {
+  private static final String MODEL = "model";
+  private static final String START = "start";
+  private static final String STOP = "stop";
+  private static final String ACTION = "action";
+
   private final String url;
   private final OkHttpClient client;
-  private String token;
+  private volatile String token;
 
   /**
    * The listener interface for receiving {@link WebSocket} events. <br>
@@ -56,17 +61,13 @@ public class WebSocketManager {
   private class SpeechToTextWebSocketListener implements WebSocketListener {
 
     private static final String STATE = "state";
-    private static final String MODEL = "model";
-    private static final String START = "start";
-    private static final String STOP = "stop";
-    private static final String ACTION = "action";
     private static final int FOUR_KB = 4096;
     private static final String ERROR = "error";
     private static final String RESULTS = "results";
     private final InputStream stream;
     private final RecognizeOptions options;
     private final RecognizeCallback callback;
-    private Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+    private Gson GSON;
     private WebSocket socket;
     private boolean audioSent = false;
     private int CLOSE_NORMAL = 1000;
@@ -82,6 +83,7 @@ public class WebSocketManager {
         final RecognizeCallback callback) {
       this.stream = stream;
       this.options = options;
+      this.GSON = SpeechResultsGson.getGson(options);
       this.callback = callback;
     }
 
@@ -177,30 +179,6 @@ public class WebSocketManager {
       }
       inputStream.close();
     }
-
-    /**
-     * Builds the start message.
-     *
-     * @param options the options
-     * @return the request
-     */
-    private String buildStartMessage(RecognizeOptions options) {
-      JsonObject startMessage = new JsonParser().parse(new Gson().toJson(options)).getAsJsonObject();
-      startMessage.remove(MODEL);
-      startMessage.addProperty(ACTION, START);
-      return startMessage.toString();
-    }
-
-    /**
-     * Builds the stop message.
-     *
-     * @return the string
-     */
-    private String buildStopMessage() {
-      JsonObject stopMessage = new JsonObject();
-      stopMessage.addProperty(ACTION, STOP);
-      return stopMessage.toString();
-    }
   }
 
   /**
@@ -216,13 +194,58 @@ public class WebSocketManager {
     this.token = token;
   }
 
+  /**
+   * Builds the start message.
+   *
+   * @param options the options
+   * @return the request
+   */
+  static String buildStartMessage(RecognizeOptions options) {
+    JsonObject startMessage = new JsonParser().parse(new Gson().toJson(options)).getAsJsonObject();
+    startMessage.remove(MODEL);
+    startMessage.addProperty(ACTION, START);
+    return startMessage.toString();
+  }
+
+  /**
+   * Builds the stop message.
+   *
+   * @return the string
+   */
+  static String buildStopMessage() {
+    JsonObject stopMessage = new JsonObject();
+    stopMessage.addProperty(ACTION, STOP);
+    return stopMessage.toString();
+  }
+
+  /**
+   * Gets a new token to reconnect when a {@link ReconnectPolicy} is used. The default
+   * implementation keeps the current token.
+   *
+   * @return the token
+   */
+  protected String refreshToken() {
+    return token;
+  }
+
+  /**
+   * Creates a connection with a new token.
+   *
+   * @param options the recognize options
+   * @return the web socket call
+   */
+  WebSocketCall reconnect(RecognizeOptions options) {
+    token = refreshToken();
+    return createConnection(options);
+  }
+
   /**
    * Creates a connection.
    *
    * @param options the recognize options
    * @return the web socket call
    */
-  private WebSocketCall createConnection(RecognizeOptions options) {
+  WebSocketCall createConnection(RecognizeOptions options) {
     String speechModel = options.model() != null ? "?model=" + options.model() : "";
     Request connectionRequest =
         new Request.Builder().url(url + speechModel).addHeader(HttpHeaders.X_WATSON_AUTHORIZATION_TOKEN, token).build();
@@ -238,7 +261,10 @@ public class WebSocketManager {
    * @param delegate the delegate
    */
   public void recognize(final InputStream stream, final RecognizeOptions options, RecognizeCallback delegate) {
-    createConnection(options).enqueue(new SpeechToTextWebSocketListener(stream, options, delegate));
+    if (options.reconnectPolicy() != null)
+      new ReconnectingRecognizer(this, stream, options, delegate).start();
+    else
+      createConnection(options).enqueue(new SpeechToTextWebSocketListener(stream, options, delegate));
   }
 
 }
@@ -15,6 +15,7 @@ package com.ibm.watson.developer_cloud.text_to_speech.v1;
 
 import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -24,10 +25,14 @@ import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.http.RequestBuilder;
 import com.ibm.watson.developer_cloud.http.ResponseConverter;
 import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.http.ServiceCallback;
 import com.ibm.watson.developer_cloud.service.WatsonService;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.*;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.CustomWordSynchronizer;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.SynthesisCache;
 import com.ibm.watson.developer_cloud.util.*;
 
+import jersey.repackaged.jsr166e.CompletableFuture;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -70,6 +75,8 @@ public class TextToSpeech extends WatsonService {
   private static final Type TYPE_CUSTOM_TRANSLATIONS = new TypeToken<List<CustomTranslation>>() {}.getType();
   private static final Gson GSON = GsonSingleton.getGson();
 
+  private SynthesisCache synthesisCache;
+
   /**
    * Instantiates a new text to speech.
    */
@@ -88,6 +95,17 @@ public class TextToSpeech extends WatsonService {
     setUsernameAndPassword(username, password);
   }
 
+  /**
+   * Sets the cache for synthesized audio. When it is set, {@link #synthesize(String, Voice)} returns
+   * the cached audio for the same text, voice, format and customization without calling the service,
+   * and the entries of a customization are removed when its words are changed or deleted.
+   *
+   * @param synthesisCache the synthesis cache, or null to disable caching
+   */
+  public void setSynthesisCache(SynthesisCache synthesisCache) {
+    this.synthesisCache = synthesisCache;
+  }
+
   /**
    * Gets the voices.
    * 
@@ -178,7 +196,70 @@ public class TextToSpeech extends WatsonService {
       request.query(CUSTOMIZATION_ID, customizationId);
     }
 
-    return createServiceCall(request.build(), ResponseConverterUtils.getInputStream());
+    final SynthesisCache cache = synthesisCache;
+    if (cache == null) {
+      return createServiceCall(request.build(), ResponseConverterUtils.getInputStream());
+    }
+
+    final SynthesisCache.Key key = cache.key(text, voice, audioFormat != null ? audioFormat : AudioFormat.WAV,
+        customizationId);
+    final ServiceCall<InputStream> call = createServiceCall(request.build(), new ResponseConverter<InputStream>() {
+      @Override
+      public InputStream convert(Response response) {
+        return cache.put(key, ResponseUtils.getInputStream(response));
+      }
+    });
+
+    return new ServiceCall<InputStream>() {
+      @Override
+      public InputStream execute() {
+        final InputStream audio = cache.get(key);
+        return audio != null ? audio : call.execute();
+      }
+
+      @Override
+      public void enqueue(ServiceCallback<InputStream> callback) {
+        final InputStream audio = cache.get(key);
+        if (audio != null) {
+          callback.onResponse(audio);
+        } else {
+          call.enqueue(callback);
+        }
+      }
+
+      @Override
+      public CompletableFuture<InputStream> rx() {
+        final InputStream audio = cache.get(key);
+        if (audio == null) {
+          return call.rx();
+        }
+        final CompletableFuture<InputStream> future = new CompletableFuture<InputStream>();
+        future.complete(audio);
+        return future;
+      }
+    };
+  }
+
+  /**
+   * Wraps a converter to remove the cached audio of a customization once a change to it succeeds.
+   *
+   * @param <T> the generic type
+   * @param converter the converter
+   * @param customizationId the customization ID
+   * @return the converter
+   */
+  private <T> ResponseConverter<T> invalidating(final ResponseConverter<T> converter, final String customizationId) {
+    final SynthesisCache cache = synthesisCache;
+    if (cache == null) {
+      return converter;
+    }
+    return new ResponseConverter<T>() {
+      @Override
+      public T convert(Response response) {
+        cache.invalidate(customizationId);
+        return converter.convert(response);
+      }
+    };
   }
 
   /**
@@ -228,7 +309,7 @@ public class TextToSpeech extends WatsonService {
     final RequestBody body = RequestBody.create(HttpMediaType.JSON, model.toString());
     final Request request = RequestBuilder.post(path).body(body).build();
 
-    return createServiceCall(request, new ResponseConverter<CustomVoiceModel>() {
+    final ResponseConverter<CustomVoiceModel> converter = new ResponseConverter<CustomVoiceModel>() {
       @Override
       public CustomVoiceModel convert(Response response) {
         CustomVoiceModel newModel = ResponseUtils.getObject(response, CustomVoiceModel.class);
@@ -239,7 +320,8 @@ public class TextToSpeech extends WatsonService {
 
         return model;
       }
-    });
+    };
+    return createServiceCall(request, isNew ? converter : invalidating(converter, model.getId()));
   }
 
   /**
@@ -252,7 +334,7 @@ public class TextToSpeech extends WatsonService {
     Validator.notEmpty(model.getId(), "model id must not be empty");
 
     final Request request = RequestBuilder.delete(String.format(PATH_CUSTOMIZATION, model.getId())).build();
-    return createServiceCall(request, ResponseConverterUtils.getVoid());
+    return createServiceCall(request, invalidating(ResponseConverterUtils.getVoid(), model.getId()));
   }
 
   /**
@@ -288,7 +370,7 @@ public class TextToSpeech extends WatsonService {
     final RequestBody body = RequestBody.create(HttpMediaType.JSON, json);
     final Request request = RequestBuilder.post(path).body(body).build();
 
-    return createServiceCall(request, ResponseConverterUtils.getVoid());
+    return createServiceCall(request, invalidating(ResponseConverterUtils.getVoid(), model.getId()));
   }
 
   /**
@@ -304,7 +386,21 @@ public class TextToSpeech extends WatsonService {
 
     final String path = String.format(PATH_WORD, model.getId(), RequestUtils.encode(translation.getWord()));
     final Request request = RequestBuilder.delete(path).build();
-    return createServiceCall(request, ResponseConverterUtils.getVoid());
+    return createServiceCall(request, invalidating(ResponseConverterUtils.getVoid(), model.getId()));
   }
-  
+
+  /**
+   * Makes the words of a CustomVoiceModel equal to a list of translations, sending only the
+   * differences. New and changed words are saved in batches and removed words are deleted
+   * concurrently. Use {@link CustomWordSynchronizer} to set the batch size, the concurrency or a
+   * progress listener.
+   *
+   * @param model the CustomVoiceModel
+   * @param translations the translations the model should have
+   * @return the number of words added, updated, deleted and unchanged
+   */
+  public CustomWordSynchronizer.Result syncWords(CustomVoiceModel model, Collection<CustomTranslation> translations) {
+    return new CustomWordSynchronizer.Builder(this).build().syncWords(model, translations);
+  }
+
 }
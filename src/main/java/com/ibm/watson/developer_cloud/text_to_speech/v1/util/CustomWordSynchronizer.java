@@ -0,0 +1,306 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomTranslation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomVoiceModel;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Synchronizes the words of a {@link CustomVoiceModel} with a list of translations. The words of the
+ * model are compared with the list, and only the differences are sent: new and changed words are
+ * saved in batches, and removed words are deleted concurrently.
+ */
+public class CustomWordSynchronizer {
+
+  /**
+   * Receives the progress of a synchronization.
+   */
+  public interface ProgressListener {
+
+    /**
+     * Called after each batch of words is saved and after each word is deleted. It can be called
+     * from several threads.
+     *
+     * @param completed the number of words saved or deleted so far
+     * @param total the number of words to save or delete
+     */
+    void onProgress(int completed, int total);
+  }
+
+  /**
+   * Number of words added, updated, deleted and left unchanged by a synchronization.
+   */
+  public static class Result {
+    private final int added;
+    private final int updated;
+    private final int deleted;
+    private final int unchanged;
+
+    Result(int added, int updated, int deleted, int unchanged) {
+      this.added = added;
+      this.updated = updated;
+      this.deleted = deleted;
+      this.unchanged = unchanged;
+    }
+
+    /**
+     * Gets the number of words added.
+     *
+     * @return the added count
+     */
+    public int getAdded() {
+      return added;
+    }
+
+    /**
+     * Gets the number of words whose translation changed.
+     *
+     * @return the updated count
+     */
+    public int getUpdated() {
+      return updated;
+    }
+
+    /**
+     * Gets the number of words deleted.
+     *
+     * @return the deleted count
+     */
+    public int getDeleted() {
+      return deleted;
+    }
+
+    /**
+     * Gets the number of words that were already up to date.
+     *
+     * @return the unchanged count
+     */
+    public int getUnchanged() {
+      return unchanged;
+    }
+  }
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final TextToSpeech service;
+    private int maxConcurrency = 8;
+    private int batchSize = 500;
+    private ProgressListener progressListener;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the text to speech service
+     */
+    public Builder(TextToSpeech service) {
+      Validator.notNull(service, "service cannot be null");
+      this.service = service;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time. The default is 8.
+     *
+     * @param maxConcurrency the max concurrency
+     * @return the builder
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      Validator.isTrue(maxConcurrency > 0, "maxConcurrency should be greater than 0");
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of words saved in one request. The default is 500.
+     *
+     * @param batchSize the batch size
+     * @return the builder
+     */
+    public Builder batchSize(int batchSize) {
+      Validator.isTrue(batchSize > 0, "batchSize should be greater than 0");
+      this.batchSize = batchSize;
+      return this;
+    }
+
+    /**
+     * Sets the progress listener.
+     *
+     * @param progressListener the progress listener
+     * @return the builder
+     */
+    public Builder progressListener(ProgressListener progressListener) {
+      this.progressListener = progressListener;
+      return this;
+    }
+
+    /**
+     * Builds the synchronizer.
+     *
+     * @return the custom word synchronizer
+     */
+    public CustomWordSynchronizer build() {
+      return new CustomWordSynchronizer(this);
+    }
+  }
+
+  private final TextToSpeech service;
+  private final int maxConcurrency;
+  private final int batchSize;
+  private final ProgressListener progressListener;
+
+  private CustomWordSynchronizer(Builder builder) {
+    service = builder.service;
+    maxConcurrency = builder.maxConcurrency;
+    batchSize = builder.batchSize;
+    progressListener = builder.progressListener;
+  }
+
+  /**
+   * Makes the words of a model equal to a list of translations. If a word is more than once in the
+   * list, the last translation is used.<br>
+   * The requests already sent are not undone if one of them fails; calling this method again
+   * sends the remaining differences.
+   *
+   * @param model the model, with an ID
+   * @param translations the translations the model should have
+   * @return the result
+   */
+  public Result syncWords(final CustomVoiceModel model, Collection<CustomTranslation> translations) {
+    Validator.notNull(model, "model cannot be null");
+    Validator.notEmpty(model.getId(), "model id must not be empty");
+    Validator.notNull(translations, "translations cannot be null");
+
+    final Map<String, String> current = new LinkedHashMap<String, String>();
+    for (CustomTranslation translation : service.getWords(model).execute()) {
+      current.put(translation.getWord(), translation.getTranslation());
+    }
+    final Map<String, CustomTranslation> desired = new LinkedHashMap<String, CustomTranslation>();
+    for (CustomTranslation translation : translations) {
+      Validator.notEmpty(translation.getWord(), "word must not be empty");
+      desired.put(translation.getWord(), translation);
+    }
+
+    int added = 0, updated = 0, unchanged = 0;
+    final List<CustomTranslation> saves = new ArrayList<CustomTranslation>();
+    for (CustomTranslation translation : desired.values()) {
+      if (!current.containsKey(translation.getWord())) {
+        added++;
+        saves.add(translation);
+      } else if (!equal(current.get(translation.getWord()), translation.getTranslation())) {
+        updated++;
+        saves.add(translation);
+      } else {
+        unchanged++;
+      }
+    }
+    final List<String> deletes = new ArrayList<String>();
+    for (String word : current.keySet()) {
+      if (!desired.containsKey(word)) {
+        deletes.add(word);
+      }
+    }
+
+    final int total = saves.size() + deletes.size();
+    final AtomicInteger completed = new AtomicInteger();
+    final List<Runnable> tasks = new ArrayList<Runnable>();
+    for (int start = 0; start < saves.size(); start += batchSize) {
+      final List<CustomTranslation> batch = saves.subList(start, Math.min(start + batchSize, saves.size()));
+      tasks.add(new Runnable() {
+        @Override
+        public void run() {
+          service.saveWords(model, batch.toArray(new CustomTranslation[batch.size()])).execute();
+          progress(completed.addAndGet(batch.size()), total);
+        }
+      });
+    }
+    for (final String word : deletes) {
+      tasks.add(new Runnable() {
+        @Override
+        public void run() {
+          service.deleteWord(model, new CustomTranslation(word, null)).execute();
+          progress(completed.incrementAndGet(), total);
+        }
+      });
+    }
+    run(tasks);
+
+    return new Result(added, updated, deletes.size(), unchanged);
+  }
+
+  private void progress(int completed, int total) {
+    if (progressListener != null) {
+      progressListener.onProgress(completed, total);
+    }
+  }
+
+  /**
+   * Runs the tasks with at most {@link #maxConcurrency} at the same time. If a task fails, the tasks
+   * not started yet are cancelled and the first failure is thrown.
+   */
+  private void run(List<Runnable> tasks) {
+    if (tasks.isEmpty())
+      return;
+    final ExecutorService executor =
+        Executors.newFixedThreadPool(Math.min(maxConcurrency, tasks.size()), new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "custom-word-synchronizer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    try {
+      final List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+      for (Runnable task : tasks) {
+        futures.add(executor.submit(task));
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          executor.shutdownNow();
+          if (e.getCause() instanceof RuntimeException)
+            throw (RuntimeException) e.getCause();
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static boolean equal(String a, String b) {
+    return a == null ? b == null : a.equals(b);
+  }
+}
@@ -0,0 +1,496 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Synthesizes long texts with {@link TextToSpeech}. The text is split on sentence boundaries
+ * outside of SSML elements, the chunks are synthesized concurrently, and the audio is returned as a
+ * single stream in the order of the text. The audio of each chunk is returned as it is received,
+ * so the stream can be read as soon as the first bytes of the first chunk arrive.<br>
+ * WAV chunks are joined into one file with the header of the first chunk, its sizes set to the
+ * streaming value. WAV is the recommended format. OGG chunks are chained one after the other, and
+ * many players stop at the end of the first chunk of a chained OGG stream. FLAC is not supported.
+ */
+public class LongTextSynthesizer {
+  private static final Pattern SPEAK = Pattern.compile("^\\s*<speak\\b[^>]*>(.*)</speak>\\s*$", Pattern.DOTALL);
+  private static final Pattern BREAK = Pattern.compile("^<break\\b.*/>$", Pattern.DOTALL);
+  private static final int STREAMING_SIZE = 0xffffffff;
+  private static final byte[] END = new byte[0];
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final TextToSpeech service;
+    private Voice voice = Voice.EN_MICHAEL;
+    private AudioFormat audioFormat = AudioFormat.WAV;
+    private String customizationId;
+    private int maxConcurrency = 4;
+    private int maxChunkLength = 1000;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the text to speech service
+     */
+    public Builder(TextToSpeech service) {
+      Validator.notNull(service, "service cannot be null");
+      this.service = service;
+    }
+
+    /**
+     * Sets the voice. The default is {@link Voice#EN_MICHAEL}.
+     *
+     * @param voice the voice
+     * @return the builder
+     */
+    public Builder voice(Voice voice) {
+      Validator.notNull(voice, "voice cannot be null");
+      this.voice = voice;
+      return this;
+    }
+
+    /**
+     * Sets the audio format, {@link AudioFormat#WAV} or {@link AudioFormat#OGG}. The default is
+     * {@link AudioFormat#WAV}. OGG chunks are returned as a chained stream, which many players stop
+     * playing after the first chunk, so use WAV unless the player supports chained OGG.
+     *
+     * @param audioFormat the audio format
+     * @return the builder
+     */
+    public Builder audioFormat(AudioFormat audioFormat) {
+      Validator.isTrue(audioFormat == AudioFormat.WAV || audioFormat == AudioFormat.OGG,
+          "audioFormat should be WAV or OGG");
+      this.audioFormat = audioFormat;
+      return this;
+    }
+
+    /**
+     * Sets the customization ID.
+     *
+     * @param customizationId the customization ID
+     * @return the builder
+     */
+    public Builder customizationId(String customizationId) {
+      this.customizationId = customizationId;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of chunks synthesized or waiting to be read at the same time. The
+     * default is 4.
+     *
+     * @param maxConcurrency the max concurrency
+     * @return the builder
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      Validator.isTrue(maxConcurrency > 0, "maxConcurrency should be greater than 0");
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of characters in a chunk. Sentences are joined up to this length, and
+     * longer sentences are split on whitespace. The default is 1000.
+     *
+     * @param maxChunkLength the max chunk length
+     * @return the builder
+     */
+    public Builder maxChunkLength(int maxChunkLength) {
+      Validator.isTrue(maxChunkLength > 0, "maxChunkLength should be greater than 0");
+      this.maxChunkLength = maxChunkLength;
+      return this;
+    }
+
+    /**
+     * Builds the synthesizer.
+     *
+     * @return the long text synthesizer
+     */
+    public LongTextSynthesizer build() {
+      return new LongTextSynthesizer(this);
+    }
+  }
+
+  private final TextToSpeech service;
+  private final Voice voice;
+  private final AudioFormat audioFormat;
+  private final String customizationId;
+  private final int maxConcurrency;
+  private final int maxChunkLength;
+  private final ThreadPoolExecutor executor;
+
+  private LongTextSynthesizer(Builder builder) {
+    service = builder.service;
+    voice = builder.voice;
+    audioFormat = builder.audioFormat;
+    customizationId = builder.customizationId;
+    maxConcurrency = builder.maxConcurrency;
+    maxChunkLength = builder.maxChunkLength;
+
+    final AtomicInteger count = new AtomicInteger();
+    executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "long-text-synthesizer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Synthesizes a text. The chunks are requested when this method is called; the returned stream
+   * blocks until the audio it reaches is available.
+   *
+   * @param text the text or SSML
+   * @return the audio stream
+   */
+  public AudioStream synthesize(String text) {
+    Validator.isTrue(text != null && !text.trim().isEmpty(), "text cannot be null or empty");
+    return new AudioStream(split(text, maxChunkLength));
+  }
+
+  /**
+   * Splits a text into chunks of at most <code>maxLength</code> characters. The first chunk is the
+   * first sentence, so that its audio is available as soon as possible; the next ones join as many
+   * sentences as fit.<br>
+   * Chunks end after sentence punctuation, a paragraph break or an SSML <code>&lt;break/&gt;</code>
+   * outside of any SSML element, or else on whitespace. The <code>&lt;speak&gt;</code> root element is
+   * removed. An element that is longer than <code>maxLength</code> is kept in one chunk.
+   *
+   * @param text the text or SSML
+   * @param maxLength the maximum length of a chunk
+   * @return the chunks
+   */
+  public static List<String> split(String text, int maxLength) {
+    final Matcher speak = SPEAK.matcher(text);
+    if (speak.matches()) {
+      text = speak.group(1);
+    }
+
+    // positions where a chunk can end, outside of elements
+    final List<Integer> sentences = new ArrayList<Integer>();
+    final List<Integer> words = new ArrayList<Integer>();
+    int depth = 0;
+    for (int i = 0; i < text.length(); i++) {
+      final char c = text.charAt(i);
+      if (c == '<') {
+        final int end = text.indexOf('>', i);
+        if (end == -1)
+          break;
+        final String tag = text.substring(i, end + 1);
+        if (tag.startsWith("</")) {
+          depth = Math.max(0, depth - 1);
+        } else if (!tag.endsWith("/>") && !tag.startsWith("<!") && !tag.startsWith("<?")) {
+          depth++;
+        } else if (depth == 0 && BREAK.matcher(tag).matches()) {
+          sentences.add(end + 1);
+        }
+        i = end;
+      } else if (depth == 0 && Character.isWhitespace(c)) {
+        final char previous = i > 0 ? text.charAt(i - 1) : ' ';
+        if (previous == '.' || previous == '!' || previous == '?' || c == '\n' && previous == '\n') {
+          sentences.add(i);
+        } else {
+          words.add(i);
+        }
+      }
+    }
+    sentences.add(text.length());
+
+    final List<String> chunks = new ArrayList<String>();
+    int start = 0;
+    while (start < text.length()) {
+      int end = chunks.isEmpty() ? firstAfter(sentences, start) : -1;
+      if (end == -1 || end - start > maxLength) {
+        end = lastWithin(sentences, start, start + maxLength);
+      }
+      if (end == -1) {
+        end = lastWithin(words, start, start + maxLength);
+      }
+      if (end == -1) {
+        final int word = firstAfter(words, start);
+        end = word != -1 ? Math.min(word, firstAfter(sentences, start)) : firstAfter(sentences, start);
+      }
+      final String chunk = text.substring(start, end).trim();
+      if (!chunk.isEmpty()) {
+        chunks.add(chunk);
+      }
+      start = end;
+    }
+    return chunks;
+  }
+
+  private static int firstAfter(List<Integer> positions, int start) {
+    for (int position : positions) {
+      if (position > start)
+        return position;
+    }
+    return -1;
+  }
+
+  private static int lastWithin(List<Integer> positions, int start, int end) {
+    int last = -1;
+    for (int position : positions) {
+      if (position > end)
+        break;
+      if (position > start) {
+        last = position;
+      }
+    }
+    return last;
+  }
+
+  /**
+   * Synthesizes a chunk and passes its audio on as it is read. Every WAV chunk but the first one is
+   * passed on without its header.
+   */
+  private void synthesizeChunk(String text, boolean first, Chunk chunk) throws IOException {
+    final InputStream audio = service.synthesize(text, voice, audioFormat, customizationId).execute();
+    try {
+      if (audioFormat == AudioFormat.WAV) {
+        final ByteArrayOutputStream header = new ByteArrayOutputStream(128);
+        final int size = WaveUtils.readHeader(audio, header);
+        if (size == -1)
+          throw new IOException("The synthesized audio is not a WAVE file");
+        if (first) {
+          final byte[] bytes = header.toByteArray();
+          writeInt(STREAMING_SIZE, bytes, 4);
+          writeInt(STREAMING_SIZE, bytes, size - 4);
+          chunk.add(bytes);
+        }
+      }
+      final byte[] buffer = new byte[16384];
+      int read;
+      while (!chunk.stream.closed && (read = audio.read(buffer)) != -1) {
+        chunk.add(Arrays.copyOf(buffer, read));
+      }
+    } finally {
+      audio.close();
+    }
+  }
+
+  private static void writeInt(int value, byte[] array, int offset) {
+    for (int i = 0; i < 4; i++) {
+      array[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+
+  /**
+   * Audio of a chunk, added by the thread synthesizing it and taken by the {@link AudioStream} in
+   * the order it was received.
+   */
+  private final class Chunk implements Runnable {
+    private final AudioStream stream;
+    private final int index;
+    private final BlockingQueue<byte[]> audio = new LinkedBlockingQueue<byte[]>();
+    private volatile Throwable error;
+    private Future<?> future;
+
+    Chunk(AudioStream stream, int index) {
+      this.stream = stream;
+      this.index = index;
+    }
+
+    void add(byte[] bytes) {
+      if (index == 0) {
+        stream.firstAudio.compareAndSet(-1, System.currentTimeMillis() - stream.start);
+      }
+      audio.add(bytes);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run() {
+      try {
+        synthesizeChunk(stream.chunks.get(index), index == 0, this);
+      } catch (Throwable e) {
+        error = e;
+      } finally {
+        if (stream.completed.incrementAndGet() == stream.chunks.size()) {
+          stream.lastAudio.set(System.currentTimeMillis() - stream.start);
+        }
+        audio.add(END);
+      }
+    }
+  }
+
+  /**
+   * Audio of a long text, read in the order of the text while the next chunks are synthesized.
+   */
+  public class AudioStream extends InputStream {
+    private final List<String> chunks;
+    private final List<Chunk> pending;
+    private final long start = System.currentTimeMillis();
+    private final AtomicLong firstAudio = new AtomicLong(-1);
+    private final AtomicLong lastAudio = new AtomicLong(-1);
+    private final AtomicInteger completed = new AtomicInteger();
+    private int current;
+    private byte[] data;
+    private int position;
+    private volatile boolean closed;
+
+    AudioStream(List<String> chunks) {
+      this.chunks = chunks;
+      pending = new ArrayList<Chunk>(chunks.size());
+      for (int i = 0; i < Math.min(maxConcurrency, chunks.size()); i++) {
+        submit();
+      }
+    }
+
+    private void submit() {
+      final Chunk chunk = new Chunk(this, pending.size());
+      pending.add(chunk);
+      chunk.future = executor.submit(chunk);
+    }
+
+    private boolean next() throws IOException {
+      while (data == null || position == data.length) {
+        if (closed)
+          throw new IOException("Stream closed");
+        if (current == chunks.size())
+          return false;
+        final Chunk chunk = pending.get(current);
+        try {
+          data = chunk.audio.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for chunk " + current);
+        }
+        position = 0;
+        if (data == END) {
+          if (chunk.error != null) {
+            close();
+            throw new IOException("Cannot synthesize chunk " + current + ": " + chunks.get(current), chunk.error);
+          }
+          pending.set(current++, null);
+          if (pending.size() < chunks.size()) {
+            submit();
+          }
+        }
+      }
+      return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#read()
+     */
+    @Override
+    public int read() throws IOException {
+      return next() ? data[position++] & 0xff : -1;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#read(byte[], int, int)
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+      if (length == 0)
+        return 0;
+      if (!next())
+        return -1;
+      final int count = Math.min(length, data.length - position);
+      System.arraycopy(data, position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#available()
+     */
+    @Override
+    public int available() {
+      return data != null ? data.length - position : 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.InputStream#close()
+     */
+    @Override
+    public void close() {
+      closed = true;
+      for (Chunk chunk : pending) {
+        if (chunk != null) {
+          chunk.future.cancel(true);
+        }
+      }
+    }
+
+    /**
+     * Gets the number of chunks the text was split into.
+     *
+     * @return the chunk count
+     */
+    public int getChunkCount() {
+      return chunks.size();
+    }
+
+    /**
+     * Gets the time from the call to {@link LongTextSynthesizer#synthesize(String)} until the first
+     * audio of the first chunk was received.
+     *
+     * @return the time in milliseconds, or -1 if it was not received yet
+     */
+    public long getTimeToFirstAudio() {
+      return firstAudio.get();
+    }
+
+    /**
+     * Gets the time from the call to {@link LongTextSynthesizer#synthesize(String)} until the audio
+     * of all the chunks was received.
+     *
+     * @return the time in milliseconds, or -1 if it was not received yet
+     */
+    public long getElapsedTime() {
+      return lastAudio.get();
+    }
+  }
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Phoneme;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Pronunciation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Cache for {@link TextToSpeech#getPronunciation(String, Voice, Phoneme)}. Pronunciations are kept
+ * by word, voice and phoneme set, up to a maximum number of entries, removing the least recently
+ * used ones. Concurrent lookups of the same word share one request, and the words of a document can
+ * be prefetched concurrently before it is synthesized.<br>
+ * When a file is set, the cache is loaded from it when built and written to it by {@link #save()}.
+ */
+public class PronunciationCache {
+  private static final Logger LOG = Logger.getLogger(PronunciationCache.class.getName());
+  private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}'\\-]+");
+  private static final Type TYPE_ENTRIES = new TypeToken<LinkedHashMap<String, String>>() {}.getType();
+  private static final Gson GSON = GsonSingleton.getGsonWithoutPrettyPrinting();
+  private static final String UTF_8 = "UTF-8";
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final TextToSpeech service;
+    private int maxSize = 10000;
+    private int maxConcurrency = 8;
+    private File file;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param service the text to speech service
+     */
+    public Builder(TextToSpeech service) {
+      Validator.notNull(service, "service cannot be null");
+      this.service = service;
+    }
+
+    /**
+     * Sets the maximum number of pronunciations kept. The default is 10000.
+     *
+     * @param maxSize the max size
+     * @return the builder
+     */
+    public Builder maxSize(int maxSize) {
+      Validator.isTrue(maxSize > 0, "maxSize should be greater than 0");
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time by a prefetch. The default is 8.
+     *
+     * @param maxConcurrency the max concurrency
+     * @return the builder
+     */
+    public Builder maxConcurrency(int maxConcurrency) {
+      Validator.isTrue(maxConcurrency > 0, "maxConcurrency should be greater than 0");
+      this.maxConcurrency = maxConcurrency;
+      return this;
+    }
+
+    /**
+     * Sets the file the pronunciations are loaded from and saved to.
+     *
+     * @param file the file
+     * @return the builder
+     */
+    public Builder file(File file) {
+      this.file = file;
+      return this;
+    }
+
+    /**
+     * Builds the cache, loading the file if it exists.
+     *
+     * @return the pronunciation cache
+     */
+    public PronunciationCache build() {
+      final PronunciationCache cache = new PronunciationCache(this);
+      cache.load();
+      return cache;
+    }
+  }
+
+  private final TextToSpeech service;
+  private final File file;
+  private final Map<String, String> entries;
+  private final ConcurrentHashMap<String, FutureTask<Pronunciation>> inFlight =
+      new ConcurrentHashMap<String, FutureTask<Pronunciation>>();
+  private final ThreadPoolExecutor executor;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private PronunciationCache(Builder builder) {
+    service = builder.service;
+    file = builder.file;
+    final int maxSize = builder.maxSize;
+    entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > maxSize;
+      }
+    };
+
+    final AtomicInteger count = new AtomicInteger();
+    executor = new ThreadPoolExecutor(builder.maxConcurrency, builder.maxConcurrency, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "pronunciation-cache-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Gets the pronunciation of a word, from the cache or from the service.
+   *
+   * @param word the word
+   * @param voice the voice, or null for the default voice
+   * @param phoneme the phoneme set, or null for the default set
+   * @return the pronunciation
+   */
+  public Pronunciation getPronunciation(String word, Voice voice, Phoneme phoneme) {
+    Validator.notEmpty(word, "word cannot be null or empty");
+    final String key = key(word, voice, phoneme);
+    final Pronunciation cached = get(key);
+    if (cached != null)
+      return cached;
+
+    final FutureTask<Pronunciation> task = request(key, word, voice, phoneme);
+    task.run();
+    return await(task);
+  }
+
+  /**
+   * Gets the pronunciations of the words of a document. The text is split on characters that are
+   * not letters, digits, apostrophes or hyphens.
+   *
+   * @param text the text
+   * @param voice the voice, or null for the default voice
+   * @param phoneme the phoneme set, or null for the default set
+   * @return the pronunciations by word
+   * @see #prefetch(Collection, Voice, Phoneme)
+   */
+  public Map<String, Pronunciation> prefetch(String text, Voice voice, Phoneme phoneme) {
+    Validator.notNull(text, "text cannot be null");
+    final List<String> words = new ArrayList<String>();
+    for (String word : WORD_SEPARATOR.split(text)) {
+      if (!word.isEmpty()) {
+        words.add(word);
+      }
+    }
+    return prefetch(words, voice, phoneme);
+  }
+
+  /**
+   * Gets the pronunciations of a list of words. Each word is requested once, the words that are
+   * not cached are requested concurrently, and this method returns when all the requests are done.
+   * Words whose request fails are logged and left out of the result.
+   *
+   * @param words the words
+   * @param voice the voice, or null for the default voice
+   * @param phoneme the phoneme set, or null for the default set
+   * @return the pronunciations by word
+   */
+  public Map<String, Pronunciation> prefetch(Collection<String> words, Voice voice, Phoneme phoneme) {
+    Validator.notNull(words, "words cannot be null");
+    final Set<String> unique = new LinkedHashSet<String>(words);
+    final Map<String, Pronunciation> pronunciations = new LinkedHashMap<String, Pronunciation>();
+    final Map<String, Future<Pronunciation>> pending = new LinkedHashMap<String, Future<Pronunciation>>();
+
+    for (String word : unique) {
+      final String key = key(word, voice, phoneme);
+      final Pronunciation cached = get(key);
+      if (cached != null) {
+        pronunciations.put(word, cached);
+      } else {
+        final FutureTask<Pronunciation> task = request(key, word, voice, phoneme);
+        executor.execute(task);
+        pending.put(word, task);
+      }
+    }
+
+    for (Map.Entry<String, Future<Pronunciation>> entry : pending.entrySet()) {
+      try {
+        pronunciations.put(entry.getKey(), await(entry.getValue()));
+      } catch (RuntimeException e) {
+        LOG.log(Level.WARNING, "Cannot get the pronunciation of " + entry.getKey(), e);
+      }
+    }
+    return pronunciations;
+  }
+
+  /**
+   * Writes the cache to its file.
+   */
+  public void save() {
+    Validator.notNull(file, "the cache has no file");
+    final Map<String, String> snapshot;
+    synchronized (entries) {
+      snapshot = new LinkedHashMap<String, String>(entries);
+    }
+    final File temp = new File(file.getPath() + ".tmp");
+    try {
+      final Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+      try {
+        GSON.toJson(snapshot, TYPE_ENTRIES, writer);
+      } finally {
+        writer.close();
+      }
+      if (file.exists() && !file.delete() || !temp.renameTo(file))
+        throw new IOException("Cannot replace " + file);
+    } catch (IOException e) {
+      temp.delete();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Gets the number of cached pronunciations.
+   *
+   * @return the size
+   */
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * Gets the number of lookups found in the cache.
+   *
+   * @return the hit count
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of lookups not found in the cache, including the ones that waited for a request
+   * already sent.
+   *
+   * @return the miss count
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private void load() {
+    if (file == null || !file.exists())
+      return;
+    try {
+      final Reader reader = new InputStreamReader(new FileInputStream(file), UTF_8);
+      try {
+        final Map<String, String> loaded = GSON.fromJson(reader, TYPE_ENTRIES);
+        if (loaded != null) {
+          synchronized (entries) {
+            entries.putAll(loaded);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (Exception e) {
+      LOG.log(Level.WARNING, "Cannot load the pronunciations from " + file, e);
+    }
+  }
+
+  private Pronunciation get(String key) {
+    final String value;
+    synchronized (entries) {
+      value = entries.get(key);
+    }
+    if (value == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    final Pronunciation pronunciation = new Pronunciation();
+    pronunciation.setPronunciation(value);
+    return pronunciation;
+  }
+
+  /**
+   * Gets the request in flight for a key, or creates one. A new request is not started; the caller
+   * runs it, which does nothing if it already ran.
+   */
+  private FutureTask<Pronunciation> request(final String key, final String word, final Voice voice,
+      final Phoneme phoneme) {
+    final FutureTask<Pronunciation> task = new FutureTask<Pronunciation>(new Callable<Pronunciation>() {
+      @Override
+      public Pronunciation call() {
+        try {
+          final Pronunciation pronunciation = service.getPronunciation(word, voice, phoneme).execute();
+          if (pronunciation != null && pronunciation.getPronunciation() != null) {
+            synchronized (entries) {
+              entries.put(key, pronunciation.getPronunciation());
+            }
+          }
+          return pronunciation;
+        } finally {
+          inFlight.remove(key);
+        }
+      }
+    });
+    final FutureTask<Pronunciation> existing = inFlight.putIfAbsent(key, task);
+    return existing != null ? existing : task;
+  }
+
+  private static Pronunciation await(Future<Pronunciation> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException)
+        throw (RuntimeException) e.getCause();
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  private static String key(String word, Voice voice, Phoneme phoneme) {
+    return (voice != null ? voice.getName() : "") + '\t' + (phoneme != null ? phoneme : "") + '\t' + word;
+  }
+}
@@ -0,0 +1,494 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import com.ibm.watson.developer_cloud.http.ContentLengthInputStream;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.util.Validator;
+
+/**
+ * Disk cache for the audio synthesized by {@link TextToSpeech}. Entries are keyed by a hash of the
+ * normalized text, the voice, the audio format and the customization ID, stored as files under a
+ * directory, and streamed back from the files. Synthesized audio is written to its file while it is
+ * read, so the first bytes are not delayed by the cache. The least recently used entries are deleted
+ * when the cache grows over its size limit.<br>
+ * The entries of a customization are removed when its words change, see
+ * {@link TextToSpeech#setSynthesisCache(SynthesisCache)}. Entries found in the directory when the
+ * cache is created are reused, oldest first.
+ */
+public class SynthesisCache {
+  private static final Logger LOG = Logger.getLogger(SynthesisCache.class.getName());
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  private static final String NO_CUSTOMIZATION = "_default";
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  /**
+   * Cache key, with the customization it depends on and the invalidation count when it was
+   * created.
+   */
+  public static final class Key {
+    private final String hash;
+    private final String customization;
+    private final long generation;
+
+    private Key(String hash, String customization, long generation) {
+      this.hash = hash;
+      this.customization = customization;
+      this.generation = generation;
+    }
+
+    /**
+     * Gets the hash of the synthesis parameters.
+     *
+     * @return the hash
+     */
+    public String getHash() {
+      return hash;
+    }
+  }
+
+  /**
+   * Builder.
+   */
+  public static class Builder {
+    private final File directory;
+    private long maxSize = 100 * 1024 * 1024;
+
+    /**
+     * Instantiates a new builder.
+     *
+     * @param directory the directory for the audio files, created if it does not exist
+     */
+    public Builder(File directory) {
+      this.directory = directory;
+    }
+
+    /**
+     * Sets the maximum size of the audio files, 100 MB by default.
+     *
+     * @param maxSize the maximum size in bytes
+     * @return the builder
+     */
+    public Builder maxSize(long maxSize) {
+      this.maxSize = maxSize;
+      return this;
+    }
+
+    /**
+     * Builds the cache and loads the entries already in the directory.
+     *
+     * @return the synthesis cache
+     */
+    public SynthesisCache build() {
+      return new SynthesisCache(this);
+    }
+  }
+
+  private final File directory;
+  private final long maxSize;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final Map<String, Long> invalidations = new HashMap<String, Long>();
+  private long cleared;
+  private long size;
+
+  private SynthesisCache(Builder builder) {
+    Validator.notNull(builder.directory, "directory cannot be null");
+    Validator.isTrue(builder.maxSize > 0, "maxSize should be greater than 0");
+    directory = builder.directory;
+    maxSize = builder.maxSize;
+    if (!directory.isDirectory() && !directory.mkdirs())
+      throw new IllegalArgumentException("Cannot create the cache directory " + directory);
+    load();
+  }
+
+  /**
+   * Creates the key for a synthesis. The text is compared after Unicode normalization, with
+   * leading, trailing and repeated whitespace removed.
+   *
+   * @param text the text
+   * @param voice the voice
+   * @param audioFormat the audio format
+   * @param customizationId the customization ID, or null
+   * @return the key
+   */
+  public Key key(String text, Voice voice, AudioFormat audioFormat, String customizationId) {
+    final String normalized = WHITESPACE.matcher(Normalizer.normalize(text, Normalizer.Form.NFC)).replaceAll(" ").trim();
+    final MessageDigest digest = sha256();
+    update(digest, normalized);
+    update(digest, voice.getName());
+    update(digest, String.valueOf(audioFormat));
+    update(digest, customizationId != null ? customizationId : "");
+
+    final byte[] bytes = digest.digest();
+    final char[] hash = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hash[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+      hash[2 * i + 1] = HEX[bytes[i] & 0xf];
+    }
+    return new Key(new String(hash), customizationId != null ? customizationId : NO_CUSTOMIZATION, generation.get());
+  }
+
+  /**
+   * Gets cached audio.
+   *
+   * @param key the key
+   * @return the audio, or null if it is not in the cache. The stream should be closed.
+   */
+  public InputStream get(Key key) {
+    final Entry entry;
+    synchronized (this) {
+      entry = entries.get(key.hash);
+    }
+    if (entry != null) {
+      try {
+        final InputStream audio = new ContentLengthInputStream(new FileInputStream(entry.file), entry.length);
+        hits.incrementAndGet();
+        return audio;
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Cannot read cached audio " + entry.file, e);
+        remove(entry);
+      }
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Stores synthesized audio. The audio is written to the cache as the returned stream is read, and
+   * stored once it is read to the end. It is not stored if the stream is closed before, or if the
+   * customization of the key was invalidated since the key was created.
+   *
+   * @param key the key
+   * @param audio the audio
+   * @return the audio, or the original stream if it cannot be written to the cache
+   */
+  public InputStream put(Key key, InputStream audio) {
+    final File folder = new File(directory, key.customization);
+    File temp = null;
+    try {
+      folder.mkdirs();
+      temp = File.createTempFile(key.hash, TEMP_SUFFIX, folder);
+      return new CachingInputStream(key, audio, temp, new FileOutputStream(temp));
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Cannot write the audio to the cache directory " + folder, e);
+      if (temp != null) {
+        temp.delete();
+      }
+      return audio;
+    }
+  }
+
+  /**
+   * Stores an audio file once it was written.
+   *
+   * @param key the key
+   * @param temp the audio file, deleted if it is not stored
+   */
+  private synchronized void store(Key key, File temp) {
+    final Long invalidated = invalidations.get(key.customization);
+    if (cleared > key.generation || invalidated != null && invalidated > key.generation) {
+      temp.delete();
+      return;
+    }
+    final Entry previous = entries.remove(key.hash);
+    if (previous != null) {
+      size -= previous.length;
+    }
+    final File file = new File(temp.getParentFile(), key.hash);
+    if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+      temp.delete();
+      return;
+    }
+    final Entry entry = new Entry(key.hash, key.customization, file);
+    entries.put(key.hash, entry);
+    size += entry.length;
+    evict();
+  }
+
+  /**
+   * Removes the entries of a customization.
+   *
+   * @param customizationId the customization ID
+   */
+  public synchronized void invalidate(String customizationId) {
+    final String customization = customizationId != null ? customizationId : NO_CUSTOMIZATION;
+    invalidations.put(customization, generation.incrementAndGet());
+    final Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      final Entry entry = iterator.next();
+      if (entry.customization.equals(customization)) {
+        iterator.remove();
+        size -= entry.length;
+        entry.file.delete();
+      }
+    }
+  }
+
+  /**
+   * Removes all the entries.
+   */
+  public synchronized void clear() {
+    cleared = generation.incrementAndGet();
+    for (Entry entry : entries.values()) {
+      entry.file.delete();
+    }
+    entries.clear();
+    size = 0;
+  }
+
+  /**
+   * Gets the size of the cached audio.
+   *
+   * @return the size in bytes
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Gets the number of entries.
+   *
+   * @return the number of entries
+   */
+  public synchronized int getCount() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the number of lookups that found an entry.
+   *
+   * @return the hit count
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Gets the number of lookups that did not find an entry.
+   *
+   * @return the miss count
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  private void evict() {
+    final Iterator<Entry> iterator = entries.values().iterator();
+    while (size > maxSize && iterator.hasNext()) {
+      final Entry entry = iterator.next();
+      iterator.remove();
+      size -= entry.length;
+      entry.file.delete();
+    }
+  }
+
+  private synchronized void remove(Entry entry) {
+    if (entries.get(entry.hash) == entry) {
+      entries.remove(entry.hash);
+      size -= entry.length;
+      entry.file.delete();
+    }
+  }
+
+  private void load() {
+    final List<File> files = new ArrayList<File>();
+    final File[] folders = directory.listFiles();
+    for (File folder : folders != null ? folders : new File[0]) {
+      final File[] children = folder.listFiles();
+      if (children == null)
+        continue;
+      for (File file : children) {
+        if (file.getName().endsWith(TEMP_SUFFIX)) {
+          file.delete();
+        } else if (file.isFile()) {
+          files.add(file);
+        }
+      }
+    }
+    final File[] sorted = files.toArray(new File[files.size()]);
+    Arrays.sort(sorted, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        final long difference = a.lastModified() - b.lastModified();
+        return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+      }
+    });
+    synchronized (this) {
+      for (File file : sorted) {
+        final Entry entry = new Entry(file.getName(), file.getParentFile().getName(), file);
+        entries.put(entry.hash, entry);
+        size += entry.length;
+      }
+      evict();
+    }
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    digest.update(value.getBytes(UTF_8));
+    digest.update((byte) 0);
+  }
+
+  /**
+   * Cached audio file.
+   */
+  private static final class Entry {
+    private final String hash;
+    private final String customization;
+    private final File file;
+    private final long length;
+
+    Entry(String hash, String customization, File file) {
+      this.hash = hash;
+      this.customization = customization;
+      this.file = file;
+      length = file.length();
+    }
+  }
+
+  /**
+   * {@link InputStream} of synthesized audio that writes what is read to a cache file, and stores the
+   * file once the audio is read to the end.
+   */
+  private final class CachingInputStream extends ContentLengthInputStream {
+    private final Key key;
+    private final File temp;
+    private OutputStream out;
+
+    CachingInputStream(Key key, InputStream in, File temp, OutputStream out) {
+      super(in, in instanceof ContentLengthInputStream ? ((ContentLengthInputStream) in).getContentLength() : -1);
+      this.key = key;
+      this.temp = temp;
+      this.out = out;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] single = new byte[1];
+      final int read = read(single, 0, 1);
+      return read == 1 ? single[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      final int read;
+      try {
+        read = super.read(bytes, offset, length);
+      } catch (IOException e) {
+        discard();
+        throw e;
+      }
+      if (out == null)
+        return read;
+      try {
+        if (read == -1) {
+          out.close();
+          out = null;
+          store(key, temp);
+        } else {
+          out.write(bytes, offset, read);
+        }
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Cannot write the audio to the cache file " + temp, e);
+        discard();
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      final byte[] buffer = new byte[(int) Math.max(1, Math.min(n, 8192))];
+      long skipped = 0;
+      while (skipped < n) {
+        final int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+        if (read == -1)
+          break;
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public synchronized void mark(int readLimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+      throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        discard();
+      }
+    }
+
+    private void discard() {
+      if (out == null)
+        return;
+      try {
+        out.close();
+      } catch (IOException e) {
+        LOG.log(Level.FINE, "Cannot close the cache file " + temp, e);
+      }
+      out = null;
+      temp.delete();
+    }
+  }
+}
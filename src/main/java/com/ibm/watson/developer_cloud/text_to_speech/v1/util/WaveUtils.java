@@ -13,11 +13,19 @@
  */
 package com.ibm.watson.developer_cloud.text_to_speech.v1.util;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 
+import com.ibm.watson.developer_cloud.http.ContentLengthInputStream;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.TextToSpeech;
 
 
@@ -29,12 +37,18 @@ public class WaveUtils {
   /** The WAVE meta-data header size. (value is 8) */
   private static final int WAVE_HEADER_SIZE = 8;
 
-  /** The WAVE meta-data position in bytes. (value is 74) */
-  private static final int WAVE_METADATA_POS = 74;
-
   /** The WAVE meta-data size position. (value is 4) */
   private static final int WAVE_SIZE_POS = 4;
 
+  /** The size of the RIFF header, with the "WAVE" form type. (value is 12) */
+  private static final int RIFF_HEADER_SIZE = 12;
+
+  /** The maximum size of the chunks before the audio data. (value is 65536) */
+  private static final int MAX_HEADER_SIZE = 65536;
+
+  /** The size of the buffer used to copy audio. (value is 16384) */
+  private static final int BUFFER_SIZE = 16384;
+
   /**
    * Writes an number into an array using 4 bytes
    * 
@@ -48,22 +62,221 @@ public class WaveUtils {
     }
   }
 
+  /**
+   * Reads an integer written in 4 bytes.
+   *
+   * @param array the byte array
+   * @param offset the offset
+   * @return the number
+   */
+  private static int readInt(byte[] array, int offset) {
+    return (array[offset] & 0xff) | (array[offset + 1] & 0xff) << 8 | (array[offset + 2] & 0xff) << 16
+        | (array[offset + 3] & 0xff) << 24;
+  }
+
+  /**
+   * Reads bytes from a stream until the array is full or the stream ends.
+   *
+   * @param is the input stream
+   * @param array the byte array
+   * @param offset the offset
+   * @param length the number of bytes to read
+   * @return the number of bytes read
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static int readFully(InputStream is, byte[] array, int offset, int length) throws IOException {
+    int total = 0;
+    while (total < length) {
+      final int read = is.read(array, offset + total, length - total);
+      if (read == -1)
+        break;
+      total += read;
+    }
+    return total;
+  }
+
+  /**
+   * Reads the WAVE header up to the start of the audio data, which is the end of the header of the
+   * "data" chunk.<br>
+   * If the stream is not a WAVE file, or the header is longer than {@link #MAX_HEADER_SIZE}, the
+   * bytes read so far are returned and the size is -1.
+   *
+   * @param is the input stream
+   * @param header the output for the bytes read
+   * @return the size of the header, or -1 if the "data" chunk was not found
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  static int readHeader(InputStream is, ByteArrayOutputStream header) throws IOException {
+    final byte[] buffer = new byte[RIFF_HEADER_SIZE];
+    int read = readFully(is, buffer, 0, RIFF_HEADER_SIZE);
+    header.write(buffer, 0, read);
+    if (read < RIFF_HEADER_SIZE || !"RIFF".equals(new String(buffer, 0, 4, "US-ASCII"))
+        || !"WAVE".equals(new String(buffer, 8, 4, "US-ASCII")))
+      return -1;
+
+    while (header.size() < MAX_HEADER_SIZE) {
+      read = readFully(is, buffer, 0, WAVE_HEADER_SIZE);
+      header.write(buffer, 0, read);
+      if (read < WAVE_HEADER_SIZE)
+        return -1;
+      if ("data".equals(new String(buffer, 0, 4, "US-ASCII")))
+        return header.size();
+
+      // chunks are padded to an even size
+      long remaining = (readInt(buffer, 4) & 0xffffffffL) + (buffer[4] & 1);
+      if (header.size() + remaining > MAX_HEADER_SIZE)
+        return -1;
+      final byte[] chunk = new byte[(int) remaining];
+      read = readFully(is, chunk, 0, chunk.length);
+      header.write(chunk, 0, read);
+      if (read < chunk.length)
+        return -1;
+    }
+    return -1;
+  }
+
+  /**
+   * Writes the RIFF size and the size of the "data" chunk into a header.
+   *
+   * @param header the header, ending with the "data" chunk header
+   * @param length the total length of the WAVE file
+   */
+  private static void writeSizes(byte[] header, long length) {
+    writeInt((int) Math.min(length - WAVE_HEADER_SIZE, 0xffffffffL), header, WAVE_SIZE_POS);
+    writeInt((int) Math.min(length - header.length, 0xffffffffL), header, header.length - 4);
+  }
+
   /**
    * Re-writes the data size in the header(bytes 4-8) of the WAVE(.wav) input stream.<br>
-   * It needs to be read in order to calculate the size.
+   * If the stream is a {@link ContentLengthInputStream} with a known length, e.g. a synthesized
+   * response with a Content-Length, only the header is read in advance, as in
+   * {@link #reWriteWaveHeader(InputStream, long)}.<br>
+   * Otherwise the size is unknown until the stream ends, which is the case of the chunked responses
+   * of {@link TextToSpeech}: the audio is copied to a temporary file, so the heap use stays constant, but the returned stream
+   * is only available once the whole clip has been read. The temporary file is deleted when the
+   * returned stream is closed. The service writes the largest size in the header of streamed audio,
+   * so players that accept it can play the synthesized stream as it is, without this method.<br>
+   * The input stream is read to its end but not closed.
    * 
    * @param is the input stream
    * @return A new input stream that includes the data header in the header
    * @throws IOException Signals that an I/O exception has occurred.
    */
   public static InputStream reWriteWaveHeader(InputStream is) throws IOException {
-    byte[] audioBytes = toByteArray(is);
-    int filesize = audioBytes.length - WAVE_HEADER_SIZE;
+    if (is instanceof ContentLengthInputStream) {
+      final long length = ((ContentLengthInputStream) is).getContentLength();
+      if (length != -1)
+        return reWriteWaveHeader(is, length);
+    }
+
+    final File file = File.createTempFile("audio", ".wav");
+    try {
+      copy(is, file);
+      writeSizes(file);
+      return new FileInputStream(file) {
+        @Override
+        public void close() throws IOException {
+          super.close();
+          file.delete();
+        }
+      };
+    } catch (IOException e) {
+      file.delete();
+      throw e;
+    }
+  }
 
-    writeInt(filesize, audioBytes, WAVE_SIZE_POS);
-    writeInt(filesize - WAVE_HEADER_SIZE, audioBytes, WAVE_METADATA_POS);
+  /**
+   * Re-writes the data size in the header of the WAVE(.wav) input stream, when its total length is
+   * known, e.g. from the Content-Length of the response.<br>
+   * Only the header is read in advance, the rest of the audio is read from the input stream as the
+   * returned stream is read.
+   *
+   * @param is the input stream
+   * @param length the length of the WAVE file in bytes
+   * @return A new input stream that includes the data size in the header
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static InputStream reWriteWaveHeader(InputStream is, long length) throws IOException {
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+    final int size = readHeader(is, buffer);
+    final byte[] header = buffer.toByteArray();
+    if (size != -1 && length >= size) {
+      writeSizes(header, length);
+    }
+    return new SequenceInputStream(new ByteArrayInputStream(header), is);
+  }
 
-    return new ByteArrayInputStream(audioBytes);
+  /**
+   * Writes the WAVE(.wav) input stream to a file, then writes the data size in its header. The
+   * audio is copied as it is read and the input stream is closed.
+   *
+   * @param is the input stream
+   * @param file the file
+   * @return the length of the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static long writeWaveFile(InputStream is, File file) throws IOException {
+    try {
+      copy(is, file);
+    } finally {
+      is.close();
+    }
+    return writeSizes(file);
+  }
+
+  /**
+   * Copies an input stream to a file, without closing the input stream.
+   *
+   * @param is the input stream
+   * @param file the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static void copy(InputStream is, File file) throws IOException {
+    final OutputStream out = new FileOutputStream(file);
+    try {
+      final byte[] data = new byte[BUFFER_SIZE];
+      int nRead;
+      while ((nRead = is.read(data, 0, data.length)) != -1) {
+        out.write(data, 0, nRead);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes the RIFF size and the size of the "data" chunk into the header of a WAVE file.
+   *
+   * @param file the file
+   * @return the length of the file
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  private static long writeSizes(File file) throws IOException {
+    final InputStream in = new BufferedInputStream(new FileInputStream(file));
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+    final int size;
+    try {
+      size = readHeader(in, buffer);
+    } finally {
+      in.close();
+    }
+
+    final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      final long length = raf.length();
+      if (size != -1) {
+        final byte[] header = buffer.toByteArray();
+        writeSizes(header, length);
+        raf.seek(WAVE_SIZE_POS);
+        raf.write(header, WAVE_SIZE_POS, 4);
+        raf.seek(size - 4);
+        raf.write(header, size - 4, 4);
+      }
+      return length;
+    } finally {
+      raf.close();
+    }
   }
 
   /**
@@ -78,7 +291,7 @@ public class WaveUtils {
     ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
     int nRead;
-    byte[] data = new byte[16384]; // 4 kb
+    byte[] data = new byte[BUFFER_SIZE];
 
     while ((nRead = is.read(data, 0, data.length)) != -1) {
       buffer.write(data, 0, nRead);
@@ -15,8 +15,10 @@ package com.ibm.watson.developer_cloud.tone_analyzer.v3.model;
 
 import java.util.List;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import com.ibm.watson.developer_cloud.service.model.GenericModel;
+import com.ibm.watson.developer_cloud.util.InternedStringTypeAdapter;
 
 /**
  * Top level tone (or Tone Category) from the list of Writing Tone, Emotion Tone or Social Tone. It
@@ -25,8 +27,10 @@ import com.ibm.watson.developer_cloud.service.model.GenericModel;
 public class ToneCategory extends GenericModel {
 
   @SerializedName("category_id")
+  @JsonAdapter(InternedStringTypeAdapter.class)
   private String id;
   @SerializedName("category_name")
+  @JsonAdapter(InternedStringTypeAdapter.class)
   private String name;
   private List<ToneScore> tones;
 
@@ -13,8 +13,10 @@
  */
 package com.ibm.watson.developer_cloud.tone_analyzer.v3.model;
 
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 import com.ibm.watson.developer_cloud.service.model.GenericModel;
+import com.ibm.watson.developer_cloud.util.InternedStringTypeAdapter;
 
 /**
  * Object representing scoring of a single Tone (of any category) on our responses. It contains the
@@ -23,9 +25,11 @@ import com.ibm.watson.developer_cloud.service.model.GenericModel;
 public class ToneScore extends GenericModel {
 
   @SerializedName("tone_id")
+  @JsonAdapter(InternedStringTypeAdapter.class)
   private String id;
 
   @SerializedName("tone_name")
+  @JsonAdapter(InternedStringTypeAdapter.class)
   private String name;
 
   /** The score. */
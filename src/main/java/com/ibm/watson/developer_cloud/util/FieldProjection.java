@@ -0,0 +1,184 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Fields of a JSON response that should be deserialized. Each field is a path of JSON property names
+ * separated by dots, e.g. <code>entities.disambiguated</code>, and array elements use the path of
+ * the array.<br>
+ * Objects and arrays that are not on a path are skipped while the response is read, so they are
+ * neither parsed into objects nor bound to the model. Primitive values are always kept. A path ending
+ * with <code>.*</code> keeps everything under it.
+ *
+ * <pre>
+ * // entities and keywords with their primitive fields, and the disambiguated links of the entities
+ * FieldProjection projection = new FieldProjection("entities.disambiguated", "keywords");
+ * </pre>
+ */
+public class FieldProjection {
+  private static final String ALL = "*";
+
+  /**
+   * Name returned for the fields to skip. It never matches a field of a model, so the value is
+   * skipped.
+   */
+  private static final String SKIPPED = "\u0000";
+
+  /**
+   * Fields kept under a path.
+   */
+  private static final class Node {
+    private final Map<String, Node> children = new HashMap<String, Node>();
+    private boolean all;
+  }
+
+  private final Node root = new Node();
+  private final Set<String> paths;
+
+  /**
+   * Instantiates a new field projection.
+   *
+   * @param paths the paths of the fields to keep
+   */
+  public FieldProjection(String... paths) {
+    Validator.notEmpty(paths, "paths cannot be empty");
+    for (final String path : paths) {
+      Validator.isTrue(path != null && !path.isEmpty(), "paths cannot be empty");
+      Node node = root;
+      for (final String name : path.split("\\.")) {
+        if (ALL.equals(name)) {
+          node.all = true;
+          break;
+        }
+        Node child = node.children.get(name);
+        if (child == null) {
+          child = new Node();
+          node.children.put(name, child);
+        }
+        node = child;
+      }
+    }
+    this.paths = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(paths)));
+  }
+
+  /**
+   * Gets the paths of the fields to keep.
+   *
+   * @return the paths
+   */
+  public Set<String> getPaths() {
+    return paths;
+  }
+
+  /**
+   * Checks if a top level field is on one of the paths.
+   *
+   * @param name the JSON property name
+   * @return true if the field is kept
+   */
+  public boolean contains(String name) {
+    return root.all || root.children.containsKey(name);
+  }
+
+  /**
+   * Creates a JSON reader that skips the fields outside of the projection.
+   *
+   * @param in the JSON source
+   * @return the JSON reader
+   */
+  public JsonReader newJsonReader(Reader in) {
+    return new ProjectionReader(in, root);
+  }
+
+  /**
+   * {@link JsonReader} that tracks the position in the projection and hides the names of the
+   * objects and arrays to skip, so the type adapters skip their values.
+   */
+  private static final class ProjectionReader extends JsonReader {
+    private Node[] nodes = new Node[32];
+    private boolean[] arrays = new boolean[32];
+    private int depth;
+    private Node pending;
+
+    ProjectionReader(Reader in, Node root) {
+      super(in);
+      pending = root;
+    }
+
+    @Override
+    public void beginArray() throws IOException {
+      super.beginArray();
+      push(true);
+    }
+
+    @Override
+    public void endArray() throws IOException {
+      super.endArray();
+      depth--;
+    }
+
+    @Override
+    public void beginObject() throws IOException {
+      super.beginObject();
+      push(false);
+    }
+
+    @Override
+    public void endObject() throws IOException {
+      super.endObject();
+      depth--;
+    }
+
+    @Override
+    public String nextName() throws IOException {
+      final String name = super.nextName();
+      final Node node = nodes[depth - 1];
+      if (node.all) {
+        pending = node;
+        return name;
+      }
+      final Node child = node.children.get(name);
+      if (child != null) {
+        pending = child;
+        return name;
+      }
+      final JsonToken token = peek();
+      return token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY ? SKIPPED : name;
+    }
+
+    private void push(boolean array) {
+      // array elements use the node of the array
+      final Node node = depth > 0 && arrays[depth - 1] ? nodes[depth - 1] : pending;
+      if (depth == nodes.length) {
+        nodes = Arrays.copyOf(nodes, depth * 2);
+        arrays = Arrays.copyOf(arrays, depth * 2);
+      }
+      nodes[depth] = node;
+      arrays[depth] = array;
+      depth++;
+    }
+  }
+}
@@ -78,6 +78,27 @@ public class ResponseConverterUtils {
     };
   }
 
+  /**
+   * Creates a {@link ResponseConverter} for a POJO class that only deserializes the fields of a
+   * projection.
+   *
+   * @param <T> the generic type
+   * @param type the type
+   * @param projection the fields to deserialize, or null to deserialize all of them
+   * @return the response converter
+   */
+  public static <T extends GenericModel> ResponseConverter<T> getObject(final Class<T> type,
+      final FieldProjection projection) {
+    if (projection == null)
+      return getObject(type);
+    return new ResponseConverter<T>() {
+      @Override
+      public T convert(Response response) {
+        return ResponseUtils.getObject(response, type, projection);
+      }
+    };
+  }
+
   /**
    * Creates a generic {@link ResponseConverter} for a String response.
    *
@@ -22,6 +22,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
+import com.ibm.watson.developer_cloud.http.ContentLengthInputStream;
 import com.ibm.watson.developer_cloud.service.model.GenericModel;
 
 import okhttp3.Response;
@@ -39,10 +40,11 @@ public class ResponseUtils {
    * Returns the HTTP Response {@link InputStream}.
    * 
    * @param response an HTTP response
-   * @return the content body as an InputStream
+   * @return the content body as an InputStream, with the Content-Length of the response when it has
+   *         one
    */
   public static InputStream getInputStream(Response response) {
-    return response.body().byteStream();
+    return new ContentLengthInputStream(response.body().byteStream(), response.body().contentLength());
   }
 
   /**
@@ -94,6 +96,25 @@ public class ResponseUtils {
     }
   }
 
+  /**
+   * Parses the {@link Response} into the POJO representation, skipping the fields that are not part
+   * of a projection.
+   *
+   * @param <T> the generic type to use when parsing the response
+   * @param response the HTTP response
+   * @param type the type of the response
+   * @param projection the fields to deserialize
+   * @return the POJO
+   */
+  public static <T extends GenericModel> T getObject(Response response, Class<T> type, FieldProjection projection) {
+    try {
+      final JsonReader reader = projection.newJsonReader(response.body().charStream());
+      return GsonSingleton.getGsonWithoutPrettyPrinting().fromJson(reader, type);
+    } finally {
+      response.body().close();
+    }
+  }
+
   /**
    * Returns a String representation of the response.
    *
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded table of canonical {@link String} instances, used to share one instance per distinct value
+ * for fields that repeat a small set of values across many responses (types, labels, class names).
+ * <br>
+ * The table never grows: each value hashes to two slots, and when both are taken by other values the
+ * first one is replaced. Lookups are lock free and safe to use from several threads; a value that
+ * was replaced is simply not shared anymore.<br>
+ * Interning is disabled until a default table is set with {@link #setDefault(StringInterner)}. Fields
+ * annotated with {@link InternedStringTypeAdapter} use the default table during deserialization.
+ */
+public class StringInterner {
+  private static volatile StringInterner defaultInterner;
+
+  private final AtomicReferenceArray<String> table;
+  private final int mask;
+
+  /**
+   * Instantiates a new string interner.
+   *
+   * @param capacity the maximum number of values, rounded up to a power of two
+   */
+  public StringInterner(int capacity) {
+    Validator.isTrue(capacity > 1, "capacity should be greater than 1");
+    final int size = Integer.highestOneBit(capacity - 1) << 1;
+    table = new AtomicReferenceArray<String>(size);
+    mask = size - 1;
+  }
+
+  /**
+   * Gets the default string interner.
+   *
+   * @return the default string interner, or null if interning is disabled
+   */
+  public static StringInterner getDefault() {
+    return defaultInterner;
+  }
+
+  /**
+   * Sets the default string interner used during deserialization. The default is null, which
+   * disables interning.
+   *
+   * @param interner the string interner, or null
+   */
+  public static void setDefault(StringInterner interner) {
+    defaultInterner = interner;
+  }
+
+  /**
+   * Interns a value with the default string interner, if there is one.
+   *
+   * @param value the value
+   * @return the canonical instance, or the value if interning is disabled
+   */
+  public static String internDefault(String value) {
+    final StringInterner interner = defaultInterner;
+    return interner == null ? value : interner.intern(value);
+  }
+
+  /**
+   * Returns the canonical instance of a value, adding the value to the table if it is not there.
+   *
+   * @param value the value
+   * @return the canonical instance, equal to the value
+   */
+  public String intern(String value) {
+    if (value == null)
+      return null;
+    int hash = value.hashCode();
+    hash ^= (hash >>> 16);
+    final int first = hash & mask;
+    final int second = (first + 1) & mask;
+
+    final String existing = table.get(first);
+    if (value.equals(existing))
+      return existing;
+    final String other = table.get(second);
+    if (value.equals(other))
+      return other;
+
+    if (existing == null || other != null) {
+      table.set(first, value);
+    } else {
+      table.set(second, value);
+    }
+    return value;
+  }
+
+  /**
+   * Gets the capacity.
+   *
+   * @return the capacity
+   */
+  public int getCapacity() {
+    return table.length();
+  }
+}
@@ -104,21 +104,6 @@ public class VisualRecognition extends WatsonService {
     setUsernameAndPassword(username, password);
   }
 
-  /**
-   * Adds the Alchemy API key to HTTP request.
-   * 
-   * @param builder the builder
-   * @param apiKey the API key token
-   */
-  private void addApiKeyToRequest(okhttp3.Request.Builder builder, String apiKey) {
-    final HttpUrl url = HttpUrl.parse(builder.build().url().toString());
-    if (url.query() == null || url.query().isEmpty()) {
-      builder.url(builder.build().url() + "?" + apiKey);
-    } else {
-      builder.url(builder.build().url() + "&" + apiKey);
-    }
-  }
-
   private JsonObject getParametersAsJson(ClassifyImagesOptions options) {
     JsonObject ret = new JsonObject();
 
@@ -165,7 +150,17 @@ public class VisualRecognition extends WatsonService {
     if (getApiKey() == null) {
       throw new IllegalArgumentException("api_key needs to be specified. Use setApiKey()");
     }
-    addApiKeyToRequest(builder, PARAM_API_KEY + "=" + getApiKey());
+  }
+
+  /*
+   * (non-Javadoc)
+   * 
+   * @see
+   * com.ibm.watson.developer_cloud.service.WatsonService#addQueryAuthentication(okhttp3.HttpUrl.Builder)
+   */
+  @Override
+  protected void addQueryAuthentication(HttpUrl.Builder urlBuilder) {
+    urlBuilder.addQueryParameter(PARAM_API_KEY, getApiKey());
   }
 
   /**
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentSentiment;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Entities;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Keywords;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.ExtractionBatcher;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Extraction batcher tests.
+ */
+public class ExtractionBatcherTest extends WatsonServiceUnitTest {
+  private static final String COMBINED = "{\"status\":\"OK\",\"language\":\"english\",\"totalTransactions\":\"3\","
+      + "\"entities\":[{\"type\":\"Company\",\"relevance\":\"0.9\",\"count\":\"1\",\"text\":\"IBM\"}],"
+      + "\"keywords\":[{\"relevance\":\"0.8\",\"text\":\"cloud\"}],"
+      + "\"docSentiment\":{\"type\":\"positive\",\"score\":\"0.5\"}}";
+
+  private AlchemyLanguage service;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new AlchemyLanguage();
+    service.setApiKey("apikey");
+    service.setEndPoint(getMockWebServerUrl());
+  }
+
+  /**
+   * Test that the extractions of a document are sent in one combined call and split back.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCombineExtractions() throws Exception {
+    server.enqueue(new MockResponse().setBody(COMBINED));
+    final ExtractionBatcher batcher =
+        new ExtractionBatcher.Builder(service).maxDelay(1, TimeUnit.MINUTES).build();
+
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyLanguage.TEXT, "IBM is moving to the cloud");
+    final CompletableFuture<Entities> entities = batcher.getEntities(params);
+    final CompletableFuture<Keywords> keywords = batcher.getKeywords(new HashMap<String, Object>(params));
+    final CompletableFuture<DocumentSentiment> sentiment = batcher.getSentiment(params);
+    batcher.flush();
+
+    assertEquals("IBM", entities.get(5, TimeUnit.SECONDS).getEntities().get(0).getText());
+    assertEquals("english", entities.get().getLanguage());
+    assertEquals("cloud", keywords.get(5, TimeUnit.SECONDS).getKeywords().get(0).getText());
+    assertEquals(0.5, sentiment.get(5, TimeUnit.SECONDS).getSentiment().getScore(), 0);
+
+    assertEquals(1, server.getRequestCount());
+    final RecordedRequest request = server.takeRequest();
+    assertTrue(request.getPath().startsWith("/text/TextGetCombinedData"));
+    final String body = URLDecoder.decode(request.getBody().readUtf8(), "UTF-8");
+    final String extract = body.replaceAll(".*extract=([^&]*).*", "$1");
+    assertEquals(new HashSet<String>(Arrays.asList("entity", "keyword", "doc-sentiment")),
+        new HashSet<String>(Arrays.asList(extract.split(","))));
+  }
+
+  /**
+   * Test that shutting down sends the waiting extractions and rejects the later ones.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testShutdown() throws Exception {
+    server.enqueue(new MockResponse().setBody(COMBINED));
+    final ExtractionBatcher batcher =
+        new ExtractionBatcher.Builder(service).maxDelay(1, TimeUnit.MINUTES).build();
+
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyLanguage.TEXT, "IBM is moving to the cloud");
+    final CompletableFuture<Entities> entities = batcher.getEntities(params);
+    batcher.shutdown();
+
+    assertEquals("IBM", entities.get(5, TimeUnit.SECONDS).getEntities().get(0).getText());
+    assertEquals(1, server.getRequestCount());
+
+    final CompletableFuture<Keywords> keywords = batcher.getKeywords(params);
+    try {
+      keywords.get(5, TimeUnit.SECONDS);
+      fail("the extraction should be rejected");
+    } catch (final ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    assertEquals(1, server.getRequestCount());
+  }
+}
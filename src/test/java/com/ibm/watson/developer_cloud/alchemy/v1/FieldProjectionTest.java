@@ -0,0 +1,135 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.CombinedResults;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Entity;
+import com.ibm.watson.developer_cloud.util.FieldProjection;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okhttp3.mockwebserver.MockResponse;
+
+/**
+ * Field projection tests.
+ */
+public class FieldProjectionTest extends WatsonServiceUnitTest {
+  private static final String COMBINED = "{\"status\":\"OK\",\"totalTransactions\":\"2\",\"entities\":[{"
+      + "\"type\":\"Company\",\"relevance\":\"0.9\",\"count\":\"1\",\"text\":\"IBM\","
+      + "\"sentiment\":{\"type\":\"positive\",\"score\":\"0.5\"},"
+      + "\"disambiguated\":{\"name\":\"IBM\",\"subType\":[\"Brand\"],\"dbpedia\":\"http://dbpedia.org/resource/IBM\"},"
+      + "\"quotations\":[{\"quotation\":\"\\\"cloud\\\"\"}]},"
+      + "{\"type\":\"Person\",\"relevance\":\"0.5\",\"text\":\"Ginni\",\"disambiguated\":{\"name\":\"Ginni\"}}],"
+      + "\"keywords\":[{\"relevance\":\"0.8\",\"text\":\"cloud\"}]}";
+
+  private AlchemyLanguage service;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new AlchemyLanguage();
+    service.setApiKey("apikey");
+    service.setEndPoint(getMockWebServerUrl());
+  }
+
+  private static CombinedResults read(FieldProjection projection) {
+    return GsonSingleton.getGsonWithoutPrettyPrinting()
+        .fromJson(projection.newJsonReader(new StringReader(COMBINED)), CombinedResults.class);
+  }
+
+  /**
+   * Test that the objects and arrays outside of the projection are skipped.
+   */
+  @Test
+  public void testProjection() {
+    final CombinedResults results = read(new FieldProjection("entities"));
+    assertEquals(2, results.getTotalTransactions().intValue());
+    assertNull(results.getKeywords());
+    assertEquals(2, results.getEntities().size());
+    final Entity entity = results.getEntities().get(0);
+    assertEquals("IBM", entity.getText());
+    assertEquals("Company", entity.getType());
+    assertEquals(0.9, entity.getRelevance(), 0);
+    assertNull(entity.getSentiment());
+    assertNull(entity.getDisambiguated());
+    assertNull(entity.getQuotations());
+    assertEquals("Ginni", results.getEntities().get(1).getText());
+  }
+
+  /**
+   * Test nested paths and wildcards.
+   */
+  @Test
+  public void testNestedProjection() {
+    CombinedResults results = read(new FieldProjection("entities.disambiguated", "keywords"));
+    Entity entity = results.getEntities().get(0);
+    assertEquals("IBM", entity.getDisambiguated().getName());
+    assertEquals("http://dbpedia.org/resource/IBM", entity.getDisambiguated().getDbpedia());
+    assertNull(entity.getDisambiguated().getSubType());
+    assertEquals("Ginni", results.getEntities().get(1).getDisambiguated().getName());
+    assertEquals("cloud", results.getKeywords().get(0).getText());
+
+    results = read(new FieldProjection("entities.*"));
+    entity = results.getEntities().get(0);
+    assertEquals("Brand", entity.getDisambiguated().getSubType().get(0));
+    assertNotNull(entity.getSentiment());
+    assertEquals(1, entity.getQuotations().size());
+  }
+
+  /**
+   * Test that the combined call only extracts the projected fields.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCombinedResults() throws Exception {
+    server.enqueue(new MockResponse().setBody(COMBINED));
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyLanguage.TEXT, "IBM is moving to the cloud");
+
+    final CombinedResults results =
+        service.getCombinedResults(params, new FieldProjection("entities", "keywords")).execute();
+    assertEquals("IBM", results.getEntities().get(0).getText());
+    assertNull(results.getEntities().get(0).getDisambiguated());
+
+    final String body = URLDecoder.decode(server.takeRequest().getBody().readUtf8(), "UTF-8");
+    assertTrue(body.contains("extract=entity,keyword"));
+    assertTrue(body.contains("showSourceText=0"));
+    assertEquals(1, params.size());
+
+    server.enqueue(new MockResponse().setBody(COMBINED));
+    service.getCombinedResults(params, new FieldProjection("image", "imageKeywords")).execute();
+    final String imageBody = URLDecoder.decode(server.takeRequest().getBody().readUtf8(), "UTF-8");
+    assertTrue(imageBody.contains("extract=page-image,image-kw"));
+  }
+}
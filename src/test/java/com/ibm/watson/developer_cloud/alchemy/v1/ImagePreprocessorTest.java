@@ -0,0 +1,191 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Files;
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageFace;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageFaces;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageSceneText;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.ImageSceneTextLine.Region;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.ImagePreprocessor;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.ImagePreprocessor.PreparedImage;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Image preprocessor tests.
+ */
+public class ImagePreprocessorTest extends WatsonServiceUnitTest {
+  private static final String FACES = "{\"status\":\"OK\",\"imageFaces\":[{\"positionX\":\"30\",\"positionY\":\"20\","
+      + "\"width\":\"60\",\"height\":\"40\"}]}";
+  private static final String SCENE_TEXT = "{\"status\":\"OK\",\"sceneText\":\"hello\",\"sceneTextLines\":[{"
+      + "\"text\":\"hello\",\"region\":{\"x\":10,\"y\":5,\"width\":100,\"height\":15},"
+      + "\"words\":[{\"text\":\"hello\",\"region\":{\"x\":10,\"y\":5,\"width\":100,\"height\":15}}]}]}";
+
+  private AlchemyVision service;
+  private File image;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new AlchemyVision();
+    service.setApiKey("apikey");
+    service.setEndPoint(getMockWebServerUrl());
+    service.setImagePreprocessor(new ImagePreprocessor.Builder().maxDimension(150).quality(0.7f).build());
+
+    image = File.createTempFile("image", ".png");
+    image.deleteOnExit();
+    final BufferedImage original = new BufferedImage(1500, 1000, BufferedImage.TYPE_INT_ARGB);
+    for (int x = 0; x < original.getWidth(); x += 10) {
+      original.setRGB(x, x * 2 / 3, 0xff0000ff);
+    }
+    ImageIO.write(original, "png", image);
+  }
+
+  /**
+   * Test that a large image is uploaded as a scaled JPEG and the faces are rescaled.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognizeFaces() throws Exception {
+    server.enqueue(new MockResponse().setBody(FACES));
+
+    final ImageFaces faces = service.recognizeFaces(image, null).execute();
+    final ImageFace face = faces.getImageFaces().get(0);
+    assertEquals(300, face.getPositionX().intValue());
+    assertEquals(200, face.getPositionY().intValue());
+    assertEquals(600, face.getWidth().intValue());
+    assertEquals(400, face.getHeight().intValue());
+
+    final RecordedRequest request = server.takeRequest();
+    final byte[] body = request.getBody().readByteArray();
+    assertTrue(body.length < image.length());
+    assertEquals((byte) 0xff, body[0]);
+    assertEquals((byte) 0xd8, body[1]);
+    final BufferedImage uploaded = ImageIO.read(new ByteArrayInputStream(body));
+    assertEquals(150, uploaded.getWidth());
+    assertEquals(100, uploaded.getHeight());
+  }
+
+  /**
+   * Test that the scene text regions are rescaled.
+   */
+  @Test
+  public void testSceneText() {
+    server.enqueue(new MockResponse().setBody(SCENE_TEXT));
+
+    final ImageSceneText sceneText = service.getImageSceneText(image).execute();
+    final Region region = sceneText.getSceneTextLines().get(0).getRegion();
+    assertEquals(100, region.getX().intValue());
+    assertEquals(50, region.getY().intValue());
+    assertEquals(1000, region.getWidth().intValue());
+    assertEquals(150, region.getHeight().intValue());
+    assertEquals(region, sceneText.getSceneTextLines().get(0).getWords().get(0).getRegion());
+  }
+
+  /**
+   * Test that small JPEG images are uploaded as they are.
+   */
+  @Test
+  public void testSmallJpeg() {
+    final PreparedImage prepared = new ImagePreprocessor.Builder().maxDimension(5000).build()
+        .prepare(new File("src/test/resources/alchemy/obama.jpg"));
+    assertFalse(prepared.isScaled());
+    assertTrue(prepared.getWidth() > 0);
+  }
+
+  /**
+   * Test that a large JPEG with an EXIF orientation is uploaded as it is, since the orientation
+   * would be lost when it is encoded again.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testOrientedJpeg() throws Exception {
+    final ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+    ImageIO.write(new BufferedImage(1500, 1000, BufferedImage.TYPE_INT_RGB), "jpeg", jpeg);
+    final byte[] original = jpeg.toByteArray();
+
+    // APP1 marker with a big endian TIFF header and an orientation of 6 (rotated 90 degrees)
+    final byte[] exif = { (byte) 0xff, (byte) 0xe1, 0, 34, 'E', 'x', 'i', 'f', 0, 0, 'M', 'M', 0, 42, 0, 0, 0, 8,
+        0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, 6, 0, 0, 0, 0, 0, 0 };
+    final int app0End = 4 + ((original[4] & 0xff) << 8 | original[5] & 0xff);
+    final ByteArrayOutputStream oriented = new ByteArrayOutputStream();
+    oriented.write(original, 0, app0End);
+    oriented.write(exif);
+    oriented.write(original, app0End, original.length - app0End);
+
+    final File file = File.createTempFile("oriented", ".jpg");
+    file.deleteOnExit();
+    Files.write(oriented.toByteArray(), file);
+
+    final PreparedImage prepared = new ImagePreprocessor.Builder().maxDimension(150).build().prepare(file);
+    assertFalse(prepared.isScaled());
+    assertEquals(file.length(), prepared.getBody().contentLength());
+  }
+
+  /**
+   * Test that a large CMYK JPEG, which cannot be decoded, is uploaded as it is.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testUndecodableJpeg() throws Exception {
+    final File file = File.createTempFile("cmyk", ".jpg");
+    file.deleteOnExit();
+    final ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    final ImageOutputStream output = ImageIO.createImageOutputStream(file);
+    try {
+      writer.setOutput(output);
+      writer.write(null, new IIOImage(Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, 1500, 1000, 4, null),
+          null, null), null);
+    } finally {
+      writer.dispose();
+      output.close();
+    }
+
+    final PreparedImage prepared = new ImagePreprocessor.Builder().maxDimension(150).build().prepare(file);
+    assertFalse(prepared.isScaled());
+    assertEquals(1500, prepared.getWidth());
+    assertEquals(file.length(), prepared.getBody().contentLength());
+  }
+}
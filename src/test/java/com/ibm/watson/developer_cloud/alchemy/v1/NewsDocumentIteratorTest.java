@@ -0,0 +1,149 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.DocumentsResult;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.NewsDocumentIterator;
+import com.ibm.watson.developer_cloud.http.ServiceCall;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * News document iterator tests.
+ */
+public class NewsDocumentIteratorTest extends WatsonServiceUnitTest {
+  private AlchemyDataNews service;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new AlchemyDataNews();
+    service.setApiKey("apikey");
+    service.setEndPoint(getMockWebServerUrl());
+
+    // two pages per time slice, with the start time in the document ids
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final HttpUrl url = HttpUrl.parse(getMockWebServerUrl() + request.getPath());
+        final String start = url.queryParameter(AlchemyDataNews.START);
+        final String next = url.queryParameter(AlchemyDataNews.NEXT);
+        final String documents = next == null
+            ? "{\"docs\":[{\"id\":\"" + start + "-1\"}],\"next\":\"" + start + "\"}"
+            : "{\"docs\":[{\"id\":\"" + next + "-2\"}]}";
+        return new MockResponse().setBody("{\"status\":\"OK\",\"result\":" + documents + "}");
+      }
+    });
+  }
+
+  /**
+   * Test that the pages of each time slice are followed and returned in order.
+   */
+  @Test
+  public void testTimeSlices() {
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyDataNews.START, "1000");
+    params.put(AlchemyDataNews.END, 1999);
+    params.put(AlchemyDataNews.RETURN, "enriched.url.title");
+    final NewsDocumentIterator documents =
+        new NewsDocumentIterator.Builder(service, params).timeSlices(2).build();
+
+    final List<String> ids = new ArrayList<String>();
+    while (documents.hasNext()) {
+      ids.add(documents.next().getId());
+    }
+    assertEquals(Arrays.asList("1000-1", "1000-2", "1500-1", "1500-2"), ids);
+    assertEquals(4, server.getRequestCount());
+    assertFalse(documents.hasNext());
+  }
+
+  /**
+   * Test that nothing is fetched until the documents are read.
+   */
+  @Test
+  public void testLazy() {
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyDataNews.START, "now-7d");
+    params.put(AlchemyDataNews.END, "now");
+    params.put(AlchemyDataNews.RETURN, "enriched.url.title");
+    final NewsDocumentIterator documents = new NewsDocumentIterator.Builder(service, params).build();
+    assertEquals(0, server.getRequestCount());
+
+    assertEquals("now-7d-1", documents.next().getId());
+    documents.close();
+    assertEquals("now-7d-2", documents.next().getId());
+    assertFalse(documents.hasNext());
+  }
+
+  /**
+   * Test that a fetch that fails before it is sent is reported on every call instead of blocking.
+   */
+  @Test
+  public void testFailedFetch() {
+    final AlchemyDataNews failing = new AlchemyDataNews() {
+      @Override
+      public ServiceCall<DocumentsResult> getNewsDocuments(Map<String, Object> parameters) {
+        throw new IllegalStateException("failed");
+      }
+    };
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyDataNews.START, "now-7d");
+    params.put(AlchemyDataNews.END, "now");
+    params.put(AlchemyDataNews.RETURN, "enriched.url.title");
+    final NewsDocumentIterator documents = new NewsDocumentIterator.Builder(failing, params).build();
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        documents.hasNext();
+        fail("expected the fetch to fail");
+      } catch (final IllegalStateException e) {
+        assertEquals("failed", e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Test that the return fields are required.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingReturn() {
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyDataNews.START, "now-7d");
+    params.put(AlchemyDataNews.END, "now");
+    new NewsDocumentIterator.Builder(service, params);
+  }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Keywords;
+import com.ibm.watson.developer_cloud.visual_recognition.v3.VisualRecognition;
+
+/**
+ * Measures how fast the Alchemy and Visual Recognition service calls are prepared, from the
+ * parameters to the authenticated request, without sending them. Each operation is warmed up and
+ * then timed for {@value #ITERATIONS} iterations of one second. Run the main method with the test
+ * classpath.
+ */
+public class RequestPreparationBenchmark {
+  private static final int ITERATIONS = 5;
+  private static final long ITERATION_TIME = TimeUnit.SECONDS.toNanos(1);
+
+  /**
+   * Operation being measured.
+   */
+  private interface Operation {
+    Object run();
+  }
+
+  private static long sink;
+
+  private static double measure(Operation operation) {
+    long count = 0;
+    final long start = System.nanoTime();
+    long elapsed;
+    do {
+      for (int i = 0; i < 1000; i++) {
+        sink += operation.run().hashCode();
+      }
+      count += 1000;
+      elapsed = System.nanoTime() - start;
+    } while (elapsed < ITERATION_TIME);
+    return (double) elapsed / count;
+  }
+
+  private static void benchmark(String name, Operation operation) {
+    for (int i = 0; i < ITERATIONS; i++) {
+      measure(operation);
+    }
+    double total = 0;
+    for (int i = 0; i < ITERATIONS; i++) {
+      total += measure(operation);
+    }
+    System.out.println(String.format("%-40s %10.0f ns/op", name, total / ITERATIONS));
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the arguments, not used
+   */
+  public static void main(String[] args) {
+    final AlchemyLanguage language = new AlchemyLanguage("apikey");
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyLanguage.TEXT, "IBM is moving to the cloud");
+    benchmark("AlchemyLanguage.getKeywords", new Operation() {
+      @Override
+      public Object run() {
+        return language.getKeywords(new HashMap<String, Object>(params));
+      }
+    });
+
+    final AlchemyLanguage.RequestTemplate<Keywords> template =
+        language.createRequestTemplate(AlchemyLanguage.Operation.KEYWORDS, AlchemyLanguage.TEXT, null);
+    benchmark("AlchemyLanguage.RequestTemplate.call", new Operation() {
+      @Override
+      public Object run() {
+        return template.call("IBM is moving to the cloud");
+      }
+    });
+
+    final VisualRecognition recognition = new VisualRecognition(VisualRecognition.VERSION_DATE_2016_05_19);
+    recognition.setApiKey("apikey");
+    benchmark("VisualRecognition.getClassifier", new Operation() {
+      @Override
+      public Object run() {
+        return recognition.getClassifier("classifier");
+      }
+    });
+    System.out.println(sink == 0 ? "" : " ");
+  }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyLanguage.Operation;
+import com.ibm.watson.developer_cloud.alchemy.v1.AlchemyLanguage.RequestTemplate;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Keywords;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.LanguageSelection;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Alchemy Language request template tests.
+ */
+public class RequestTemplateTest extends WatsonServiceUnitTest {
+  private static final String KEYWORDS = "{\"status\":\"OK\",\"keywords\":[{\"relevance\":\"0.8\",\"text\":\"cloud\"}]}";
+
+  private AlchemyLanguage service;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new AlchemyLanguage();
+    service.setApiKey("apikey");
+    service.setEndPoint(getMockWebServerUrl());
+    service.setLanguage(LanguageSelection.FRENCH);
+  }
+
+  /**
+   * Test that a template sends the shared parameters and the encoded input of each call.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCall() throws Exception {
+    server.enqueue(new MockResponse().setBody(KEYWORDS));
+    server.enqueue(new MockResponse().setBody(KEYWORDS));
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyLanguage.MAX_RETRIEVE, 10);
+    final RequestTemplate<Keywords> template =
+        service.createRequestTemplate(Operation.KEYWORDS, AlchemyLanguage.TEXT, params);
+    params.clear();
+
+    assertEquals("cloud", template.call("café & crème ~ 100%").execute().getKeywords().get(0).getText());
+    template.call("second").execute();
+
+    final RecordedRequest request = server.takeRequest();
+    assertEquals("/text/TextGetRankedKeywords?apikey=apikey", request.getPath());
+    assertTrue(request.getHeader("Content-Type").startsWith("application/x-www-form-urlencoded"));
+    final String body = request.getBody().readUtf8();
+    assertTrue(body.contains("maxRetrieve=10&"));
+    assertTrue(body.contains("outputMode=json&"));
+    assertTrue(body.contains("language=french&"));
+    assertTrue(body.endsWith("&text=" + URLEncoder.encode("café & crème ~ 100%", "UTF-8")));
+    assertTrue(server.takeRequest().getBody().readUtf8().endsWith("&text=second"));
+  }
+
+  /**
+   * Test that the parameter map of the caller is not modified.
+   */
+  @Test
+  public void testParametersNotModified() {
+    server.enqueue(new MockResponse().setBody(KEYWORDS));
+    final Map<String, Object> params = new HashMap<String, Object>();
+    params.put(AlchemyLanguage.TEXT, "IBM is moving to the cloud");
+    params.put("jsonp", "callback");
+    service.getKeywords(params).execute();
+    assertEquals(2, params.size());
+  }
+
+  /**
+   * Test that the input format is validated when the template is created.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedInput() {
+    service.createRequestTemplate(Operation.TITLE, AlchemyLanguage.TEXT, null);
+  }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Entities;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.StringInterner;
+
+/**
+ * Measures the heap retained by {@value #ENTITIES} deserialized entities, with and without a
+ * default {@link StringInterner}. Run the main method with the test classpath and a heap of at least
+ * 1 GB.
+ */
+public class RetainedHeapBenchmark {
+  private static final int ENTITIES = 1000000;
+  private static final int ENTITIES_PER_RESPONSE = 1000;
+  private static final String[] TYPES = { "Company", "Person", "City", "Country", "Organization",
+      "JobTitle", "Facility", "Technology", "PrintMedia", "Holiday" };
+
+  private static String createResponse() {
+    final StringBuilder json = new StringBuilder("{\"status\":\"OK\",\"entities\":[");
+    for (int i = 0; i < ENTITIES_PER_RESPONSE; i++) {
+      if (i > 0)
+        json.append(',');
+      json.append("{\"type\":\"").append(TYPES[i % TYPES.length]).append("\",\"relevance\":\"0.5\",")
+          .append("\"count\":\"1\",\"text\":\"entity ").append(i).append("\"}");
+    }
+    return json.append("]}").toString();
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long measure(String json) {
+    final Gson gson = GsonSingleton.getGsonWithoutPrettyPrinting();
+    final long before = usedHeap();
+    final List<Entities> retained = new ArrayList<Entities>();
+    for (int i = 0; i < ENTITIES / ENTITIES_PER_RESPONSE; i++) {
+      retained.add(gson.fromJson(json, Entities.class));
+    }
+    final long used = usedHeap() - before;
+    if (retained.size() * ENTITIES_PER_RESPONSE != ENTITIES)
+      throw new IllegalStateException();
+    return used;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the arguments, not used
+   */
+  public static void main(String[] args) {
+    final String json = createResponse();
+    measure(json);
+    final long plain = measure(json);
+    StringInterner.setDefault(new StringInterner(1024));
+    final long interned = measure(json);
+    StringInterner.setDefault(null);
+
+    System.out.println(String.format("%-20s %10d KB", "without interning", plain / 1024));
+    System.out.println(String.format("%-20s %10d KB", "with interning", interned / 1024));
+    System.out.println(String.format("%-20s %10.1f %%", "reduction", 100.0 * (plain - interned) / plain));
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.alchemy.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Keywords;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.TransactionBudget;
+import com.ibm.watson.developer_cloud.alchemy.v1.util.TransactionBudget.Priority;
+import com.ibm.watson.developer_cloud.service.exception.TooManyRequestsException;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+import okhttp3.mockwebserver.MockResponse;
+
+/**
+ * Transaction budget tests.
+ */
+public class TransactionBudgetTest extends WatsonServiceUnitTest {
+  private static final String KEYWORDS = "{\"status\":\"OK\",\"totalTransactions\":\"3\",\"keywords\":[]}";
+
+  private AlchemyLanguage service;
+  private Map<String, Object> params;
+  private AtomicLong clock;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new AlchemyLanguage();
+    service.setApiKey("apikey");
+    service.setEndPoint(getMockWebServerUrl());
+    params = new HashMap<String, Object>();
+    params.put(AlchemyLanguage.TEXT, "IBM is moving to the cloud");
+
+    // two hours before midnight UTC
+    final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+    calendar.set(2016, Calendar.JUNE, 1, 22, 0, 0);
+    clock = new AtomicLong(calendar.getTimeInMillis());
+  }
+
+  private TransactionBudget budget(TransactionBudget.Builder builder) {
+    final TransactionBudget budget = new TransactionBudget(builder.checkInterval(10, TimeUnit.MILLISECONDS)) {
+      @Override
+      protected long currentTimeMillis() {
+        return clock.get();
+      }
+    };
+    service.setTransactionBudget(budget);
+    return budget;
+  }
+
+  private static void assertShed(CompletableFuture<?> future) throws Exception {
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      fail("the call should be shed");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+  }
+
+  /**
+   * Test that transactions are recorded, that an early burst is not extrapolated, that low priority
+   * calls are deferred while the forecast goes over their share, and run after the daily reset.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testDeferUntilReset() throws Exception {
+    for (int i = 0; i < 4; i++) {
+      server.enqueue(new MockResponse().setBody(KEYWORDS));
+    }
+    final TransactionBudget budget = budget(new TransactionBudget.Builder(1000));
+
+    service.getKeywords(params).execute();
+    assertEquals(3, budget.getUsed());
+    assertEquals(997, budget.getRemaining());
+
+    budget.submit(Priority.HIGH, service.getKeywords(params)).get(5, TimeUnit.SECONDS);
+    assertEquals(6, budget.getUsed());
+
+    // 6 transactions in the first minute is 360 per hour, and 726 by midnight, over the low priority
+    // share, but the burn rate window has not passed yet
+    assertEquals(360, budget.getBurnRate(), 0.001);
+    assertEquals(726, budget.getForecast());
+    budget.submit(Priority.LOW, service.getKeywords(params)).get(5, TimeUnit.SECONDS);
+    assertEquals(0, budget.getDeferredCount());
+
+    // 120 transactions in the last hour is 240 by midnight, over the low priority share of 210
+    final TransactionBudget tight = budget(new TransactionBudget.Builder(300));
+    assertEquals(0, tight.getUsed());
+    clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+    tight.record(120);
+    assertEquals(240, tight.getForecast());
+    final CompletableFuture<Keywords> deferred = tight.submit(Priority.LOW, service.getKeywords(params));
+    assertEquals(1, tight.getDeferredCount());
+    Thread.sleep(50);
+    assertFalse(deferred.isDone());
+
+    clock.addAndGet(TimeUnit.HOURS.toMillis(2));
+    deferred.get(5, TimeUnit.SECONDS);
+    assertEquals(0, tight.getDeferredCount());
+    assertEquals(3, tight.getUsed());
+  }
+
+  /**
+   * Test that the budget is exhausted when the daily limit is exceeded, and that shed priorities are
+   * rejected while the others wait.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testShedWhenExhausted() throws Exception {
+    server.enqueue(new MockResponse().setHeader("X-AlchemyAPI-Status", "ERROR")
+        .setHeader("X-AlchemyAPI-Error-Msg", "daily-transaction-limit-exceeded"));
+    final TransactionBudget budget = budget(new TransactionBudget.Builder(1000).shed(Priority.LOW));
+
+    try {
+      budget.submit(Priority.HIGH, service.getKeywords(params)).get(5, TimeUnit.SECONDS);
+      fail("the call should fail");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TooManyRequestsException);
+    }
+    assertEquals(0, budget.getRemaining());
+
+    assertShed(budget.submit(Priority.LOW, service.getKeywords(params)));
+    assertEquals(1, budget.getShedCount());
+
+    final CompletableFuture<Keywords> high = budget.submit(Priority.HIGH, service.getKeywords(params));
+    assertEquals(1, budget.getDeferredCount());
+    assertFalse(high.isDone());
+    assertEquals(1, server.getRequestCount());
+  }
+
+  /**
+   * Test that deferred calls are rejected once their priority is shed, instead of waiting for the
+   * reset.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testShedDeferredCalls() throws Exception {
+    final TransactionBudget budget = budget(new TransactionBudget.Builder(300).shed(Priority.LOW));
+    assertEquals(0, budget.getUsed());
+    clock.addAndGet(TimeUnit.HOURS.toMillis(1));
+    budget.record(120);
+    final CompletableFuture<Keywords> first = budget.submit(Priority.LOW, service.getKeywords(params));
+    final CompletableFuture<Keywords> second = budget.submit(Priority.LOW, service.getKeywords(params));
+    assertEquals(2, budget.getDeferredCount());
+
+    // the deferred calls now go over the low priority share
+    budget.record(100);
+    assertShed(first);
+    assertShed(second);
+    assertEquals(0, budget.getDeferredCount());
+    assertEquals(2, budget.getShedCount());
+    assertEquals(0, server.getRequestCount());
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1_experimental;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.util.CompactContextStore;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.util.ContextStore;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+/**
+ * Measures the heap retained per active conversation when the contexts deserialized from the
+ * service are kept as they are, and when they are kept in a {@link CompactContextStore}. Run the
+ * main method with the test classpath and a heap of at least 1 GB.
+ */
+public class ContextStoreBenchmark {
+  private static final int CONVERSATIONS = 200000;
+  private static final Type TYPE_CONTEXT = new TypeToken<Map<String, Object>>() {}.getType();
+
+  private static String createContext(int conversation) {
+    return "{\"conversation_id\":\"" + UUID.randomUUID() + "\",\"system\":{\"dialog_stack\":[\"node_"
+        + (conversation % 20) + "_1467232431348\"],\"dialog_turn_counter\":" + (conversation % 12 + 1)
+        + ",\"dialog_request_counter\":" + (conversation % 12 + 1) + "},\"user_name\":\"user"
+        + conversation + "\",\"order_size\":" + (conversation % 5) + ",\"confirmed\":false}";
+  }
+
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long measure(String[] contexts, ContextStore store) {
+    final Gson gson = GsonSingleton.getGsonWithoutPrettyPrinting();
+    final long before = usedHeap();
+    final Map<String, Map<String, Object>> maps = new ConcurrentHashMap<String, Map<String, Object>>();
+    for (int i = 0; i < contexts.length; i++) {
+      final Map<String, Object> context = gson.fromJson(contexts[i], TYPE_CONTEXT);
+      if (store != null) {
+        store.put("chat" + i, context);
+      } else {
+        maps.put("chat" + i, context);
+      }
+    }
+    final long used = usedHeap() - before;
+    if (maps.size() + (store != null ? ((CompactContextStore) store).size() : 0) != contexts.length)
+      throw new IllegalStateException();
+    return used / contexts.length;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the arguments, not used
+   */
+  public static void main(String[] args) {
+    final String[] contexts = new String[CONVERSATIONS];
+    for (int i = 0; i < contexts.length; i++) {
+      contexts[i] = createContext(i);
+    }
+    measure(contexts, null);
+    final long maps = measure(contexts, null);
+    final long compact = measure(contexts, new CompactContextStore.Builder().build());
+
+    System.out.println(String.format("%-25s %6d bytes/conversation", "deserialized maps", maps));
+    System.out.println(String.format("%-25s %6d bytes/conversation", "CompactContextStore", compact));
+  }
+}
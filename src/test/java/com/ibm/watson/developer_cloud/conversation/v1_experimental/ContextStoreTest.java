@@ -0,0 +1,156 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1_experimental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.util.CompactContextStore;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okhttp3.mockwebserver.MockResponse;
+
+/**
+ * Unit tests for the {@link CompactContextStore}.
+ */
+public class ContextStoreTest extends WatsonServiceUnitTest {
+  private static final String WORKSPACE_ID = "123";
+
+  private ConversationService service;
+  private final AtomicLong time = new AtomicLong(1000);
+  private CompactContextStore store;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    store = new CompactContextStore(new CompactContextStore.Builder().ttl(1, TimeUnit.MINUTES)) {
+      @Override
+      protected long currentTimeMillis() {
+        return time.get();
+      }
+    };
+    service = new ConversationService(ConversationService.VERSION_DATE_2016_05_19);
+    service.setUsernameAndPassword("username", "password");
+    service.setEndPoint(getMockWebServerUrl());
+    service.setContextStore(store);
+  }
+
+  private static Map<String, Object> createContext(String conversationId, int turn) {
+    final Map<String, Object> system = new LinkedHashMap<String, Object>();
+    system.put("dialog_stack", Arrays.asList("node_2_1467232431348"));
+    system.put("dialog_turn_counter", (double) turn);
+    system.put("dialog_request_counter", (double) turn);
+    final Map<String, Object> context = new LinkedHashMap<String, Object>();
+    context.put("conversation_id", conversationId);
+    context.put("system", system);
+    return context;
+  }
+
+  /**
+   * Test that contexts are read back as they were deserialized from the service.
+   */
+  @Test
+  public void testEncoding() {
+    final Map<String, Object> context = createContext("f1c7e1c5", 3);
+    context.put("negative", -2.0);
+    context.put("fraction", 0.25);
+    context.put("zero", -0.0);
+    context.put("flag", true);
+    context.put("empty", null);
+    context.put("unicode", "café ☕");
+    context.put("nested", Arrays.<Object>asList(new HashMap<String, Object>(), Arrays.<Object>asList(1.0, "two")));
+    store.put("chat", context);
+
+    final String json = GsonSingleton.getGsonWithoutPrettyPrinting().toJson(context);
+    assertEquals(json, GsonSingleton.getGsonWithoutPrettyPrinting().toJson(store.get("chat")));
+    assertEquals(context, store.get("chat"));
+    assertTrue(store.getEncodedSize("chat") < json.length());
+  }
+
+  /**
+   * Test that contexts expire after the time to live since they were last used.
+   */
+  @Test
+  public void testExpiration() {
+    store.put("first", createContext("1", 1));
+    store.put("second", createContext("2", 1));
+    time.addAndGet(TimeUnit.SECONDS.toMillis(40));
+    assertEquals("1", store.get("first").get("conversation_id"));
+
+    time.addAndGet(TimeUnit.SECONDS.toMillis(40));
+    assertEquals(2, store.size());
+    assertNull(store.get("second"));
+    assertEquals(1, store.size());
+
+    time.addAndGet(TimeUnit.SECONDS.toMillis(40));
+    store.put("third", createContext("3", 1));
+    assertEquals(1, store.size());
+    assertNull(store.get("first"));
+  }
+
+  /**
+   * Test that the service sends the stored context and stores the one in the response.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testMessageWithContextStore() throws Exception {
+    final MessageResponse first = new MessageResponse();
+    first.setContext(createContext("f1c7e1c5", 1));
+    final MessageResponse second = new MessageResponse();
+    second.setContext(createContext("f1c7e1c5", 2));
+    server.enqueue(new MockResponse().setBody(first.toString()));
+    server.enqueue(new MockResponse().setBody(second.toString()));
+
+    final MessageRequest request = new MessageRequest.Builder().inputText("hello").build();
+    service.message(WORKSPACE_ID, "chat", request).execute();
+    assertEquals("{\"input\":{\"text\":\"hello\"}}", server.takeRequest().getBody().readUtf8());
+    assertEquals(first.getContext(), store.get("chat"));
+
+    service.message(WORKSPACE_ID, "chat", request).execute();
+    final String body = server.takeRequest().getBody().readUtf8();
+    assertTrue(body.contains("\"conversation_id\":\"f1c7e1c5\""));
+    assertTrue(body.contains("\"dialog_turn_counter\":1.0"));
+    assertEquals(second.getContext(), store.get("chat"));
+  }
+
+  /**
+   * Test that a context store is required.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testMessageWithoutContextStore() {
+    service.setContextStore(null);
+    service.message(WORKSPACE_ID, "chat", new MessageRequest.Builder().inputText("hello").build());
+  }
+}
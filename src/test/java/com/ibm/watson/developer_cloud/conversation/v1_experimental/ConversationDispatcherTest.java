@@ -0,0 +1,286 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.conversation.v1_experimental;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageRequest;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.model.MessageResponse;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.util.CompactContextStore;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.util.ConversationDispatcher;
+import com.ibm.watson.developer_cloud.conversation.v1_experimental.util.ConversationDispatcher.ShardMetrics;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+import jersey.repackaged.jsr166e.CompletableFuture.Action;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link ConversationDispatcher}.
+ */
+public class ConversationDispatcherTest extends WatsonServiceUnitTest {
+  private static final String WORKSPACE_ID = "123";
+  private static final int CONVERSATIONS = 4;
+  private static final int TURNS = 5;
+
+  private ConversationService service;
+  private ConversationDispatcher dispatcher;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new ConversationService(ConversationService.VERSION_DATE_2016_05_19);
+    service.setUsernameAndPassword("username", "password");
+    service.setEndPoint(getMockWebServerUrl());
+
+    // replies with the input text and the turn counter of the context plus one
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final int current = inFlight.incrementAndGet();
+        int max;
+        while (current > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, current)) {
+          // retry
+        }
+        Thread.sleep(10);
+        final JsonObject body = new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject();
+        final int turn = body.has("context") ? body.getAsJsonObject("context").get("turn").getAsInt() : 0;
+        final JsonObject context = new JsonObject();
+        context.addProperty("turn", turn + 1);
+        final JsonObject output = new JsonObject();
+        output.add("text", body.getAsJsonObject("input").get("text"));
+        final JsonObject response = new JsonObject();
+        response.add("context", context);
+        response.add("output", output);
+        inFlight.decrementAndGet();
+        return new MockResponse().setBody(response.toString());
+      }
+    });
+  }
+
+  /**
+   * Shuts down the dispatcher.
+   */
+  @After
+  public void tearDown() {
+    if (dispatcher != null)
+      dispatcher.shutdown();
+  }
+
+  private List<List<CompletableFuture<MessageResponse>>> sendAll() {
+    final List<List<CompletableFuture<MessageResponse>>> futures =
+        new ArrayList<List<CompletableFuture<MessageResponse>>>();
+    for (int c = 0; c < CONVERSATIONS; c++) {
+      futures.add(new ArrayList<CompletableFuture<MessageResponse>>());
+    }
+    for (int t = 0; t < TURNS; t++) {
+      for (int c = 0; c < CONVERSATIONS; c++) {
+        final MessageRequest request = new MessageRequest.Builder().inputText("chat" + c + " turn" + t).build();
+        futures.get(c).add(dispatcher.send("chat" + c, request));
+      }
+    }
+    return futures;
+  }
+
+  private static void assertInOrder(List<List<CompletableFuture<MessageResponse>>> futures) throws Exception {
+    for (int c = 0; c < futures.size(); c++) {
+      for (int t = 0; t < TURNS; t++) {
+        final MessageResponse response = futures.get(c).get(t).get(5, TimeUnit.SECONDS);
+        assertEquals("chat" + c + " turn" + t, response.getText());
+        assertEquals(t + 1, ((Number) response.getContext().get("turn")).intValue());
+      }
+    }
+  }
+
+  /**
+   * Test that the turns of a conversation are sent in order with the context of the previous
+   * response, while conversations are sent in parallel.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testOrderedDispatch() throws Exception {
+    dispatcher = new ConversationDispatcher.Builder(service, WORKSPACE_ID).maxConcurrency(3).shards(2).build();
+    assertInOrder(sendAll());
+
+    assertTrue(maxInFlight.get() > 1);
+    assertTrue(maxInFlight.get() <= 3);
+    long completed = 0;
+    int conversations = 0;
+    for (final ShardMetrics metrics : dispatcher.getShardMetrics()) {
+      assertEquals(0, metrics.getQueueDepth());
+      assertEquals(0, metrics.getFailed());
+      assertTrue(metrics.getMaxLatency(TimeUnit.NANOSECONDS) >= metrics.getAverageLatency(TimeUnit.NANOSECONDS));
+      completed += metrics.getCompleted();
+      conversations += metrics.getConversations();
+    }
+    assertEquals(CONVERSATIONS * TURNS, completed);
+    assertEquals(CONVERSATIONS, conversations);
+    assertTrue(dispatcher.getShardMetrics("chat0").getAverageLatency(TimeUnit.NANOSECONDS) > 0);
+
+    dispatcher.remove("chat0");
+    conversations = 0;
+    for (final ShardMetrics metrics : dispatcher.getShardMetrics()) {
+      conversations += metrics.getConversations();
+    }
+    assertEquals(CONVERSATIONS - 1, conversations);
+    assertEquals(1, ((Number) dispatcher.send("chat0", new MessageRequest.Builder().inputText("again").build())
+        .get(5, TimeUnit.SECONDS).getContext().get("turn")).intValue());
+  }
+
+  /**
+   * Test that the contexts are kept in the context store of the service when there is one.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testOrderedDispatchWithContextStore() throws Exception {
+    final CompactContextStore store = new CompactContextStore.Builder().build();
+    service.setContextStore(store);
+    dispatcher = new ConversationDispatcher.Builder(service, WORKSPACE_ID).build();
+    assertInOrder(sendAll());
+
+    assertEquals(CONVERSATIONS, store.size());
+    assertEquals(5.0, store.get("chat0").get("turn"));
+    int conversations = 0;
+    for (final ShardMetrics metrics : dispatcher.getShardMetrics()) {
+      conversations += metrics.getConversations();
+    }
+    assertEquals(0, conversations);
+  }
+
+  /**
+   * Test that the turns queued when the dispatcher is shut down are still sent, and that new ones are
+   * rejected.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testShutdownSendsPendingTurns() throws Exception {
+    dispatcher = new ConversationDispatcher.Builder(service, WORKSPACE_ID).maxConcurrency(2).build();
+    final List<List<CompletableFuture<MessageResponse>>> futures = sendAll();
+    dispatcher.shutdown();
+
+    final CompletableFuture<MessageResponse> rejected =
+        dispatcher.send("chat0", new MessageRequest.Builder().inputText("late").build());
+    try {
+      rejected.get(5, TimeUnit.SECONDS);
+      fail("the message should be rejected");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+
+    assertInOrder(futures);
+    assertEquals(CONVERSATIONS * TURNS, server.getRequestCount());
+  }
+
+  /**
+   * Test that a context removed while a turn is sent is not restored by its response.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRemoveWhileSending() throws Exception {
+    final CountDownLatch sending = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    dispatcher = new ConversationDispatcher(new ConversationDispatcher.Builder(service, WORKSPACE_ID)) {
+      @Override
+      protected MessageResponse send(String conversationKey, MessageRequest request, Map<String, Object> context) {
+        sending.countDown();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.send(conversationKey, request, context);
+      }
+    };
+
+    final CompletableFuture<MessageResponse> first =
+        dispatcher.send("chat0", new MessageRequest.Builder().inputText("first").build());
+    assertTrue(sending.await(5, TimeUnit.SECONDS));
+    dispatcher.remove("chat0");
+    release.countDown();
+    assertEquals(1, ((Number) first.get(5, TimeUnit.SECONDS).getContext().get("turn")).intValue());
+
+    assertEquals(1, ((Number) dispatcher.send("chat0", new MessageRequest.Builder().inputText("again").build())
+        .get(5, TimeUnit.SECONDS).getContext().get("turn")).intValue());
+  }
+
+  /**
+   * Test that the callbacks of the turns of a conversation run in order.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testCallbacksInOrder() throws Exception {
+    dispatcher = new ConversationDispatcher(new ConversationDispatcher.Builder(service, WORKSPACE_ID)) {
+      @Override
+      protected MessageResponse send(String conversationKey, MessageRequest request, Map<String, Object> context) {
+        final MessageResponse response = new MessageResponse();
+        final Map<String, Object> next = new HashMap<String, Object>();
+        next.put("turn", context == null ? 1 : ((Integer) context.get("turn")) + 1);
+        response.setContext(next);
+        return response;
+      }
+    };
+
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+    final List<CompletableFuture<Void>> callbacks = new ArrayList<CompletableFuture<Void>>();
+    for (int t = 0; t < 200; t++) {
+      callbacks.add(dispatcher.send("chat0", new MessageRequest.Builder().inputText("turn" + t).build())
+          .thenAccept(new Action<MessageResponse>() {
+            @Override
+            public void accept(MessageResponse response) {
+              order.add((Integer) response.getContext().get("turn"));
+            }
+          }));
+    }
+    for (final CompletableFuture<Void> callback : callbacks) {
+      callback.get(5, TimeUnit.SECONDS);
+    }
+    for (int t = 0; t < order.size(); t++) {
+      assertEquals(t + 1, order.get(t).intValue());
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.dialog.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.dialog.v1.model.ConversationData;
+import com.ibm.watson.developer_cloud.dialog.v1.util.ConversationDataExporter;
+import com.ibm.watson.developer_cloud.dialog.v1.util.ConversationDataSink;
+import com.ibm.watson.developer_cloud.service.exception.ServiceResponseException;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link ConversationDataExporter}.
+ */
+public class ConversationDataExporterTest extends WatsonServiceUnitTest {
+  private static final String DIALOG_ID = "dialog";
+  private static final int CONVERSATIONS_PER_DAY = 5;
+
+  private DialogService service;
+  private final List<String> windows = new CopyOnWriteArrayList<String>();
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new DialogService("username", "password");
+    service.setEndPoint(getMockWebServerUrl());
+
+    // each day of January 2016 has 5 conversations, with ids day * 100 + index
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        final HttpUrl url = HttpUrl.parse(getMockWebServerUrl() + request.getPath());
+        final String from = url.queryParameter("date_from");
+        final String to = url.queryParameter("date_to");
+        if (url.queryParameter("offset").equals("0"))
+          windows.add(from + " / " + to);
+        final int day = Integer.parseInt(from.substring(8, 10));
+        if (day == 31)
+          return new MockResponse().setResponseCode(500).setBody("{\"error\":\"failure\"}");
+
+        final int offset = Integer.parseInt(url.queryParameter("offset"));
+        final int limit = Integer.parseInt(url.queryParameter("limit"));
+        final StringBuilder body = new StringBuilder("{\"conversations\":[");
+        for (int i = offset; i < Math.min(offset + limit, CONVERSATIONS_PER_DAY); i++) {
+          if (i > offset)
+            body.append(',');
+          body.append("{\"conversation_id\":").append(day * 100 + i).append(",\"client_id\":1,")
+              .append("\"messages\":[{\"text\":\"hi\"}]}");
+        }
+        return new MockResponse().setBody(body.append("]}").toString());
+      }
+    });
+  }
+
+  private static SimpleDateFormat format() {
+    return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+  }
+
+  /**
+   * Test that the windows and pages are exported once each.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testExport() throws Exception {
+    final ConversationDataExporter exporter = new ConversationDataExporter.Builder(service, DIALOG_ID,
+        format().parse("2016-01-01 00:00:00"), format().parse("2016-01-03 23:59:59")).window(1, TimeUnit.DAYS)
+            .pageSize(2).maxConcurrency(3).build();
+
+    final Set<Integer> ids = Collections.synchronizedSet(new HashSet<Integer>());
+    assertEquals(15, exporter.export(new ConversationDataSink() {
+      @Override
+      public void accept(ConversationData conversationData) {
+        assertTrue(ids.add(conversationData.getConversationId()));
+      }
+    }));
+    assertEquals(15, ids.size());
+    assertTrue(ids.contains(304));
+    assertEquals(3, windows.size());
+    assertTrue(windows.contains("2016-01-02 00:00:00 / 2016-01-02 23:59:59"));
+  }
+
+  /**
+   * Test the NDJSON sink.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testExportNdjson() throws Exception {
+    final StringWriter writer = new StringWriter();
+    final long count = new ConversationDataExporter.Builder(service, DIALOG_ID,
+        format().parse("2016-01-05 00:00:00"), format().parse("2016-01-05 12:00:00")).build()
+            .export(ConversationDataExporter.ndjson(writer));
+
+    assertEquals(5, count);
+    final String[] lines = writer.toString().split("\n");
+    assertEquals(5, lines.length);
+    final ConversationData first = GsonSingleton.getGson().fromJson(lines[0], ConversationData.class);
+    assertEquals(500, first.getConversationId().intValue());
+    assertEquals("hi", first.getMessages().get(0).getText());
+  }
+
+  /**
+   * Test that a failed request fails the export.
+   *
+   * @throws Exception the exception
+   */
+  @Test(expected = ServiceResponseException.class)
+  public void testExportFailure() throws Exception {
+    new ConversationDataExporter.Builder(service, DIALOG_ID, format().parse("2016-01-29 00:00:00"),
+        format().parse("2016-01-31 23:59:59")).build().export(ConversationDataExporter.ndjson(new StringWriter()));
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.dialog.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.dialog.v1.util.DialogDeployer;
+import com.ibm.watson.developer_cloud.dialog.v1.util.DialogDeployer.Action;
+import com.ibm.watson.developer_cloud.dialog.v1.util.DialogDeployer.Result;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link DialogDeployer}.
+ */
+public class DialogDeployerTest extends WatsonServiceUnitTest {
+
+  /** The temporary folder. */
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DialogService service;
+  private DialogDeployer deployer;
+  private File manifest;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new DialogService("username", "password");
+    service.setEndPoint(getMockWebServerUrl());
+    manifest = new File(folder.getRoot(), "manifest.json");
+    deployer = new DialogDeployer.Builder(service, manifest).maxConcurrency(1).build();
+  }
+
+  private File write(String name, String content) throws IOException {
+    final File file = new File(folder.getRoot(), name + ".xml");
+    final FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  /**
+   * Test that only new and changed dialogs are uploaded.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testDeploy() throws Exception {
+    final Map<String, File> dialogs = new LinkedHashMap<String, File>();
+    dialogs.put("pizza", write("pizza", "<dialog>pizza</dialog>"));
+    dialogs.put("taxi", write("taxi", "<dialog>taxi</dialog>"));
+
+    server.enqueue(new MockResponse().setBody("{\"dialog_id\":\"id-pizza\"}"));
+    server.enqueue(new MockResponse().setBody("{\"dialog_id\":\"id-taxi\"}"));
+    List<Result> results = deployer.deploy(dialogs);
+    assertEquals(Action.CREATED, results.get(0).getAction());
+    assertEquals("id-taxi", results.get(1).getDialogId());
+    assertEquals(2, server.getRequestCount());
+    assertTrue(manifest.exists());
+
+    // nothing changed
+    results = new DialogDeployer.Builder(service, manifest).build().deploy(dialogs);
+    assertEquals(Action.SKIPPED, results.get(0).getAction());
+    assertEquals(Action.SKIPPED, results.get(1).getAction());
+    assertEquals("id-pizza", results.get(0).getDialogId());
+    assertTrue(results.get(0).getTime(TimeUnit.NANOSECONDS) > 0);
+    assertEquals(2, server.getRequestCount());
+
+    // one dialog changed, and the other one was deleted from the service
+    write("pizza", "<dialog>pizza and pasta</dialog>");
+    write("taxi", "<dialog>taxi to the airport</dialog>");
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setResponseCode(404).setBody("{\"error\":\"not found\"}"));
+    server.enqueue(new MockResponse().setBody("{\"dialog_id\":\"id-taxi-2\"}"));
+    results = deployer.deploy(dialogs);
+    assertEquals(Action.UPDATED, results.get(0).getAction());
+    assertEquals(Action.CREATED, results.get(1).getAction());
+    assertEquals("id-taxi-2", results.get(1).getDialogId());
+
+    server.takeRequest();
+    server.takeRequest();
+    final RecordedRequest update = server.takeRequest();
+    assertEquals("PUT", update.getMethod());
+    assertEquals("/v1/dialogs/id-pizza", update.getPath());
+    assertTrue(update.getBody().readUtf8().contains("pizza and pasta"));
+  }
+
+  /**
+   * Test that failed dialogs are deployed again by the next deployment.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testDeployFailure() throws Exception {
+    final Map<String, File> dialogs = new LinkedHashMap<String, File>();
+    dialogs.put("pizza", write("pizza", "<dialog>pizza</dialog>"));
+
+    server.enqueue(new MockResponse().setResponseCode(500).setBody("{\"error\":\"failure\"}"));
+    Result result = deployer.deploy(dialogs).get(0);
+    assertEquals(Action.FAILED, result.getAction());
+    assertEquals("failure", result.getError().getMessage());
+
+    server.enqueue(new MockResponse().setBody("{\"dialog_id\":\"id-pizza\"}"));
+    result = deployer.deploy(dialogs).get(0);
+    assertEquals(Action.CREATED, result.getAction());
+    assertEquals(64, result.getHash().length());
+  }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.dialog.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.dialog.v1.model.Conversation;
+import com.ibm.watson.developer_cloud.dialog.v1.util.ProfileCache;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link ProfileCache}.
+ */
+public class ProfileCacheTest extends WatsonServiceUnitTest {
+  private static final String DIALOG_ID = "dialog";
+  private static final Integer CLIENT_ID = 2;
+  private static final String PROFILE = "{\"name_values\":[{\"name\":\"size\",\"value\":\"small\"},"
+      + "{\"name\":\"topping\",\"value\":\"ham\"}]}";
+
+  private DialogService service;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new DialogService("username", "password");
+    service.setEndPoint(getMockWebServerUrl());
+  }
+
+  private static Map<String, String> profile(String name, String value) {
+    return Collections.singletonMap(name, value);
+  }
+
+  /**
+   * Test that profiles are read once per turn and updates are sent once before the next turn.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testReadsAndWritesPerTurn() throws Exception {
+    final ProfileCache cache = new ProfileCache.Builder(service).flushInterval(0, TimeUnit.SECONDS).build();
+    server.enqueue(new MockResponse().setBody(PROFILE));
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setBody("{\"conversation_id\":1,\"client_id\":2,\"response\":[\"OK\"]}"));
+    server.enqueue(new MockResponse().setBody(PROFILE));
+
+    assertEquals("small", cache.getProfile(DIALOG_ID, CLIENT_ID).get("size"));
+    cache.updateProfile(DIALOG_ID, CLIENT_ID, profile("size", "large"));
+    cache.updateProfile(DIALOG_ID, CLIENT_ID, profile("drink", "water"));
+    cache.updateProfile(DIALOG_ID, CLIENT_ID, profile("size", "medium"));
+    final Map<String, String> expected = new HashMap<String, String>();
+    expected.put("size", "medium");
+    expected.put("topping", "ham");
+    expected.put("drink", "water");
+    assertEquals(expected, cache.getProfile(DIALOG_ID, CLIENT_ID));
+    assertEquals(profile("topping", "ham"), cache.getProfile(DIALOG_ID, CLIENT_ID, "topping", "crust"));
+    assertEquals(1, server.getRequestCount());
+
+    final Conversation conversation = new Conversation();
+    conversation.setDialogId(DIALOG_ID);
+    conversation.setClientId(CLIENT_ID);
+    conversation.setId(1);
+    assertEquals("OK", cache.converse(conversation, "hi").getResponse().get(0));
+    assertEquals("GET", server.takeRequest().getMethod());
+    final RecordedRequest update = server.takeRequest();
+    assertEquals("PUT", update.getMethod());
+    assertEquals("{\"client_id\":2,\"name_values\":[{\"name\":\"size\",\"value\":\"medium\"},"
+        + "{\"name\":\"drink\",\"value\":\"water\"}]}", update.getBody().readUtf8());
+    assertEquals("POST", server.takeRequest().getMethod());
+
+    // the dialog may have changed the profile
+    assertEquals("small", cache.getProfile(DIALOG_ID, CLIENT_ID).get("size"));
+    assertEquals("GET", server.takeRequest().getMethod());
+    cache.shutdown();
+    assertEquals(4, server.getRequestCount());
+  }
+
+  /**
+   * Test that pending updates are sent periodically and on shutdown.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFlush() throws Exception {
+    final ProfileCache cache = new ProfileCache.Builder(service).flushInterval(50, TimeUnit.MILLISECONDS).build();
+    server.enqueue(new MockResponse().setBody("{}"));
+    server.enqueue(new MockResponse().setBody("{}"));
+
+    cache.updateProfile(DIALOG_ID, CLIENT_ID, profile("size", "large"));
+    final RecordedRequest first = server.takeRequest(5, TimeUnit.SECONDS);
+    assertNotNull(first);
+    assertTrue(first.getBody().readUtf8().contains("large"));
+
+    cache.updateProfile(DIALOG_ID, 3, profile("size", "small"));
+    cache.shutdown();
+    final RecordedRequest second = server.takeRequest(5, TimeUnit.SECONDS);
+    assertTrue(second.getBody().readUtf8().contains("\"client_id\":3"));
+  }
+
+  /**
+   * Test that a profile read while its updates are being sent includes them.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testGetProfileWhileFlushing() throws Exception {
+    final CountDownLatch updating = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (request.getMethod().equals("GET"))
+          return new MockResponse().setBody(PROFILE);
+        updating.countDown();
+        release.await(5, TimeUnit.SECONDS);
+        return new MockResponse().setBody("{}");
+      }
+    });
+    final ProfileCache cache = new ProfileCache.Builder(service).flushInterval(0, TimeUnit.SECONDS).build();
+    cache.updateProfile(DIALOG_ID, CLIENT_ID, profile("size", "large"));
+    final Thread flush = new Thread() {
+      @Override
+      public void run() {
+        cache.flush();
+      }
+    };
+    flush.start();
+    assertTrue(updating.await(5, TimeUnit.SECONDS));
+
+    assertEquals("large", cache.getProfile(DIALOG_ID, CLIENT_ID).get("size"));
+    release.countDown();
+    flush.join(5000);
+    assertEquals("large", cache.getProfile(DIALOG_ID, CLIENT_ID).get("size"));
+    cache.shutdown();
+  }
+
+  /**
+   * Test that the profiles with no pending update expire.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testExpireAfterAccess() throws Exception {
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        return new MockResponse().setBody(PROFILE);
+      }
+    });
+    final ProfileCache cache = new ProfileCache.Builder(service).flushInterval(0, TimeUnit.SECONDS)
+        .expireAfterAccess(500, TimeUnit.MILLISECONDS).build();
+    cache.getProfile(DIALOG_ID, CLIENT_ID);
+    cache.updateProfile(DIALOG_ID, 3, profile("size", "large"));
+    assertEquals(2, cache.size());
+
+    Thread.sleep(600);
+    cache.getProfile(DIALOG_ID, 4);
+    assertEquals(2, cache.size());
+    cache.getProfile(DIALOG_ID, CLIENT_ID);
+    assertEquals(3, server.getRequestCount());
+    cache.shutdown();
+  }
+}
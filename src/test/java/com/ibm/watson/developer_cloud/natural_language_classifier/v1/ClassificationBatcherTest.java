@@ -0,0 +1,243 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.natural_language_classifier.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.http.ServiceCall;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classification;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.util.ClassificationBatcher;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link ClassificationBatcher}.
+ */
+public class ClassificationBatcherTest extends WatsonServiceUnitTest {
+  private static final String CLASSIFIER_ID = "classifier";
+
+  private NaturalLanguageClassifier service;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new NaturalLanguageClassifier("username", "password");
+    service.setEndPoint(getMockWebServerUrl());
+
+    // classifies each text in the class with the same name
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final int current = inFlight.incrementAndGet();
+        int max;
+        while (current > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, current)) {
+          // retry
+        }
+        Thread.sleep(20);
+        final String text = new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject().get("text")
+            .getAsString();
+        final JsonObject classification = new JsonObject();
+        classification.addProperty("text", text);
+        classification.addProperty("top_class", text);
+        inFlight.decrementAndGet();
+        return new MockResponse().setBody(classification.toString());
+      }
+    });
+  }
+
+  /**
+   * Test that repeated texts are classified once, with bounded concurrency.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testClassify() throws Exception {
+    final ClassificationBatcher batcher = new ClassificationBatcher.Builder(service)
+        .maxLinger(50, TimeUnit.MILLISECONDS).maxConcurrency(2).build();
+    final List<CompletableFuture<Classification>> futures = new ArrayList<CompletableFuture<Classification>>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(batcher.classify(CLASSIFIER_ID, "text" + (i % 10)));
+    }
+    for (int i = 0; i < 20; i++) {
+      assertEquals("text" + (i % 10), futures.get(i).get(5, TimeUnit.SECONDS).getTopClass());
+    }
+
+    assertEquals(10, batcher.getRequestCount());
+    assertEquals(10, server.getRequestCount());
+    assertTrue(maxInFlight.get() <= 2);
+    assertEquals(1, batcher.getBatchCount());
+    assertEquals(20, batcher.getAverageBatchSize(), 0);
+    assertTrue(batcher.getAverageLatency(TimeUnit.MILLISECONDS) >= 20);
+    assertEquals(0, batcher.getInFlight());
+    assertEquals(0, batcher.getQueued());
+    assertEquals(50, batcher.getLinger(TimeUnit.MILLISECONDS));
+    batcher.shutdown();
+  }
+
+  /**
+   * Test that a full batch is sent without waiting for the linger.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testMaxBatchSize() throws Exception {
+    final ClassificationBatcher batcher = new ClassificationBatcher.Builder(service)
+        .maxLinger(1, TimeUnit.MINUTES).maxBatchSize(3).build();
+    batcher.classify(CLASSIFIER_ID, "a");
+    batcher.classify(CLASSIFIER_ID, "b");
+    assertEquals("c", batcher.classify(CLASSIFIER_ID, "c").get(5, TimeUnit.SECONDS).getTopClass());
+    batcher.shutdown();
+  }
+
+  /**
+   * Test that the linger shrinks when the texts come one at a time.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testAdaptiveLinger() throws Exception {
+    final ClassificationBatcher batcher =
+        new ClassificationBatcher.Builder(service).maxLinger(8, TimeUnit.MILLISECONDS).build();
+    assertEquals(4, batcher.getLinger(TimeUnit.MILLISECONDS));
+    for (int i = 0; i < 7; i++) {
+      batcher.classify(CLASSIFIER_ID, "text" + i).get(5, TimeUnit.SECONDS);
+    }
+    assertEquals(0, batcher.getLinger(TimeUnit.NANOSECONDS));
+    assertEquals(7, batcher.getBatchCount());
+    batcher.shutdown();
+  }
+
+  /**
+   * Test that texts classified after a shutdown are rejected instead of waiting on a batch that is
+   * never sent.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testClassifyAfterShutdown() throws Exception {
+    final ClassificationBatcher batcher =
+        new ClassificationBatcher.Builder(service).maxLinger(10, TimeUnit.MILLISECONDS).build();
+    batcher.shutdown();
+    for (int i = 0; i < 2; i++) {
+      try {
+        batcher.classify(CLASSIFIER_ID, "text").get(5, TimeUnit.SECONDS);
+        fail("expected the classification to be rejected");
+      } catch (final ExecutionException e) {
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+      }
+    }
+    assertEquals(0, server.getRequestCount());
+  }
+
+  /**
+   * Test that the concurrency sized from the target rate is not capped by the HTTP client.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testTargetRate() throws Exception {
+    final ClassificationBatcher batcher = new ClassificationBatcher.Builder(service)
+        .maxLinger(10, TimeUnit.MILLISECONDS).targetRate(400, 25, TimeUnit.MILLISECONDS).build();
+    final List<CompletableFuture<Classification>> futures = new ArrayList<CompletableFuture<Classification>>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(batcher.classify(CLASSIFIER_ID, "text" + i));
+    }
+    for (int i = 0; i < 20; i++) {
+      assertEquals("text" + i, futures.get(i).get(5, TimeUnit.SECONDS).getTopClass());
+    }
+    assertTrue(maxInFlight.get() > 5);
+    assertTrue(maxInFlight.get() <= 10);
+    batcher.shutdown();
+  }
+
+  /**
+   * Test that texts are rejected while too many are waiting, except the repeated ones.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testMaxQueued() throws Exception {
+    final ClassificationBatcher batcher = new ClassificationBatcher.Builder(service)
+        .maxLinger(1, TimeUnit.MINUTES).maxQueued(2).build();
+    final CompletableFuture<Classification> a = batcher.classify(CLASSIFIER_ID, "a");
+    batcher.classify(CLASSIFIER_ID, "b");
+    final CompletableFuture<Classification> repeated = batcher.classify(CLASSIFIER_ID, "a");
+    try {
+      batcher.classify(CLASSIFIER_ID, "c").get(5, TimeUnit.SECONDS);
+      fail("expected the classification to be rejected");
+    } catch (final ExecutionException e) {
+      assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+    assertEquals(2, batcher.getWaiting());
+
+    batcher.shutdown();
+    assertEquals("a", a.get(5, TimeUnit.SECONDS).getTopClass());
+    assertEquals("a", repeated.get(5, TimeUnit.SECONDS).getTopClass());
+    assertEquals(2, server.getRequestCount());
+    assertEquals(0, batcher.getWaiting());
+  }
+
+  /**
+   * Test that a request failing before it is sent completes its callers and frees its slot.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFailedRequest() throws Exception {
+    final NaturalLanguageClassifier failing = new NaturalLanguageClassifier("username", "password") {
+      @Override
+      public ServiceCall<Classification> classify(String classifierId, String text) {
+        throw new IllegalStateException("failed");
+      }
+    };
+    final ClassificationBatcher batcher = new ClassificationBatcher.Builder(failing)
+        .maxLinger(0, TimeUnit.MILLISECONDS).maxConcurrency(1).build();
+    for (int i = 0; i < 2; i++) {
+      try {
+        batcher.classify(CLASSIFIER_ID, "text" + i).get(5, TimeUnit.SECONDS);
+        fail("expected the classification to fail");
+      } catch (final ExecutionException e) {
+        assertTrue(e.getCause() instanceof IllegalStateException);
+      }
+    }
+    assertEquals(0, batcher.getInFlight());
+    batcher.shutdown();
+  }
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.natural_language_classifier.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classification;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.ClassifiedClass;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.model.Classifier;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.util.ClassificationCache;
+import com.ibm.watson.developer_cloud.natural_language_classifier.v1.util.ClassificationCache.Normalization;
+
+import jersey.repackaged.jsr166e.CompletableFuture;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Unit tests for the {@link ClassificationCache}.
+ */
+public class ClassificationCacheTest extends WatsonServiceUnitTest {
+  private static final String CLASSIFIER_ID = "classifier";
+
+  private NaturalLanguageClassifier service;
+  private volatile String created = "2015-10-17T20:56:29.974Z";
+  private volatile String status = "Available";
+  private final CountDownLatch received = new CountDownLatch(1);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new NaturalLanguageClassifier("username", "password");
+    service.setEndPoint(getMockWebServerUrl());
+
+    // classifies each text in the class with the same name, and returns the current classifier
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        if (request.getMethod().equals("GET")) {
+          final JsonObject classifier = new JsonObject();
+          classifier.addProperty("classifier_id", CLASSIFIER_ID);
+          classifier.addProperty("created", created);
+          classifier.addProperty("status", status);
+          return new MockResponse().setBody(classifier.toString());
+        }
+        if (request.getMethod().equals("DELETE")) {
+          return new MockResponse();
+        }
+        Thread.sleep(5);
+        final String text = new JsonParser().parse(request.getBody().readUtf8()).getAsJsonObject().get("text")
+            .getAsString();
+        if (text.equals("slow")) {
+          received.countDown();
+          release.await(5, TimeUnit.SECONDS);
+        }
+        final JsonObject classification = new JsonObject();
+        classification.addProperty("classifier_id", CLASSIFIER_ID);
+        classification.addProperty("text", text);
+        classification.addProperty("top_class", text);
+        return new MockResponse().setBody(classification.toString());
+      }
+    });
+  }
+
+  /**
+   * Test that texts with the same normalized form are classified once.
+   */
+  @Test
+  public void testNormalizedHit() {
+    final ClassificationCache cache = new ClassificationCache.Builder().build();
+    service.setClassificationCache(cache);
+
+    final Classification first = service.classify(CLASSIFIER_ID, "Is it  hot?").execute();
+    final Classification second = service.classify(CLASSIFIER_ID, " is IT hot? ").execute();
+    final Classification third = service.classify(CLASSIFIER_ID, "is it hot").execute();
+
+    assertEquals("Is it  hot?", second.getTopClass());
+    assertEquals(" is IT hot? ", second.getText());
+    assertEquals(first.getTopClass(), second.getTopClass());
+    assertEquals("is it hot", third.getText());
+    assertEquals(2, server.getRequestCount());
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(1 / 3.0, cache.getHitRatio(), 0.001);
+    assertTrue(cache.getSavedLatency(TimeUnit.MILLISECONDS) >= 5);
+  }
+
+  /**
+   * Test that the classifications returned or added by the callers do not share their classes with
+   * the cache.
+   */
+  @Test
+  public void testCopies() {
+    final ClassificationCache cache = new ClassificationCache.Builder().build();
+    final ClassifiedClass hot = new ClassifiedClass();
+    hot.setName("hot");
+    hot.setConfidence(0.9);
+    final List<ClassifiedClass> classes = new ArrayList<ClassifiedClass>();
+    classes.add(hot);
+    final Classification classification = new Classification();
+    classification.setTopClass("hot");
+    classification.setClasses(classes);
+    cache.put(CLASSIFIER_ID, "is it hot", classification, 0, cache.getGeneration(CLASSIFIER_ID));
+    hot.setConfidence(0.1);
+    classes.clear();
+
+    final Classification first = cache.get(CLASSIFIER_ID, "is it hot");
+    assertEquals(1, first.getClasses().size());
+    assertEquals(0.9, first.getClasses().get(0).getConfidence(), 0);
+    first.getClasses().get(0).setConfidence(0.2);
+    first.getClasses().clear();
+
+    final Classification second = cache.get(CLASSIFIER_ID, "is it hot");
+    assertEquals(1, second.getClasses().size());
+    assertEquals(0.9, second.getClasses().get(0).getConfidence(), 0);
+  }
+
+  /**
+   * Test the normalizations.
+   */
+  @Test
+  public void testNormalization() {
+    final ClassificationCache cache = new ClassificationCache.Builder().normalize(Normalization.PUNCTUATION).build();
+    final Classification classification = new Classification();
+    classification.setTopClass("temperature");
+    cache.put(CLASSIFIER_ID, "Is it hot?", classification, 0, cache.getGeneration(CLASSIFIER_ID));
+
+    assertNotNull(cache.get(CLASSIFIER_ID, "Is it, hot"));
+    assertNull(cache.get(CLASSIFIER_ID, "is it hot"));
+    assertNull(cache.get("other", "Is it hot?"));
+  }
+
+  /**
+   * Test that the classifications are dropped when the classifier is created again, changes status or
+   * is deleted.
+   */
+  @Test
+  public void testInvalidation() {
+    final ClassificationCache cache = new ClassificationCache.Builder().build();
+    service.setClassificationCache(cache);
+    service.getClassifier(CLASSIFIER_ID).execute();
+
+    service.classify(CLASSIFIER_ID, "hot").execute();
+    service.classify(CLASSIFIER_ID, "hot").execute();
+    assertEquals(2, server.getRequestCount());
+
+    service.getClassifier(CLASSIFIER_ID).execute();
+    service.classify(CLASSIFIER_ID, "hot").execute();
+    assertEquals(3, server.getRequestCount());
+
+    status = "Training";
+    service.getClassifier(CLASSIFIER_ID).execute();
+    service.classify(CLASSIFIER_ID, "hot").execute();
+    assertEquals(5, server.getRequestCount());
+
+    created = "2016-10-17T20:56:29.974Z";
+    service.getClassifier(CLASSIFIER_ID).execute();
+    service.classify(CLASSIFIER_ID, "hot").execute();
+    assertEquals(7, server.getRequestCount());
+
+    service.deleteClassifier(CLASSIFIER_ID).execute();
+    service.classify(CLASSIFIER_ID, "hot").execute();
+    assertEquals(9, server.getRequestCount());
+    assertEquals(1, cache.size());
+  }
+
+  /**
+   * Test that frequent classifications are kept when rare ones exceed the capacity.
+   */
+  @Test
+  public void testAdmission() {
+    final ClassificationCache cache = new ClassificationCache.Builder().maxEntries(100).build();
+    final Classification classification = new Classification();
+    classification.setTopClass("class");
+
+    for (int i = 0; i < 50; i++) {
+      cache.put(CLASSIFIER_ID, "frequent" + i, classification, 0, cache.getGeneration(CLASSIFIER_ID));
+    }
+    for (int j = 0; j < 3; j++) {
+      for (int i = 0; i < 50; i++) {
+        cache.get(CLASSIFIER_ID, "frequent" + i);
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      cache.put(CLASSIFIER_ID, "rare" + i, classification, 0, cache.getGeneration(CLASSIFIER_ID));
+    }
+
+    assertEquals(100, cache.size());
+    int kept = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.get(CLASSIFIER_ID, "frequent" + i) != null)
+        kept++;
+    }
+    assertEquals(50, kept);
+  }
+
+  /**
+   * Test that the estimated size is bounded.
+   */
+  @Test
+  public void testMaxBytes() {
+    final ClassificationCache cache = new ClassificationCache.Builder().maxBytes(4096).build();
+    final Classification classification = new Classification();
+    classification.setTopClass("class");
+
+    for (int i = 0; i < 100; i++) {
+      cache.put(CLASSIFIER_ID, "text" + i, classification, 0, cache.getGeneration(CLASSIFIER_ID));
+    }
+    assertTrue(cache.getBytes() <= 4096);
+    assertTrue(cache.size() > 0 && cache.size() < 100);
+    assertNotNull(cache.get(CLASSIFIER_ID, "text99"));
+  }
+
+  /**
+   * Test that an update with the same state keeps the classifications.
+   */
+  @Test
+  public void testUpdate() {
+    final ClassificationCache cache = new ClassificationCache.Builder().build();
+    final Classification classification = new Classification();
+    final Classifier classifier = new Classifier();
+    classifier.setId(CLASSIFIER_ID);
+    classifier.setCreated(new Date(0));
+    cache.update(classifier);
+    cache.put(CLASSIFIER_ID, "text", classification, 0, cache.getGeneration(CLASSIFIER_ID));
+
+    classifier.setStatus(Classifier.Status.AVAILABLE);
+    cache.update(classifier);
+    assertNotNull(cache.get(CLASSIFIER_ID, "text"));
+
+    classifier.setCreated(new Date(1));
+    cache.update(classifier);
+    assertNull(cache.get(CLASSIFIER_ID, "text"));
+  }
+
+  /**
+   * Test that a classification requested before an invalidation is not cached.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testInvalidationInFlight() throws Exception {
+    final ClassificationCache cache = new ClassificationCache.Builder().build();
+    service.setClassificationCache(cache);
+
+    final CompletableFuture<Classification> future = service.classify(CLASSIFIER_ID, "slow").rx();
+    assertTrue(received.await(5, TimeUnit.SECONDS));
+    cache.invalidate(CLASSIFIER_ID);
+    release.countDown();
+    assertEquals("slow", future.get(5, TimeUnit.SECONDS).getTopClass());
+
+    assertEquals(0, cache.size());
+    service.classify(CLASSIFIER_ID, "slow").execute();
+    assertEquals(2, server.getRequestCount());
+  }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.AudioTranscoder;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.PcmAudioFormat;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.TranscodingInputStream;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.WaveUtils;
+
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Client side audio transcoding tests.
+ */
+public class AudioTranscoderTest extends WatsonServiceUnitTest {
+  private static final File SAMPLE_WAV = new File("src/test/resources/speech_to_text/sample1.wav");
+  private static final byte[] FLAC_MARKER = new byte[] { 'f', 'L', 'a', 'C' };
+  private static final int RATE = 44100;
+
+  private SpeechToText service;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new SpeechToText();
+    service.setApiKey("");
+    service.setEndPoint(getMockWebServerUrl());
+  }
+
+  /**
+   * Creates one second of a 44.1 kHz WAVE tone.
+   */
+  private static byte[] createTone(double frequency) throws IOException {
+    final PcmAudioFormat format = new PcmAudioFormat(RATE, 1, 16, false);
+    final ByteArrayOutputStream audio = new ByteArrayOutputStream();
+    audio.write(format.toWaveHeader(RATE * 2));
+    for (int i = 0; i < RATE; i++) {
+      final short value = (short) (0.5 * Short.MAX_VALUE * Math.sin(2 * Math.PI * frequency * i / RATE));
+      audio.write(value & 0xFF);
+      audio.write((value >> 8) & 0xFF);
+    }
+    return audio.toByteArray();
+  }
+
+  /**
+   * Transcodes a tone to 16 kHz <code>audio/l16</code> and returns the RMS of the output.
+   */
+  private static double transcodeTone(double frequency) throws IOException {
+    final AudioTranscoder transcoder =
+        new AudioTranscoder.Builder().encoding(AudioTranscoder.Encoding.L16).sampleRate(16000).build();
+    final TranscodingInputStream transcoded =
+        new TranscodingInputStream(new ByteArrayInputStream(createTone(frequency)), HttpMediaType.AUDIO_WAV, transcoder);
+    final byte[] output = WaveUtils.toByteArray(transcoded);
+
+    assertEquals("audio/l16; rate=16000; channels=1", transcoded.getContentType());
+    assertEquals(16000 * 2, output.length, 4);
+
+    // skip the filter transients at both ends
+    double sum = 0;
+    int count = 0;
+    for (int i = 1000; i < output.length / 2 - 1000; i++) {
+      final double sample = (short) ((output[2 * i] << 8) | (output[2 * i + 1] & 0xFF)) / 32768.0;
+      sum += sample * sample;
+      count++;
+    }
+    return Math.sqrt(sum / count);
+  }
+
+  /**
+   * Test that down-sampling keeps the speech band and removes frequencies above the new Nyquist
+   * frequency.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testResample() throws IOException {
+    final double expected = 0.5 / Math.sqrt(2);
+    assertEquals(expected, transcodeTone(440), expected * 0.02);
+    assertTrue(transcodeTone(10000) < expected * 0.01);
+  }
+
+  /**
+   * Test that a WAVE file is compressed to FLAC at the native rate of the model.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testTranscodeToFlac() throws IOException {
+    final AudioTranscoder broadband = new AudioTranscoder.Builder().build().forModel(null);
+    final AudioTranscoder narrowband = new AudioTranscoder.Builder().build().forModel("en-US_NarrowbandModel");
+    assertEquals(AudioTranscoder.BROADBAND_SAMPLE_RATE, broadband.getSampleRate());
+    assertEquals(AudioTranscoder.NARROWBAND_SAMPLE_RATE, narrowband.getSampleRate());
+
+    final TranscodingInputStream transcoded =
+        new TranscodingInputStream(new FileInputStream(SAMPLE_WAV), HttpMediaType.AUDIO_WAV, broadband);
+    final byte[] output = WaveUtils.toByteArray(transcoded);
+
+    assertEquals(HttpMediaType.AUDIO_FLAC, transcoded.getContentType());
+    assertArrayEquals(FLAC_MARKER, Arrays.copyOf(output, 4));
+    assertEquals(output.length, transcoded.getBytesWritten());
+    assertTrue(output.length < SAMPLE_WAV.length() / 4);
+  }
+
+  /**
+   * Test recognize with an audio transcoder.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognizeWithAudioTranscoder() throws Exception {
+    server.enqueue(jsonResponse(new SpeechResults()));
+
+    final RecognizeOptions options = new RecognizeOptions.Builder()
+        .audioTranscoder(new AudioTranscoder.Builder().build()).build();
+    service.recognize(SAMPLE_WAV, options).execute();
+    final RecordedRequest request = server.takeRequest();
+
+    assertEquals(HttpMediaType.AUDIO_FLAC, request.getHeader("Content-Type"));
+    assertArrayEquals(FLAC_MARKER, Arrays.copyOf(request.getBody().readByteArray(), 4));
+    assertTrue(request.getBodySize() < SAMPLE_WAV.length() / 4);
+  }
+}
@@ -0,0 +1,275 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.PcmAudioFormat;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.AudioReplayBuffer;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.RecognizeCallback;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.ReconnectPolicy;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.websocket.WebSocketManager;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.ws.WebSocket;
+import okhttp3.ws.WebSocketListener;
+import okio.Buffer;
+
+/**
+ * WebSocket reconnection and audio replay tests.
+ */
+public class ReconnectTest extends WatsonServiceUnitTest {
+  private static final int RATE = 16000;
+  private static final PcmAudioFormat FORMAT = new PcmAudioFormat(RATE, 1, 16, false);
+  private static final String LISTENING = "{\"state\":\"listening\"}";
+
+  private byte[] samples;
+  private byte[] audio;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    samples = new byte[3 * RATE * 2];
+    for (int i = 0; i < samples.length / 2; i++) {
+      final short value = (short) (10000 * Math.sin(2 * Math.PI * 440 * i / RATE));
+      samples[2 * i] = (byte) value;
+      samples[2 * i + 1] = (byte) (value >> 8);
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write(FORMAT.toWaveHeader(samples.length));
+    out.write(samples);
+    audio = out.toByteArray();
+  }
+
+  private static String finalResult(int index, double start, double end) {
+    final SpeechTimestamp timestamp = new SpeechTimestamp();
+    timestamp.setWord("word");
+    timestamp.setStartTime(start);
+    timestamp.setEndTime(end);
+    final SpeechAlternative alternative = new SpeechAlternative();
+    alternative.setTranscript("word");
+    alternative.setTimestamps(Arrays.asList(timestamp));
+    final Transcript transcript = new Transcript();
+    transcript.setFinal(true);
+    transcript.setAlternatives(Arrays.asList(alternative));
+    final SpeechResults results = new SpeechResults();
+    results.setResultIndex(index);
+    results.setResults(Arrays.asList(transcript));
+    return GsonSingleton.getGsonWithoutPrettyPrinting().toJson(results);
+  }
+
+  /**
+   * Mock service connection that records what it receives.
+   */
+  private abstract static class ServiceListener implements WebSocketListener {
+    protected final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    protected final List<String> messages = new CopyOnWriteArrayList<String>();
+    protected WebSocket socket;
+
+    @Override
+    public void onOpen(WebSocket webSocket, Response response) {
+      socket = webSocket;
+    }
+
+    @Override
+    public void onMessage(ResponseBody message) throws IOException {
+      if (WebSocket.BINARY.equals(message.contentType())) {
+        received.write(message.bytes());
+        onAudio();
+      } else {
+        final String text = message.string();
+        messages.add(text);
+        onText(text);
+      }
+    }
+
+    protected void send(String text) throws IOException {
+      socket.sendMessage(RequestBody.create(WebSocket.TEXT, text));
+    }
+
+    protected abstract void onText(String text) throws IOException;
+
+    protected void onAudio() throws IOException {}
+
+    @Override
+    public void onPong(Buffer payload) {}
+
+    @Override
+    public void onClose(int code, String reason) {}
+
+    @Override
+    public void onFailure(IOException e, Response response) {}
+  }
+
+  /**
+   * Test that a dropped connection is resumed from the last final result, and that results are
+   * shifted to the whole stream without duplicates.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testReconnectReplaysFromLastFinalResult() throws Exception {
+    final ServiceListener first = new ServiceListener() {
+      private boolean dropped;
+
+      @Override
+      protected void onText(String text) throws IOException {
+        if (text.contains("start"))
+          send(LISTENING);
+      }
+
+      @Override
+      protected void onAudio() throws IOException {
+        // drop the connection after 1.5 seconds of audio, with 1 second transcribed
+        if (!dropped && received.size() > PcmAudioFormat.WAVE_HEADER_SIZE + 1.5 * RATE * 2) {
+          dropped = true;
+          send(finalResult(0, 0.5, 1.0));
+          socket.close(1011, "Unexpected error");
+        }
+      }
+    };
+    final ServiceListener second = new ServiceListener() {
+      @Override
+      protected void onText(String text) throws IOException {
+        if (text.contains("start")) {
+          send(LISTENING);
+        } else if (text.contains("stop")) {
+          // the first result overlaps with the one sent before the reconnection
+          send(finalResult(0, 0.0, 0.0));
+          send(finalResult(1, 0.2, 0.5));
+          send(LISTENING);
+        }
+      }
+    };
+    server.enqueue(new MockResponse().withWebSocketUpgrade(first));
+    server.enqueue(new MockResponse().withWebSocketUpgrade(second));
+
+    final AtomicInteger tokens = new AtomicInteger();
+    final WebSocketManager manager =
+        new WebSocketManager(getMockWebServerUrl() + "/v1/recognize", new OkHttpClient(), "token") {
+          @Override
+          protected String refreshToken() {
+            return "token" + tokens.incrementAndGet();
+          }
+        };
+
+    final List<SpeechResults> results = new CopyOnWriteArrayList<SpeechResults>();
+    final List<Exception> errors = new CopyOnWriteArrayList<Exception>();
+    final AtomicInteger connections = new AtomicInteger();
+    final CountDownLatch done = new CountDownLatch(1);
+    final RecognizeOptions options = new RecognizeOptions.Builder().contentType(HttpMediaType.AUDIO_WAV)
+        .reconnectPolicy(new ReconnectPolicy.Builder().retryDelay(10, TimeUnit.MILLISECONDS).build()).build();
+
+    manager.recognize(new ByteArrayInputStream(audio), options, new RecognizeCallback() {
+      @Override
+      public void onTranscription(SpeechResults speechResults) {
+        results.add(speechResults);
+      }
+
+      @Override
+      public void onConnected() {
+        connections.incrementAndGet();
+      }
+
+      @Override
+      public void onError(Exception e) {
+        errors.add(e);
+        done.countDown();
+      }
+
+      @Override
+      public void onDisconnected() {
+        done.countDown();
+      }
+    });
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+
+    assertTrue(errors.isEmpty());
+    assertEquals(1, connections.get());
+    assertEquals(1, tokens.get());
+    assertTrue(second.messages.get(0).contains("\"timestamps\":true"));
+
+    // the second connection gets a new header and the audio after the last final result
+    final byte[] replayed = second.received.toByteArray();
+    assertArrayEquals(FORMAT.toWaveHeader(-1), Arrays.copyOf(replayed, PcmAudioFormat.WAVE_HEADER_SIZE));
+    assertArrayEquals(Arrays.copyOfRange(samples, RATE * 2, samples.length),
+        Arrays.copyOfRange(replayed, PcmAudioFormat.WAVE_HEADER_SIZE, replayed.length));
+
+    assertEquals(2, results.size());
+    assertEquals(0, results.get(0).getResultIndex());
+    assertEquals(1, results.get(1).getResultIndex());
+    final SpeechTimestamp timestamp = results.get(1).getResults().get(0).getAlternatives().get(0).getTimestamps().get(0);
+    assertEquals(1.2, timestamp.getStartTime(), 0.001);
+    assertEquals(1.5, timestamp.getEndTime(), 0.001);
+  }
+
+  /**
+   * Test that the replay buffer keeps the most recent bytes by stream position.
+   */
+  @Test
+  public void testReplayBuffer() {
+    final AudioReplayBuffer buffer = new AudioReplayBuffer(8);
+    final byte[] data = new byte[20];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    buffer.write(data, 0, 5);
+    buffer.write(data, 5, 6);
+    assertEquals(3, buffer.getStart());
+    assertEquals(11, buffer.getEnd());
+
+    final byte[] read = new byte[8];
+    assertEquals(6, buffer.read(5, read, 0, read.length));
+    assertArrayEquals(Arrays.copyOfRange(data, 5, 11), Arrays.copyOf(read, 6));
+    assertEquals(-1, buffer.read(11, read, 0, read.length));
+
+    buffer.write(data, 0, 20);
+    assertEquals(23, buffer.getStart());
+    assertEquals(8, buffer.read(23, read, 0, read.length));
+    assertArrayEquals(Arrays.copyOfRange(data, 12, 20), read);
+  }
+}
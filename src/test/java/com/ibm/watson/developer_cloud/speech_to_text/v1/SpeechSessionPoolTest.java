@@ -0,0 +1,282 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSession;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechSessionStatus;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechSessionPool;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Speech session pool tests.
+ */
+public class SpeechSessionPoolTest extends WatsonServiceUnitTest {
+  private static final String MODEL = "en-US_BroadbandModel";
+  private static final File SAMPLE_WAV = new File("src/test/resources/speech_to_text/sample1.wav");
+
+  private SpeechSessionPool.ClientFactory clientFactory;
+  private final AtomicInteger sessionCount = new AtomicInteger();
+  private final List<String> requests = new CopyOnWriteArrayList<String>();
+  private volatile String state = "initialized";
+  private volatile long statusDelay;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    clientFactory = new SpeechSessionPool.ClientFactory() {
+      @Override
+      public SpeechToText newClient() {
+        final SpeechToText service = new SpeechToText();
+        service.setApiKey("");
+        service.setEndPoint(getMockWebServerUrl());
+        return service;
+      }
+    };
+
+    // each session is bound to the cookie returned when it is created
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        requests.add(request.getMethod() + " " + request.getPath());
+        if (request.getMethod().equals(POST) && request.getPath().startsWith("/v1/sessions?")) {
+          final SpeechSession session = new SpeechSession();
+          session.setSessionId("session" + sessionCount.incrementAndGet());
+          return jsonResponse(session).addHeader("Set-Cookie", "SESSIONID=" + session.getSessionId() + "; Path=/");
+        }
+        final String cookie = request.getHeader("Cookie");
+        if (cookie == null || !request.getPath().startsWith("/v1/sessions/" + cookie.substring(10) + "/")
+            && !request.getPath().equals("/v1/sessions/" + cookie.substring(10))) {
+          requests.add("WRONG COOKIE " + request.getPath());
+        }
+        if (request.getMethod().equals(GET)) {
+          Thread.sleep(statusDelay);
+          final SpeechSessionStatus status = new SpeechSessionStatus();
+          status.setState(state);
+          return jsonResponse(Collections.singletonMap("session", status));
+        } else if (request.getMethod().equals(POST)) {
+          return jsonResponse(new SpeechResults());
+        }
+        return new MockResponse().setResponseCode(204);
+      }
+    });
+  }
+
+  private int count(String prefix) {
+    int count = 0;
+    for (String request : requests) {
+      if (request.startsWith(prefix))
+        count++;
+    }
+    return count;
+  }
+
+  private static void awaitIdle(SpeechSessionPool pool, int idle) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (pool.getIdleCount(MODEL) < idle && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Test that sessions are created up front and leased to recognize calls.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testRecognizeWithPooledSession() throws InterruptedException {
+    final SpeechSessionPool pool = new SpeechSessionPool.Builder(clientFactory).model(MODEL, 2).build();
+    assertEquals(2, pool.getSize(MODEL));
+    assertEquals(2, pool.getIdleCount(MODEL));
+
+    pool.recognize(SAMPLE_WAV, new RecognizeOptions.Builder().model(MODEL).build());
+    awaitIdle(pool, 2);
+
+    assertTrue(requests.contains("POST /v1/sessions/session1/recognize"));
+    assertTrue(requests.contains("GET /v1/sessions/session1/recognize"));
+    assertEquals(2, count("POST /v1/sessions?model=" + MODEL));
+    assertEquals(2, pool.getIdleCount(MODEL));
+    assertEquals(0, pool.getLeasedCount());
+    assertEquals(1, pool.getLeaseCount());
+    assertEquals(0, pool.getWaitCount());
+
+    pool.shutdown();
+    assertEquals(2, count(DELETE));
+    assertEquals(0, pool.getSize(MODEL));
+    assertEquals(0, count("WRONG COOKIE"));
+  }
+
+  /**
+   * Test that every session is used with the cookie of its own client.
+   */
+  @Test
+  public void testSessionsHaveTheirOwnCookies() {
+    final SpeechSessionPool pool = new SpeechSessionPool.Builder(clientFactory).model(MODEL, 2)
+        .validateOnRelease(false).build();
+    final SpeechSession first = pool.acquire(MODEL);
+    final SpeechSession second = pool.acquire(MODEL);
+    assertNotEquals(pool.getClient(first), pool.getClient(second));
+
+    pool.getClient(first).recognize(SAMPLE_WAV, new RecognizeOptions.Builder().sessionId(first.getSessionId())
+        .build()).execute();
+    pool.release(first);
+    pool.release(second);
+    pool.recognize(SAMPLE_WAV, new RecognizeOptions.Builder().model(MODEL).build());
+    pool.shutdown();
+
+    assertEquals(2, count("POST /v1/sessions/"));
+    assertEquals(2, count(DELETE));
+    assertEquals(0, count("WRONG COOKIE"));
+  }
+
+  /**
+   * Test that a session that is not ready is deleted when it is released.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testInvalidSessionIsDeletedOnRelease() throws InterruptedException {
+    final SpeechSessionPool pool = new SpeechSessionPool.Builder(clientFactory).model(MODEL, 1).build();
+    final SpeechSession session = pool.acquire(MODEL);
+    assertEquals(1, pool.getLeasedCount());
+
+    state = "recognizing";
+    pool.release(session);
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (!requests.contains("DELETE /v1/sessions/session1") && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(requests.contains("DELETE /v1/sessions/session1"));
+    assertEquals(0, pool.getSize(MODEL));
+    assertEquals(1, pool.getDeletedCount());
+
+    state = "initialized";
+    assertNotEquals(session.getSessionId(), pool.acquire(MODEL).getSessionId());
+    pool.shutdown();
+  }
+
+  /**
+   * Test that acquire waits for a session and times out when the pool is exhausted.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testAcquireWaitsForRelease() throws InterruptedException {
+    final SpeechSessionPool pool = new SpeechSessionPool.Builder(clientFactory).maxSize(1)
+        .maxWait(200, TimeUnit.MILLISECONDS).validateOnRelease(false).build();
+    final SpeechSession session = pool.acquire(null);
+
+    try {
+      pool.acquire(null);
+      fail("the pool should be exhausted");
+    } catch (RuntimeException e) {
+      assertEquals(1, pool.getLeasedCount());
+    }
+
+    final Thread releaser = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(50);
+        } catch (InterruptedException e) {
+          return;
+        }
+        pool.release(session);
+      }
+    };
+    releaser.start();
+    assertEquals(session.getSessionId(), pool.acquire(null).getSessionId());
+    releaser.join();
+
+    assertEquals(1, pool.getCreatedCount());
+    assertEquals(1, pool.getWaitCount());
+    assertTrue(pool.getMaxWaitTime() >= 40);
+    pool.shutdown();
+  }
+
+  /**
+   * Test that idle sessions get heartbeats and expired sessions are replaced.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testHeartbeatReplacesExpiredSessions() throws InterruptedException {
+    state = "expired";
+    final SpeechSessionPool pool = new SpeechSessionPool.Builder(clientFactory).model(MODEL, 1)
+        .heartbeatInterval(50, TimeUnit.MILLISECONDS).build();
+
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (pool.getCreatedCount() < 3 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    pool.shutdown();
+
+    assertTrue(pool.getHeartbeatFailures() >= 2);
+    assertTrue(pool.getCreatedCount() >= 3);
+    assertTrue(requests.contains("GET /v1/sessions/session1/recognize"));
+    assertTrue(requests.contains("DELETE /v1/sessions/session1"));
+    assertEquals(pool.getCreatedCount(), count(DELETE));
+  }
+
+  /**
+   * Test that the other idle sessions can be leased while the heartbeat checks one.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testHeartbeatLeavesSessionsLeasable() throws InterruptedException {
+    final SpeechSessionPool pool = new SpeechSessionPool.Builder(clientFactory).model(MODEL, 3)
+        .heartbeatInterval(50, TimeUnit.MILLISECONDS).build();
+    statusDelay = 500;
+
+    final long deadline = System.currentTimeMillis() + 5000;
+    while (count(GET) == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    final long start = System.currentTimeMillis();
+    assertEquals(2, pool.getIdleCount(MODEL));
+    pool.acquire(MODEL);
+    pool.acquire(MODEL);
+    assertTrue(System.currentTimeMillis() - start < 250);
+
+    statusDelay = 0;
+    pool.shutdown();
+  }
+}
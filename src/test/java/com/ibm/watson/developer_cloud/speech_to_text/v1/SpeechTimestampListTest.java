@@ -0,0 +1,200 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestampList;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechWordConfidence;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechWordConfidenceList;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechResultsGson;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechTimeMap;
+import com.ibm.watson.developer_cloud.util.GsonSingleton;
+import com.ibm.watson.developer_cloud.util.StringInterner;
+
+/**
+ * Columnar timestamp and word confidence list tests.
+ */
+public class SpeechTimestampListTest {
+  private static final String RESULTS = "{\"results\":[{\"final\":true,\"alternatives\":[{"
+      + "\"transcript\":\"the cat the dog\",\"confidence\":0.9,"
+      + "\"timestamps\":[[\"the\",0.1,0.2],[\"cat\",0.2,0.6],[\"the\",0.7,0.8],[\"dog\",0.8,1.2]],"
+      + "\"word_confidence\":[[\"the\",0.99],[\"cat\",0.75],[\"the\",0.98],[\"dog\",0.5]]}]}],"
+      + "\"result_index\":0}";
+
+  private final Gson gson =
+      SpeechResultsGson.getGson(new RecognizeOptions.Builder().columnarTimestamps(true).build());
+
+  private SpeechAlternative parse() {
+    return gson.fromJson(RESULTS, SpeechResults.class).getResults().get(0).getAlternatives().get(0);
+  }
+
+  /**
+   * Test that timestamps and word confidences are read into columnar lists.
+   */
+  @Test
+  public void testReadColumns() {
+    final SpeechAlternative alternative = parse();
+    assertTrue(alternative.getTimestamps() instanceof SpeechTimestampList);
+    assertTrue(alternative.getWordConfidences() instanceof SpeechWordConfidenceList);
+
+    final SpeechTimestampList timestamps = (SpeechTimestampList) alternative.getTimestamps();
+    assertEquals(4, timestamps.size());
+    assertEquals("cat", timestamps.getWord(1));
+    assertEquals(0.2, timestamps.getStartTime(1), 0);
+    assertEquals(0.6, timestamps.getEndTime(1), 0);
+    assertSame(timestamps.getWord(0), timestamps.getWord(2));
+
+    final SpeechTimestamp timestamp = new SpeechTimestamp();
+    timestamp.setWord("dog");
+    timestamp.setStartTime(0.8);
+    timestamp.setEndTime(1.2);
+    assertEquals(timestamps.get(3), timestamp);
+    assertEquals(timestamp.toString(), timestamps.get(3).toString());
+
+    final SpeechWordConfidenceList confidences = (SpeechWordConfidenceList) alternative.getWordConfidences();
+    assertEquals(0.75, confidences.getConfidence(1), 0);
+    assertEquals(Double.valueOf(0.5), confidences.get(3).getConfidence());
+  }
+
+  /**
+   * Test that the columnar lists are only used when they are requested.
+   */
+  @Test
+  public void testColumnsAreOptional() {
+    final SpeechAlternative alternative = GsonSingleton.getGsonWithoutPrettyPrinting()
+        .fromJson(RESULTS, SpeechResults.class).getResults().get(0).getAlternatives().get(0);
+    assertFalse(alternative.getTimestamps() instanceof SpeechTimestampList);
+    assertFalse(alternative.getWordConfidences() instanceof SpeechWordConfidenceList);
+    assertEquals(alternative.getTimestamps(), parse().getTimestamps());
+    assertEquals(alternative.getWordConfidences(), parse().getWordConfidences());
+    assertSame(GsonSingleton.getGsonWithoutPrettyPrinting(), SpeechResultsGson.getGson(null));
+  }
+
+  /**
+   * Test that the elements are values, so the lists can be sorted and compared with other lists.
+   */
+  @Test
+  public void testElementsAreValues() {
+    final SpeechTimestampList timestamps = (SpeechTimestampList) parse().getTimestamps();
+    final List<SpeechTimestamp> plain = new ArrayList<SpeechTimestamp>(timestamps);
+    for (int i = 0; i < timestamps.size(); i++) {
+      assertEquals(plain.get(i), timestamps.get(i));
+      assertEquals(timestamps.get(i), plain.get(i));
+      assertEquals(plain.get(i).hashCode(), timestamps.get(i).hashCode());
+    }
+    assertEquals(plain, timestamps);
+    assertEquals(timestamps, plain);
+
+    final Comparator<SpeechTimestamp> byWord = new Comparator<SpeechTimestamp>() {
+      @Override
+      public int compare(SpeechTimestamp a, SpeechTimestamp b) {
+        return a.getWord().compareTo(b.getWord());
+      }
+    };
+    Collections.sort(timestamps, byWord);
+    Collections.sort(plain, byWord);
+    assertEquals(plain, timestamps);
+    assertEquals(Arrays.asList("cat", "dog", "the", "the"), Arrays.asList(timestamps.getWord(0),
+        timestamps.getWord(1), timestamps.getWord(2), timestamps.getWord(3)));
+
+    final SpeechTimestamp first = timestamps.get(0);
+    first.setWord("bird");
+    assertEquals("cat", timestamps.getWord(0));
+    timestamps.set(0, first);
+    assertEquals("bird", timestamps.getWord(0));
+
+    final SpeechWordConfidenceList confidences = (SpeechWordConfidenceList) parse().getWordConfidences();
+    final List<SpeechWordConfidence> plainConfidences = new ArrayList<SpeechWordConfidence>(confidences);
+    assertEquals(plainConfidences.get(1), confidences.get(1));
+    assertEquals(confidences.get(1), plainConfidences.get(1));
+    Collections.reverse(confidences);
+    Collections.reverse(plainConfidences);
+    assertEquals(plainConfidences, confidences);
+  }
+
+  /**
+   * Test that the lists are written back to the same json, and that changes made through the
+   * elements are written to the list.
+   */
+  @Test
+  public void testWriteThrough() {
+    final SpeechResults results = gson.fromJson(RESULTS, SpeechResults.class);
+    assertEquals(new JsonParser().parse(RESULTS), gson.toJsonTree(results));
+
+    final SpeechTimeMap timeMap = new SpeechTimeMap();
+    timeMap.addSegment(0, 10);
+    timeMap.remap(results);
+
+    final SpeechTimestampList timestamps =
+        (SpeechTimestampList) results.getResults().get(0).getAlternatives().get(0).getTimestamps();
+    assertEquals(10.1, timestamps.getStartTime(0), 0.0001);
+    assertEquals(11.2, timestamps.get(3).getEndTime(), 0.0001);
+
+    final SpeechWordConfidence missing = new SpeechWordConfidence();
+    missing.setWord("bird");
+    final SpeechWordConfidenceList confidences = new SpeechWordConfidenceList(1);
+    confidences.addAll(Arrays.asList(missing, missing));
+    confidences.remove(0);
+    assertEquals(1, confidences.size());
+    assertNull(confidences.get(0).getConfidence());
+    assertTrue(Double.isNaN(confidences.getConfidence(0)));
+  }
+
+  /**
+   * Test that the words are shared across responses with the default string interner, and that
+   * missing times stay missing when they are remapped.
+   */
+  @Test
+  public void testSharedWords() {
+    StringInterner.setDefault(new StringInterner(64));
+    try {
+      final SpeechTimestampList first = (SpeechTimestampList) parse().getTimestamps();
+      final SpeechTimestampList second = (SpeechTimestampList) parse().getTimestamps();
+      assertSame(first.getWord(1), second.getWord(1));
+      assertSame(first.getWord(0), ((SpeechWordConfidenceList) parse().getWordConfidences()).getWord(2));
+    } finally {
+      StringInterner.setDefault(null);
+    }
+
+    final SpeechResults results = gson.fromJson(RESULTS, SpeechResults.class);
+    final SpeechTimestampList timestamps =
+        (SpeechTimestampList) results.getResults().get(0).getAlternatives().get(0).getTimestamps();
+    timestamps.setEndTime(0, Double.NaN);
+    final SpeechTimeMap timeMap = new SpeechTimeMap();
+    timeMap.addSegment(0, 10);
+    timeMap.remap(results);
+    assertEquals(10.1, timestamps.getStartTime(0), 0.0001);
+    assertTrue(Double.isNaN(timestamps.getEndTime(0)));
+    assertNull(timestamps.get(0).getEndTime());
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.speech_to_text.v1;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.RecognizeOptions;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechAlternative;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechResults;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.SpeechTimestamp;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.model.Transcript;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.PcmAudioFormat;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SilenceFilterInputStream;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.SpeechTimeMap;
+import com.ibm.watson.developer_cloud.speech_to_text.v1.util.VoiceActivityDetector;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.WaveUtils;
+
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Voice activity detection and silence removal tests.
+ */
+public class VoiceActivityDetectorTest extends WatsonServiceUnitTest {
+  private static final int RATE = 16000;
+  private static final PcmAudioFormat FORMAT = new PcmAudioFormat(RATE, 1, 16, false);
+
+  private SpeechToText service;
+  private VoiceActivityDetector detector;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new SpeechToText();
+    service.setApiKey("");
+    service.setEndPoint(getMockWebServerUrl());
+    detector = new VoiceActivityDetector.Builder().minSilence(500).keptSilence(200).build();
+  }
+
+  /**
+   * Creates a WAVE file with 1 second of tone, 2 seconds of silence and 1 second of tone.
+   */
+  private static byte[] createAudio() throws IOException {
+    final ByteArrayOutputStream audio = new ByteArrayOutputStream();
+    audio.write(FORMAT.toWaveHeader(4 * RATE * 2));
+    writeSamples(audio, RATE, 0.3);
+    writeSamples(audio, 2 * RATE, 0);
+    writeSamples(audio, RATE, 0.3);
+    return audio.toByteArray();
+  }
+
+  private static void writeSamples(ByteArrayOutputStream out, int samples, double amplitude) {
+    for (int i = 0; i < samples; i++) {
+      final short value = (short) (amplitude * Short.MAX_VALUE * Math.sin(2 * Math.PI * 440 * i / RATE));
+      out.write(value & 0xFF);
+      out.write((value >> 8) & 0xFF);
+    }
+  }
+
+  /**
+   * Test that a long silence is compressed and the time map points to the original audio.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testSilenceIsRemoved() throws IOException {
+    final SilenceFilterInputStream filtered =
+        new SilenceFilterInputStream(new ByteArrayInputStream(createAudio()), HttpMediaType.AUDIO_WAV, detector);
+    final byte[] output = WaveUtils.toByteArray(filtered);
+
+    // 1 second of tone + 200 ms of silence + 1 second of tone
+    final long expected = (long) (2.2 * RATE * 2);
+    assertEquals(PcmAudioFormat.WAVE_HEADER_SIZE + expected, output.length);
+    assertEquals(expected, filtered.getDataBytesWritten());
+    assertEquals(createAudio().length, filtered.getBytesRead());
+
+    final PcmAudioFormat format = PcmAudioFormat.readWaveHeader(new ByteArrayInputStream(output));
+    assertEquals(RATE, format.getSampleRate());
+
+    final SpeechTimeMap timeMap = filtered.getTimeMap();
+    assertEquals(2, timeMap.size());
+    assertEquals(0.5, timeMap.toOriginalStartTime(0.5), 0.001);
+    assertEquals(3.0, timeMap.toOriginalStartTime(1.2), 0.001);
+    assertEquals(1.1, timeMap.toOriginalEndTime(1.1), 0.001);
+    assertEquals(2.9, timeMap.toOriginalStartTime(1.1), 0.001);
+    assertEquals(3.5, timeMap.toOriginalStartTime(1.7), 0.001);
+  }
+
+  /**
+   * Test that short silences are not modified.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testShortSilenceIsKept() throws IOException {
+    final InputStream audio = new ByteArrayInputStream(createAudio());
+    final VoiceActivityDetector lenient = detector.newBuilder().minSilence(2500).build();
+    final SilenceFilterInputStream filtered = new SilenceFilterInputStream(audio, HttpMediaType.AUDIO_WAV, lenient);
+    WaveUtils.toByteArray(filtered);
+
+    assertEquals(4 * RATE * 2, filtered.getDataBytesWritten());
+    assertEquals(1, filtered.getTimeMap().size());
+  }
+
+  /**
+   * Test recognize with voice activity detection.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testRecognizeWithVoiceActivityDetection() throws Exception {
+    final File audio = File.createTempFile("vad", ".wav");
+    audio.deleteOnExit();
+    final FileOutputStream out = new FileOutputStream(audio);
+    out.write(createAudio());
+    out.close();
+
+    final SpeechTimestamp timestamp = new SpeechTimestamp();
+    timestamp.setWord("hello");
+    timestamp.setStartTime(1.3);
+    timestamp.setEndTime(1.5);
+    final SpeechAlternative alternative = new SpeechAlternative();
+    alternative.setTimestamps(Collections.singletonList(timestamp));
+    final Transcript transcript = new Transcript();
+    transcript.setAlternatives(Collections.singletonList(alternative));
+    final SpeechResults results = new SpeechResults();
+    results.setResults(Collections.singletonList(transcript));
+    server.enqueue(jsonResponse(results));
+
+    final RecognizeOptions options = new RecognizeOptions.Builder().voiceActivityDetector(detector).build();
+    final SpeechResults response = service.recognize(audio, options).execute();
+    final RecordedRequest request = server.takeRequest();
+
+    assertEquals(PcmAudioFormat.WAVE_HEADER_SIZE + (long) (2.2 * RATE * 2), request.getBodySize());
+    assertTrue(request.getHeader("Content-Type").startsWith(HttpMediaType.AUDIO_WAV));
+
+    final SpeechTimestamp remapped = response.getResults().get(0).getAlternatives().get(0).getTimestamps().get(0);
+    assertEquals(3.1, remapped.getStartTime(), 0.001);
+    assertEquals(3.3, remapped.getEndTime(), 0.001);
+  }
+}
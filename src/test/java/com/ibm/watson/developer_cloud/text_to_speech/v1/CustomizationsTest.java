@@ -16,17 +16,23 @@ package com.ibm.watson.developer_cloud.text_to_speech.v1;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomTranslation;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomVoiceModel;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.CustomWordSynchronizer;
 
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.RecordedRequest;
 
@@ -235,4 +241,66 @@ public class CustomizationsTest extends WatsonServiceUnitTest {
     assertEquals("DELETE", request.getMethod());
   }
 
+  /**
+   * Test that sync words only saves new and changed words, in batches, and deletes removed words.
+   *
+   * @throws InterruptedException the interrupted exception
+   */
+  @Test
+  public void testSyncWords() throws InterruptedException {
+    final CustomVoiceModel model = instantiateVoiceModel();
+    final List<CustomTranslation> current = ImmutableList.of(new CustomTranslation("hodor", "hold the door"),
+        new CustomTranslation("IBM", "eye bee em"), new CustomTranslation("SDK", "S D K"),
+        new CustomTranslation("API", "A P I"));
+    final List<CustomTranslation> desired = ImmutableList.of(new CustomTranslation("hodor", "hold the door"),
+        new CustomTranslation("IBM", "I B M"), new CustomTranslation("JSON", "jason"),
+        new CustomTranslation("WAV", "wave"), new CustomTranslation("URL", "U R L"));
+
+    final List<RecordedRequest> requests = new CopyOnWriteArrayList<RecordedRequest>();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) {
+        if ("GET".equals(request.getMethod()))
+          return jsonResponse(ImmutableMap.of(WORDS, current));
+        requests.add(request);
+        return new MockResponse().setResponseCode("POST".equals(request.getMethod()) ? 201 : 204);
+      }
+    });
+
+    final AtomicInteger progress = new AtomicInteger();
+    final CustomWordSynchronizer.Result result = new CustomWordSynchronizer.Builder(service).batchSize(2)
+        .progressListener(new CustomWordSynchronizer.ProgressListener() {
+          @Override
+          public void onProgress(int completed, int total) {
+            assertEquals(6, total);
+            progress.set(Math.max(progress.get(), completed));
+          }
+        }).build().syncWords(model, desired);
+
+    assertEquals(3, result.getAdded());
+    assertEquals(1, result.getUpdated());
+    assertEquals(2, result.getDeleted());
+    assertEquals(1, result.getUnchanged());
+    assertEquals(6, progress.get());
+
+    final List<String> saved = new ArrayList<String>();
+    final List<String> deleted = new ArrayList<String>();
+    for (RecordedRequest request : requests) {
+      if ("POST".equals(request.getMethod())) {
+        final String body = request.getBody().readUtf8();
+        for (CustomTranslation translation : desired) {
+          if (body.contains("\"" + translation.getWord() + "\"")) {
+            saved.add(translation.getWord());
+          }
+        }
+      } else {
+        deleted.add(request.getPath().substring(request.getPath().lastIndexOf('/') + 1));
+      }
+    }
+    assertEquals(4, requests.size());
+    assertEquals(ImmutableSet.of("IBM", "JSON", "WAV", "URL"), ImmutableSet.copyOf(saved));
+    assertEquals(4, saved.size());
+    assertEquals(ImmutableSet.of("SDK", "API"), ImmutableSet.copyOf(deleted));
+  }
+
 }
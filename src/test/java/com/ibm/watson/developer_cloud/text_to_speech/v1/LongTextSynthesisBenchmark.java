@@ -0,0 +1,128 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.io.Files;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.LongTextSynthesizer;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Measures the time to the first audio and the total time to read the audio of a long text, with a
+ * single {@link TextToSpeech#synthesize(String, Voice)} call and with a {@link LongTextSynthesizer}.
+ * Run the main method with the test classpath, with a username and a password to use the service,
+ * or without arguments to use a local server that answers after {@value #LATENCY} ms and sends
+ * {@value #BYTES_PER_CHARACTER} bytes of audio per character at {@value #BYTES_PER_SECOND} bytes per
+ * second.
+ */
+public class LongTextSynthesisBenchmark {
+  private static final int LATENCY = 300;
+  private static final int BYTES_PER_CHARACTER = 500;
+  private static final int BYTES_PER_SECOND = 500000;
+  private static final int SENTENCES = 60;
+  private static final int RUNS = 3;
+
+  private static MockWebServer startServer() throws IOException {
+    final byte[] header =
+        Arrays.copyOf(Files.toByteArray(new File("src/test/resources/text_to_speech/numbers.wav")), 78);
+    final MockWebServer server = new MockWebServer();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final String text = HttpUrl.parse("http://localhost" + request.getPath()).queryParameter("text");
+        TimeUnit.MILLISECONDS.sleep(LATENCY);
+        final Buffer body = new Buffer().write(header).write(new byte[text.length() * BYTES_PER_CHARACTER]);
+        return new MockResponse().setHeader("Content-Type", HttpMediaType.AUDIO_WAV).setBody(body)
+            .throttleBody(BYTES_PER_SECOND / 10, 100, TimeUnit.MILLISECONDS);
+      }
+    });
+    server.start();
+    return server;
+  }
+
+  /**
+   * Reads a stream to the end.
+   *
+   * @return the time to the first byte and the total time in milliseconds
+   */
+  private static long[] read(long start, InputStream audio) throws IOException {
+    try {
+      final long first = audio.read() != -1 ? System.currentTimeMillis() - start : -1;
+      final byte[] buffer = new byte[16384];
+      while (audio.read(buffer) != -1) {
+        continue;
+      }
+      return new long[] { first, System.currentTimeMillis() - start };
+    } finally {
+      audio.close();
+    }
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the username and the password, or none to use a local server
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public static void main(String[] args) throws IOException {
+    final TextToSpeech service = new TextToSpeech();
+    MockWebServer server = null;
+    if (args.length >= 2) {
+      service.setUsernameAndPassword(args[0], args[1]);
+    } else {
+      server = startServer();
+      service.setApiKey("");
+      service.setEndPoint(server.url("/").toString());
+    }
+
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < SENTENCES; i++) {
+      text.append("This is sentence number ").append(i + 1).append(" of a text that is read aloud. ");
+    }
+    final LongTextSynthesizer synthesizer = new LongTextSynthesizer.Builder(service).voice(Voice.EN_LISA).build();
+
+    final long[] single = new long[2];
+    final long[] chunked = new long[2];
+    for (int run = 0; run < RUNS; run++) {
+      long start = System.currentTimeMillis();
+      final long[] times = read(start, service.synthesize(text.toString(), Voice.EN_LISA).execute());
+      start = System.currentTimeMillis();
+      final long[] chunkedTimes = read(start, synthesizer.synthesize(text.toString()));
+      for (int i = 0; i < 2; i++) {
+        single[i] += times[i];
+        chunked[i] += chunkedTimes[i];
+      }
+    }
+
+    System.out.println(String.format("%-20s %8s %8s", "", "first ms", "total ms"));
+    System.out.println(String.format("%-20s %8d %8d", "single call", single[0] / RUNS, single[1] / RUNS));
+    System.out.println(String.format("%-20s %8d %8d", "LongTextSynthesizer", chunked[0] / RUNS, chunked[1] / RUNS));
+    if (server != null) {
+      server.shutdown();
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.LongTextSynthesizer;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Long text synthesis tests.
+ */
+public class LongTextSynthesizerTest extends WatsonServiceUnitTest {
+  private static final int HEADER_SIZE = 78;
+
+  private TextToSpeech service;
+  private byte[] header;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new TextToSpeech();
+    service.setApiKey("");
+    service.setEndPoint(getMockWebServerUrl());
+    header = Arrays.copyOf(Files.toByteArray(new File("src/test/resources/text_to_speech/numbers.wav")), HEADER_SIZE);
+  }
+
+  /**
+   * Test that texts are split on sentences outside of SSML elements.
+   */
+  @Test
+  public void testSplit() {
+    assertEquals(Arrays.asList("One.", "Two! Three?", "Four five", "six."),
+        LongTextSynthesizer.split("One. Two! Three? Four five six.", 12));
+    assertEquals(Arrays.asList("<prosody rate=\"slow\">One. Two.</prosody>", "Three.<break time=\"1s\"/>", "Four."),
+        LongTextSynthesizer.split("<speak><prosody rate=\"slow\">One. Two.</prosody> Three.<break time=\"1s\"/>"
+            + "Four.</speak>", 25));
+  }
+
+  /**
+   * Test that chunks synthesized out of order are returned in order, in one WAVE file.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeInOrder() throws Exception {
+    final AtomicInteger requests = new AtomicInteger();
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        final String text = HttpUrl.parse(getMockWebServerUrl() + request.getPath()).queryParameter("text");
+        requests.incrementAndGet();
+        // later chunks are faster, so they complete before the earlier ones
+        TimeUnit.MILLISECONDS.sleep(text.length() * 10);
+        final Buffer body = new Buffer().write(header).writeUtf8(text.toUpperCase());
+        return new MockResponse().setHeader("Content-Type", HttpMediaType.AUDIO_WAV).setBody(body);
+      }
+    });
+
+    final LongTextSynthesizer synthesizer =
+        new LongTextSynthesizer.Builder(service).voice(Voice.EN_LISA).maxConcurrency(2).maxChunkLength(10).build();
+    final LongTextSynthesizer.AudioStream stream = synthesizer.synthesize("a. bbbbbbb. cccc. dd. e.");
+    final byte[] audio = ByteStreams.toByteArray(stream);
+    stream.close();
+
+    final List<String> chunks = Arrays.asList("a.", "bbbbbbb.", "cccc. dd.", "e.");
+    assertEquals(chunks.size(), stream.getChunkCount());
+    assertEquals(chunks.size(), requests.get());
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(header);
+    for (String chunk : chunks) {
+      expected.write(chunk.toUpperCase().getBytes("UTF-8"));
+    }
+    final byte[] streaming = expected.toByteArray();
+    Arrays.fill(streaming, 4, 8, (byte) 0xff);
+    Arrays.fill(streaming, HEADER_SIZE - 4, HEADER_SIZE, (byte) 0xff);
+    assertArrayEquals(streaming, audio);
+
+    assertTrue(stream.getTimeToFirstAudio() >= 0);
+    assertTrue(stream.getTimeToFirstAudio() <= stream.getElapsedTime());
+  }
+
+  /**
+   * Test that the audio of a chunk is returned as it is received, before the chunk is complete.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testStreamFirstChunk() throws Exception {
+    final byte[] samples = new byte[2000];
+    server.enqueue(new MockResponse().setHeader("Content-Type", HttpMediaType.AUDIO_WAV)
+        .setBody(new Buffer().write(header).write(samples)).throttleBody(200, 100, TimeUnit.MILLISECONDS));
+
+    final LongTextSynthesizer synthesizer = new LongTextSynthesizer.Builder(service).voice(Voice.EN_LISA).build();
+    final LongTextSynthesizer.AudioStream stream = synthesizer.synthesize("One sentence.");
+    final byte[] first = new byte[HEADER_SIZE];
+    ByteStreams.readFully(stream, first);
+    assertEquals(-1, stream.getElapsedTime());
+    assertTrue(stream.getTimeToFirstAudio() >= 0);
+
+    assertEquals(samples.length, ByteStreams.toByteArray(stream).length);
+    stream.close();
+    assertTrue(stream.getTimeToFirstAudio() < stream.getElapsedTime());
+  }
+}
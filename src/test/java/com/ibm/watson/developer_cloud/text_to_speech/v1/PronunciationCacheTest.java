@@ -0,0 +1,131 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Phoneme;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Pronunciation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.PronunciationCache;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * Pronunciation cache tests.
+ */
+public class PronunciationCacheTest extends WatsonServiceUnitTest {
+  private TextToSpeech service;
+  private final AtomicInteger requests = new AtomicInteger();
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    service = new TextToSpeech();
+    service.setApiKey("");
+    service.setEndPoint(getMockWebServerUrl());
+    server.setDispatcher(new Dispatcher() {
+      @Override
+      public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+        requests.incrementAndGet();
+        TimeUnit.MILLISECONDS.sleep(50);
+        final String word = HttpUrl.parse(getMockWebServerUrl() + request.getPath()).queryParameter("text");
+        return jsonResponse(ImmutableMap.of("pronunciation", ".'" + word.toLowerCase()));
+      }
+    });
+  }
+
+  /**
+   * Test that concurrent lookups of the same word send one request.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testInFlightDeduplication() throws Exception {
+    final PronunciationCache cache = new PronunciationCache.Builder(service).build();
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final List<Future<Pronunciation>> futures = Lists.newArrayList();
+    for (int i = 0; i < 4; i++) {
+      futures.add(executor.submit(new Callable<Pronunciation>() {
+        @Override
+        public Pronunciation call() {
+          return cache.getPronunciation("IEEE", Voice.EN_LISA, Phoneme.IPA);
+        }
+      }));
+    }
+    for (Future<Pronunciation> future : futures) {
+      assertEquals(".'ieee", future.get().getPronunciation());
+    }
+    executor.shutdown();
+
+    assertEquals(1, requests.get());
+    assertEquals(".'ieee", cache.getPronunciation("IEEE", Voice.EN_LISA, Phoneme.IPA).getPronunciation());
+    assertEquals(1, requests.get());
+    cache.getPronunciation("IEEE", Voice.EN_MICHAEL, Phoneme.IPA);
+    assertEquals(2, requests.get());
+  }
+
+  /**
+   * Test that a document is prefetched with one request per unique word, and that the cache is
+   * loaded from its file.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testPrefetchAndPersist() throws Exception {
+    final File file = File.createTempFile("pronunciations", ".json");
+    file.delete();
+    file.deleteOnExit();
+    final PronunciationCache cache = new PronunciationCache.Builder(service).file(file).build();
+
+    final Map<String, Pronunciation> pronunciations =
+        cache.prefetch("Gnocchi, gnocchi and quinoa; quinoa or Gnocchi?", Voice.EN_LISA, null);
+    assertEquals(5, pronunciations.size());
+    assertEquals(".'quinoa", pronunciations.get("quinoa").getPronunciation());
+    assertEquals(5, requests.get());
+    assertEquals(5, cache.getSize());
+
+    cache.save();
+    final PronunciationCache loaded = new PronunciationCache.Builder(service).file(file).build();
+    assertEquals(5, loaded.getSize());
+    assertEquals(".'quinoa", loaded.getPronunciation("quinoa", Voice.EN_LISA, null).getPronunciation());
+    assertEquals(5, requests.get());
+    file.delete();
+  }
+}
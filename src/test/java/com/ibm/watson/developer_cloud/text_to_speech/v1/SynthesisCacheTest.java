@@ -0,0 +1,197 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.text_to_speech.v1;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.primitives.Bytes;
+import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.http.HttpMediaType;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomTranslation;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.CustomVoiceModel;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
+import com.ibm.watson.developer_cloud.text_to_speech.v1.util.SynthesisCache;
+
+import okhttp3.mockwebserver.MockResponse;
+import okio.Buffer;
+
+/**
+ * Synthesis cache tests.
+ */
+public class SynthesisCacheTest extends WatsonServiceUnitTest {
+  private static final byte[] AUDIO = "RIFF audio".getBytes();
+  private static final String CUSTOMIZATION_ID = "cafebabe-1234-5678-9abc-def012345678";
+
+  private TextToSpeech service;
+  private File directory;
+  private SynthesisCache cache;
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceTest#setUp()
+   */
+  @Override
+  @Before
+  public void setUp() throws Exception {
+    super.setUp();
+    directory = Files.createTempDir();
+    cache = new SynthesisCache.Builder(directory).build();
+    service = new TextToSpeech();
+    service.setApiKey("");
+    service.setEndPoint(getMockWebServerUrl());
+    service.setSynthesisCache(cache);
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see com.ibm.watson.developer_cloud.WatsonServiceUnitTest#tearDown()
+   */
+  @Override
+  @After
+  public void tearDown() throws IOException {
+    super.tearDown();
+    cache.clear();
+  }
+
+  private static MockResponse audioResponse() {
+    return new MockResponse().setHeader("Content-Type", HttpMediaType.AUDIO_WAV).setBody(new Buffer().write(AUDIO));
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    try {
+      return ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Test that the same synthesis is served from the cache, and that the text is normalized.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSynthesizeFromCache() throws Exception {
+    server.enqueue(audioResponse());
+
+    assertArrayEquals(AUDIO, read(service.synthesize("Hello  world", Voice.EN_LISA).execute()));
+    assertArrayEquals(AUDIO, read(service.synthesize(" Hello world ", Voice.EN_LISA, AudioFormat.WAV).execute()));
+    assertArrayEquals(AUDIO, read(service.synthesize("Hello world", Voice.EN_LISA).rx().get()));
+
+    assertEquals(1, server.getRequestCount());
+    assertEquals(1, cache.getCount());
+    assertEquals(AUDIO.length, cache.getSize());
+    assertEquals(2, cache.getHitCount());
+
+    // entries are found again by a new cache on the same directory
+    final SynthesisCache reloaded = new SynthesisCache.Builder(directory).build();
+    assertEquals(1, reloaded.getCount());
+    assertArrayEquals(AUDIO,
+        read(reloaded.get(reloaded.key("Hello world", Voice.EN_LISA, AudioFormat.WAV, null))));
+  }
+
+  /**
+   * Test that changing the words of a customization removes its entries.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testInvalidateOnSaveWords() throws Exception {
+    final CustomVoiceModel model = new CustomVoiceModel();
+    model.setId(CUSTOMIZATION_ID);
+
+    server.enqueue(audioResponse());
+    server.enqueue(audioResponse());
+    server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+    server.enqueue(audioResponse());
+
+    read(service.synthesize("IBM", Voice.EN_LISA, AudioFormat.WAV, CUSTOMIZATION_ID).execute());
+    read(service.synthesize("IBM", Voice.EN_LISA).execute());
+    assertEquals(2, cache.getCount());
+
+    service.saveWords(model, new CustomTranslation("IBM", "eye bee em")).execute();
+    assertEquals(1, cache.getCount());
+
+    read(service.synthesize("IBM", Voice.EN_LISA).execute());
+    read(service.synthesize("IBM", Voice.EN_LISA, AudioFormat.WAV, CUSTOMIZATION_ID).execute());
+    assertEquals(4, server.getRequestCount());
+  }
+
+  /**
+   * Test that the least recently used entries are removed over the size limit, and that audio for
+   * an invalidated customization is not stored.
+   */
+  @Test
+  public void testEviction() throws IOException {
+    final SynthesisCache small = new SynthesisCache.Builder(directory).maxSize(2 * AUDIO.length).build();
+    final SynthesisCache.Key a = small.key("a", Voice.EN_LISA, AudioFormat.WAV, null);
+    final SynthesisCache.Key b = small.key("b", Voice.EN_LISA, AudioFormat.WAV, null);
+    final SynthesisCache.Key c = small.key("c", Voice.EN_LISA, AudioFormat.WAV, null);
+    read(small.put(a, new ByteArrayInputStream(AUDIO)));
+    read(small.put(b, new ByteArrayInputStream(AUDIO)));
+    read(small.get(a));
+    read(small.put(c, new ByteArrayInputStream(AUDIO)));
+
+    assertEquals(2, small.getCount());
+    assertNull(small.get(b));
+
+    final SynthesisCache.Key stale = small.key("d", Voice.EN_LISA, AudioFormat.WAV, CUSTOMIZATION_ID);
+    small.invalidate(CUSTOMIZATION_ID);
+    read(small.put(stale, new ByteArrayInputStream(AUDIO)));
+    assertNull(small.get(stale));
+    small.clear();
+  }
+
+  /**
+   * Test that synthesized audio is returned as it is written to the cache, and only stored once it
+   * is read to the end.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testPutWhileReading() throws Exception {
+    final SynthesisCache.Key key = cache.key("tee", Voice.EN_LISA, AudioFormat.WAV, null);
+
+    final InputStream partial = cache.put(key, new ByteArrayInputStream(AUDIO));
+    assertEquals(AUDIO[0], partial.read());
+    assertEquals(0, cache.getCount());
+    partial.close();
+    assertEquals(0, cache.getCount());
+    assertNull(cache.get(key));
+
+    final InputStream audio = cache.put(key, new ByteArrayInputStream(AUDIO));
+    final byte[] first = new byte[4];
+    assertEquals(4, audio.read(first));
+    assertEquals(0, cache.getCount());
+    assertArrayEquals(AUDIO, Bytes.concat(first, read(audio)));
+    assertEquals(1, cache.getCount());
+    assertArrayEquals(AUDIO, read(cache.get(key)));
+  }
+}
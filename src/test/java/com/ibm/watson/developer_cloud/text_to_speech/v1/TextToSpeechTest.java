@@ -22,11 +22,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +47,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
 import com.google.gson.Gson;
 import com.ibm.watson.developer_cloud.WatsonServiceUnitTest;
+import com.ibm.watson.developer_cloud.http.ContentLengthInputStream;
 import com.ibm.watson.developer_cloud.http.HttpMediaType;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.AudioFormat;
 import com.ibm.watson.developer_cloud.text_to_speech.v1.model.Voice;
@@ -245,6 +249,79 @@ public class TextToSpeechTest extends WatsonServiceUnitTest {
     Assert.assertNotNull(AudioSystem.getAudioFileFormat(tempFile));
   }
 
+  /**
+   * Test that the wave header is fixed from a known length before the audio is read, and in a file.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   * @throws UnsupportedAudioFileException the unsupported audio file exception
+   */
+  @Test
+  public void testFixHeaderWithLength() throws IOException, UnsupportedAudioFileException {
+    final File audio = new File("src/test/resources/text_to_speech/numbers.wav");
+    final long length = audio.length();
+    final int[] read = new int[1];
+    final InputStream source = new FilterInputStream(new FileInputStream(audio)) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        final int count = super.read(b, off, len);
+        read[0] += Math.max(count, 0);
+        return count;
+      }
+    };
+
+    final InputStream stream = WaveUtils.reWriteWaveHeader(source, length);
+    assertEquals(78, read[0]);
+    final byte[] header = new byte[78];
+    Assert.assertEquals(78, stream.read(header));
+    Assert.assertEquals(length - 8, ByteBuffer.wrap(header, 4, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+    Assert.assertEquals(length - 78, ByteBuffer.wrap(header, 74, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+
+    final File tempFile = File.createTempFile("output", ".wav");
+    tempFile.deleteOnExit();
+    stream.close();
+    assertEquals(length, WaveUtils.writeWaveFile(new FileInputStream(audio), tempFile));
+    final byte[] fixed = Files.toByteArray(tempFile);
+    Assert.assertEquals(length - 78, ByteBuffer.wrap(fixed, 74, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+    Assert.assertEquals((length - 78) / 2, AudioSystem.getAudioFileFormat(tempFile).getFrameLength());
+  }
+
+  /**
+   * Test that the header of a response with a known length is fixed before the audio is read, and
+   * that the stream of an unknown length is read to its end without being closed.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testFixHeaderOfResponse() throws IOException {
+    final File audio = new File("src/test/resources/text_to_speech/numbers.wav");
+    final long length = audio.length();
+    final int[] read = new int[1];
+    final InputStream source = new FilterInputStream(new FileInputStream(audio)) {
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        final int count = super.read(b, off, len);
+        read[0] += Math.max(count, 0);
+        return count;
+      }
+    };
+
+    InputStream stream = WaveUtils.reWriteWaveHeader(new ContentLengthInputStream(source, length));
+    assertEquals(78, read[0]);
+    final byte[] header = new byte[78];
+    Assert.assertEquals(78, stream.read(header));
+    Assert.assertEquals(length - 78, ByteBuffer.wrap(header, 74, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+    stream.close();
+
+    // reading a closed file input stream fails
+    final InputStream unknown = new FileInputStream(audio);
+    stream = WaveUtils.reWriteWaveHeader(new ContentLengthInputStream(unknown, -1));
+    Assert.assertEquals(78, stream.read(header));
+    Assert.assertEquals(length - 78, ByteBuffer.wrap(header, 74, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+    Assert.assertEquals(-1, unknown.read());
+    unknown.close();
+    stream.close();
+  }
+
   /**
    * Tests the static method Voice.getByName
    *
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2015 IBM Corp. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.ibm.watson.developer_cloud.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Entities;
+import com.ibm.watson.developer_cloud.alchemy.v1.model.Entity;
+import com.ibm.watson.developer_cloud.tone_analyzer.v3.model.ToneCategory;
+
+/**
+ * The Class StringInternerTest.
+ */
+public class StringInternerTest {
+
+  /**
+   * Disables interning after each test.
+   */
+  @After
+  public void tearDown() {
+    StringInterner.setDefault(null);
+  }
+
+  /**
+   * Test that equal values share one instance.
+   */
+  @Test
+  public void testIntern() {
+    final StringInterner interner = new StringInterner(100);
+    assertEquals(128, interner.getCapacity());
+    final String value = new String("Company");
+    assertSame(value, interner.intern(value));
+    assertSame(value, interner.intern(new String("Company")));
+    assertNull(interner.intern(null));
+  }
+
+  /**
+   * Test that the table stays bounded when there are more values than its capacity.
+   */
+  @Test
+  public void testBounded() {
+    final StringInterner interner = new StringInterner(16);
+    String last = null;
+    for (int i = 0; i < 1000; i++) {
+      last = interner.intern("value" + i);
+      assertEquals("value" + i, last);
+    }
+    assertEquals(16, interner.getCapacity());
+    assertSame(last, interner.intern(new String("value999")));
+  }
+
+  /**
+   * Test the capacity validation.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new StringInterner(1);
+  }
+
+  /**
+   * Test that the annotated fields are interned during deserialization only when there is a default
+   * interner.
+   */
+  @Test
+  public void testDeserialization() {
+    final Gson gson = GsonSingleton.getGsonWithoutPrettyPrinting();
+    final String json = "{\"entities\":[{\"type\":\"Company\",\"text\":\"IBM\"},{\"type\":\"Company\",\"text\":\"IBM\"}]}";
+
+    List<Entity> entities = gson.fromJson(json, Entities.class).getEntities();
+    assertNotSame(entities.get(0).getType(), entities.get(1).getType());
+
+    StringInterner.setDefault(new StringInterner(1024));
+    entities = gson.fromJson(json, Entities.class).getEntities();
+    assertSame(entities.get(0).getType(), entities.get(1).getType());
+    assertNotSame(entities.get(0).getText(), entities.get(1).getText());
+    assertEquals("Company", entities.get(0).getType());
+
+    final String category = "{\"category_id\":\"emotion_tone\",\"tones\":[{\"tone_id\":\"anger\"}]}";
+    final ToneCategory first = gson.fromJson(category, ToneCategory.class);
+    final ToneCategory second = gson.fromJson(category, ToneCategory.class);
+    assertSame(first.getId(), second.getId());
+    assertSame(first.getTones().get(0).getId(), second.getTones().get(0).getId());
+    assertEquals(category, gson.toJson(first));
+  }
+}